@@ -0,0 +1,158 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.benchmark;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.data.synthetic.bymodel.GeneratorMain;
+import de.lmu.ifi.dbs.elki.data.synthetic.bymodel.GeneratorSingleCluster;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.StaticArrayDatabase;
+import de.lmu.ifi.dbs.elki.datasource.MultipleObjectsBundleDatabaseConnection;
+import de.lmu.ifi.dbs.elki.datasource.bundle.MultipleObjectsBundle;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.EuclideanDistanceFunction;
+import de.lmu.ifi.dbs.elki.index.IndexFactory;
+import de.lmu.ifi.dbs.elki.index.tree.metrical.covertree.CoverTree;
+import de.lmu.ifi.dbs.elki.index.tree.spatial.rstarvariants.rstar.RStarTreeFactory;
+import de.lmu.ifi.dbs.elki.index.tree.spatial.rstarvariants.strategies.bulk.SortTileRecursiveBulkSplit;
+import de.lmu.ifi.dbs.elki.math.statistics.distribution.NormalDistribution;
+import de.lmu.ifi.dbs.elki.persistent.AbstractPageFileFactory;
+import de.lmu.ifi.dbs.elki.utilities.ELKIBuilder;
+
+/**
+ * Deterministic synthetic data for the benchmarks, generated with the ELKI
+ * data generator.
+ * <p>
+ * The data consists of Gaussian clusters with random centers in the unit cube,
+ * and is fully determined by the parameters and the seed, such that results
+ * of different commits are comparable.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ */
+public final class BenchmarkData {
+  /**
+   * Default random seed.
+   */
+  public static final long SEED = 0L;
+
+  /**
+   * Private constructor. Static methods only.
+   */
+  private BenchmarkData() {
+    // Do not use.
+  }
+
+  /**
+   * Generate a data set of Gaussian clusters.
+   *
+   * @param size Number of objects
+   * @param dim Dimensionality
+   * @param clusters Number of clusters
+   * @param seed Random seed
+   * @return Data bundle
+   */
+  public static MultipleObjectsBundle generate(int size, int dim, int clusters, long seed) {
+    Random rnd = new Random(seed);
+    GeneratorMain gen = new GeneratorMain();
+    for(int c = 0; c < clusters; c++) {
+      final int csize = size / clusters + (c < size % clusters ? 1 : 0);
+      GeneratorSingleCluster cluster = new GeneratorSingleCluster("Cluster" + c, csize, 1., new Random(rnd.nextLong()));
+      double[] center = new double[dim];
+      for(int d = 0; d < dim; d++) {
+        center[d] = rnd.nextDouble();
+        cluster.addGenerator(new NormalDistribution(0., .02 + .05 * rnd.nextDouble(), new Random(rnd.nextLong())));
+      }
+      cluster.addTranslation(center);
+      gen.addCluster(cluster);
+    }
+    gen.setTestAgainstModel(false);
+    return gen.generate();
+  }
+
+  /**
+   * Generate the data as a plain array.
+   *
+   * @param size Number of objects
+   * @param dim Dimensionality
+   * @param clusters Number of clusters
+   * @param seed Random seed
+   * @return Data array
+   */
+  public static double[][] generateArray(int size, int dim, int clusters, long seed) {
+    MultipleObjectsBundle bundle = generate(size, dim, clusters, seed);
+    for(int c = 0; c < bundle.metaLength(); c++) {
+      if(TypeUtil.NUMBER_VECTOR_FIELD.isAssignableFromType(bundle.meta(c))) {
+        double[][] data = new double[bundle.dataLength()][];
+        for(int i = 0; i < data.length; i++) {
+          data[i] = ((NumberVector) bundle.data(i, c)).toArray();
+        }
+        return data;
+      }
+    }
+    throw new IllegalStateException("Generator did not produce vectors.");
+  }
+
+  /**
+   * Make an index factory for Euclidean distance.
+   *
+   * @param name Index name: "none", "rstar", "rstar-str" (bulk loaded), or
+   *        "covertree"
+   * @return Index factory, {@code null} for "none"
+   */
+  public static IndexFactory<?> makeIndex(String name) {
+    switch(name){
+    case "none":
+      return null;
+    case "rstar":
+      return new ELKIBuilder<>(RStarTreeFactory.class) //
+          .with(AbstractPageFileFactory.Parameterizer.PAGE_SIZE_ID, 4096) //
+          .build();
+    case "rstar-str":
+      return new ELKIBuilder<>(RStarTreeFactory.class) //
+          .with(AbstractPageFileFactory.Parameterizer.PAGE_SIZE_ID, 4096) //
+          .with(RStarTreeFactory.Parameterizer.BULK_SPLIT_ID, SortTileRecursiveBulkSplit.class) //
+          .build();
+    case "covertree":
+      return new ELKIBuilder<>(CoverTree.Factory.class) //
+          .with(CoverTree.Factory.Parameterizer.DISTANCE_FUNCTION_ID, EuclideanDistanceFunction.class) //
+          .build();
+    default:
+      throw new IllegalArgumentException("Unknown index: " + name);
+    }
+  }
+
+  /**
+   * Make and initialize a database, i.e., build its index.
+   *
+   * @param bundle Data bundle
+   * @param index Index factory, may be {@code null}
+   * @return Database
+   */
+  public static Database makeDatabase(MultipleObjectsBundle bundle, IndexFactory<?> index) {
+    Database db = new StaticArrayDatabase(new MultipleObjectsBundleDatabaseConnection(bundle), index != null ? Arrays.asList(index) : null);
+    db.initialize();
+    return db;
+  }
+}
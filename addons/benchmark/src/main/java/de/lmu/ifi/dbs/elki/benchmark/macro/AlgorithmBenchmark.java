@@ -0,0 +1,157 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.benchmark.macro;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.lmu.ifi.dbs.elki.algorithm.Algorithm;
+import de.lmu.ifi.dbs.elki.algorithm.clustering.DBSCAN;
+import de.lmu.ifi.dbs.elki.algorithm.clustering.kmeans.KMeans;
+import de.lmu.ifi.dbs.elki.algorithm.clustering.kmeans.KMeansLloyd;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.lof.LOF;
+import de.lmu.ifi.dbs.elki.benchmark.BenchmarkData;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.datasource.bundle.MultipleObjectsBundle;
+import de.lmu.ifi.dbs.elki.result.Result;
+import de.lmu.ifi.dbs.elki.utilities.ELKIBuilder;
+
+/**
+ * End-to-end benchmark of complete algorithm runs on synthetic data.
+ * <p>
+ * Each measurement is a single run on a fresh database, such that results or
+ * preprocessors of previous runs are not reused.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class AlgorithmBenchmark {
+  /**
+   * Algorithm to run.
+   */
+  @Param({ "kmeans", "dbscan", "lof" })
+  String algorithm;
+
+  /**
+   * Index to use.
+   */
+  @Param({ "none", "rstar-str" })
+  String index;
+
+  /**
+   * Data set size.
+   */
+  @Param({ "20000" })
+  int size;
+
+  /**
+   * Dimensionality.
+   */
+  @Param({ "4" })
+  int dim;
+
+  /**
+   * Generated data.
+   */
+  MultipleObjectsBundle data;
+
+  /**
+   * Database for the next run.
+   */
+  Database db;
+
+  /**
+   * Configured algorithm.
+   */
+  Algorithm alg;
+
+  /**
+   * Generate the data and configure the algorithm.
+   */
+  @Setup(Level.Trial)
+  public void setupTrial() {
+    data = BenchmarkData.generate(size, dim, 10, BenchmarkData.SEED);
+    alg = makeAlgorithm(algorithm);
+  }
+
+  /**
+   * Build a fresh database.
+   */
+  @Setup(Level.Iteration)
+  public void setupIteration() {
+    db = BenchmarkData.makeDatabase(data, BenchmarkData.makeIndex(index));
+  }
+
+  /**
+   * Run the algorithm.
+   *
+   * @return Result
+   */
+  @Benchmark
+  public Result run() {
+    return alg.run(db);
+  }
+
+  /**
+   * Configure an algorithm.
+   *
+   * @param name Algorithm name
+   * @return Algorithm
+   */
+  private static Algorithm makeAlgorithm(String name) {
+    switch(name){
+    case "kmeans":
+      return new ELKIBuilder<>(KMeansLloyd.class) //
+          .with(KMeans.K_ID, 10) //
+          .with(KMeans.SEED_ID, BenchmarkData.SEED) //
+          .build();
+    case "dbscan":
+      return new ELKIBuilder<>(DBSCAN.class) //
+          .with(DBSCAN.Parameterizer.EPSILON_ID, .04) //
+          .with(DBSCAN.Parameterizer.MINPTS_ID, 20) //
+          .build();
+    case "lof":
+      return new ELKIBuilder<>(LOF.class) //
+          .with(LOF.Parameterizer.K_ID, 20) //
+          .build();
+    default:
+      throw new IllegalArgumentException("Unknown algorithm: " + name);
+    }
+  }
+}
@@ -0,0 +1,133 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.benchmark.micro;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.lmu.ifi.dbs.elki.benchmark.BenchmarkData;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.BitsUtil;
+
+/**
+ * Benchmark the bit set operations of BitsUtil, as used by itemset mining and
+ * subspace clustering.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BitsUtilBenchmark {
+  /**
+   * Number of bit sets.
+   */
+  private static final int SIZE = 1000;
+
+  /**
+   * Number of bits.
+   */
+  @Param({ "64", "1024" })
+  int bits;
+
+  /**
+   * Bit sets, with about half of the bits set.
+   */
+  long[][] sets;
+
+  /**
+   * Work array.
+   */
+  long[] work;
+
+  /**
+   * Prepare the data.
+   */
+  @Setup
+  public void setup() {
+    Random r = new Random(BenchmarkData.SEED);
+    sets = new long[SIZE][];
+    for(int i = 0; i < SIZE; i++) {
+      sets[i] = BitsUtil.random(bits >> 1, bits, r);
+    }
+    work = BitsUtil.zero(bits);
+  }
+
+  /**
+   * Count the bits of all sets.
+   *
+   * @return Total cardinality
+   */
+  @Benchmark
+  public long cardinality() {
+    long sum = 0;
+    for(long[] s : sets) {
+      sum += BitsUtil.cardinality(s);
+    }
+    return sum;
+  }
+
+  /**
+   * Intersect each set with the next, and count the result.
+   *
+   * @return Total cardinality
+   */
+  @Benchmark
+  public long intersect() {
+    long sum = 0;
+    for(int i = 1; i < SIZE; i++) {
+      System.arraycopy(sets[i - 1], 0, work, 0, work.length);
+      sum += BitsUtil.cardinality(BitsUtil.andI(work, sets[i]));
+    }
+    return sum;
+  }
+
+  /**
+   * Iterate over the set bits of all sets.
+   *
+   * @return Sum of set bit positions
+   */
+  @Benchmark
+  public long iterateSetBits() {
+    long sum = 0;
+    for(long[] s : sets) {
+      for(int i = BitsUtil.nextSetBit(s, 0); i >= 0; i = BitsUtil.nextSetBit(s, i + 1)) {
+        sum += i;
+      }
+    }
+    return sum;
+  }
+}
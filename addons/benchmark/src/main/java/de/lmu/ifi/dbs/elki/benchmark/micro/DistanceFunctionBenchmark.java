@@ -0,0 +1,98 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.benchmark.micro;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.lmu.ifi.dbs.elki.benchmark.BenchmarkData;
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.SquaredEuclideanDistanceFunction;
+
+/**
+ * Benchmark the squared Euclidean distance, the most common kernel of
+ * clustering and linear scans.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DistanceFunctionBenchmark {
+  /**
+   * Number of vectors.
+   */
+  private static final int SIZE = 1000;
+
+  /**
+   * Dimensionality.
+   */
+  @Param({ "2", "16", "128" })
+  int dim;
+
+  /**
+   * Data vectors.
+   */
+  DoubleVector[] data;
+
+  /**
+   * Prepare the data.
+   */
+  @Setup
+  public void setup() {
+    double[][] raw = BenchmarkData.generateArray(SIZE, dim, 5, BenchmarkData.SEED);
+    data = new DoubleVector[raw.length];
+    for(int i = 0; i < raw.length; i++) {
+      data[i] = DoubleVector.wrap(raw[i]);
+    }
+  }
+
+  /**
+   * Compute the distances of one vector to all vectors.
+   *
+   * @return Sum of distances
+   */
+  @Benchmark
+  public double squaredEuclidean() {
+    final SquaredEuclideanDistanceFunction df = SquaredEuclideanDistanceFunction.STATIC;
+    final DoubleVector q = data[0];
+    double sum = 0.;
+    for(DoubleVector v : data) {
+      sum += df.distance(q, v);
+    }
+    return sum;
+  }
+}
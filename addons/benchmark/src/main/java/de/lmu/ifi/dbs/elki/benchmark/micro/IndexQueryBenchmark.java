@@ -0,0 +1,158 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.benchmark.micro;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.lmu.ifi.dbs.elki.benchmark.BenchmarkData;
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.QueryUtil;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.query.knn.KNNQuery;
+import de.lmu.ifi.dbs.elki.database.query.range.RangeQuery;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.EuclideanDistanceFunction;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.QuickSelect;
+
+/**
+ * Benchmark kNN and range queries of the R*-tree and the cover tree, against
+ * a linear scan.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IndexQueryBenchmark {
+  /**
+   * Data set size.
+   */
+  private static final int SIZE = 20000;
+
+  /**
+   * Number of query points.
+   */
+  private static final int QUERIES = 100;
+
+  /**
+   * Number of neighbors.
+   */
+  private static final int K = 10;
+
+  /**
+   * Index to use.
+   */
+  @Param({ "none", "rstar-str", "covertree" })
+  String index;
+
+  /**
+   * Dimensionality.
+   */
+  @Param({ "2", "8" })
+  int dim;
+
+  /**
+   * kNN query.
+   */
+  KNNQuery<NumberVector> knnq;
+
+  /**
+   * Range query.
+   */
+  RangeQuery<NumberVector> rangeq;
+
+  /**
+   * Query points.
+   */
+  ArrayDBIDs queries;
+
+  /**
+   * Range query radius, the median k-distance of the query points.
+   */
+  double radius;
+
+  /**
+   * Build the database and its index.
+   */
+  @Setup
+  public void setup() {
+    Database db = BenchmarkData.makeDatabase(BenchmarkData.generate(SIZE, dim, 10, BenchmarkData.SEED), BenchmarkData.makeIndex(index));
+    Relation<NumberVector> rel = db.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+    knnq = QueryUtil.getKNNQuery(rel, EuclideanDistanceFunction.STATIC, K);
+    rangeq = QueryUtil.getRangeQuery(rel, EuclideanDistanceFunction.STATIC);
+    queries = DBIDUtil.ensureArray(DBIDUtil.randomSample(rel.getDBIDs(), QUERIES, BenchmarkData.SEED));
+    double[] kdists = new double[QUERIES];
+    int i = 0;
+    for(DBIDIter it = queries.iter(); it.valid(); it.advance()) {
+      kdists[i++] = knnq.getKNNForDBID(it, K).getKNNDistance();
+    }
+    radius = QuickSelect.median(Arrays.copyOf(kdists, i));
+  }
+
+  /**
+   * Run kNN queries.
+   *
+   * @return Sum of k-distances
+   */
+  @Benchmark
+  public double knn() {
+    double sum = 0.;
+    for(DBIDIter it = queries.iter(); it.valid(); it.advance()) {
+      sum += knnq.getKNNForDBID(it, K).getKNNDistance();
+    }
+    return sum;
+  }
+
+  /**
+   * Run range queries.
+   *
+   * @return Total number of results
+   */
+  @Benchmark
+  public long range() {
+    long sum = 0;
+    for(DBIDIter it = queries.iter(); it.valid(); it.advance()) {
+      sum += rangeq.getRangeForDBID(it, radius).size();
+    }
+    return sum;
+  }
+}
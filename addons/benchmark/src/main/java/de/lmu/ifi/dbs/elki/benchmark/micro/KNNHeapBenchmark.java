@@ -0,0 +1,126 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.benchmark.micro;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.lmu.ifi.dbs.elki.benchmark.BenchmarkData;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRange;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.KNNHeap;
+
+/**
+ * Benchmark the kNN heap, as used by all kNN queries, by inserting random
+ * distances (the {@code DoubleIntegerDBIDKNNHeap} for integer DBIDs).
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KNNHeapBenchmark {
+  /**
+   * Number of candidates to insert.
+   */
+  private static final int SIZE = 10000;
+
+  /**
+   * Heap size.
+   */
+  @Param({ "10", "100" })
+  int k;
+
+  /**
+   * Candidate distances.
+   */
+  double[] dists;
+
+  /**
+   * Candidate IDs.
+   */
+  DBIDRange ids;
+
+  /**
+   * Prepare the candidates.
+   */
+  @Setup
+  public void setup() {
+    Random r = new Random(BenchmarkData.SEED);
+    dists = new double[SIZE];
+    for(int i = 0; i < SIZE; i++) {
+      dists[i] = r.nextDouble();
+    }
+    ids = DBIDUtil.generateStaticDBIDRange(SIZE);
+  }
+
+  /**
+   * Insert all candidates into a new heap.
+   *
+   * @return k-distance
+   */
+  @Benchmark
+  public double insert() {
+    KNNHeap heap = DBIDUtil.newHeap(k);
+    final double[] dists = this.dists;
+    for(DBIDArrayIter it = ids.iter(); it.valid(); it.advance()) {
+      heap.insert(dists[it.getOffset()], it);
+    }
+    return heap.getKNNDistance();
+  }
+
+  /**
+   * Insert the candidates, but skip those beyond the current k-distance, as
+   * done by the linear scan queries.
+   *
+   * @return k-distance
+   */
+  @Benchmark
+  public double insertBounded() {
+    KNNHeap heap = DBIDUtil.newHeap(k);
+    double kdist = Double.POSITIVE_INFINITY;
+    final double[] dists = this.dists;
+    for(DBIDArrayIter it = ids.iter(); it.valid(); it.advance()) {
+      final double d = dists[it.getOffset()];
+      if(d <= kdist) {
+        kdist = heap.insert(d, it);
+      }
+    }
+    return kdist;
+  }
+}
@@ -0,0 +1,133 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.benchmark.micro;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.lmu.ifi.dbs.elki.benchmark.BenchmarkData;
+import de.lmu.ifi.dbs.elki.utilities.io.ParseUtil;
+
+/**
+ * Benchmark number parsing, the main cost of reading text input files.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseUtilBenchmark {
+  /**
+   * Number of values.
+   */
+  private static final int SIZE = 1000;
+
+  /**
+   * Number format.
+   */
+  @Param({ "%.3f", "%.17g", "%d" })
+  String format;
+
+  /**
+   * Numbers as strings.
+   */
+  String[] strings;
+
+  /**
+   * Numbers as bytes.
+   */
+  byte[][] bytes;
+
+  /**
+   * Prepare the data.
+   */
+  @Setup
+  public void setup() {
+    Random r = new Random(BenchmarkData.SEED);
+    strings = new String[SIZE];
+    bytes = new byte[SIZE][];
+    for(int i = 0; i < SIZE; i++) {
+      double v = (r.nextDouble() - .5) * Math.pow(10, r.nextInt(10) - 3);
+      strings[i] = "%d".equals(format) ? Long.toString((long) (v * 1000)) : String.format(Locale.ROOT, format, v);
+      bytes[i] = strings[i].getBytes(StandardCharsets.US_ASCII);
+    }
+  }
+
+  /**
+   * Parse from character sequences.
+   *
+   * @return Sum of values
+   */
+  @Benchmark
+  public double parseDoubleChars() {
+    double sum = 0.;
+    for(String s : strings) {
+      sum += ParseUtil.parseDouble(s);
+    }
+    return sum;
+  }
+
+  /**
+   * Parse from bytes.
+   *
+   * @return Sum of values
+   */
+  @Benchmark
+  public double parseDoubleBytes() {
+    double sum = 0.;
+    for(byte[] b : bytes) {
+      sum += ParseUtil.parseDouble(b, 0, b.length);
+    }
+    return sum;
+  }
+
+  /**
+   * Baseline: parse with the Java API.
+   *
+   * @return Sum of values
+   */
+  @Benchmark
+  public double parseDoubleJava() {
+    double sum = 0.;
+    for(String s : strings) {
+      sum += Double.parseDouble(s);
+    }
+    return sum;
+  }
+}
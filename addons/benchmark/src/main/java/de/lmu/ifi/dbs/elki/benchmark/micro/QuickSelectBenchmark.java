@@ -0,0 +1,105 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.benchmark.micro;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.lmu.ifi.dbs.elki.benchmark.BenchmarkData;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.QuickSelect;
+
+/**
+ * Benchmark QuickSelect, as used for medians and by the bulk loading of
+ * indexes.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QuickSelectBenchmark {
+  /**
+   * Array size.
+   */
+  @Param({ "100", "10000", "1000000" })
+  int size;
+
+  /**
+   * Input data.
+   */
+  double[] data;
+
+  /**
+   * Work array, as QuickSelect modifies its input.
+   */
+  double[] work;
+
+  /**
+   * Prepare the data.
+   */
+  @Setup
+  public void setup() {
+    Random r = new Random(BenchmarkData.SEED);
+    data = new double[size];
+    for(int i = 0; i < size; i++) {
+      data[i] = r.nextDouble();
+    }
+    work = new double[size];
+  }
+
+  /**
+   * Compute the median of random data.
+   *
+   * @return Median
+   */
+  @Benchmark
+  public double median() {
+    System.arraycopy(data, 0, work, 0, size);
+    return QuickSelect.median(work);
+  }
+
+  /**
+   * Compute a high quantile of random data.
+   *
+   * @return Quantile
+   */
+  @Benchmark
+  public double quantile99() {
+    System.arraycopy(data, 0, work, 0, size);
+    return QuickSelect.quantile(work, .99);
+  }
+}
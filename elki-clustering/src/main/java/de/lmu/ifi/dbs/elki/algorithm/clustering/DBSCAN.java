@@ -177,7 +177,7 @@ public class DBSCAN<O> extends AbstractDistanceBasedAlgorithm<O, Clustering<Mode
     FiniteProgress objprog = LOG.isVerbose() ? new FiniteProgress("Processing objects", size, LOG) : null;
     IndefiniteProgress clusprog = LOG.isVerbose() ? new IndefiniteProgress("Number of clusters", LOG) : null;
 
-    processedIDs = DBIDUtil.newHashSet(size);
+    processedIDs = DBIDUtil.newHashSet(size, DBIDFactory.HINT_DENSE);
     ArrayModifiableDBIDs seeds = DBIDUtil.newArray();
     for(DBIDIter iditer = relation.iterDBIDs(); iditer.valid(); iditer.advance()) {
       if(!processedIDs.contains(iditer)) {
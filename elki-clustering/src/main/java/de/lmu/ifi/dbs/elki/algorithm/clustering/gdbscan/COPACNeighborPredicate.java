@@ -23,6 +23,9 @@ package de.lmu.ifi.dbs.elki.algorithm.clustering.gdbscan;
 import static de.lmu.ifi.dbs.elki.math.linearalgebra.VMath.minusEquals;
 import static de.lmu.ifi.dbs.elki.math.linearalgebra.VMath.transposeTimesTimes;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import de.lmu.ifi.dbs.elki.algorithm.clustering.correlation.COPAC;
 import de.lmu.ifi.dbs.elki.data.NumberVector;
 import de.lmu.ifi.dbs.elki.data.type.SimpleTypeInformation;
@@ -34,6 +37,7 @@ import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
 import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
 import de.lmu.ifi.dbs.elki.database.datastore.WritableDataStore;
 import de.lmu.ifi.dbs.elki.database.ids.*;
+import de.lmu.ifi.dbs.elki.database.query.DatabaseQuery;
 import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
 import de.lmu.ifi.dbs.elki.database.query.knn.KNNQuery;
 import de.lmu.ifi.dbs.elki.database.relation.Relation;
@@ -43,6 +47,8 @@ import de.lmu.ifi.dbs.elki.logging.progress.FiniteProgress;
 import de.lmu.ifi.dbs.elki.logging.statistics.Duration;
 import de.lmu.ifi.dbs.elki.math.linearalgebra.pca.PCAFilteredResult;
 import de.lmu.ifi.dbs.elki.math.linearalgebra.pca.PCAResult;
+import de.lmu.ifi.dbs.elki.math.linearalgebra.pca.PCARunner;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
 import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.AbstractParameterizer;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
@@ -79,6 +85,11 @@ public class COPACNeighborPredicate<V extends NumberVector> implements NeighborP
    */
   private static final Logging LOG = Logging.getLogger(COPACNeighborPredicate.class);
 
+  /**
+   * Number of objects processed by a single task, with one bulk query.
+   */
+  private static final int CHUNK_SIZE = 256;
+
   /**
    * COPAC parameters
    */
@@ -114,17 +125,26 @@ public class COPACNeighborPredicate<V extends NumberVector> implements NeighborP
    */
   public COPACNeighborPredicate.Instance instantiate(Database database, Relation<V> relation) {
     DistanceQuery<V> dq = database.getDistanceQuery(relation, EuclideanDistanceFunction.STATIC);
-    KNNQuery<V> knnq = database.getKNNQuery(dq, settings.k);
+    KNNQuery<V> knnq = database.getKNNQuery(dq, settings.k, DatabaseQuery.HINT_BULK);
 
     WritableDataStore<COPACModel> storage = DataStoreUtil.makeStorage(relation.getDBIDs(), DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_TEMP, COPACModel.class);
 
     Duration time = LOG.newDuration(this.getClass().getName() + ".preprocessing-time").begin();
     FiniteProgress progress = LOG.isVerbose() ? new FiniteProgress(this.getClass().getName(), relation.size(), LOG) : null;
-    for(DBIDIter iditer = relation.iterDBIDs(); iditer.valid(); iditer.advance()) {
-      DoubleDBIDList ref = knnq.getKNNForDBID(iditer, settings.k);
-      storage.put(iditer, computeLocalModel(iditer, ref, relation));
+    // Bulk kNN queries per chunk, chunks are processed in parallel, each with
+    // its own PCA worker.
+    ParallelExecutor.runChunked(DBIDUtil.ensureArray(relation.getDBIDs()), CHUNK_SIZE, settings.pca::worker, (pca, ids) -> {
+      List<? extends KNNList> neighbors = knnq.getKNNForBulkDBIDs(ids, settings.k);
+      List<COPACModel> models = new ArrayList<>(ids.size());
+      DBIDIter iter = ids.iter();
+      for(int i = 0; iter.valid(); i++, iter.advance()) {
+        models.add(computeLocalModel(pca, iter, neighbors.get(i), relation));
+      }
+      return models;
+    }, (id, model) -> {
+      storage.put(id, model);
       LOG.incrementProcessed(progress);
-    }
+    });
     LOG.ensureCompleted(progress);
     LOG.statistics(time.end());
     return new Instance(relation.getDBIDs(), storage);
@@ -133,13 +153,14 @@ public class COPACNeighborPredicate<V extends NumberVector> implements NeighborP
   /**
    * COPAC model computation
    * 
+   * @param pca PCA runner to use
    * @param id Query object
    * @param knnneighbors k nearest neighbors
    * @param relation Data relation
    * @return COPAC object model
    */
-  protected COPACModel computeLocalModel(DBIDRef id, DoubleDBIDList knnneighbors, Relation<V> relation) {
-    PCAResult epairs = settings.pca.processIds(knnneighbors, relation);
+  protected COPACModel computeLocalModel(PCARunner pca, DBIDRef id, DoubleDBIDList knnneighbors, Relation<V> relation) {
+    PCAResult epairs = pca.processIds(knnneighbors, relation);
     int pdim = settings.filter.filter(epairs.getEigenvalues());
     PCAFilteredResult pcares = new PCAFilteredResult(epairs.getEigenPairs(), pdim, 1., 0.);
 
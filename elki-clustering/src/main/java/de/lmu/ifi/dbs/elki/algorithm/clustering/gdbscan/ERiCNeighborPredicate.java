@@ -22,6 +22,9 @@ package de.lmu.ifi.dbs.elki.algorithm.clustering.gdbscan;
 
 import static de.lmu.ifi.dbs.elki.math.linearalgebra.VMath.*;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import de.lmu.ifi.dbs.elki.algorithm.clustering.correlation.ERiC;
 import de.lmu.ifi.dbs.elki.data.NumberVector;
 import de.lmu.ifi.dbs.elki.data.type.SimpleTypeInformation;
@@ -33,6 +36,7 @@ import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
 import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
 import de.lmu.ifi.dbs.elki.database.datastore.WritableDataStore;
 import de.lmu.ifi.dbs.elki.database.ids.*;
+import de.lmu.ifi.dbs.elki.database.query.DatabaseQuery;
 import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
 import de.lmu.ifi.dbs.elki.database.query.knn.KNNQuery;
 import de.lmu.ifi.dbs.elki.database.relation.Relation;
@@ -44,6 +48,7 @@ import de.lmu.ifi.dbs.elki.math.linearalgebra.pca.PCAFilteredResult;
 import de.lmu.ifi.dbs.elki.math.linearalgebra.pca.PCAResult;
 import de.lmu.ifi.dbs.elki.math.linearalgebra.pca.PCARunner;
 import de.lmu.ifi.dbs.elki.math.linearalgebra.pca.filter.EigenPairFilter;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
 import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.AbstractParameterizer;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
@@ -79,6 +84,11 @@ public class ERiCNeighborPredicate<V extends NumberVector> implements NeighborPr
    */
   private static final Logging LOG = Logging.getLogger(ERiCNeighborPredicate.class);
 
+  /**
+   * Number of objects processed by a single task, with one bulk query.
+   */
+  private static final int CHUNK_SIZE = 256;
+
   /**
    * ERiC parameters
    */
@@ -114,7 +124,7 @@ public class ERiCNeighborPredicate<V extends NumberVector> implements NeighborPr
    */
   public Instance instantiate(Database database, Relation<V> relation) {
     DistanceQuery<V> dq = database.getDistanceQuery(relation, EuclideanDistanceFunction.STATIC);
-    KNNQuery<V> knnq = database.getKNNQuery(dq, settings.k);
+    KNNQuery<V> knnq = database.getKNNQuery(dq, settings.k, DatabaseQuery.HINT_BULK);
 
     WritableDataStore<PCAFilteredResult> storage = DataStoreUtil.makeStorage(relation.getDBIDs(), DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_TEMP, PCAFilteredResult.class);
 
@@ -122,12 +132,19 @@ public class ERiCNeighborPredicate<V extends NumberVector> implements NeighborPr
     EigenPairFilter filter = settings.filter;
     Duration time = LOG.newDuration(this.getClass().getName() + ".preprocessing-time").begin();
     FiniteProgress progress = LOG.isVerbose() ? new FiniteProgress(this.getClass().getName(), relation.size(), LOG) : null;
-    for(DBIDIter iditer = relation.iterDBIDs(); iditer.valid(); iditer.advance()) {
-      DoubleDBIDList ref = knnq.getKNNForDBID(iditer, settings.k);
-      PCAResult pcares = pca.processQueryResult(ref, relation);
-      storage.put(iditer, new PCAFilteredResult(pcares.getEigenPairs(), filter.filter(pcares.getEigenvalues()), 1., 0.));
+    // Bulk kNN queries per chunk, chunks are processed in parallel, each with
+    // its own PCA worker.
+    ParallelExecutor.runChunked(DBIDUtil.ensureArray(relation.getDBIDs()), CHUNK_SIZE, pca::worker, (wpca, ids) -> {
+      List<PCAFilteredResult> results = new ArrayList<>(ids.size());
+      for(KNNList ref : knnq.getKNNForBulkDBIDs(ids, settings.k)) {
+        PCAResult pcares = wpca.processQueryResult(ref, relation);
+        results.add(new PCAFilteredResult(pcares.getEigenPairs(), filter.filter(pcares.getEigenvalues()), 1., 0.));
+      }
+      return results;
+    }, (id, pcares) -> {
+      storage.put(id, pcares);
       LOG.incrementProcessed(progress);
-    }
+    });
     LOG.ensureCompleted(progress);
     LOG.statistics(time.end());
     return new Instance(relation.getDBIDs(), storage, relation);
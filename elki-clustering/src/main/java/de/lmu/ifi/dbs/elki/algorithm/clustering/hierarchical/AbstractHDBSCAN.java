@@ -80,6 +80,15 @@ public abstract class AbstractHDBSCAN<O, R extends Result> extends AbstractDista
     this.minPts = minPts;
   }
 
+  /**
+   * Get the minPts parameter.
+   *
+   * @return Minimum number of points for density
+   */
+  public int getMinPts() {
+    return minPts;
+  }
+
   /**
    * Compute the core distances for all objects.
    *
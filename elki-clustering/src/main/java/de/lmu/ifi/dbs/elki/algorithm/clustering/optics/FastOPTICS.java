@@ -34,7 +34,10 @@ import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
 import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
 import de.lmu.ifi.dbs.elki.database.datastore.DoubleDataStore;
 import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
 import de.lmu.ifi.dbs.elki.database.ids.DBID;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDFactory;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
@@ -46,7 +49,7 @@ import de.lmu.ifi.dbs.elki.index.preprocessed.fastoptics.RandomProjectedNeighbor
 import de.lmu.ifi.dbs.elki.logging.Logging;
 import de.lmu.ifi.dbs.elki.logging.progress.FiniteProgress;
 import de.lmu.ifi.dbs.elki.utilities.ClassGenericsUtil;
-import de.lmu.ifi.dbs.elki.utilities.datastructures.heap.UpdatableHeap;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.heap.DoubleIntegerUpdatableMinHeap;
 import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.AbstractParameterizer;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
@@ -104,6 +107,21 @@ public class FastOPTICS<V extends NumberVector> extends AbstractAlgorithm<Cluste
    */
   ModifiableDBIDs processed;
 
+  /**
+   * Sorted IDs, such that heap ties are resolved by DBID.
+   */
+  ArrayDBIDs aids;
+
+  /**
+   * Heap of candidates, by offset in {@link #aids}.
+   */
+  DoubleIntegerUpdatableMinHeap heap;
+
+  /**
+   * Predecessor offsets.
+   */
+  int[] predecessor;
+
   /**
    * neighbors of a point
    */
@@ -157,8 +175,11 @@ public class FastOPTICS<V extends NumberVector> extends AbstractAlgorithm<Cluste
 
     // compute ordering as for OPTICS
     FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("FastOPTICS clustering", ids.size(), LOG) : null;
-    processed = DBIDUtil.newHashSet(ids.size());
+    processed = DBIDUtil.newHashSet(ids.size(), DBIDFactory.HINT_DENSE);
     order = new ClusterOrder(ids, "FastOPTICS Cluster Order", "fast-optics");
+    aids = DBIDUtil.ensureSortedArray(ids);
+    heap = new DoubleIntegerUpdatableMinHeap(ids.size());
+    predecessor = new int[ids.size()];
     for(DBIDIter it = ids.iter(); it.valid(); it.advance()) {
       if(!processed.contains(it)) {
         expandClusterOrder(DBIDUtil.deref(it), order, dq, prog);
@@ -179,12 +200,16 @@ public class FastOPTICS<V extends NumberVector> extends AbstractAlgorithm<Cluste
    * @param prog Progress for logging.
    */
   protected void expandClusterOrder(DBID ipt, ClusterOrder order, DistanceQuery<V> dq, FiniteProgress prog) {
-    UpdatableHeap<OPTICSHeapEntry> heap = new UpdatableHeap<>();
-    heap.add(new OPTICSHeapEntry(ipt, null, Double.POSITIVE_INFINITY));
+    DBIDArrayIter currPt = aids.iter(), pre = aids.iter();
+    final int start = aids.binarySearch(ipt);
+    heap.offer(Double.POSITIVE_INFINITY, start);
+    predecessor[start] = -1;
     while(!heap.isEmpty()) {
-      final OPTICSHeapEntry current = heap.poll();
-      DBID currPt = current.objectID;
-      order.add(currPt, current.reachability, current.predecessorID);
+      final double reachability = heap.peekKey();
+      final int off = heap.peekValue();
+      heap.poll();
+      currPt.seek(off);
+      order.add(currPt, reachability, predecessor[off] >= 0 ? pre.seek(predecessor[off]) : null);
       processed.add(currPt);
       double coredist = inverseDensities.doubleValue(currPt);
       for(DBIDIter it = neighs.get(currPt).iter(); it.valid(); it.advance()) {
@@ -201,7 +226,10 @@ public class FastOPTICS<V extends NumberVector> extends AbstractAlgorithm<Cluste
         else if(nrdist < reachDist.doubleValue(it)) {
           reachDist.put(it, nrdist);
         }
-        heap.add(new OPTICSHeapEntry(DBIDUtil.deref(it), currPt, nrdist));
+        final int noff = aids.binarySearch(it);
+        if(heap.offer(nrdist, noff)) {
+          predecessor[noff] = off;
+        }
       }
       LOG.incrementProcessed(prog);
     }
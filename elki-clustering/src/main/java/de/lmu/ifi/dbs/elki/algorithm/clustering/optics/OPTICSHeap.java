@@ -30,7 +30,7 @@ import de.lmu.ifi.dbs.elki.logging.Logging;
 import de.lmu.ifi.dbs.elki.logging.progress.FiniteProgress;
 import de.lmu.ifi.dbs.elki.math.MathUtil;
 import de.lmu.ifi.dbs.elki.utilities.Alias;
-import de.lmu.ifi.dbs.elki.utilities.datastructures.heap.UpdatableHeap;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.heap.DoubleIntegerUpdatableMinHeap;
 import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
 import de.lmu.ifi.dbs.elki.utilities.documentation.Title;
 
@@ -54,7 +54,7 @@ import de.lmu.ifi.dbs.elki.utilities.documentation.Title;
  * @since 0.1
  *
  * @navassoc - produces - ClusterOrder
- * @has - - - OPTICSHeapEntry
+ * @has - - - DoubleIntegerUpdatableMinHeap
  *
  * @param <O> the type of objects handled by the algorithm
  */
@@ -99,9 +99,19 @@ public class OPTICSHeap<O> extends AbstractOPTICS<O> {
     private ModifiableDBIDs processedIDs;
 
     /**
-     * Heap of candidates.
+     * Heap of candidates, by offset in {@link #aids}.
      */
-    UpdatableHeap<OPTICSHeapEntry> heap;
+    DoubleIntegerUpdatableMinHeap heap;
+
+    /**
+     * Sorted IDs, such that heap ties are resolved by DBID.
+     */
+    ArrayDBIDs aids;
+
+    /**
+     * Predecessor offsets.
+     */
+    int[] predecessor;
 
     /**
      * Output cluster order.
@@ -131,12 +141,14 @@ public class OPTICSHeap<O> extends AbstractOPTICS<O> {
      */
     public Instance(Database db, Relation<O> relation) {
       ids = relation.getDBIDs();
-      processedIDs = DBIDUtil.newHashSet(ids.size());
+      processedIDs = DBIDUtil.newHashSet(ids.size(), DBIDFactory.HINT_DENSE);
       clusterOrder = new ClusterOrder(ids, "OPTICS Clusterorder", "optics-clusterorder");
       progress = LOG.isVerbose() ? new FiniteProgress("OPTICS", ids.size(), LOG) : null;
       DistanceQuery<O> dq = db.getDistanceQuery(relation, getDistanceFunction());
       rangeQuery = db.getRangeQuery(dq, epsilon);
-      heap = new UpdatableHeap<>();
+      aids = DBIDUtil.ensureSortedArray(ids);
+      heap = new DoubleIntegerUpdatableMinHeap(ids.size());
+      predecessor = new int[ids.size()];
     }
 
     /**
@@ -163,15 +175,21 @@ public class OPTICSHeap<O> extends AbstractOPTICS<O> {
     protected void expandClusterOrder(DBIDRef objectID) {
       ModifiableDoubleDBIDList neighbors = DBIDUtil.newDistanceDBIDList();
       DoubleDBIDListIter neighbor = neighbors.iter();
-      heap.add(new OPTICSHeapEntry(DBIDUtil.deref(objectID), null, Double.POSITIVE_INFINITY));
+      DBIDArrayIter current = aids.iter(), pre = aids.iter();
+      final int start = aids.binarySearch(objectID);
+      heap.offer(Double.POSITIVE_INFINITY, start);
+      predecessor[start] = -1;
 
       while(!heap.isEmpty()) {
-        final OPTICSHeapEntry current = heap.poll();
-        clusterOrder.add(current.objectID, current.reachability, current.predecessorID);
-        processedIDs.add(current.objectID);
+        final double currentReachability = heap.peekKey();
+        final int off = heap.peekValue();
+        heap.poll();
+        current.seek(off);
+        clusterOrder.add(current, currentReachability, predecessor[off] >= 0 ? pre.seek(predecessor[off]) : null);
+        processedIDs.add(current);
 
         neighbors.clear();
-        rangeQuery.getRangeForDBID(current.objectID, epsilon, neighbors);
+        rangeQuery.getRangeForDBID(current, epsilon, neighbors);
         if(neighbors.size() >= minpts) {
           neighbors.sort();
           final double coreDistance = neighbor.seek(minpts - 1).doubleValue();
@@ -181,7 +199,10 @@ public class OPTICSHeap<O> extends AbstractOPTICS<O> {
               continue;
             }
             double reachability = MathUtil.max(neighbor.doubleValue(), coreDistance);
-            heap.add(new OPTICSHeapEntry(DBIDUtil.deref(neighbor), current.objectID, reachability));
+            final int noff = aids.binarySearch(neighbor);
+            if(heap.offer(reachability, noff)) {
+              predecessor[noff] = off;
+            }
           }
         }
         LOG.incrementProcessed(progress);
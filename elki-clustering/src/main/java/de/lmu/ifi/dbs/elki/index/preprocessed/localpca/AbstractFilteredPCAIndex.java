@@ -20,12 +20,17 @@
  */
 package de.lmu.ifi.dbs.elki.index.preprocessed.localpca;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import de.lmu.ifi.dbs.elki.data.NumberVector;
 import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
 import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
 import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
 import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDList;
 import de.lmu.ifi.dbs.elki.database.relation.Relation;
 import de.lmu.ifi.dbs.elki.distance.distancefunction.DistanceFunction;
@@ -37,6 +42,7 @@ import de.lmu.ifi.dbs.elki.math.linearalgebra.pca.PCAResult;
 import de.lmu.ifi.dbs.elki.math.linearalgebra.pca.PCARunner;
 import de.lmu.ifi.dbs.elki.math.linearalgebra.pca.filter.EigenPairFilter;
 import de.lmu.ifi.dbs.elki.math.linearalgebra.pca.filter.PercentageEigenPairFilter;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
 import de.lmu.ifi.dbs.elki.utilities.documentation.Description;
 import de.lmu.ifi.dbs.elki.utilities.documentation.Title;
 import de.lmu.ifi.dbs.elki.utilities.exceptions.EmptyDataException;
@@ -59,6 +65,11 @@ import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.ObjectParameter;
 @Title("Local PCA Preprocessor")
 @Description("Materializes the local PCA and the locally weighted matrix of objects of a database.")
 public abstract class AbstractFilteredPCAIndex<NV extends NumberVector> extends AbstractPreprocessorIndex<NV, PCAFilteredResult> implements FilteredLocalPCAIndex<NV> {
+  /**
+   * Number of objects processed by a single task, with one bulk query.
+   */
+  private static final int CHUNK_SIZE = 256;
+
   /**
    * PCA utility object.
    */
@@ -99,14 +110,12 @@ public abstract class AbstractFilteredPCAIndex<NV extends NumberVector> extends
     long start = System.currentTimeMillis();
     FiniteProgress progress = getLogger().isVerbose() ? new FiniteProgress("Performing local PCA", relation.size(), getLogger()) : null;
 
-    // TODO: use a bulk operation?
-    for(DBIDIter iditer = relation.iterDBIDs(); iditer.valid(); iditer.advance()) {
-      PCAResult epairs = pca.processIds(objectsForPCA(iditer), relation);
-      int numstrong = filter.filter(epairs.getEigenvalues());
-      PCAFilteredResult pcares = new PCAFilteredResult(epairs.getEigenPairs(), numstrong, 1., 0.);
-      storage.put(iditer, pcares);
+    // Bulk neighborhood queries per chunk, chunks are processed in parallel,
+    // each with its own PCA worker.
+    ParallelExecutor.runChunked(DBIDUtil.ensureArray(relation.getDBIDs()), CHUNK_SIZE, pca::worker, this::processChunk, (id, pcares) -> {
+      storage.put(id, pcares);
       getLogger().incrementProcessed(progress);
-    }
+    });
     getLogger().ensureCompleted(progress);
 
     if(getLogger().isVerbose()) {
@@ -123,6 +132,42 @@ public abstract class AbstractFilteredPCAIndex<NV extends NumberVector> extends
     return storage.get(objid);
   }
 
+  /**
+   * Compute the local PCA of a chunk of objects.
+   *
+   * @param pca PCA worker of this chunk
+   * @param ids Objects to process
+   * @return PCA results, in the order of the ids
+   */
+  private List<PCAFilteredResult> processChunk(PCARunner pca, ArrayDBIDs ids) {
+    List<? extends DoubleDBIDList> neighbors = objectsForPCA(ids);
+    List<PCAFilteredResult> results = new ArrayList<>(neighbors.size());
+    for(DoubleDBIDList ref : neighbors) {
+      PCAResult epairs = pca.processIds(ref, relation);
+      int numstrong = filter.filter(epairs.getEigenvalues());
+      results.add(new PCAFilteredResult(epairs.getEigenPairs(), numstrong, 1., 0.));
+    }
+    return results;
+  }
+
+  /**
+   * Returns the objects to be considered within the PCA for each of the
+   * specified query objects.
+   * <p>
+   * Subclasses should override this with a bulk query where possible.
+   *
+   * @param ids the ids of the query objects
+   * @return the lists of objects to be considered within the PCA, in the order
+   *         of the query ids
+   */
+  protected List<? extends DoubleDBIDList> objectsForPCA(ArrayDBIDs ids) {
+    List<DoubleDBIDList> lists = new ArrayList<>(ids.size());
+    for(DBIDIter iter = ids.iter(); iter.valid(); iter.advance()) {
+      lists.add(objectsForPCA(iter));
+    }
+    return lists;
+  }
+
   /**
    * Returns the objects to be considered within the PCA for the specified query
    * object.
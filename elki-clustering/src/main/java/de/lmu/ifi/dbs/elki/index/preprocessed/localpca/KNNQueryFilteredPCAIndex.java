@@ -20,10 +20,14 @@
  */
 package de.lmu.ifi.dbs.elki.index.preprocessed.localpca;
 
+import java.util.List;
+
 import de.lmu.ifi.dbs.elki.data.NumberVector;
 import de.lmu.ifi.dbs.elki.database.QueryUtil;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
 import de.lmu.ifi.dbs.elki.database.ids.KNNList;
+import de.lmu.ifi.dbs.elki.database.query.DatabaseQuery;
 import de.lmu.ifi.dbs.elki.database.query.knn.KNNQuery;
 import de.lmu.ifi.dbs.elki.database.relation.Relation;
 import de.lmu.ifi.dbs.elki.database.relation.RelationUtil;
@@ -89,6 +93,11 @@ public class KNNQueryFilteredPCAIndex<NV extends NumberVector> extends AbstractF
     }
   }
 
+  @Override
+  protected List<? extends KNNList> objectsForPCA(ArrayDBIDs ids) {
+    return knnQuery.getKNNForBulkDBIDs(ids, k);
+  }
+
   @Override
   protected KNNList objectsForPCA(DBIDRef id) {
     return knnQuery.getKNNForDBID(id, k);
@@ -144,8 +153,7 @@ public class KNNQueryFilteredPCAIndex<NV extends NumberVector> extends AbstractF
 
     @Override
     public KNNQueryFilteredPCAIndex<V> instantiate(Relation<V> relation) {
-      // TODO: set bulk flag, once the parent class supports bulk.
-      KNNQuery<V> knnquery = QueryUtil.getKNNQuery(relation, pcaDistanceFunction, k);
+      KNNQuery<V> knnquery = QueryUtil.getKNNQuery(relation, pcaDistanceFunction, k, DatabaseQuery.HINT_BULK);
       return new KNNQueryFilteredPCAIndex<>(relation, pca, filter, knnquery, k);
     }
 
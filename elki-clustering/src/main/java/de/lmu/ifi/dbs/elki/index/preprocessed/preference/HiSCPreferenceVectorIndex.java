@@ -20,14 +20,22 @@
  */
 package de.lmu.ifi.dbs.elki.index.preprocessed.preference;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 import de.lmu.ifi.dbs.elki.algorithm.clustering.subspace.HiSC;
 import de.lmu.ifi.dbs.elki.data.NumberVector;
 import de.lmu.ifi.dbs.elki.database.QueryUtil;
 import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
 import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.KNNList;
+import de.lmu.ifi.dbs.elki.database.query.DatabaseQuery;
 import de.lmu.ifi.dbs.elki.database.query.knn.KNNQuery;
 import de.lmu.ifi.dbs.elki.database.relation.Relation;
 import de.lmu.ifi.dbs.elki.database.relation.RelationUtil;
@@ -35,6 +43,7 @@ import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.EuclideanDistance
 import de.lmu.ifi.dbs.elki.logging.Logging;
 import de.lmu.ifi.dbs.elki.logging.progress.FiniteProgress;
 import de.lmu.ifi.dbs.elki.logging.statistics.LongStatistic;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
 import de.lmu.ifi.dbs.elki.utilities.datastructures.BitsUtil;
 import de.lmu.ifi.dbs.elki.utilities.documentation.Description;
 import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
@@ -78,6 +87,11 @@ public class HiSCPreferenceVectorIndex<V extends NumberVector> extends AbstractP
    */
   private static final Logging LOG = Logging.getLogger(HiSCPreferenceVectorIndex.class);
 
+  /**
+   * Number of objects processed by a single task, with one bulk query.
+   */
+  private static final int CHUNK_SIZE = 256;
+
   /**
    * The maximum absolute variance along a coordinate axis.
    */
@@ -109,20 +123,40 @@ public class HiSCPreferenceVectorIndex<V extends NumberVector> extends AbstractP
     }
     storage = DataStoreUtil.makeStorage(relation.getDBIDs(), DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_TEMP, long[].class);
 
-    KNNQuery<V> knnQuery = QueryUtil.getKNNQuery(relation, EuclideanDistanceFunction.STATIC, k);
+    KNNQuery<V> knnQuery = QueryUtil.getKNNQuery(relation, EuclideanDistanceFunction.STATIC, k, DatabaseQuery.HINT_BULK);
 
     FiniteProgress progress = LOG.isVerbose() ? new FiniteProgress("Preprocessing preference vector", relation.size(), LOG) : null;
     long start = System.currentTimeMillis();
-    for(DBIDIter it = relation.iterDBIDs(); it.valid(); it.advance()) {
-      storage.put(it, determinePreferenceVector(relation, it, knnQuery.getKNNForDBID(it, k)));
+    // Bulk kNN queries per chunk, chunks are processed in parallel.
+    ParallelExecutor.runChunked(DBIDUtil.ensureArray(relation.getDBIDs()), CHUNK_SIZE, ids -> processChunk(knnQuery, ids), (id, pref) -> {
+      storage.put(id, pref);
       LOG.incrementProcessed(progress);
-    }
+    });
     LOG.ensureCompleted(progress);
     if(LOG.isStatistics()) {
       LOG.statistics(new LongStatistic(this.getClass().getName() + ".runtime.ms", System.currentTimeMillis() - start));
     }
   }
 
+  /**
+   * Determine the preference vectors of a chunk of objects.
+   *
+   * @param knnQuery kNN query
+   * @param ids Objects to process
+   * @return Preference vectors, in the order of the ids
+   */
+  private List<long[]> processChunk(KNNQuery<V> knnQuery, ArrayDBIDs ids) {
+    List<? extends KNNList> neighbors = knnQuery.getKNNForBulkDBIDs(ids, k);
+    List<long[]> results = new ArrayList<>(ids.size());
+    // Work array, reused for all objects of the chunk.
+    double[] sumsq = new double[RelationUtil.dimensionality(relation)];
+    DBIDIter iter = ids.iter();
+    for(int i = 0; iter.valid(); i++, iter.advance()) {
+      results.add(determinePreferenceVector(relation, iter, neighbors.get(i), sumsq));
+    }
+    return results;
+  }
+
   /**
    * Determines the preference vector according to the specified neighbor ids.
    *
@@ -130,13 +164,14 @@ public class HiSCPreferenceVectorIndex<V extends NumberVector> extends AbstractP
    * @param id the id of the object for which the preference vector should be
    *        determined
    * @param neighborIDs the ids of the neighbors
+   * @param sumsq Work array for the variances, of length dim
    * @return the preference vector
    */
-  private long[] determinePreferenceVector(Relation<V> relation, DBIDRef id, DBIDs neighborIDs) {
+  private long[] determinePreferenceVector(Relation<V> relation, DBIDRef id, DBIDs neighborIDs, double[] sumsq) {
     NumberVector p = relation.get(id);
     // variances
     final int size = neighborIDs.size(), dim = p.getDimensionality();
-    double[] sumsq = new double[dim];
+    Arrays.fill(sumsq, 0.);
     for(DBIDIter iter = neighborIDs.iter(); iter.valid(); iter.advance()) {
       NumberVector o = relation.get(iter);
       for(int d = 0; d < dim; d++) {
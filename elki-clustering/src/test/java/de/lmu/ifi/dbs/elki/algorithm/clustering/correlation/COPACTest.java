@@ -29,6 +29,7 @@ import de.lmu.ifi.dbs.elki.data.DoubleVector;
 import de.lmu.ifi.dbs.elki.data.model.DimensionModel;
 import de.lmu.ifi.dbs.elki.database.Database;
 import de.lmu.ifi.dbs.elki.math.linearalgebra.pca.PCARunner;
+import de.lmu.ifi.dbs.elki.math.linearalgebra.pca.RANSACCovarianceMatrixBuilder;
 import de.lmu.ifi.dbs.elki.math.linearalgebra.pca.WeightedCovarianceMatrixBuilder;
 import de.lmu.ifi.dbs.elki.math.linearalgebra.pca.filter.EigenPairFilter;
 import de.lmu.ifi.dbs.elki.math.linearalgebra.pca.filter.PercentageEigenPairFilter;
@@ -83,4 +84,25 @@ public class COPACTest extends AbstractClusterAlgorithmTest {
     testFMeasure(db, result, 0.86505092);
     testClusterSizes(result, new int[] { 32, 172, 197, 249 });
   }
+
+  /**
+   * Run COPAC with the randomized RANSAC covariance, which must give the same
+   * result every time when seeded.
+   */
+  @Test
+  public void testCOPACRANSAC() {
+    Database db = makeSimpleDatabase(UNITTEST + "correlation-hierarchy.csv", 450);
+    for(int i = 0; i < 2; i++) {
+      Clustering<DimensionModel> result = new ELKIBuilder<COPAC<DoubleVector>>(COPAC.class) //
+          .with(DBSCAN.Parameterizer.EPSILON_ID, 0.02) //
+          .with(DBSCAN.Parameterizer.MINPTS_ID, 50) //
+          .with(COPAC.Parameterizer.K_ID, 15) //
+          .with(PCARunner.Parameterizer.PCA_COVARIANCE_MATRIX, RANSACCovarianceMatrixBuilder.class) //
+          .with(RANSACCovarianceMatrixBuilder.Parameterizer.ITER_ID, 25) //
+          .with(RANSACCovarianceMatrixBuilder.Parameterizer.SEED_ID, 0L) //
+          .build().run(db);
+      testFMeasure(db, result, 0.7619594);
+      testClusterSizes(result, new int[] { 84, 171, 195 });
+    }
+  }
 }
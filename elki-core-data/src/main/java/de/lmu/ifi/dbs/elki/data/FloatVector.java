@@ -107,6 +107,17 @@ public class FloatVector implements NumberVector {
     return (long) values[dimension];
   }
 
+  /**
+   * Get the internal values array, for fast access in distance functions.
+   * <p>
+   * The array must not be modified!
+   *
+   * @return Internal values array
+   */
+  public float[] getValues() {
+    return values;
+  }
+
   @Override
   public double[] toArray() {
     double[] data = new double[values.length];
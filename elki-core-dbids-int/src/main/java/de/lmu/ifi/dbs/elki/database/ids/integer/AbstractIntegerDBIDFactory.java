@@ -46,7 +46,8 @@ import de.lmu.ifi.dbs.elki.utilities.io.FixedSizeByteBufferSerializer;
  * @navassoc - create - IntegerDBID
  * @navassoc - create - IntegerDBIDPair
  * @navassoc - create - IntegerDBIDRange
- * @navassoc - create - TroveHashSetModifiableDBIDs
+ * @navassoc - create - FastutilIntOpenHashSetModifiableDBIDs
+ * @navassoc - create - BitmapModifiableDBIDs
  * @navassoc - create - IntegerArrayDBIDs
  */
 abstract class AbstractIntegerDBIDFactory implements DBIDFactory {
@@ -109,6 +110,12 @@ abstract class AbstractIntegerDBIDFactory implements DBIDFactory {
     return new FastutilIntOpenHashSetModifiableDBIDs(size);
   }
 
+  @Override
+  public HashSetModifiableDBIDs newHashSet(int size, int hints) {
+    return (hints & HINT_DENSE) != 0 ? new BitmapModifiableDBIDs() : //
+        new FastutilIntOpenHashSetModifiableDBIDs(size);
+  }
+
   @Override
   public ArrayModifiableDBIDs newArray(DBIDs existing) {
     return new ArrayModifiableIntegerDBIDs(existing);
@@ -116,7 +123,8 @@ abstract class AbstractIntegerDBIDFactory implements DBIDFactory {
 
   @Override
   public HashSetModifiableDBIDs newHashSet(DBIDs existing) {
-    return new FastutilIntOpenHashSetModifiableDBIDs(existing);
+    return existing instanceof BitmapModifiableDBIDs ? //
+        new BitmapModifiableDBIDs(existing) : new FastutilIntOpenHashSetModifiableDBIDs(existing);
   }
 
   @Override
@@ -144,6 +152,11 @@ abstract class AbstractIntegerDBIDFactory implements DBIDFactory {
     return heap;
   }
 
+  @Override
+  public KNNList newFloatKNNList(KNNList exist) {
+    return exist instanceof FloatIntegerDBIDKNNList ? exist : new FloatIntegerDBIDKNNList(exist);
+  }
+
   @Override
   public ModifiableDoubleDBIDList newDistanceDBIDList(int size) {
     return new DoubleIntegerDBIDArrayList(size);
@@ -0,0 +1,786 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.database.ids.integer;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDMIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDVar;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.HashSetModifiableDBIDs;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+
+/**
+ * Compressed bitmap set of DBIDs, in the style of Roaring bitmaps.
+ * <p>
+ * The integer DBID space is split into chunks of 65536 DBIDs by the upper 16
+ * bits. Each non-empty chunk is stored either as a sorted array of the lower 16
+ * bits (for up to 4096 DBIDs), or as an uncompressed bitmap of 1024 words. For
+ * dense DBIDs, this needs little more than one bit per possible DBID, and the
+ * set operations {@link #addDBIDs}, {@link #retainAll} and
+ * {@link #removeDBIDs} with another bitmap work on whole words.
+ * <p>
+ * DBIDs are iterated in ascending (unsigned) order.
+ * <p>
+ * Reference:
+ * <p>
+ * S. Chambi, D. Lemire, O. Kaser, R. Godin<br>
+ * Better bitmap performance with Roaring bitmaps<br>
+ * Software: Practice and Experience 46(5)
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ *
+ * @has - - - Itr
+ */
+@Reference(authors = "S. Chambi, D. Lemire, O. Kaser, R. Godin", //
+    title = "Better bitmap performance with Roaring bitmaps", //
+    booktitle = "Software: Practice and Experience 46(5)", //
+    url = "https://doi.org/10.1002/spe.2325", //
+    bibkey = "DBLP:journals/spe/ChambiLKG16")
+class BitmapModifiableDBIDs implements HashSetModifiableDBIDs, IntegerDBIDs {
+  /**
+   * Maximum size of array chunks.
+   */
+  private static final int ARRAY_MAX = 4096;
+
+  /**
+   * Number of words of bitmap chunks.
+   */
+  private static final int WORDS = 1024;
+
+  /**
+   * Chunk keys (upper 16 bits), sorted.
+   */
+  private char[] keys;
+
+  /**
+   * Sorted lower bits of array chunks, {@code null} for bitmap chunks.
+   */
+  private char[][] arrays;
+
+  /**
+   * Bitmaps of bitmap chunks, {@code null} for array chunks.
+   */
+  private long[][] bitmaps;
+
+  /**
+   * Number of DBIDs in each chunk.
+   */
+  private int[] cards;
+
+  /**
+   * Number of chunks in use.
+   */
+  private int nc;
+
+  /**
+   * Total number of DBIDs.
+   */
+  private int size;
+
+  /**
+   * Constructor.
+   */
+  protected BitmapModifiableDBIDs() {
+    super();
+    clear();
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param existing Existing IDs
+   */
+  protected BitmapModifiableDBIDs(DBIDs existing) {
+    this();
+    addDBIDs(existing);
+  }
+
+  /**
+   * Find a chunk.
+   *
+   * @param key Chunk key
+   * @return Chunk index, or {@code -(insertion point + 1)}
+   */
+  private int find(char key) {
+    // Fast path for sequential access:
+    if(nc > 0 && keys[nc - 1] == key) {
+      return nc - 1;
+    }
+    return Arrays.binarySearch(keys, 0, nc, key);
+  }
+
+  /**
+   * Find or create a chunk.
+   *
+   * @param key Chunk key
+   * @return Chunk index
+   */
+  private int findOrCreate(char key) {
+    int c = find(key);
+    if(c >= 0) {
+      return c;
+    }
+    c = -c - 1;
+    if(nc == keys.length) {
+      final int newlen = nc << 1;
+      keys = Arrays.copyOf(keys, newlen);
+      arrays = Arrays.copyOf(arrays, newlen);
+      bitmaps = Arrays.copyOf(bitmaps, newlen);
+      cards = Arrays.copyOf(cards, newlen);
+    }
+    if(c < nc) {
+      System.arraycopy(keys, c, keys, c + 1, nc - c);
+      System.arraycopy(arrays, c, arrays, c + 1, nc - c);
+      System.arraycopy(bitmaps, c, bitmaps, c + 1, nc - c);
+      System.arraycopy(cards, c, cards, c + 1, nc - c);
+    }
+    keys[c] = key;
+    arrays[c] = new char[4];
+    bitmaps[c] = null;
+    cards[c] = 0;
+    ++nc;
+    return c;
+  }
+
+  /**
+   * Append a chunk, when building a new set of chunks.
+   *
+   * @param key Chunk key
+   * @param array Array chunk, or {@code null}
+   * @param bitmap Bitmap chunk, or {@code null}
+   * @param card Chunk size
+   */
+  private void append(char key, char[] array, long[] bitmap, int card) {
+    if(card == 0) {
+      return;
+    }
+    if(nc == keys.length) {
+      final int newlen = nc << 1;
+      keys = Arrays.copyOf(keys, newlen);
+      arrays = Arrays.copyOf(arrays, newlen);
+      bitmaps = Arrays.copyOf(bitmaps, newlen);
+      cards = Arrays.copyOf(cards, newlen);
+    }
+    // Use an array if the bitmap became sparse:
+    if(bitmap != null && card <= ARRAY_MAX) {
+      array = toArray(bitmap, card);
+      bitmap = null;
+    }
+    keys[nc] = key;
+    arrays[nc] = array;
+    bitmaps[nc] = bitmap;
+    cards[nc] = card;
+    ++nc;
+    size += card;
+  }
+
+  /**
+   * Convert a bitmap chunk to an array.
+   *
+   * @param bitmap Bitmap
+   * @param card Number of bits set
+   * @return Sorted array
+   */
+  private static char[] toArray(long[] bitmap, int card) {
+    char[] array = new char[card];
+    for(int w = 0, j = 0; w < WORDS; w++) {
+      for(long word = bitmap[w]; word != 0; word &= word - 1) {
+        array[j++] = (char) ((w << 6) + Long.numberOfTrailingZeros(word));
+      }
+    }
+    return array;
+  }
+
+  /**
+   * Convert an array chunk to a bitmap.
+   *
+   * @param array Sorted array
+   * @param card Number of values
+   * @return Bitmap
+   */
+  private static long[] toBitmap(char[] array, int card) {
+    long[] bitmap = new long[WORDS];
+    for(int j = 0; j < card; j++) {
+      final char v = array[j];
+      bitmap[v >>> 6] |= 1L << v;
+    }
+    return bitmap;
+  }
+
+  /**
+   * Count the bits in a bitmap.
+   *
+   * @param bitmap Bitmap
+   * @return Number of bits set
+   */
+  private static int cardinality(long[] bitmap) {
+    int card = 0;
+    for(long word : bitmap) {
+      card += Long.bitCount(word);
+    }
+    return card;
+  }
+
+  /**
+   * Add a single DBID.
+   *
+   * @param id DBID
+   * @return {@code true} if new
+   */
+  private boolean add(int id) {
+    final int c = findOrCreate((char) (id >>> 16));
+    final char lo = (char) id;
+    long[] bitmap = bitmaps[c];
+    if(bitmap == null) {
+      char[] array = arrays[c];
+      final int card = cards[c];
+      // Fast path for ascending insertion:
+      int pos = card == 0 || array[card - 1] < lo ? -card - 1 : Arrays.binarySearch(array, 0, card, lo);
+      if(pos >= 0) {
+        return false;
+      }
+      if(card < ARRAY_MAX) {
+        pos = -pos - 1;
+        if(card == array.length) {
+          arrays[c] = array = Arrays.copyOf(array, Math.min(card << 1, ARRAY_MAX));
+        }
+        System.arraycopy(array, pos, array, pos + 1, card - pos);
+        array[pos] = lo;
+        ++cards[c];
+        ++size;
+        return true;
+      }
+      bitmaps[c] = bitmap = toBitmap(array, card);
+      arrays[c] = null;
+    }
+    final long bit = 1L << lo;
+    if((bitmap[lo >>> 6] & bit) != 0) {
+      return false;
+    }
+    bitmap[lo >>> 6] |= bit;
+    ++cards[c];
+    ++size;
+    return true;
+  }
+
+  /**
+   * Remove a single DBID.
+   *
+   * @param id DBID
+   * @return {@code true} if removed
+   */
+  private boolean remove(int id) {
+    final int c = find((char) (id >>> 16));
+    return c >= 0 && removeFrom(c, (char) id);
+  }
+
+  /**
+   * Remove a value from a chunk. Chunks are not converted or removed, to not
+   * interfere with iterators.
+   *
+   * @param c Chunk index
+   * @param lo Lower bits
+   * @return {@code true} if removed
+   */
+  private boolean removeFrom(int c, char lo) {
+    final long[] bitmap = bitmaps[c];
+    if(bitmap != null) {
+      final long bit = 1L << lo;
+      if((bitmap[lo >>> 6] & bit) == 0) {
+        return false;
+      }
+      bitmap[lo >>> 6] &= ~bit;
+    }
+    else {
+      final char[] array = arrays[c];
+      final int pos = Arrays.binarySearch(array, 0, cards[c], lo);
+      if(pos < 0) {
+        return false;
+      }
+      System.arraycopy(array, pos + 1, array, pos, cards[c] - pos - 1);
+    }
+    --cards[c];
+    --size;
+    return true;
+  }
+
+  /**
+   * Test if a chunk contains a value.
+   *
+   * @param c Chunk index
+   * @param lo Lower bits
+   * @return {@code true} if contained
+   */
+  private boolean containsIn(int c, char lo) {
+    final long[] bitmap = bitmaps[c];
+    return bitmap != null ? (bitmap[lo >>> 6] & (1L << lo)) != 0 : //
+        Arrays.binarySearch(arrays[c], 0, cards[c], lo) >= 0;
+  }
+
+  @Override
+  public boolean add(DBIDRef e) {
+    return add(e.internalGetIndex());
+  }
+
+  @Override
+  public boolean remove(DBIDRef o) {
+    return remove(o.internalGetIndex());
+  }
+
+  @Override
+  public boolean contains(DBIDRef o) {
+    final int id = o.internalGetIndex();
+    final int c = find((char) (id >>> 16));
+    return c >= 0 && containsIn(c, (char) id);
+  }
+
+  @Override
+  public boolean addDBIDs(DBIDs ids) {
+    if(ids instanceof BitmapModifiableDBIDs) {
+      return or((BitmapModifiableDBIDs) ids);
+    }
+    boolean success = false;
+    for(DBIDIter iter = ids.iter(); iter.valid(); iter.advance()) {
+      success |= add(iter.internalGetIndex());
+    }
+    return success;
+  }
+
+  @Override
+  public boolean removeDBIDs(DBIDs ids) {
+    if(ids instanceof BitmapModifiableDBIDs) {
+      return andNot((BitmapModifiableDBIDs) ids);
+    }
+    boolean success = false;
+    for(DBIDIter iter = ids.iter(); iter.valid(); iter.advance()) {
+      success |= remove(iter.internalGetIndex());
+    }
+    return success;
+  }
+
+  @Override
+  public boolean retainAll(DBIDs set) {
+    if(set instanceof BitmapModifiableDBIDs) {
+      return and((BitmapModifiableDBIDs) set);
+    }
+    boolean modified = false;
+    for(DBIDMIter it = iter(); it.valid(); it.advance()) {
+      if(!set.contains(it)) {
+        it.remove();
+        modified = true;
+      }
+    }
+    return modified;
+  }
+
+  /**
+   * Union with another bitmap.
+   *
+   * @param other Other bitmap
+   * @return {@code true} if modified
+   */
+  private boolean or(BitmapModifiableDBIDs other) {
+    if(other == this) {
+      return false;
+    }
+    final int oldsize = size;
+    final char[] okeys = keys;
+    final char[][] oarrays = arrays;
+    final long[][] obitmaps = bitmaps;
+    final int[] ocards = cards;
+    final int onc = nc;
+    reset(onc + other.nc);
+    int i = 0, j = 0;
+    while(i < onc || j < other.nc) {
+      if(j == other.nc || (i < onc && okeys[i] < other.keys[j])) {
+        append(okeys[i], oarrays[i], obitmaps[i], ocards[i]);
+        ++i;
+        continue;
+      }
+      if(i == onc || okeys[i] > other.keys[j]) {
+        append(other.keys[j], copy(other.arrays[j], other.cards[j]), copy(other.bitmaps[j]), other.cards[j]);
+        ++j;
+        continue;
+      }
+      // Same key:
+      long[] bitmap = obitmaps[i];
+      char[] array = oarrays[i];
+      int card = ocards[i];
+      if(bitmap == null && other.bitmaps[j] == null && card + other.cards[j] <= ARRAY_MAX) {
+        array = mergeArrays(array, card, other.arrays[j], other.cards[j]);
+        append(okeys[i], array, null, array.length);
+      }
+      else {
+        bitmap = bitmap != null ? bitmap : toBitmap(array, card);
+        if(other.bitmaps[j] != null) {
+          final long[] obitmap = other.bitmaps[j];
+          for(int w = 0; w < WORDS; w++) {
+            bitmap[w] |= obitmap[w];
+          }
+        }
+        else {
+          final char[] oarray = other.arrays[j];
+          for(int k = 0, e = other.cards[j]; k < e; k++) {
+            final char v = oarray[k];
+            bitmap[v >>> 6] |= 1L << v;
+          }
+        }
+        append(okeys[i], null, bitmap, cardinality(bitmap));
+      }
+      ++i;
+      ++j;
+    }
+    return size != oldsize;
+  }
+
+  /**
+   * Intersection with another bitmap.
+   *
+   * @param other Other bitmap
+   * @return {@code true} if modified
+   */
+  private boolean and(BitmapModifiableDBIDs other) {
+    if(other == this) {
+      return false;
+    }
+    final int oldsize = size;
+    final char[] okeys = keys;
+    final char[][] oarrays = arrays;
+    final long[][] obitmaps = bitmaps;
+    final int[] ocards = cards;
+    final int onc = nc;
+    reset(Math.min(onc, other.nc));
+    for(int i = 0, j = 0; i < onc && j < other.nc;) {
+      if(okeys[i] != other.keys[j]) {
+        if(okeys[i] < other.keys[j]) {
+          ++i;
+        }
+        else {
+          ++j;
+        }
+        continue;
+      }
+      final long[] bitmap = obitmaps[i], obitmap = other.bitmaps[j];
+      if(bitmap != null && obitmap != null) {
+        for(int w = 0; w < WORDS; w++) {
+          bitmap[w] &= obitmap[w];
+        }
+        append(okeys[i], null, bitmap, cardinality(bitmap));
+      }
+      else if(bitmap == null) {
+        // Filter our array in place:
+        final char[] array = oarrays[i];
+        int card = 0;
+        for(int k = 0, e = ocards[i]; k < e; k++) {
+          if(other.containsIn(j, array[k])) {
+            array[card++] = array[k];
+          }
+        }
+        append(okeys[i], array, null, card);
+      }
+      else {
+        // Filter the other array:
+        final char[] oarray = other.arrays[j];
+        final char[] array = new char[other.cards[j]];
+        int card = 0;
+        for(int k = 0, e = other.cards[j]; k < e; k++) {
+          final char v = oarray[k];
+          if((bitmap[v >>> 6] & (1L << v)) != 0) {
+            array[card++] = v;
+          }
+        }
+        append(okeys[i], array, null, card);
+      }
+      ++i;
+      ++j;
+    }
+    return size != oldsize;
+  }
+
+  /**
+   * Difference with another bitmap.
+   *
+   * @param other Other bitmap
+   * @return {@code true} if modified
+   */
+  private boolean andNot(BitmapModifiableDBIDs other) {
+    if(other == this) {
+      final boolean modified = size > 0;
+      clear();
+      return modified;
+    }
+    final int oldsize = size;
+    final char[] okeys = keys;
+    final char[][] oarrays = arrays;
+    final long[][] obitmaps = bitmaps;
+    final int[] ocards = cards;
+    final int onc = nc;
+    reset(onc);
+    for(int i = 0, j = 0; i < onc; i++) {
+      while(j < other.nc && other.keys[j] < okeys[i]) {
+        ++j;
+      }
+      if(j == other.nc || other.keys[j] != okeys[i]) {
+        append(okeys[i], oarrays[i], obitmaps[i], ocards[i]);
+        continue;
+      }
+      final long[] bitmap = obitmaps[i], obitmap = other.bitmaps[j];
+      if(bitmap != null) {
+        if(obitmap != null) {
+          for(int w = 0; w < WORDS; w++) {
+            bitmap[w] &= ~obitmap[w];
+          }
+        }
+        else {
+          final char[] oarray = other.arrays[j];
+          for(int k = 0, e = other.cards[j]; k < e; k++) {
+            final char v = oarray[k];
+            bitmap[v >>> 6] &= ~(1L << v);
+          }
+        }
+        append(okeys[i], null, bitmap, cardinality(bitmap));
+      }
+      else {
+        final char[] array = oarrays[i];
+        int card = 0;
+        for(int k = 0, e = ocards[i]; k < e; k++) {
+          if(!other.containsIn(j, array[k])) {
+            array[card++] = array[k];
+          }
+        }
+        append(okeys[i], array, null, card);
+      }
+    }
+    return size != oldsize;
+  }
+
+  /**
+   * Merge two sorted arrays, removing duplicates.
+   *
+   * @param a First array
+   * @param alen Length of first array
+   * @param b Second array
+   * @param blen Length of second array
+   * @return Merged array
+   */
+  private static char[] mergeArrays(char[] a, int alen, char[] b, int blen) {
+    char[] out = new char[alen + blen];
+    int i = 0, j = 0, k = 0;
+    while(i < alen && j < blen) {
+      final char x = a[i], y = b[j];
+      out[k++] = x <= y ? x : y;
+      i += x <= y ? 1 : 0;
+      j += y <= x ? 1 : 0;
+    }
+    while(i < alen) {
+      out[k++] = a[i++];
+    }
+    while(j < blen) {
+      out[k++] = b[j++];
+    }
+    return k == out.length ? out : Arrays.copyOf(out, k);
+  }
+
+  /**
+   * Copy an array chunk.
+   *
+   * @param array Array, may be {@code null}
+   * @param card Size
+   * @return Copy
+   */
+  private static char[] copy(char[] array, int card) {
+    return array != null ? Arrays.copyOf(array, Math.max(card, 4)) : null;
+  }
+
+  /**
+   * Copy a bitmap chunk.
+   *
+   * @param bitmap Bitmap, may be {@code null}
+   * @return Copy
+   */
+  private static long[] copy(long[] bitmap) {
+    return bitmap != null ? bitmap.clone() : null;
+  }
+
+  /**
+   * Reset to an empty set.
+   *
+   * @param capacity Number of chunks to allocate
+   */
+  private void reset(int capacity) {
+    capacity = Math.max(capacity, 4);
+    keys = new char[capacity];
+    arrays = new char[capacity][];
+    bitmaps = new long[capacity][];
+    cards = new int[capacity];
+    nc = 0;
+    size = 0;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  @Override
+  public void clear() {
+    reset(4);
+  }
+
+  @Override
+  public DBIDVar pop(DBIDVar outvar) {
+    while(nc > 0 && cards[nc - 1] == 0) {
+      --nc; // Drop empty chunks.
+    }
+    if(nc == 0) {
+      throw new NoSuchElementException("Cannot pop() from an empty set.");
+    }
+    final int c = nc - 1;
+    char lo;
+    if(bitmaps[c] != null) {
+      final long[] bitmap = bitmaps[c];
+      int w = WORDS - 1;
+      while(bitmap[w] == 0) {
+        --w;
+      }
+      lo = (char) ((w << 6) + 63 - Long.numberOfLeadingZeros(bitmap[w]));
+    }
+    else {
+      lo = arrays[c][cards[c] - 1];
+    }
+    removeFrom(c, lo);
+    final int val = (keys[c] << 16) | lo;
+    if(outvar instanceof IntegerDBIDVar) {
+      ((IntegerDBIDVar) outvar).internalSetIndex(val);
+    }
+    else { // Fallback, should not happen (more expensive).
+      outvar.set(DBIDUtil.importInteger(val));
+    }
+    return outvar;
+  }
+
+  @Override
+  public Itr iter() {
+    return new Itr();
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder buf = new StringBuilder();
+    buf.append('[');
+    for(DBIDIter iter = iter(); iter.valid(); iter.advance()) {
+      if(buf.length() > 1) {
+        buf.append(", ");
+      }
+      buf.append(iter.toString());
+    }
+    buf.append(']');
+    return buf.toString();
+  }
+
+  /**
+   * Iterator over the bitmap, in ascending order.
+   *
+   * @author Erich Schubert
+   */
+  protected class Itr implements IntegerDBIDMIter {
+    /**
+     * Current chunk.
+     */
+    private int c = 0;
+
+    /**
+     * Position in the chunk: array offset or bit number.
+     */
+    private int pos = -1;
+
+    /**
+     * Constructor.
+     */
+    public Itr() {
+      super();
+      advance();
+    }
+
+    @Override
+    public boolean valid() {
+      return c < nc;
+    }
+
+    @Override
+    public Itr advance() {
+      for(; c < nc; c++, pos = -1) {
+        final long[] bitmap = bitmaps[c];
+        if(bitmap == null) {
+          if(++pos < cards[c]) {
+            return this;
+          }
+          continue;
+        }
+        final int start = pos + 1;
+        if(start >= WORDS << 6) {
+          continue;
+        }
+        int w = start >>> 6;
+        long word = bitmap[w] & (-1L << start);
+        while(word == 0 && ++w < WORDS) {
+          word = bitmap[w];
+        }
+        if(word != 0) {
+          pos = (w << 6) + Long.numberOfTrailingZeros(word);
+          return this;
+        }
+      }
+      return this;
+    }
+
+    @Override
+    public int internalGetIndex() {
+      return (keys[c] << 16) | (bitmaps[c] != null ? pos : arrays[c][pos]);
+    }
+
+    @Override
+    public void remove() {
+      if(bitmaps[c] == null) {
+        removeFrom(c, arrays[c][pos--]);
+      }
+      else {
+        removeFrom(c, (char) pos);
+      }
+    }
+
+    @Override
+    public String toString() {
+      return Integer.toString(internalGetIndex());
+    }
+  }
+}
@@ -0,0 +1,196 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.database.ids.integer;
+
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDVar;
+import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDListIter;
+import de.lmu.ifi.dbs.elki.database.ids.KNNList;
+
+/**
+ * Immutable kNN list, storing distances with single (float) precision only, to
+ * reduce the memory usage of materialized neighborhoods.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ */
+class FloatIntegerDBIDKNNList implements IntegerDBIDKNNList {
+  /**
+   * The k value this list was generated for.
+   */
+  private final int k;
+
+  /**
+   * The distances.
+   */
+  private final float[] dists;
+
+  /**
+   * The DBIDs.
+   */
+  private final int[] ids;
+
+  /**
+   * Constructor.
+   *
+   * @param list kNN list to copy
+   */
+  protected FloatIntegerDBIDKNNList(KNNList list) {
+    super();
+    final int size = list.size();
+    this.k = list.getK();
+    this.dists = new float[size];
+    this.ids = new int[size];
+    int i = 0;
+    for(DoubleDBIDListIter it = list.iter(); it.valid(); it.advance(), i++) {
+      dists[i] = (float) it.doubleValue();
+      ids[i] = it.internalGetIndex();
+    }
+  }
+
+  @Override
+  public int getK() {
+    return k;
+  }
+
+  @Override
+  public double getKNNDistance() {
+    return (ids.length >= k) ? dists[k - 1] : Double.POSITIVE_INFINITY;
+  }
+
+  @Override
+  public int size() {
+    return ids.length;
+  }
+
+  @Override
+  public boolean contains(DBIDRef o) {
+    final int q = o.internalGetIndex();
+    for(int i = 0; i < ids.length; i++) {
+      if(q == ids[i]) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public DBIDVar assignVar(int index, DBIDVar var) {
+    if(var instanceof IntegerDBIDVar) {
+      ((IntegerDBIDVar) var).internalSetIndex(ids[index]);
+    }
+    else {
+      var.set(new IntegerDBID(ids[index]));
+    }
+    return var;
+  }
+
+  @Override
+  public double doubleValue(int index) {
+    return dists[index];
+  }
+
+  @Override
+  public Itr iter() {
+    return new Itr();
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder buf = new StringBuilder(size() * 20 + 20).append("kNNList[");
+    DoubleDBIDListIter iter = this.iter();
+    if(iter.valid()) {
+      buf.append(iter.doubleValue()).append(':').append(iter.internalGetIndex());
+    }
+    while(iter.advance().valid()) {
+      buf.append(',').append(iter.doubleValue()).append(':').append(iter.internalGetIndex());
+    }
+    return buf.append(']').toString();
+  }
+
+  /**
+   * List iterator.
+   *
+   * @author Erich Schubert
+   */
+  private class Itr implements DoubleIntegerDBIDListIter {
+    /**
+     * Current offset.
+     */
+    int pos = 0;
+
+    /**
+     * Constructor.
+     */
+    private Itr() {
+      super();
+    }
+
+    @Override
+    public boolean valid() {
+      return pos < ids.length && pos >= 0;
+    }
+
+    @Override
+    public Itr advance() {
+      ++pos;
+      return this;
+    }
+
+    @Override
+    public int getOffset() {
+      return pos;
+    }
+
+    @Override
+    public Itr advance(int count) {
+      pos += count;
+      return this;
+    }
+
+    @Override
+    public Itr retract() {
+      --pos;
+      return this;
+    }
+
+    @Override
+    public Itr seek(int off) {
+      pos = off;
+      return this;
+    }
+
+    @Override
+    public int internalGetIndex() {
+      return ids[pos];
+    }
+
+    @Override
+    public double doubleValue() {
+      return dists[pos];
+    }
+
+    @Override
+    public String toString() {
+      return doubleValue() + ":" + internalGetIndex() + "@" + pos;
+    }
+  }
+}
@@ -0,0 +1,122 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.database.datastore.memory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayModifiableDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDFactory;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRange;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+
+/**
+ * Test the choice of storage of the memory data store factory.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ */
+public class MemoryDataStoreFactoryTest {
+  /**
+   * Test array storage for dense subsets.
+   */
+  @Test
+  public void testDenseSubset() {
+    DBIDRange range = DBIDFactory.FACTORY.generateStaticDBIDRange(1000);
+    testSubset(range, subset(range, 3));
+  }
+
+  /**
+   * Test array storage for sparse subsets.
+   */
+  @Test
+  public void testSparseSubset() {
+    DBIDRange range = DBIDFactory.FACTORY.generateStaticDBIDRange(100000);
+    testSubset(range, subset(range, 97));
+  }
+
+  /**
+   * Test the storage choice for modifiable DBIDs.
+   */
+  @Test
+  public void testModifiable() {
+    DBIDRange range = DBIDFactory.FACTORY.generateStaticDBIDRange(100);
+    ArrayModifiableDBIDs sub = subset(range, 2);
+    DataStoreFactory f = DataStoreFactory.FACTORY;
+    assertTrue(f.makeDoubleStorage(sub, DataStoreFactory.HINT_DB) instanceof MapIntegerDBIDDoubleStore);
+    // Modifiable DBIDs may grow, so even temporary storage must use maps:
+    WritableDoubleDataStore temp = f.makeDoubleStorage(sub, DataStoreFactory.HINT_TEMP, 42.);
+    assertTrue(temp instanceof MapIntegerDBIDDoubleStore);
+    assertEquals("Default value not returned.", 42., temp.doubleValue(range.iter().seek(1)), 0.);
+    assertTrue(f.makeDoubleStorage(DBIDUtil.makeUnmodifiable(sub), DataStoreFactory.HINT_DB) instanceof ArrayDoubleStore);
+    assertTrue(f.makeDoubleStorage(DBIDUtil.makeUnmodifiable(sub), DataStoreFactory.HINT_TEMP | DataStoreFactory.HINT_FLOAT) instanceof ArrayFloatStore);
+  }
+
+  /**
+   * Take every step-th DBID, in reverse order.
+   *
+   * @param range DBID range
+   * @param step Step size
+   * @return Subset
+   */
+  private static ArrayModifiableDBIDs subset(DBIDRange range, int step) {
+    ArrayModifiableDBIDs sub = DBIDUtil.newArray(range.size() / step + 1);
+    for(DBIDArrayIter it = range.iter().seek(range.size() - 1); it.valid(); it.retract()) {
+      if(it.getOffset() % step == 0) {
+        sub.add(it);
+      }
+    }
+    return sub;
+  }
+
+  /**
+   * Test storage on a subset.
+   *
+   * @param range All DBIDs
+   * @param sub Subset
+   */
+  private static void testSubset(DBIDRange range, ArrayModifiableDBIDs sub) {
+    int[] expect = new int[range.size()];
+    Arrays.fill(expect, -1);
+    for(DBIDArrayIter it = sub.iter(); it.valid(); it.advance()) {
+      expect[range.getOffset(it)] = it.getOffset();
+    }
+    SubsetDataStoreIDMap map = new SubsetDataStoreIDMap(sub);
+    for(DBIDArrayIter it = range.iter(); it.valid(); it.advance()) {
+      assertEquals("Wrong offset.", expect[it.getOffset()], map.mapDBIDToOffset(it));
+    }
+    WritableDoubleDataStore store = DataStoreFactory.FACTORY.makeDoubleStorage(DBIDUtil.makeUnmodifiable(sub), DataStoreFactory.HINT_DB);
+    assertTrue(store instanceof ArrayDoubleStore);
+    for(DBIDArrayIter it = sub.iter(); it.valid(); it.advance()) {
+      store.putDouble(it, range.getOffset(it));
+    }
+    for(DBIDArrayIter it = sub.iter(); it.valid(); it.advance()) {
+      assertEquals("Wrong value.", range.getOffset(it), store.doubleValue(it), 0.);
+    }
+  }
+}
@@ -21,6 +21,7 @@
 package de.lmu.ifi.dbs.elki.database.ids;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import org.junit.Test;
 
@@ -58,4 +59,29 @@ public class KNNListTest {
       assertEquals("Distance wrong @" + it.getOffset(), dists[range.getOffset(it)], it.doubleValue(), 0.);
     }
   }
+
+  /**
+   * Test the compact single precision copy.
+   */
+  @Test
+  public void floatList() {
+    double[] dists = { 1., 2., 4., 8., 4., 6., 2., 0., 6., 8., };
+    DBIDRange range = DBIDFactory.FACTORY.generateStaticDBIDRange(dists.length);
+    KNNHeap heap = DBIDUtil.newHeap(7);
+    for(DBIDArrayIter it = range.iter(); it.valid(); it.advance()) {
+      heap.insert(dists[it.getOffset()], it);
+    }
+    KNNList list = heap.toKNNList(), flist = DBIDUtil.newFloatKNNList(list);
+    assertEquals("Size differs", list.size(), flist.size());
+    assertEquals("k differs", list.getK(), flist.getK());
+    assertEquals("7NN distance wrong", 6., flist.getKNNDistance(), 0.);
+    assertEquals("4NN distance wrong", 2., flist.subList(4).getKNNDistance(), 0.);
+    DBIDVar var = DBIDUtil.newVar();
+    for(DoubleDBIDListIter it = list.iter(), it2 = flist.iter(); it.valid(); it.advance(), it2.advance()) {
+      assertEquals("Distance wrong @" + it.getOffset(), it.doubleValue(), it2.doubleValue(), 0.);
+      assertEquals("DBID wrong @" + it.getOffset(), it.internalGetIndex(), it2.internalGetIndex());
+      assertEquals("DBID wrong @" + it.getOffset(), it.internalGetIndex(), flist.assignVar(it.getOffset(), var).internalGetIndex());
+      assertTrue("Contains failed @" + it.getOffset(), flist.contains(it));
+    }
+  }
 }
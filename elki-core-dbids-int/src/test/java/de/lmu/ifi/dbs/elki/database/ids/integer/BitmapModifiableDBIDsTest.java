@@ -0,0 +1,139 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.database.ids.integer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDMIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDVar;
+
+/**
+ * Test the compressed bitmap DBID set against a tree set.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ */
+public class BitmapModifiableDBIDsTest {
+  /**
+   * Test adding, removing and iteration.
+   */
+  @Test
+  public void testModify() {
+    Random rnd = new Random(0L);
+    BitmapModifiableDBIDs set = new BitmapModifiableDBIDs();
+    TreeSet<Integer> ref = new TreeSet<>();
+    for(int i = 0; i < 50000; i++) {
+      // Mix of dense and sparse chunks:
+      final int id = rnd.nextBoolean() ? rnd.nextInt(20000) : rnd.nextInt(1 << 24);
+      if(rnd.nextInt(4) > 0) {
+        assertEquals(ref.add(id), set.add(DBIDUtil.importInteger(id)));
+      }
+      else {
+        assertEquals(ref.remove(id), set.remove(DBIDUtil.importInteger(id)));
+      }
+    }
+    assertSame(ref, set);
+    // Remove odd values while iterating:
+    for(DBIDMIter it = set.iter(); it.valid(); it.advance()) {
+      if((it.internalGetIndex() & 1) == 1) {
+        it.remove();
+      }
+    }
+    ref.removeIf(x -> (x & 1) == 1);
+    assertSame(ref, set);
+    DBIDVar var = DBIDUtil.newVar();
+    while(!ref.isEmpty()) {
+      assertEquals(ref.pollLast().intValue(), set.pop(var).internalGetIndex());
+    }
+    assertTrue(set.isEmpty());
+  }
+
+  /**
+   * Test the set operations.
+   */
+  @Test
+  public void testSetOperations() {
+    Random rnd = new Random(1L);
+    for(int r = 0; r < 10; r++) {
+      BitmapModifiableDBIDs a = new BitmapModifiableDBIDs(), b = new BitmapModifiableDBIDs();
+      TreeSet<Integer> ra = new TreeSet<>(), rb = new TreeSet<>();
+      fill(rnd, a, ra);
+      fill(rnd, b, rb);
+      BitmapModifiableDBIDs or = new BitmapModifiableDBIDs(a), and = new BitmapModifiableDBIDs(a), andnot = new BitmapModifiableDBIDs(a);
+      or.addDBIDs(b);
+      and.retainAll(b);
+      andnot.removeDBIDs(b);
+      TreeSet<Integer> ror = new TreeSet<>(ra), rand = new TreeSet<>(ra), randnot = new TreeSet<>(ra);
+      ror.addAll(rb);
+      rand.retainAll(rb);
+      randnot.removeAll(rb);
+      assertSame(ror, or);
+      assertSame(rand, and);
+      assertSame(randnot, andnot);
+      assertSame(ra, a);
+      assertSame(rb, b);
+    }
+  }
+
+  /**
+   * Fill with a random number of dense and sparse chunks.
+   *
+   * @param rnd Random generator
+   * @param set Bitmap set
+   * @param ref Reference set
+   */
+  private static void fill(Random rnd, BitmapModifiableDBIDs set, TreeSet<Integer> ref) {
+    for(int c = 0; c < 8; c++) {
+      final int base = rnd.nextInt(12) << 16, n = rnd.nextBoolean() ? 100 : 30000;
+      for(int i = 0; i < n; i++) {
+        final int id = base + rnd.nextInt(1 << 16);
+        ref.add(id);
+        set.add(DBIDUtil.importInteger(id));
+      }
+    }
+  }
+
+  /**
+   * Compare the bitmap to the reference set.
+   *
+   * @param ref Reference set
+   * @param set Bitmap set
+   */
+  private static void assertSame(TreeSet<Integer> ref, BitmapModifiableDBIDs set) {
+    assertEquals("Size differs.", ref.size(), set.size());
+    DBIDIter it = set.iter();
+    for(Integer i : ref) {
+      assertTrue("Iterator ended early.", it.valid());
+      assertEquals("Iteration differs.", i.intValue(), it.internalGetIndex());
+      assertTrue("Contains failed.", set.contains(it));
+      it.advance();
+    }
+    assertTrue("Iterator did not end.", !it.valid());
+  }
+}
@@ -69,6 +69,12 @@ public interface DataStoreFactory {
    */
   int HINT_DB = 0x1E;
 
+  /**
+   * Double values may be stored with single (float) precision, to save
+   * memory.
+   */
+  int HINT_FLOAT = 0x20;
+
   /**
    * Make a new storage, to associate the given ids with an object of class
    * dataclass.
@@ -21,114 +21,102 @@
 package de.lmu.ifi.dbs.elki.database.datastore.memory;
 
 import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreIDMap;
 import de.lmu.ifi.dbs.elki.database.datastore.WritableDBIDDataStore;
 import de.lmu.ifi.dbs.elki.database.datastore.WritableDataStore;
 import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
 import de.lmu.ifi.dbs.elki.database.datastore.WritableIntegerDataStore;
 import de.lmu.ifi.dbs.elki.database.datastore.WritableRecordStore;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDRange;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.StaticDBIDs;
 
 /**
  * Simple factory class that will store all data in memory using object arrays
  * or hashmaps.
- * 
- * Hints are currently not used by this implementation, since everything is
- * in-memory.
+ * <p>
+ * Array storage is used for DBID ranges, and, using a
+ * {@link SubsetDataStoreIDMap}, for other arrays of DBIDs if they are static.
+ * Otherwise, hash maps are used, which also accept DBIDs added later.
+ * <p>
+ * With {@link #HINT_FLOAT}, array storage of double values uses single
+ * precision only.
  * 
  * @author Erich Schubert
  * @since 0.4.0
  * 
  * @stereotype factory
  * @navhas - create - ArrayStore
+ * @navhas - create - ArrayFloatStore
  * @navhas - create - ArrayRecordStore
  * @navhas - create - MapStore
  * @navhas - create - MapRecordStore
  */
 public class MemoryDataStoreFactory implements DataStoreFactory {
+  /**
+   * Get the offset map for array storage.
+   *
+   * @param ids DBIDs to store data for
+   * @return ID map, or {@code null} if hash maps need to be used
+   */
+  protected static DataStoreIDMap idmap(DBIDs ids) {
+    if(ids instanceof DBIDRange) {
+      return (DBIDRange) ids;
+    }
+    if(ids instanceof ArrayDBIDs && ids instanceof StaticDBIDs && !ids.isEmpty()) {
+      return new SubsetDataStoreIDMap((ArrayDBIDs) ids);
+    }
+    return null;
+  }
+
   @SuppressWarnings("unchecked")
   @Override
   public <T> WritableDataStore<T> makeStorage(DBIDs ids, int hints, Class<? super T> dataclass) {
-    if (Double.class.equals(dataclass)) {
+    if(Double.class.equals(dataclass)) {
       return (WritableDataStore<T>) makeDoubleStorage(ids, hints);
     }
-    if (Integer.class.equals(dataclass)) {
+    if(Integer.class.equals(dataclass)) {
       return (WritableDataStore<T>) makeIntegerStorage(ids, hints);
     }
-    if(ids instanceof DBIDRange) {
-      DBIDRange range = (DBIDRange) ids;
-      Object[] data = new Object[range.size()];
-      return new ArrayStore<>(data, range);
-    }
-    else {
-      return new MapIntegerDBIDStore<>(ids.size());
-    }
+    DataStoreIDMap idmap = idmap(ids);
+    return idmap != null ? new ArrayStore<>(new Object[ids.size()], idmap) : new MapIntegerDBIDStore<>(ids.size());
   }
 
   @Override
   public WritableDBIDDataStore makeDBIDStorage(DBIDs ids, int hints) {
-    if(ids instanceof DBIDRange) {
-      DBIDRange range = (DBIDRange) ids;
-      return new ArrayDBIDStore(range.size(), range);
-    }
-    else {
-      return new MapIntegerDBIDDBIDStore(ids.size());
-    }
+    DataStoreIDMap idmap = idmap(ids);
+    return idmap != null ? new ArrayDBIDStore(ids.size(), idmap) : new MapIntegerDBIDDBIDStore(ids.size());
   }
 
   @Override
   public WritableDoubleDataStore makeDoubleStorage(DBIDs ids, int hints) {
-    if(ids instanceof DBIDRange) {
-      DBIDRange range = (DBIDRange) ids;
-      return new ArrayDoubleStore(range.size(), range);
-    }
-    else {
-      return new MapIntegerDBIDDoubleStore(ids.size());
-    }
+    return makeDoubleStorage(ids, hints, Double.NaN);
   }
 
   @Override
   public WritableDoubleDataStore makeDoubleStorage(DBIDs ids, int hints, double def) {
-    if(ids instanceof DBIDRange) {
-      DBIDRange range = (DBIDRange) ids;
-      return new ArrayDoubleStore(range.size(), range, def);
-    }
-    else {
-      return new MapIntegerDBIDDoubleStore(ids.size(), def);
-    }
+    DataStoreIDMap idmap = idmap(ids);
+    return idmap == null ? new MapIntegerDBIDDoubleStore(ids.size(), def) : //
+        (hints & HINT_FLOAT) != 0 ? new ArrayFloatStore(ids.size(), idmap, def) : //
+            new ArrayDoubleStore(ids.size(), idmap, def);
   }
 
   @Override
   public WritableIntegerDataStore makeIntegerStorage(DBIDs ids, int hints) {
-    if(ids instanceof DBIDRange) {
-      DBIDRange range = (DBIDRange) ids;
-      return new ArrayIntegerStore(range.size(), range);
-    }
-    else {
-      return new MapIntegerDBIDIntegerStore(ids.size());
-    }
+    DataStoreIDMap idmap = idmap(ids);
+    return idmap != null ? new ArrayIntegerStore(ids.size(), idmap) : new MapIntegerDBIDIntegerStore(ids.size());
   }
 
   @Override
   public WritableIntegerDataStore makeIntegerStorage(DBIDs ids, int hints, int def) {
-    if(ids instanceof DBIDRange) {
-      DBIDRange range = (DBIDRange) ids;
-      return new ArrayIntegerStore(range.size(), range, def);
-    }
-    else {
-      return new MapIntegerDBIDIntegerStore(ids.size(), def);
-    }
+    DataStoreIDMap idmap = idmap(ids);
+    return idmap != null ? new ArrayIntegerStore(ids.size(), idmap, def) : new MapIntegerDBIDIntegerStore(ids.size(), def);
   }
 
   @Override
   public WritableRecordStore makeRecordStorage(DBIDs ids, int hints, Class<?>... dataclasses) {
-    if(ids instanceof DBIDRange) {
-      DBIDRange range = (DBIDRange) ids;
-      Object[][] data = new Object[range.size()][dataclasses.length];
-      return new ArrayRecordStore(data, range);
-    }
-    else {
-      return new MapIntegerDBIDRecordStore(ids.size(), dataclasses.length);
-    }
+    DataStoreIDMap idmap = idmap(ids);
+    return idmap != null ? new ArrayRecordStore(new Object[ids.size()][dataclasses.length], idmap) : new MapIntegerDBIDRecordStore(ids.size(), dataclasses.length);
   }
 }
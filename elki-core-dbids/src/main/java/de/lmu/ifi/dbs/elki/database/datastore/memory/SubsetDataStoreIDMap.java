@@ -0,0 +1,146 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.database.datastore.memory;
+
+import java.util.Arrays;
+
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreIDMap;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
+
+/**
+ * Map the DBIDs of an arbitrary (static) array to their positions, so that
+ * array-backed stores can be used for subsets, too.
+ * <p>
+ * If the DBIDs are reasonably dense, a direct lookup table is used; otherwise
+ * an open addressing hash table with linear probing. DBIDs that are not part
+ * of the array are mapped to -1.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ */
+class SubsetDataStoreIDMap implements DataStoreIDMap {
+  /**
+   * Maximum ratio of the DBID range to the number of DBIDs, for using a direct
+   * lookup table.
+   */
+  private static final int MAX_SPARSITY = 4;
+
+  /**
+   * Marker for empty hash table cells.
+   */
+  private static final int EMPTY = Integer.MIN_VALUE;
+
+  /**
+   * Smallest DBID, for the direct lookup table.
+   */
+  private final int min;
+
+  /**
+   * Direct lookup table, or hash table values.
+   */
+  private final int[] offsets;
+
+  /**
+   * Hash table keys, {@code null} for direct lookup.
+   */
+  private final int[] keys;
+
+  /**
+   * Hash table mask.
+   */
+  private final int mask;
+
+  /**
+   * Constructor.
+   *
+   * @param ids DBIDs to map, must not be empty
+   */
+  SubsetDataStoreIDMap(ArrayDBIDs ids) {
+    final int size = ids.size();
+    int lo = Integer.MAX_VALUE, hi = Integer.MIN_VALUE;
+    DBIDArrayIter it = ids.iter();
+    for(; it.valid(); it.advance()) {
+      final int id = it.internalGetIndex();
+      lo = id < lo ? id : lo;
+      hi = id > hi ? id : hi;
+    }
+    if((long) hi - lo < (long) size * MAX_SPARSITY) {
+      min = lo;
+      offsets = new int[hi - lo + 1];
+      Arrays.fill(offsets, -1);
+      for(it.seek(size - 1); it.valid(); it.retract()) {
+        // Backwards, such that the first of duplicates wins.
+        offsets[it.internalGetIndex() - lo] = it.getOffset();
+      }
+      keys = null;
+      mask = 0;
+      return;
+    }
+    min = 0;
+    final int cap = Integer.highestOneBit(Math.max(size, 2) - 1) << 2;
+    keys = new int[cap];
+    offsets = new int[cap];
+    mask = cap - 1;
+    Arrays.fill(keys, EMPTY);
+    for(it.seek(0); it.valid(); it.advance()) {
+      final int id = it.internalGetIndex();
+      int h = hash(id) & mask;
+      while(keys[h] != EMPTY && keys[h] != id) {
+        h = (h + 1) & mask;
+      }
+      if(keys[h] == EMPTY) {
+        keys[h] = id;
+        offsets[h] = it.getOffset();
+      }
+    }
+  }
+
+  /**
+   * Spread the bits of the DBID.
+   *
+   * @param id DBID
+   * @return Hash code
+   */
+  private static int hash(int id) {
+    final int h = id * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+  @Override
+  public int mapDBIDToOffset(DBIDRef dbid) {
+    final int id = dbid.internalGetIndex();
+    if(keys == null) {
+      final int i = id - min;
+      return i >= 0 && i < offsets.length ? offsets[i] : -1;
+    }
+    for(int h = hash(id) & mask;; h = (h + 1) & mask) {
+      final int k = keys[h];
+      if(k == id) {
+        return offsets[h];
+      }
+      if(k == EMPTY) {
+        return -1;
+      }
+    }
+  }
+}
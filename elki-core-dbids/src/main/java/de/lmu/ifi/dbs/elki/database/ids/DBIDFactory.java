@@ -47,6 +47,13 @@ public interface DBIDFactory {
    */
   DBIDFactory FACTORY = ClassGenericsUtil.instantiateLowlevel(DBIDFactory.class);
 
+  /**
+   * Hint for new hash sets: the set will contain a large part of a contiguous
+   * range of DBIDs (such as the objects of a relation), and a compressed bitmap
+   * may be used instead of a hash table.
+   */
+  int HINT_DENSE = 0x01;
+
   /**
    * Make a new DBID variable.
    *
@@ -162,6 +169,15 @@ public interface DBIDFactory {
    */
   HashSetModifiableDBIDs newHashSet(int size);
 
+  /**
+   * Make a new (modifiable) hash set of DBIDs.
+   *
+   * @param size Size hint
+   * @param hints Hints, such as {@link #HINT_DENSE}
+   * @return New hash set
+   */
+  HashSetModifiableDBIDs newHashSet(int size, int hints);
+
   /**
    * Make a new (modifiable) array of DBIDs.
    *
@@ -172,6 +188,8 @@ public interface DBIDFactory {
 
   /**
    * Make a new (modifiable) hash set of DBIDs.
+   * <p>
+   * Copies of compressed bitmaps are compressed bitmaps again.
    *
    * @param existing existing DBIDs to use
    * @return New hash set
@@ -194,6 +212,15 @@ public interface DBIDFactory {
    */
   KNNHeap newHeap(KNNList exist);
 
+  /**
+   * Make a compact copy of a kNN list, storing distances with single (float)
+   * precision only. This is useful for materializing many kNN lists.
+   *
+   * @param exist Existing result
+   * @return Compact copy
+   */
+  KNNList newFloatKNNList(KNNList exist);
+
   /**
    * Get a serializer for DBIDs.
    *
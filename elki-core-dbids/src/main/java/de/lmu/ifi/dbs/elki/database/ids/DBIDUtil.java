@@ -262,6 +262,17 @@ public final class DBIDUtil {
     return DBIDFactory.FACTORY.newHashSet(size);
   }
 
+  /**
+   * Make a new (modifiable) hash set of DBIDs.
+   *
+   * @param size Size hint
+   * @param hints Hints, such as {@link DBIDFactory#HINT_DENSE}
+   * @return New hash set
+   */
+  public static HashSetModifiableDBIDs newHashSet(int size, int hints) {
+    return DBIDFactory.FACTORY.newHashSet(size, hints);
+  }
+
   /**
    * Make a new (modifiable) array of DBIDs.
    *
@@ -435,6 +446,23 @@ public final class DBIDUtil {
     return ids instanceof ArrayDBIDs ? (ArrayDBIDs) ids : newArray(ids);
   }
 
+  /**
+   * Ensure that the given DBIDs are a sorted array, for
+   * {@link ArrayDBIDs#binarySearch}. Ranges are returned as is, other DBIDs are
+   * copied.
+   *
+   * @param ids IDs
+   * @return Sorted array DBIDs.
+   */
+  public static ArrayDBIDs ensureSortedArray(DBIDs ids) {
+    if(ids instanceof DBIDRange) {
+      return (DBIDRange) ids;
+    }
+    ArrayModifiableDBIDs sorted = newArray(ids);
+    sorted.sort();
+    return sorted;
+  }
+
   /**
    * Ensure that the given DBIDs support fast "contains" operations.
    *
@@ -501,6 +529,17 @@ public final class DBIDUtil {
     return DBIDFactory.FACTORY.newHeap(exist);
   }
 
+  /**
+   * Make a compact copy of a kNN list, storing distances with single (float)
+   * precision only. This is useful for materializing many kNN lists.
+   *
+   * @param exist Existing result
+   * @return Compact copy
+   */
+  public static KNNList newFloatKNNList(KNNList exist) {
+    return DBIDFactory.FACTORY.newFloatKNNList(exist);
+  }
+
   /**
    * Produce a random shuffling of the given DBID array.
    *
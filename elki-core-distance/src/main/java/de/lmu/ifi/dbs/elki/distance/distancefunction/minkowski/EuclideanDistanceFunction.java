@@ -20,6 +20,7 @@
  */
 package de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski;
 
+import de.lmu.ifi.dbs.elki.data.FloatVector;
 import de.lmu.ifi.dbs.elki.data.NumberVector;
 import de.lmu.ifi.dbs.elki.data.spatial.SpatialComparable;
 import de.lmu.ifi.dbs.elki.utilities.Alias;
@@ -55,6 +56,41 @@ public class EuclideanDistanceFunction extends LPIntegerNormDistanceFunction {
     super(2);
   }
 
+  /**
+   * Sum of squared differences of float vectors, for a range of dimensions.
+   *
+   * @param v1 First vector
+   * @param v2 Second vector
+   * @param start First dimension
+   * @param end Dimension limit (exclusive)
+   * @return Aggregated values
+   */
+  private double preDistance(float[] v1, float[] v2, int start, int end) {
+    double agg = 0.;
+    for(int d = start; d < end; d++) {
+      final double delta = (double) v1[d] - v2[d];
+      agg += delta * delta;
+    }
+    return agg;
+  }
+
+  /**
+   * Sum of squares of a float vector, for a range of dimensions.
+   *
+   * @param v Vector
+   * @param start First dimension
+   * @param end Dimension limit (exclusive)
+   * @return Aggregated values
+   */
+  private double preNorm(float[] v, int start, int end) {
+    double agg = 0.;
+    for(int d = start; d < end; d++) {
+      final double xd = v[d];
+      agg += xd * xd;
+    }
+    return agg;
+  }
+
   private double preDistance(NumberVector v1, NumberVector v2, int start, int end) {
     double agg = 0.;
     for(int d = start; d < end; d++) {
@@ -112,6 +148,9 @@ public class EuclideanDistanceFunction extends LPIntegerNormDistanceFunction {
 
   @Override
   public double distance(NumberVector v1, NumberVector v2) {
+    if(v1 instanceof FloatVector && v2 instanceof FloatVector) {
+      return distance(((FloatVector) v1).getValues(), ((FloatVector) v2).getValues());
+    }
     final int dim1 = v1.getDimensionality(), dim2 = v2.getDimensionality();
     final int mindim = dim1 < dim2 ? dim1 : dim2;
     double agg = preDistance(v1, v2, 0, mindim);
@@ -124,6 +163,26 @@ public class EuclideanDistanceFunction extends LPIntegerNormDistanceFunction {
     return FastMath.sqrt(agg);
   }
 
+  /**
+   * Special version for float arrays.
+   *
+   * @param v1 First vector
+   * @param v2 Second vector
+   * @return Distance
+   */
+  public double distance(float[] v1, float[] v2) {
+    final int dim1 = v1.length, dim2 = v2.length;
+    final int mindim = dim1 < dim2 ? dim1 : dim2;
+    double agg = preDistance(v1, v2, 0, mindim);
+    if(dim1 > mindim) {
+      agg += preNorm(v1, mindim, dim1);
+    }
+    else if(dim2 > mindim) {
+      agg += preNorm(v2, mindim, dim2);
+    }
+    return FastMath.sqrt(agg);
+  }
+
   @Override
   public double norm(NumberVector v) {
     return FastMath.sqrt(preNorm(v, 0, v.getDimensionality()));
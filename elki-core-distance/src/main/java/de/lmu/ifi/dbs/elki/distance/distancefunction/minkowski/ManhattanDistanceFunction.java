@@ -20,6 +20,7 @@
  */
 package de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski;
 
+import de.lmu.ifi.dbs.elki.data.FloatVector;
 import de.lmu.ifi.dbs.elki.data.NumberVector;
 import de.lmu.ifi.dbs.elki.data.spatial.SpatialComparable;
 import de.lmu.ifi.dbs.elki.utilities.Alias;
@@ -52,6 +53,43 @@ public class ManhattanDistanceFunction extends LPIntegerNormDistanceFunction {
     super(1);
   }
 
+  /**
+   * Sum of absolute differences of float vectors, for a range of dimensions.
+   *
+   * @param v1 First vector
+   * @param v2 Second vector
+   * @param start First dimension
+   * @param end Dimension limit (exclusive)
+   * @return Aggregated values
+   */
+  private double preDistance(float[] v1, float[] v2, int start, int end) {
+    double agg = 0.;
+    for(int d = start; d < end; d++) {
+      final double xd = v1[d], yd = v2[d];
+      final double delta = xd >= yd ? xd - yd : yd - xd;
+      agg += delta;
+    }
+    return agg;
+  }
+
+  /**
+   * Sum of absolute values of a float vector, for a range of dimensions.
+   *
+   * @param v Vector
+   * @param start First dimension
+   * @param end Dimension limit (exclusive)
+   * @return Aggregated values
+   */
+  private double preNorm(float[] v, int start, int end) {
+    double agg = 0.;
+    for(int d = start; d < end; d++) {
+      final double xd = v[d];
+      final double delta = (xd >= 0.) ? xd : -xd;
+      agg += delta;
+    }
+    return agg;
+  }
+
   private double preDistance(NumberVector v1, NumberVector v2, int start, int end) {
     double agg = 0.;
     for(int d = start; d < end; d++) {
@@ -111,6 +149,9 @@ public class ManhattanDistanceFunction extends LPIntegerNormDistanceFunction {
 
   @Override
   public double distance(NumberVector v1, NumberVector v2) {
+    if(v1 instanceof FloatVector && v2 instanceof FloatVector) {
+      return distance(((FloatVector) v1).getValues(), ((FloatVector) v2).getValues());
+    }
     final int dim1 = v1.getDimensionality(), dim2 = v2.getDimensionality();
     final int mindim = dim1 < dim2 ? dim1 : dim2;
     double agg = preDistance(v1, v2, 0, mindim);
@@ -123,6 +164,26 @@ public class ManhattanDistanceFunction extends LPIntegerNormDistanceFunction {
     return agg;
   }
 
+  /**
+   * Special version for float arrays.
+   *
+   * @param v1 First vector
+   * @param v2 Second vector
+   * @return Distance
+   */
+  public double distance(float[] v1, float[] v2) {
+    final int dim1 = v1.length, dim2 = v2.length;
+    final int mindim = dim1 < dim2 ? dim1 : dim2;
+    double agg = preDistance(v1, v2, 0, mindim);
+    if(dim1 > mindim) {
+      agg += preNorm(v1, mindim, dim1);
+    }
+    else if(dim2 > mindim) {
+      agg += preNorm(v2, mindim, dim2);
+    }
+    return agg;
+  }
+
   @Override
   public double norm(NumberVector v) {
     return preNorm(v, 0, v.getDimensionality());
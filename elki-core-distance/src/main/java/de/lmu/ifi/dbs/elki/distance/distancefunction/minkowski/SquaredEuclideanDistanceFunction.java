@@ -20,6 +20,7 @@
  */
 package de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski;
 
+import de.lmu.ifi.dbs.elki.data.FloatVector;
 import de.lmu.ifi.dbs.elki.data.NumberVector;
 import de.lmu.ifi.dbs.elki.data.SparseNumberVector;
 import de.lmu.ifi.dbs.elki.data.spatial.SpatialComparable;
@@ -65,6 +66,41 @@ public class SquaredEuclideanDistanceFunction extends AbstractNumberVectorDistan
     return agg;
   }
 
+  /**
+   * Sum of squared differences of float vectors, for a range of dimensions.
+   *
+   * @param v1 First vector
+   * @param v2 Second vector
+   * @param start First dimension
+   * @param end Dimension limit (exclusive)
+   * @return Aggregated values
+   */
+  private double preDistance(float[] v1, float[] v2, int start, int end) {
+    double agg = 0.;
+    for(int d = start; d < end; d++) {
+      final double delta = (double) v1[d] - v2[d];
+      agg += delta * delta;
+    }
+    return agg;
+  }
+
+  /**
+   * Sum of squares of a float vector, for a range of dimensions.
+   *
+   * @param v Vector
+   * @param start First dimension
+   * @param end Dimension limit (exclusive)
+   * @return Aggregated values
+   */
+  private double preNorm(float[] v, int start, int end) {
+    double agg = 0.;
+    for(int d = start; d < end; d++) {
+      final double xd = v[d];
+      agg += xd * xd;
+    }
+    return agg;
+  }
+
   private double preDistance(NumberVector v1, NumberVector v2, int start, int end) {
     double agg = 0.;
     for(int d = start; d < end; d++) {
@@ -131,6 +167,9 @@ public class SquaredEuclideanDistanceFunction extends AbstractNumberVectorDistan
 
   @Override
   public double distance(NumberVector v1, NumberVector v2) {
+    if(v1 instanceof FloatVector && v2 instanceof FloatVector) {
+      return distance(((FloatVector) v1).getValues(), ((FloatVector) v2).getValues());
+    }
     final int dim1 = v1.getDimensionality(), dim2 = v2.getDimensionality();
     final int mindim = dim1 < dim2 ? dim1 : dim2;
     double agg = preDistance(v1, v2, 0, mindim);
@@ -143,6 +182,26 @@ public class SquaredEuclideanDistanceFunction extends AbstractNumberVectorDistan
     return agg;
   }
 
+  /**
+   * Special version for float arrays.
+   *
+   * @param v1 First vector
+   * @param v2 Second vector
+   * @return Distance
+   */
+  public double distance(float[] v1, float[] v2) {
+    final int dim1 = v1.length, dim2 = v2.length;
+    final int mindim = dim1 < dim2 ? dim1 : dim2;
+    double agg = preDistance(v1, v2, 0, mindim);
+    if(dim1 > mindim) {
+      agg += preNorm(v1, mindim, dim1);
+    }
+    else if(dim2 > mindim) {
+      agg += preNorm(v2, mindim, dim2);
+    }
+    return agg;
+  }
+
   /**
    * Special version for double arrays.
    */
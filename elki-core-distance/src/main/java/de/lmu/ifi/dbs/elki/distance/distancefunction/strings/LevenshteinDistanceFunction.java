@@ -20,6 +20,8 @@
  */
 package de.lmu.ifi.dbs.elki.distance.distancefunction.strings;
 
+import java.util.Arrays;
+
 import de.lmu.ifi.dbs.elki.data.type.SimpleTypeInformation;
 import de.lmu.ifi.dbs.elki.distance.distancefunction.PrimitiveDistanceFunction;
 import de.lmu.ifi.dbs.elki.utilities.documentation.Description;
@@ -29,15 +31,27 @@ import de.lmu.ifi.dbs.elki.utilities.optionhandling.AbstractParameterizer;
 /**
  * Classic Levenshtein distance on strings.
  * <p>
+ * The distance is computed with the bit-parallel algorithm of Myers, using
+ * the block-based extension of Hyyrö for strings longer than 64 characters.
+ * A bounded variant stops once the distance must exceed a threshold.
+ * <p>
  * Reference:
  * <p>
  * V. I. Levenshtein<br>
  * Binary codes capable of correcting deletions, insertions and reversals<br>
  * Soviet physics doklady 10
  * <p>
- * TODO: add case insensitive flag.
+ * G. Myers<br>
+ * A fast bit-vector algorithm for approximate string matching based on
+ * dynamic programming<br>
+ * Journal of the ACM 46(3)
  * <p>
- * TODO: add an API that can stop early at a maximum distance
+ * H. Hyyrö<br>
+ * A bit-vector algorithm for computing Levenshtein and Damerau edit
+ * distances<br>
+ * Nordic Journal of Computing 10(1)
+ * <p>
+ * TODO: add case insensitive flag.
  * 
  * @author Felix Stahlberg
  * @author Erich Schubert
@@ -50,6 +64,15 @@ import de.lmu.ifi.dbs.elki.utilities.optionhandling.AbstractParameterizer;
     title = "Binary codes capable of correcting deletions, insertions and reversals", //
     booktitle = "Soviet physics doklady 10", //
     bibkey = "journals/misc/Levenshtein66")
+@Reference(authors = "G. Myers", //
+    title = "A fast bit-vector algorithm for approximate string matching based on dynamic programming", //
+    booktitle = "Journal of the ACM 46(3)", //
+    url = "https://doi.org/10.1145/316542.316550", //
+    bibkey = "DBLP:journals/jacm/Myers99")
+@Reference(authors = "H. Hyyrö", //
+    title = "A bit-vector algorithm for computing Levenshtein and Damerau edit distances", //
+    booktitle = "Nordic Journal of Computing 10(1)", //
+    bibkey = "DBLP:journals/njc/Hyyro03")
 public class LevenshteinDistanceFunction implements PrimitiveDistanceFunction<String> {
   /**
    * Static instance, case sensitive.
@@ -82,11 +105,27 @@ public class LevenshteinDistanceFunction implements PrimitiveDistanceFunction<St
    * @return Levenshtein distance
    */
   public static int levenshteinDistance(String o1, String o2) {
+    return levenshteinDistance(o1, o2, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Bounded Levenshtein distance for two strings: the computation stops once
+   * the distance is known to exceed the maximum.
+   *
+   * @param o1 First string
+   * @param o2 Second string
+   * @param max Maximum distance of interest
+   * @return Levenshtein distance, or a value larger than max
+   */
+  public static int levenshteinDistance(String o1, String o2, int max) {
     // Let o1 be the shorter one:
     if(o1.length() > o2.length()) {
-      return levenshteinDistance(o2, o1);
+      return levenshteinDistance(o2, o1, max);
     }
     final int l1 = o1.length(), l2 = o2.length();
+    if(l2 - l1 > max) {
+      return l2 - l1;
+    }
     // Exploit that Java caches the hash code of strings:
     if(l1 == l2 && o1.hashCode() == o2.hashCode() && o1.equals(o2)) {
       return 0;
@@ -102,7 +141,7 @@ public class LevenshteinDistanceFunction implements PrimitiveDistanceFunction<St
     // Exactly one char difference optimization:
         (l1 == l2 && prefix + postfix + 1 == l1) ? 1 : //
         // Default case, compute
-            levenshteinDistance(o1, o2, prefix, postfix);
+            myersDistance(o1, o2, prefix, postfix, max);
   }
 
   /**
@@ -166,6 +205,131 @@ public class LevenshteinDistanceFunction implements PrimitiveDistanceFunction<St
     return buf[buf.length - 2 + (inter ^ 1)];
   }
 
+  /**
+   * Compute the Levenshtein distance, except for prefix and postfix, using
+   * the bit-parallel algorithm of Myers.
+   * <p>
+   * The first string is the "pattern" encoded in bit vectors, so it should be
+   * the shorter string.
+   *
+   * @param o1 First object
+   * @param o2 Second object
+   * @param prefix Prefix length
+   * @param postfix Postfix length
+   * @param max Maximum distance of interest
+   * @return Levenshtein distance, or a value larger than max
+   */
+  public static int myersDistance(String o1, String o2, int prefix, int postfix, int max) {
+    final int m = o1.length() - prefix - postfix, n = o2.length() - prefix - postfix;
+    // Sorted alphabet of the pattern, to look up the match vectors:
+    char[] alpha = new char[m];
+    o1.getChars(prefix, prefix + m, alpha, 0);
+    Arrays.sort(alpha);
+    int na = 1;
+    for(int i = 1; i < m; i++) {
+      if(alpha[i] != alpha[na - 1]) {
+        alpha[na++] = alpha[i];
+      }
+    }
+    // Number of blocks
+    final int nb = (m + 63) >>> 6;
+    long[] peq = new long[na * nb];
+    for(int i = 0; i < m; i++) {
+      final int a = Arrays.binarySearch(alpha, 0, na, o1.charAt(prefix + i));
+      peq[a * nb + (i >>> 6)] |= 1L << i; // Java shifts are mod 64
+    }
+    return nb == 1 ? myersSingle(alpha, na, peq, m, o2, prefix, n, max) : //
+        myersBlocks(alpha, na, peq, nb, m, o2, prefix, n, max);
+  }
+
+  /**
+   * Myers' algorithm for patterns of at most 64 characters.
+   *
+   * @param alpha Alphabet of the pattern
+   * @param na Alphabet size
+   * @param peq Match vectors
+   * @param m Pattern length
+   * @param o2 Text
+   * @param start Start in the text
+   * @param n Length of the text
+   * @param max Maximum distance of interest
+   * @return Levenshtein distance, or a value larger than max
+   */
+  private static int myersSingle(char[] alpha, int na, long[] peq, int m, String o2, int start, int n, int max) {
+    final long last = 1L << (m - 1);
+    long pv = -1L, mv = 0L;
+    int score = m;
+    for(int j = 0; j < n; j++) {
+      final int a = Arrays.binarySearch(alpha, 0, na, o2.charAt(start + j));
+      final long eq = a >= 0 ? peq[a] : 0L;
+      final long xv = eq | mv, xh = (((eq & pv) + pv) ^ pv) | eq;
+      long ph = mv | ~(xh | pv), mh = pv & xh;
+      score += (ph & last) != 0 ? 1 : (mh & last) != 0 ? -1 : 0;
+      // Each remaining column can reduce the distance by at most 1:
+      if(score - (n - 1 - j) > max) {
+        return score - (n - 1 - j);
+      }
+      ph = (ph << 1) | 1L;
+      mh <<= 1;
+      pv = mh | ~(xv | ph);
+      mv = ph & xv;
+    }
+    return score;
+  }
+
+  /**
+   * Block-based variant of Myers' algorithm for long patterns.
+   *
+   * @param alpha Alphabet of the pattern
+   * @param na Alphabet size
+   * @param peq Match vectors, nb per character
+   * @param nb Number of blocks
+   * @param m Pattern length
+   * @param o2 Text
+   * @param start Start in the text
+   * @param n Length of the text
+   * @param max Maximum distance of interest
+   * @return Levenshtein distance, or a value larger than max
+   */
+  private static int myersBlocks(char[] alpha, int na, long[] peq, int nb, int m, String o2, int start, int n, int max) {
+    final long high = 1L << 63, last = 1L << (m - 1);
+    long[] pvs = new long[nb], mvs = new long[nb];
+    Arrays.fill(pvs, -1L);
+    int score = m;
+    for(int j = 0; j < n; j++) {
+      final int a = Arrays.binarySearch(alpha, 0, na, o2.charAt(start + j));
+      final int off = a >= 0 ? a * nb : -1;
+      int hin = 1; // The top row increases by one per column
+      for(int b = 0; b < nb; b++) {
+        final long pv = pvs[b], mv = mvs[b];
+        long eq = off >= 0 ? peq[off + b] : 0L;
+        final long xv = eq | mv;
+        eq |= hin < 0 ? 1L : 0L;
+        final long xh = (((eq & pv) + pv) ^ pv) | eq;
+        long ph = mv | ~(xh | pv), mh = pv & xh;
+        final long hbit = b == nb - 1 ? last : high;
+        final int hout = (ph & hbit) != 0 ? 1 : (mh & hbit) != 0 ? -1 : 0;
+        ph <<= 1;
+        mh <<= 1;
+        if(hin < 0) {
+          mh |= 1L;
+        }
+        else if(hin > 0) {
+          ph |= 1L;
+        }
+        pvs[b] = mh | ~(xv | ph);
+        mvs[b] = ph & xv;
+        hin = hout;
+      }
+      score += hin;
+      // Each remaining column can reduce the distance by at most 1:
+      if(score - (n - 1 - j) > max) {
+        return score - (n - 1 - j);
+      }
+    }
+    return score;
+  }
+
   /**
    * Three-way integer minimum.
    * 
@@ -58,7 +58,7 @@ public abstract class AbstractEditDistanceFunction extends AbstractNumberVectorD
    * @param dim2 Second dimensionality
    * @return Effective bandsize
    */
-  protected int effectiveBandSize(final int dim1, final int dim2) {
+  public int effectiveBandSize(final int dim1, final int dim2) {
     if(bandSize == Double.POSITIVE_INFINITY) {
       return (dim1 > dim2) ? dim1 : dim2;
     }
@@ -69,6 +69,26 @@ public class DTWDistanceFunction extends AbstractEditDistanceFunction {
 
   @Override
   public double distance(NumberVector v1, NumberVector v2) {
+    return distance(v1, v2, null, Double.POSITIVE_INFINITY);
+  }
+
+  /**
+   * Compute the distance, but abandon the computation early once the distance
+   * is known to exceed the given threshold.
+   * <p>
+   * This is used for kNN search, where the current kNN distance can be used as
+   * threshold. Because all costs are non-negative, the minimum of each row of
+   * the dynamic programming matrix can only increase, so once the row minimum
+   * exceeds the threshold the final distance will, too.
+   *
+   * @param v1 First vector
+   * @param v2 Second vector
+   * @param buf Buffer of length at least {@code 2 * v2.getDimensionality()},
+   *        to avoid reallocation; may be {@code null}
+   * @param threshold Threshold distance
+   * @return Distance, or infinity if the distance exceeds the threshold
+   */
+  public double distance(NumberVector v1, NumberVector v2, double[] buf, double threshold) {
     // Dimensionality, and last valid value in second vector:
     final int dim1 = v1.getDimensionality(), dim2 = v2.getDimensionality();
     final int m2 = dim2 - 1;
@@ -80,8 +100,10 @@ public class DTWDistanceFunction extends AbstractEditDistanceFunction {
       return Double.POSITIVE_INFINITY;
     }
     // Current and previous columns of the matrix
-    double[] buf = new double[dim2 << 1];
-    Arrays.fill(buf, Double.POSITIVE_INFINITY);
+    buf = (buf != null && buf.length >= dim2 << 1) ? buf : new double[dim2 << 1];
+    Arrays.fill(buf, 0, dim2 << 1, Double.POSITIVE_INFINITY);
+    // Threshold on the internal (squared) costs:
+    final double limit = threshold * threshold;
 
     // Fill first row:
     firstRow(buf, band, v1, v2, dim2);
@@ -92,6 +114,7 @@ public class DTWDistanceFunction extends AbstractEditDistanceFunction {
     int i = 1, l = 0, r = Math.min(m2, i + band);
     while(i < dim1) {
       final double val1 = v1.doubleValue(i);
+      double rmin = Double.POSITIVE_INFINITY;
       for(int j = l; j <= r; j++) {
         // Value in previous row (must exist, may be infinite):
         double min = buf[cur + j];
@@ -106,7 +129,12 @@ public class DTWDistanceFunction extends AbstractEditDistanceFunction {
           }
         }
         // Write:
-        buf[nxt + j] = min + delta(val1, v2.doubleValue(j));
+        final double v = buf[nxt + j] = min + delta(val1, v2.doubleValue(j));
+        rmin = (v < rmin) ? v : rmin;
+      }
+      // Early abandoning (double-check, to be robust to rounding):
+      if(rmin > limit && FastMath.sqrt(rmin) > threshold) {
+        return Double.POSITIVE_INFINITY;
       }
       // Swap buffer positions:
       cur = dim2 - cur;
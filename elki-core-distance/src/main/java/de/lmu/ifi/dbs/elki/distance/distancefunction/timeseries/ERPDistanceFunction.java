@@ -66,7 +66,7 @@ public class ERPDistanceFunction extends DTWDistanceFunction {
   }
 
   @Override
-  public double distance(NumberVector v1, NumberVector v2) {
+  public double distance(NumberVector v1, NumberVector v2, double[] buf, double threshold) {
     // Dimensionality, and last valid value in second vector:
     final int dim1 = v1.getDimensionality(), dim2 = v2.getDimensionality();
     final int m2 = dim2 - 1;
@@ -78,8 +78,10 @@ public class ERPDistanceFunction extends DTWDistanceFunction {
       return Double.POSITIVE_INFINITY;
     }
     // Current and previous columns of the matrix
-    double[] buf = new double[dim2 << 1];
-    Arrays.fill(buf, Double.POSITIVE_INFINITY);
+    buf = (buf != null && buf.length >= dim2 << 1) ? buf : new double[dim2 << 1];
+    Arrays.fill(buf, 0, dim2 << 1, Double.POSITIVE_INFINITY);
+    // Threshold on the internal (squared) costs:
+    final double limit = threshold * threshold;
 
     // Fill first row:
     firstRow(buf, band, v1, v2, dim2);
@@ -90,6 +92,7 @@ public class ERPDistanceFunction extends DTWDistanceFunction {
     int i = 1, l = 0, r = Math.min(m2, i + band);
     while(i < dim1) {
       final double val1 = v1.doubleValue(i);
+      double rmin = Double.POSITIVE_INFINITY;
       for(int j = l; j <= r; j++) {
         // Value in previous row (must exist, may be infinite):
         double min = buf[cur + j] + delta(val1, g);
@@ -104,7 +107,12 @@ public class ERPDistanceFunction extends DTWDistanceFunction {
           }
         }
         // Write:
-        buf[nxt + j] = min;
+        final double v = buf[nxt + j] = min;
+        rmin = (v < rmin) ? v : rmin;
+      }
+      // Early abandoning (double-check, to be robust to rounding):
+      if(rmin > limit && FastMath.sqrt(rmin) > threshold) {
+        return Double.POSITIVE_INFINITY;
       }
       // Swap buffer positions:
       cur = dim2 - cur;
@@ -27,6 +27,7 @@ import static org.junit.Assert.assertTrue;
 import java.util.Random;
 
 import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.data.FloatVector;
 import de.lmu.ifi.dbs.elki.data.HyperBoundingBox;
 import de.lmu.ifi.dbs.elki.data.NumberVector;
 import de.lmu.ifi.dbs.elki.data.SparseDoubleVector;
@@ -212,6 +213,32 @@ public abstract class AbstractDistanceFunctionTest {
     assertEquals("Distances not same", ref.minDist(v1, v2), test.minDist(v1, v2), tol);
   }
 
+  /**
+   * Check that the single precision code path yields the same results as the
+   * double precision code path, for the same (float) values.
+   *
+   * @param dist Distance function to check
+   */
+  public static void floatConsistency(PrimitiveDistanceFunction<? super NumberVector> dist) {
+    final Random rnd = new FastNonThreadsafeRandom(0);
+    for(double[] a : TOY_VECTORS_VAR) {
+      for(double[] b : TOY_VECTORS_VAR) {
+        FloatVector f1 = FloatVector.FACTORY.newNumberVector(a), f2 = FloatVector.FACTORY.newNumberVector(b);
+        assertEquals("Float distance differs", dist.distance(DoubleVector.wrap(f1.toArray()), DoubleVector.wrap(f2.toArray())), dist.distance(f1, f2), 0.);
+      }
+    }
+    final int dim = 17, iters = 1000;
+    float[] d1 = new float[dim], d2 = new float[dim];
+    for(int i = 0; i < iters; i++) {
+      for(int d = 0; d < dim; d++) {
+        d1[d] = (float) ((rnd.nextDouble() - .5) * 2E4);
+        d2[d] = (float) ((rnd.nextDouble() - .5) * 2E4);
+      }
+      FloatVector f1 = new FloatVector(d1), f2 = new FloatVector(d2);
+      assertEquals("Float distance differs", dist.distance(DoubleVector.wrap(f1.toArray()), DoubleVector.wrap(f2.toArray())), dist.distance(f1, f2), 0.);
+    }
+  }
+
   /**
    * MBR consistency check, around 0.
    *
@@ -39,5 +39,6 @@ public class CosineDistanceFunctionTest extends AbstractDistanceFunctionTest {
     // Note: some of these are not well defined, as we have zero vectors.
     varyingLengthBasic(0, dist, 1, 1, 1, 1, 1, 1);
     nonnegativeSpatialConsistency(dist);
+    floatConsistency(dist);
   }
 }
@@ -40,5 +40,6 @@ public class SquaredEuclideanDistanceFunctionTest extends AbstractDistanceFuncti
     varyingLengthBasic(0, dist, 1, 0, 1, 1, 2, 1);
     spatialConsistency(dist);
     nonnegativeSpatialConsistency(dist);
+    floatConsistency(dist);
   }
 }
@@ -21,6 +21,9 @@
 package de.lmu.ifi.dbs.elki.distance.distancefunction.strings;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
 
 import org.junit.Test;
 
@@ -65,4 +68,72 @@ public class LevenshteinDistanceFunctionTest extends AbstractDistanceFunctionTes
       assertEquals("Distance does not agree: " + TESTS[i][0] + " <-> " + TESTS[i][1], SCORES[i], (int) f.distance(TESTS[i][0], TESTS[i][1]));
     }
   }
+
+  /**
+   * Compare the bit-parallel and the bounded computation to the classic
+   * dynamic programming, including strings longer than 64 characters.
+   */
+  @Test
+  public void testBitParallel() {
+    Random rnd = new Random(0L);
+    for(int i = 0; i < 2000; i++) {
+      String a = randomString(rnd, rnd.nextInt(200)), b = mutate(rnd, a);
+      final int exp = a.isEmpty() || b.isEmpty() ? Math.max(a.length(), b.length()) : //
+          LevenshteinDistanceFunction.levenshteinDistance(a, b, 0, 0);
+      assertEquals("Distance does not agree: " + a + " <-> " + b, exp, LevenshteinDistanceFunction.levenshteinDistance(a, b));
+      assertEquals("Distance not symmetric: " + a + " <-> " + b, exp, LevenshteinDistanceFunction.levenshteinDistance(b, a));
+      final int max = rnd.nextInt(exp + 2);
+      final int bounded = LevenshteinDistanceFunction.levenshteinDistance(a, b, max);
+      if(exp <= max) {
+        assertEquals("Bounded distance does not agree: " + a + " <-> " + b, exp, bounded);
+      }
+      else {
+        assertTrue("Bounded distance not above maximum: " + a + " <-> " + b, bounded > max);
+      }
+    }
+  }
+
+  /**
+   * Generate a random string over a small alphabet, with some non-ASCII.
+   *
+   * @param rnd Random generator
+   * @param len Length
+   * @return String
+   */
+  private static String randomString(Random rnd, int len) {
+    StringBuilder buf = new StringBuilder(len);
+    for(int i = 0; i < len; i++) {
+      buf.append(rnd.nextInt(20) == 0 ? (char) (0x3b1 + rnd.nextInt(3)) : (char) ('a' + rnd.nextInt(6)));
+    }
+    return buf.toString();
+  }
+
+  /**
+   * Apply random edit operations to a string.
+   *
+   * @param rnd Random generator
+   * @param s Input string
+   * @return Modified string
+   */
+  private static String mutate(Random rnd, String s) {
+    StringBuilder buf = new StringBuilder(s);
+    for(int i = rnd.nextInt(30); i > 0; i--) {
+      final int pos = rnd.nextInt(buf.length() + 1);
+      switch(rnd.nextInt(3)){
+      case 0:
+        buf.insert(pos, (char) ('a' + rnd.nextInt(7)));
+        break;
+      case 1:
+        if(pos < buf.length()) {
+          buf.deleteCharAt(pos);
+        }
+        break;
+      default:
+        if(pos < buf.length()) {
+          buf.setCharAt(pos, (char) ('a' + rnd.nextInt(7)));
+        }
+      }
+    }
+    return buf.toString();
+  }
 }
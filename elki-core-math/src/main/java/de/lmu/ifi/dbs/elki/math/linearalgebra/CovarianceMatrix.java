@@ -405,9 +405,21 @@ public class CovarianceMatrix {
    * @return Covariance matrix
    */
   public static CovarianceMatrix make(Relation<? extends NumberVector> relation, DBIDs ids) {
-    int dim = RelationUtil.dimensionality(relation);
-    CovarianceMatrix c = new CovarianceMatrix(dim);
-    double[] mean = c.mean;
+    return new CovarianceMatrix(RelationUtil.dimensionality(relation)).recompute(relation, ids);
+  }
+
+  /**
+   * Reset the matrix, and compute it from the given objects, reusing the
+   * allocated arrays. This uses the same two-pass approach as
+   * {@link #make(Relation, DBIDs)}.
+   * 
+   * @param relation Relation to use.
+   * @param ids IDs to add
+   * @return This covariance matrix
+   */
+  public CovarianceMatrix recompute(Relation<? extends NumberVector> relation, DBIDs ids) {
+    reset();
+    final int dim = mean.length;
     int count = 0;
     // Compute mean first:
     for(DBIDIter iditer = ids.iter(); iditer.valid(); iditer.advance()) {
@@ -418,7 +430,7 @@ public class CovarianceMatrix {
       count++;
     }
     if(count == 0) {
-      return c;
+      return this;
     }
     // Normalize mean
     for(int i = 0; i < dim; i++) {
@@ -426,8 +438,8 @@ public class CovarianceMatrix {
     }
     // Compute covariances second
     // Two-pass approach is numerically okay and fast, when possible.
-    double[] tmp = c.nmea; // Scratch space
-    double[][] elems = c.elements;
+    double[] tmp = nmea; // Scratch space
+    double[][] elems = elements;
     for(DBIDIter iditer = ids.iter(); iditer.valid(); iditer.advance()) {
       NumberVector vec = relation.get(iditer);
       for(int i = 0; i < dim; i++) {
@@ -445,7 +457,7 @@ public class CovarianceMatrix {
         elems[j][i] = elems[i][j];
       }
     }
-    c.wsum = count;
-    return c;
+    wsum = count;
+    return this;
   }
 }
@@ -0,0 +1,173 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.math.linearalgebra;
+
+import static de.lmu.ifi.dbs.elki.math.linearalgebra.VMath.*;
+
+import java.util.Random;
+
+import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+
+/**
+ * Randomized truncated singular value decomposition, computing only the
+ * leading k singular values and vectors.
+ * <p>
+ * A Gaussian random projection of the column space of the m-by-n matrix A is
+ * refined with a few power (subspace) iterations, and the SVD of the small
+ * projected matrix is then computed with {@link SingularValueDecomposition}.
+ * The cost is O(mnk) instead of O(mn min(m,n)) for the full decomposition.
+ * <p>
+ * For symmetric positive semidefinite matrices such as covariance and Gram
+ * matrixes, the singular values are the eigenvalues, and the columns of V are
+ * the corresponding eigenvectors, so this doubles as a truncated
+ * eigensolver.
+ * <p>
+ * The result is an approximation; its quality depends on the decay of the
+ * spectrum, the oversampling and the number of power iterations. Matrixes of
+ * rank at most k + oversampling are decomposed exactly (up to rounding).
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ */
+@Reference(authors = "N. Halko, P. G. Martinsson, J. A. Tropp", //
+    title = "Finding Structure with Randomness: Probabilistic Algorithms for Constructing Approximate Matrix Decompositions", //
+    booktitle = "SIAM Review 53(2)", //
+    url = "https://doi.org/10.1137/090771806", //
+    bibkey = "DBLP:journals/siamrev/HalkoMT11")
+public class RandomizedSingularValueDecomposition {
+  /**
+   * Default oversampling.
+   */
+  public static final int DEFAULT_OVERSAMPLING = 10;
+
+  /**
+   * Default number of power iterations.
+   */
+  public static final int DEFAULT_ITERATIONS = 2;
+
+  /**
+   * Left singular vectors, m-by-k.
+   */
+  private double[][] U;
+
+  /**
+   * Right singular vectors, n-by-k.
+   */
+  private double[][] V;
+
+  /**
+   * Singular values, descending.
+   */
+  private double[] s;
+
+  /**
+   * Constructor, with default oversampling and power iterations.
+   *
+   * @param A Input matrix
+   * @param k Number of singular values to compute
+   * @param random Random generator
+   */
+  public RandomizedSingularValueDecomposition(double[][] A, int k, Random random) {
+    this(A, k, DEFAULT_OVERSAMPLING, DEFAULT_ITERATIONS, random);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param A Input matrix
+   * @param k Number of singular values to compute
+   * @param oversampling Additional random directions to sample
+   * @param iterations Number of power iterations
+   * @param random Random generator
+   */
+  public RandomizedSingularValueDecomposition(double[][] A, int k, int oversampling, int iterations, Random random) {
+    final int m = A.length, n = getColumnDimensionality(A);
+    final int l = Math.min(k + oversampling, Math.min(m, n));
+    k = Math.min(k, l);
+    // Random test matrix, n-by-l
+    double[][] omega = new double[n][l];
+    for(double[] row : omega) {
+      for(int j = 0; j < l; j++) {
+        row[j] = random.nextGaussian();
+      }
+    }
+    // Orthonormal basis of the range of A * omega, m-by-l
+    double[][] Q = orthonormalize(times(A, omega));
+    // Power iterations, re-orthonormalized for numerical stability.
+    for(int i = 0; i < iterations; i++) {
+      Q = orthonormalize(times(A, orthonormalize(transposeTimes(A, Q))));
+    }
+    // Decompose B^T = (Q^T A)^T, which is n-by-l with n >= l.
+    // B^T = U' S V'^T, hence A ~ Q B = (Q V') S U'^T
+    SingularValueDecomposition svd = new SingularValueDecomposition(transposeTimes(A, Q));
+    final double[] sv = svd.getSingularValues();
+    s = new double[k];
+    System.arraycopy(sv, 0, s, 0, k);
+    U = getMatrix(times(Q, svd.getV()), 0, m, 0, k);
+    V = getMatrix(svd.getU(), 0, n, 0, k);
+  }
+
+  /**
+   * Orthonormalize the columns of a matrix.
+   *
+   * @param Y Matrix, with at least as many rows as columns
+   * @return Orthonormal basis of the column space
+   */
+  private static double[][] orthonormalize(double[][] Y) {
+    return new QRDecomposition(Y).getQ();
+  }
+
+  /**
+   * Return the leading left singular vectors, as columns.
+   *
+   * @return U, m-by-k
+   */
+  public double[][] getU() {
+    return U;
+  }
+
+  /**
+   * Return the leading right singular vectors, as columns.
+   *
+   * @return V, n-by-k
+   */
+  public double[][] getV() {
+    return V;
+  }
+
+  /**
+   * Return the leading singular values, in descending order.
+   *
+   * @return Singular values
+   */
+  public double[] getSingularValues() {
+    return s;
+  }
+
+  /**
+   * Return the diagonal matrix of singular values
+   *
+   * @return S, k-by-k
+   */
+  public double[][] getS() {
+    return diagonal(s);
+  }
+}
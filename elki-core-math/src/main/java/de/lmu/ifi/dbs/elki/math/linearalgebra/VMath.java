@@ -21,6 +21,8 @@
 package de.lmu.ifi.dbs.elki.math.linearalgebra;
 
 import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
 import de.lmu.ifi.dbs.elki.utilities.documentation.Title;
@@ -43,6 +45,28 @@ public final class VMath {
    */
   private static final double DELTA = 1E-5;
 
+  /**
+   * Number of multiply-adds above which matrix products are computed in
+   * parallel.
+   */
+  private static final long PARALLEL_THRESHOLD = 1L << 22;
+
+  /**
+   * Minimum number of multiply-adds in a single parallel task.
+   */
+  private static final long PARALLEL_GRAIN = 1L << 18;
+
+  /**
+   * Block size along the inner dimension of matrix products.
+   */
+  private static final int BLOCK_INNER = 64;
+
+  /**
+   * Block size along the output columns of matrix products; together with
+   * {@link #BLOCK_INNER} this keeps a 64 KB block of the right operand cached.
+   */
+  private static final int BLOCK_COLS = 128;
+
   /**
    * Error message when vector dimensionalities do not agree.
    */
@@ -1298,23 +1322,26 @@ public final class VMath {
     // Optimized implementation, exploiting the storage layout
     assert m2.length == coldim1 : ERR_MATRIX_INNERDIM;
     final double[][] r2 = new double[rowdim1][coldim2];
-    // Optimized ala Jama. jik order.
-    final double[] Bcolj = new double[coldim1];
-    for(int j = 0; j < coldim2; j++) {
-      // Make a linear copy of column j from B
-      for(int k = 0; k < coldim1; k++) {
-        Bcolj[k] = m2[k][j];
-      }
-      // multiply it with each row from A
-      for(int i = 0; i < rowdim1; i++) {
-        final double[] Arowi = m1[i];
-        double s = 0;
-        for(int k = 0; k < coldim1; k++) {
-          s += Arowi[k] * Bcolj[k];
+    // Cache-blocked ikj order. Every entry is still summed in increasing k,
+    // so the result is identical to the naive loop.
+    runRows(rowdim1, (long) coldim1 * coldim2, (start, end) -> {
+      for(int kb = 0; kb < coldim1; kb += BLOCK_INNER) {
+        final int kend = Math.min(kb + BLOCK_INNER, coldim1);
+        for(int jb = 0; jb < coldim2; jb += BLOCK_COLS) {
+          final int jend = Math.min(jb + BLOCK_COLS, coldim2);
+          for(int i = start; i < end; i++) {
+            final double[] Arowi = m1[i], Rrowi = r2[i];
+            for(int k = kb; k < kend; k++) {
+              final double a = Arowi[k];
+              final double[] Browk = m2[k];
+              for(int j = jb; j < jend; j++) {
+                Rrowi[j] += a * Browk[j];
+              }
+            }
+          }
         }
-        r2[i][j] = s;
       }
-    }
+    });
     return r2;
   }
 
@@ -1376,20 +1403,30 @@ public final class VMath {
     final int coldim2 = getColumnDimensionality(m2);
     assert m2.length == rowdim1 : ERR_MATRIX_INNERDIM;
     final double[][] re = new double[coldim1][coldim2];
-    final double[] Bcolj = new double[rowdim1];
-    for(int j = 0; j < coldim2; j++) {
-      // Make a linear copy of column j from B
-      for(int k = 0; k < rowdim1; k++) {
-        Bcolj[k] = m2[k][j];
-      }
-      // multiply it with each row from A
-      for(int i = 0; i < coldim1; i++) {
-        double s = 0;
-        for(int k = 0; k < rowdim1; k++) {
-          s += m1[k][i] * Bcolj[k];
+    // Gram matrix: only compute the upper triangle.
+    final boolean sym = m1 == m2;
+    // Cache-blocked kij order, every entry is summed in increasing k.
+    runRows(coldim1, (long) rowdim1 * coldim2, (start, end) -> {
+      for(int kb = 0; kb < rowdim1; kb += BLOCK_INNER) {
+        final int kend = Math.min(kb + BLOCK_INNER, rowdim1);
+        for(int jb = sym ? start - start % BLOCK_COLS : 0; jb < coldim2; jb += BLOCK_COLS) {
+          final int jend = Math.min(jb + BLOCK_COLS, coldim2);
+          for(int i = start; i < end; i++) {
+            final double[] Rrowi = re[i];
+            final int jstart = sym && i > jb ? i : jb;
+            for(int k = kb; k < kend; k++) {
+              final double a = m1[k][i];
+              final double[] Browk = m2[k];
+              for(int j = jstart; j < jend; j++) {
+                Rrowi[j] += a * Browk[j];
+              }
+            }
+          }
         }
-        re[i][j] = s;
       }
+    });
+    if(sym) {
+      mirrorUpper(re);
     }
     return re;
   }
@@ -1430,19 +1467,30 @@ public final class VMath {
     final int rowdim2 = m2.length;
     assert coldim1 == getColumnDimensionality(m2) : ERR_MATRIX_INNERDIM;
     final double[][] re = new double[rowdim1][rowdim2];
-    for(int j = 0; j < rowdim2; j++) {
-      final double[] Browj = m2[j];
-      // multiply it with each row from A
-      for(int i = 0; i < rowdim1; i++) {
-        final double[] Arowi = m1[i];
-        double s = 0;
-        // assert Arowi.length == coldim1 : ERR_MATRIX_RAGGED;
-        // assert Browj.length == coldim1 : ERR_MATRIX_INNERDIM;
-        for(int k = 0; k < coldim1; k++) {
-          s += Arowi[k] * Browj[k];
+    // Gram matrix: only compute the upper triangle.
+    final boolean sym = m1 == m2;
+    // Block the rows of m2, such that they remain in the cache.
+    final int jblock = Math.max(8, BLOCK_INNER * BLOCK_COLS / Math.max(coldim1, 1));
+    runRows(rowdim1, (long) coldim1 * rowdim2, (start, end) -> {
+      for(int jb = sym ? start - start % jblock : 0; jb < rowdim2; jb += jblock) {
+        final int jend = Math.min(jb + jblock, rowdim2);
+        for(int i = start; i < end; i++) {
+          final double[] Arowi = m1[i], Rrowi = re[i];
+          for(int j = sym && i > jb ? i : jb; j < jend; j++) {
+            final double[] Browj = m2[j];
+            double s = 0;
+            // assert Arowi.length == coldim1 : ERR_MATRIX_RAGGED;
+            // assert Browj.length == coldim1 : ERR_MATRIX_INNERDIM;
+            for(int k = 0; k < coldim1; k++) {
+              s += Arowi[k] * Browj[k];
+            }
+            Rrowi[j] = s;
+          }
         }
-        re[i][j] = s;
       }
+    });
+    if(sym) {
+      mirrorUpper(re);
     }
     return re;
   }
@@ -1887,4 +1935,104 @@ public final class VMath {
     double a = FastMath.sqrt((s / e1) * (s / e2));
     return (a < 1.) ? a : 1.;
   }
+
+  /**
+   * Copy the upper triangle of a square matrix to the lower triangle.
+   *
+   * @param m Matrix
+   */
+  private static void mirrorUpper(double[][] m) {
+    for(int i = 1; i < m.length; i++) {
+      final double[] row = m[i];
+      for(int j = 0; j < i; j++) {
+        row[j] = m[j][i];
+      }
+    }
+  }
+
+  /**
+   * Process the rows of a matrix product, in parallel if the product is large
+   * enough to benefit.
+   *
+   * @param rows Number of output rows
+   * @param rowcost Multiply-adds per output row
+   * @param kernel Kernel to compute a range of rows
+   */
+  private static void runRows(int rows, long rowcost, RowKernel kernel) {
+    if(rows < 2 || rows * rowcost < PARALLEL_THRESHOLD) {
+      kernel.rows(0, rows);
+      return;
+    }
+    final int grain = (int) Math.max(1, PARALLEL_GRAIN / Math.max(rowcost, 1));
+    ForkJoinPool.commonPool().invoke(new RowTask(kernel, 0, rows, grain));
+  }
+
+  /**
+   * Kernel computing a range of output rows.
+   *
+   * @author Erich Schubert
+   */
+  @FunctionalInterface
+  private interface RowKernel {
+    /**
+     * Compute the output rows start (inclusive) to end (exclusive).
+     *
+     * @param start First row
+     * @param end End row
+     */
+    void rows(int start, int end);
+  }
+
+  /**
+   * Fork-join task splitting a row range in halves.
+   *
+   * @author Erich Schubert
+   */
+  private static class RowTask extends RecursiveAction {
+    /**
+     * Serialization version.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Kernel to run.
+     */
+    private final RowKernel kernel;
+
+    /**
+     * Row range.
+     */
+    private final int start, end;
+
+    /**
+     * Minimum number of rows per task.
+     */
+    private final int grain;
+
+    /**
+     * Constructor.
+     *
+     * @param kernel Kernel to run
+     * @param start First row
+     * @param end End row
+     * @param grain Minimum number of rows per task
+     */
+    RowTask(RowKernel kernel, int start, int end, int grain) {
+      super();
+      this.kernel = kernel;
+      this.start = start;
+      this.end = end;
+      this.grain = grain;
+    }
+
+    @Override
+    protected void compute() {
+      if(end - start <= grain) {
+        kernel.rows(start, end);
+        return;
+      }
+      final int mid = (start + end) >>> 1;
+      invokeAll(new RowTask(kernel, start, mid, grain), new RowTask(kernel, mid, end, grain));
+    }
+  }
 }
@@ -85,4 +85,18 @@ public interface CovarianceMatrixBuilder {
   default double[][] processQueryResults(DoubleDBIDList results, Relation<? extends NumberVector> database) {
     return processQueryResults(results, database, results.size());
   }
+
+  /**
+   * Get a builder for exclusive use by a single task, which may reuse work
+   * arrays between calls.
+   * <p>
+   * This is called by the thread distributing the tasks, in a deterministic
+   * order, so builders can draw the random seeds for each task here. Builders
+   * without state can return themselves.
+   * 
+   * @return Builder for a single task
+   */
+  default CovarianceMatrixBuilder worker() {
+    return this;
+  }
 }
@@ -107,6 +107,17 @@ public class PCARunner {
     return new PCAResult(evd);
   }
 
+  /**
+   * Get a PCA runner for exclusive use by a single task, see
+   * {@link CovarianceMatrixBuilder#worker()}.
+   * 
+   * @return PCA runner for a single task
+   */
+  public PCARunner worker() {
+    CovarianceMatrixBuilder worker = covarianceMatrixBuilder.worker();
+    return worker == covarianceMatrixBuilder ? this : new PCARunner(worker);
+  }
+
   /**
    * Get covariance matrix builder.
    * 
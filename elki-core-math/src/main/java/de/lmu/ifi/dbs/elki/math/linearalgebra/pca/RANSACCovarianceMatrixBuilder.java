@@ -109,13 +109,25 @@ public class RANSACCovarianceMatrixBuilder implements CovarianceMatrixBuilder {
   @Override
   public double[][] processIds(DBIDs ids, Relation<? extends NumberVector> relation) {
     final int dim = RelationUtil.dimensionality(relation);
+    return processIds(ids, relation, rnd.getSingleThreadedRandom(), new CovarianceMatrix(dim));
+  }
+
+  /**
+   * Compute the covariance matrix.
+   * 
+   * @param ids a collection of ids
+   * @param relation the relation used
+   * @param random Random generator
+   * @param cv Covariance work matrix
+   * @return Covariance Matrix
+   */
+  protected double[][] processIds(DBIDs ids, Relation<? extends NumberVector> relation, Random random, CovarianceMatrix cv) {
+    final int dim = cv.getDimensionality();
 
     ModifiableDBIDs best = DBIDUtil.newHashSet(),
         support = DBIDUtil.newHashSet();
     double tresh = ChiSquaredDistribution.quantile(0.85, dim);
 
-    CovarianceMatrix cv = new CovarianceMatrix(dim);
-    Random random = rnd.getSingleThreadedRandom();
     for(int i = 0; i < iterations; i++) {
       DBIDs sample = DBIDUtil.randomSample(ids, dim + 1, random);
       cv.reset();
@@ -145,7 +157,57 @@ public class RANSACCovarianceMatrixBuilder implements CovarianceMatrixBuilder {
     }
     // logger.warning("Consensus size: "+best.size()+" of "+ids.size());
     // Fall back to regular PCA if too few samples.
-    return CovarianceMatrix.make(relation, best.size() > dim ? best : ids).destroyToSampleMatrix();
+    return cv.recompute(relation, best.size() > dim ? best : ids).makeSampleMatrix();
+  }
+
+  /**
+   * Get a builder for a single task.
+   * <p>
+   * The random generator of the task is obtained here, in the distributing
+   * thread, so the results do not depend on scheduling.
+   */
+  @Override
+  public CovarianceMatrixBuilder worker() {
+    return new Worker(iterations, rnd, rnd.getSingleThreadedRandom());
+  }
+
+  /**
+   * Builder for a single task, with its own random generator, reusing the
+   * covariance work arrays.
+   * 
+   * @author Erich Schubert
+   */
+  private static class Worker extends RANSACCovarianceMatrixBuilder {
+    /**
+     * Random generator of this task.
+     */
+    private final Random random;
+
+    /**
+     * Work matrix.
+     */
+    private CovarianceMatrix work;
+
+    /**
+     * Constructor.
+     * 
+     * @param iterations Number of iterations (attempts) to try
+     * @param rnd random generator for further workers
+     * @param random random generator of this task
+     */
+    Worker(int iterations, RandomFactory rnd, Random random) {
+      super(iterations, rnd);
+      this.random = random;
+    }
+
+    @Override
+    public double[][] processIds(DBIDs ids, Relation<? extends NumberVector> relation) {
+      final int dim = RelationUtil.dimensionality(relation);
+      if(work == null || work.getDimensionality() != dim) {
+        work = new CovarianceMatrix(dim);
+      }
+      return processIds(ids, relation, random, work);
+    }
   }
 
   /**
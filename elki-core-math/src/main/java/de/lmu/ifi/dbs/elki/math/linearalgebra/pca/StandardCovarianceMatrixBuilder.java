@@ -23,6 +23,7 @@ package de.lmu.ifi.dbs.elki.math.linearalgebra.pca;
 import de.lmu.ifi.dbs.elki.data.NumberVector;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
 import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.database.relation.RelationUtil;
 import de.lmu.ifi.dbs.elki.math.linearalgebra.CovarianceMatrix;
 
 /**
@@ -47,4 +48,30 @@ public class StandardCovarianceMatrixBuilder implements CovarianceMatrixBuilder
   public double[][] processIds(DBIDs ids, Relation<? extends NumberVector> database) {
     return CovarianceMatrix.make(database, ids).destroyToPopulationMatrix();
   }
+
+  @Override
+  public CovarianceMatrixBuilder worker() {
+    return new Worker();
+  }
+
+  /**
+   * Builder for a single task, reusing the covariance work arrays.
+   * 
+   * @author Erich Schubert
+   */
+  private static class Worker extends StandardCovarianceMatrixBuilder {
+    /**
+     * Work matrix.
+     */
+    private CovarianceMatrix work;
+
+    @Override
+    public double[][] processIds(DBIDs ids, Relation<? extends NumberVector> database) {
+      final int dim = RelationUtil.dimensionality(database);
+      if(work == null || work.getDimensionality() != dim) {
+        work = new CovarianceMatrix(dim);
+      }
+      return work.recompute(database, ids).makePopulationMatrix();
+    }
+  }
 }
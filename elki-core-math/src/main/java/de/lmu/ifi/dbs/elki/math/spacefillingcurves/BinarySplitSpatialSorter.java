@@ -22,6 +22,8 @@ package de.lmu.ifi.dbs.elki.math.spacefillingcurves;
 
 import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import de.lmu.ifi.dbs.elki.data.spatial.SpatialComparable;
 import de.lmu.ifi.dbs.elki.utilities.datastructures.QuickSelect;
@@ -38,6 +40,9 @@ import de.lmu.ifi.dbs.elki.utilities.optionhandling.AbstractParameterizer;
  * <em>not</em> be a k-d-tree, not even remotely similar, as the splits are not
  * preserved.
  * <p>
+ * Large data sets are split in parallel, using the fork-join common pool; the
+ * resulting order is the same as with sequential sorting.
+ * <p>
  * Reference (for the bulk-loading):
  * <p>
  * J. L. Bentley<br>
@@ -46,6 +51,8 @@ import de.lmu.ifi.dbs.elki.utilities.optionhandling.AbstractParameterizer;
  *
  * @author Erich Schubert
  * @since 0.5.0
+ *
+ * @has - - - BinarySplitTask
  */
 @Reference(authors = "J. L. Bentley", //
     title = "Multidimensional binary search trees used for associative searching", //
@@ -58,6 +65,11 @@ public class BinarySplitSpatialSorter implements SpatialSorter {
    */
   public static final BinarySplitSpatialSorter STATIC = new BinarySplitSpatialSorter();
 
+  /**
+   * Minimum number of objects for processing partitions in parallel.
+   */
+  private static final int PARALLEL_THRESHOLD = 1 << 15;
+
   /**
    * Constructor, use {@link #STATIC} instead!
    */
@@ -68,7 +80,11 @@ public class BinarySplitSpatialSorter implements SpatialSorter {
   @Override
   public void sort(List<? extends SpatialComparable> objs, int start, int end, double[] minmax, int[] dims) {
     final int numdim = (dims != null) ? dims.length : (minmax.length >>> 1);
-    binarySplitSort(objs, start, end, 0, numdim, dims, new Sorter(0));
+    if(end - start < PARALLEL_THRESHOLD) {
+      binarySplitSort(objs, start, end, 0, numdim, dims, new Sorter(0));
+      return;
+    }
+    ForkJoinPool.commonPool().invoke(new BinarySplitTask(objs, start, end, 0, numdim, dims));
   }
 
   /**
@@ -83,7 +99,7 @@ public class BinarySplitSpatialSorter implements SpatialSorter {
    * @param dims Dimension indexes to sort by.
    * @param comp Comparator to use
    */
-  private void binarySplitSort(List<? extends SpatialComparable> objs, final int start, final int end, int depth, final int numdim, int[] dims, Sorter comp) {
+  protected void binarySplitSort(List<? extends SpatialComparable> objs, final int start, final int end, int depth, final int numdim, int[] dims, Sorter comp) {
     final int mid = start + ((end - start) >>> 1);
     // Make invariant
     comp.setDimension(dims != null ? dims[depth] : depth);
@@ -98,13 +114,76 @@ public class BinarySplitSpatialSorter implements SpatialSorter {
     }
   }
 
+  /**
+   * Parallel binary splitting of large partitions: the two halves are disjoint,
+   * and can be sorted independently; small partitions are sorted sequentially
+   * with {@link #binarySplitSort}, so that the result is identical to
+   * sequential sorting.
+   *
+   * @author Erich Schubert
+   */
+  private class BinarySplitTask extends RecursiveAction {
+    /**
+     * Serialization version.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Objects to sort.
+     */
+    private List<? extends SpatialComparable> objs;
+
+    /**
+     * Interval to sort, recursion depth, and number of dimensions.
+     */
+    private int start, end, depth, numdim;
+
+    /**
+     * Dimension indexes to sort by.
+     */
+    private int[] dims;
+
+    /**
+     * Constructor.
+     *
+     * @param objs List of objects
+     * @param start Interval start
+     * @param end Interval end (exclusive)
+     * @param depth Recursion depth
+     * @param numdim Number of dimensions
+     * @param dims Dimension indexes to sort by.
+     */
+    BinarySplitTask(List<? extends SpatialComparable> objs, int start, int end, int depth, int numdim, int[] dims) {
+      this.objs = objs;
+      this.start = start;
+      this.end = end;
+      this.depth = depth;
+      this.numdim = numdim;
+      this.dims = dims;
+    }
+
+    @Override
+    protected void compute() {
+      if(end - start < PARALLEL_THRESHOLD) {
+        binarySplitSort(objs, start, end, depth, numdim, dims, new Sorter(0));
+        return;
+      }
+      final int mid = start + ((end - start) >>> 1);
+      QuickSelect.quickSelect(objs, new Sorter(dims != null ? dims[depth] : depth), start, end, mid);
+      final int nextdim = (depth + 1) % numdim;
+      // Both halves are large enough to be non-trivial here.
+      invokeAll(new BinarySplitTask(objs, start, mid, nextdim, numdim, dims), //
+          new BinarySplitTask(objs, mid + 1, end, nextdim, numdim, dims));
+    }
+  }
+
   /**
    * Comparator for sorting spatial objects by the mean value in a single
    * dimension.
    * 
    * @author Erich Schubert
    */
-  private static class Sorter implements Comparator<SpatialComparable> {
+  protected static class Sorter implements Comparator<SpatialComparable> {
     /**
      * Current dimension.
      */
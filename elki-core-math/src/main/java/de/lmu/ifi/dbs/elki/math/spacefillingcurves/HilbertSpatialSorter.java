@@ -20,8 +20,7 @@
  */
 package de.lmu.ifi.dbs.elki.math.spacefillingcurves;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.List;
 
 import de.lmu.ifi.dbs.elki.data.spatial.SpatialComparable;
@@ -33,7 +32,8 @@ import de.lmu.ifi.dbs.elki.utilities.optionhandling.AbstractParameterizer;
  * Sort object along the Hilbert Space Filling curve by mapping them to their
  * Hilbert numbers and sorting them.
  * <p>
- * Objects are mapped using 31 bits per dimension.
+ * Objects are mapped using 31 bits per dimension. For large data sets, the
+ * Hilbert numbers are computed and sorted in parallel.
  * <p>
  * Reference:
  * <p>
@@ -57,6 +57,11 @@ public class HilbertSpatialSorter implements SpatialSorter {
    */
   public static final HilbertSpatialSorter STATIC = new HilbertSpatialSorter();
 
+  /**
+   * Minimum number of objects for computing the Hilbert numbers in parallel.
+   */
+  private static final int PARALLEL_THRESHOLD = 1 << 15;
+
   /**
    * Constructor, use {@link #STATIC} instead.
    */
@@ -67,26 +72,45 @@ public class HilbertSpatialSorter implements SpatialSorter {
   @Override
   public void sort(List<? extends SpatialComparable> objs, int start, int end, double[] minmax, int[] dims) {
     final int dim = (dims != null) ? dims.length : (minmax.length >> 1);
-    List<HilbertRef> tmp = new ArrayList<>(end - start);
-    int[] buf = new int[dim];
-    for(int i = start; i < end; i++) {
-      SpatialComparable v = objs.get(i);
-      // Convert into integers
-      for(int d = 0; d < dim; d++) {
-        final int ed = (dims != null) ? dims[d] : d, ed2 = ed << 1;
-        double val = (v.getMin(ed) + v.getMax(ed)) * .5;
-        val = Integer.MAX_VALUE * ((val - minmax[ed2]) / (minmax[ed2 + 1] - minmax[ed2]));
-        buf[d] = (int) val;
+    final HilbertRef[] tmp = new HilbertRef[end - start];
+    if(tmp.length < PARALLEL_THRESHOLD) {
+      int[] buf = new int[dim];
+      for(int i = 0; i < tmp.length; i++) {
+        tmp[i] = makeRef(objs.get(start + i), minmax, dims, buf);
       }
-      tmp.add(new HilbertRef(v, coordinatesToHilbert(buf, Integer.SIZE - 1, 1)));
+      Arrays.sort(tmp);
+    }
+    else {
+      // Hilbert numbers are independent, and the sort is stable.
+      Arrays.parallelSetAll(tmp, i -> makeRef(objs.get(start + i), minmax, dims, new int[dim]));
+      Arrays.parallelSort(tmp);
     }
-    // Sort and copy back
-    Collections.sort(tmp);
+    // Copy back
     @SuppressWarnings("unchecked") // Hack, to allow reordering.
     List<SpatialComparable> cobjs = (List<SpatialComparable>) objs;
     for(int i = start; i < end; i++) {
-      cobjs.set(i, tmp.get(i - start).vec);
+      cobjs.set(i, tmp[i - start].vec);
+    }
+  }
+
+  /**
+   * Compute the Hilbert number of an object.
+   *
+   * @param v Object
+   * @param minmax Array with dim pairs of (min, max) of value ranges
+   * @param dims Dimensions to sort by, may be {@code null}
+   * @param buf Buffer of length dimensionality
+   * @return Reference, with Hilbert number
+   */
+  private static HilbertRef makeRef(SpatialComparable v, double[] minmax, int[] dims, int[] buf) {
+    // Convert into integers
+    for(int d = 0; d < buf.length; d++) {
+      final int ed = (dims != null) ? dims[d] : d, ed2 = ed << 1;
+      double val = (v.getMin(ed) + v.getMax(ed)) * .5;
+      val = Integer.MAX_VALUE * ((val - minmax[ed2]) / (minmax[ed2 + 1] - minmax[ed2]));
+      buf[d] = (int) val;
     }
+    return new HilbertRef(v, coordinatesToHilbert(buf, Integer.SIZE - 1, 1));
   }
 
   /**
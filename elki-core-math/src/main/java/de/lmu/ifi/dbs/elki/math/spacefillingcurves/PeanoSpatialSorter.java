@@ -22,7 +22,10 @@ package de.lmu.ifi.dbs.elki.math.spacefillingcurves;
 
 import static de.lmu.ifi.dbs.elki.math.spacefillingcurves.ZCurveSpatialSorter.pivotizeList1D;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import de.lmu.ifi.dbs.elki.data.spatial.SpatialComparable;
 import de.lmu.ifi.dbs.elki.utilities.datastructures.BitsUtil;
@@ -61,6 +64,9 @@ import de.lmu.ifi.dbs.elki.utilities.optionhandling.AbstractParameterizer;
  * 
  * and so on.
  * <p>
+ * Large data sets are split in parallel, using the fork-join common pool; the
+ * resulting order is the same as with sequential sorting.
+ * <p>
  * Reference:
  * <p>
  * G. Peano<br>
@@ -69,6 +75,8 @@ import de.lmu.ifi.dbs.elki.utilities.optionhandling.AbstractParameterizer;
  *
  * @author Erich Schubert
  * @since 0.5.0
+ *
+ * @has - - - PeanoSortTask
  */
 @Reference(authors = "G. Peano", //
     title = "Sur une courbe, qui remplit toute une aire plane", //
@@ -81,6 +89,11 @@ public class PeanoSpatialSorter implements SpatialSorter {
    */
   public static final PeanoSpatialSorter STATIC = new PeanoSpatialSorter();
 
+  /**
+   * Minimum number of objects for processing partitions in parallel.
+   */
+  private static final int PARALLEL_THRESHOLD = 1 << 15;
+
   /**
    * Constructor, use {@link #STATIC} instead.
    */
@@ -90,7 +103,11 @@ public class PeanoSpatialSorter implements SpatialSorter {
 
   @Override
   public void sort(List<? extends SpatialComparable> objs, int start, int end, double[] minmax, int[] dims) {
-    peanoSort(objs, start, end, minmax, dims, 0, BitsUtil.zero(minmax.length >> 1), false);
+    if(end - start < PARALLEL_THRESHOLD) {
+      peanoSort(objs, start, end, minmax, dims, 0, BitsUtil.zero(minmax.length >> 1), false);
+      return;
+    }
+    ForkJoinPool.commonPool().invoke(new PeanoSortTask(objs, start, end, minmax.clone(), dims, 0, BitsUtil.zero(minmax.length >> 1), false));
   }
 
   /**
@@ -161,6 +178,132 @@ public class PeanoSpatialSorter implements SpatialSorter {
     mms[2 * edim + 1] = max;
   }
 
+  /**
+   * Parallel Peano sorting of large partitions: the three parts are disjoint,
+   * and can be sorted independently; small partitions are sorted sequentially
+   * with {@link #peanoSort}, so that the result is identical to sequential
+   * sorting.
+   *
+   * @author Erich Schubert
+   */
+  private class PeanoSortTask extends RecursiveAction {
+    /**
+     * Serialization version.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Objects to sort.
+     */
+    private List<? extends SpatialComparable> objs;
+
+    /**
+     * Range to sort, and current dimension.
+     */
+    private int start, end, depth;
+
+    /**
+     * Min-Max value ranges (private copy).
+     */
+    private double[] mms;
+
+    /**
+     * Dimensions to process.
+     */
+    private int[] dims;
+
+    /**
+     * Bit set for inversions (private copy).
+     */
+    private long[] bits;
+
+    /**
+     * Current ordering.
+     */
+    private boolean desc;
+
+    /**
+     * Constructor.
+     *
+     * @param objs Objects
+     * @param start Start index
+     * @param end End
+     * @param mms Minmax values, will be modified
+     * @param dims Dimensions index
+     * @param depth Dimension
+     * @param bits Bit set for inversions, will be modified
+     * @param desc Current ordering
+     */
+    PeanoSortTask(List<? extends SpatialComparable> objs, int start, int end, double[] mms, int[] dims, int depth, long[] bits, boolean desc) {
+      this.objs = objs;
+      this.start = start;
+      this.end = end;
+      this.mms = mms;
+      this.dims = dims;
+      this.depth = depth;
+      this.bits = bits;
+      this.desc = desc;
+    }
+
+    @Override
+    protected void compute() {
+      if(end - start < PARALLEL_THRESHOLD) {
+        peanoSort(objs, start, end, mms, dims, depth, bits, desc);
+        return;
+      }
+      final int numdim = (dims != null) ? dims.length : (mms.length >> 1);
+      final int edim = (dims != null) ? dims[depth] : depth;
+      final double min = mms[2 * edim], max = mms[2 * edim + 1];
+      final double tfirst = (min + min + max) / 3.;
+      final double tsecond = (min + max + max) / 3.;
+      if(max - tsecond < 1E-10 || tsecond - tfirst < 1E-10 || tfirst - min < 1E-10) {
+        boolean ok = false;
+        for(int d = 0; d < numdim; d++) {
+          int d2 = ((dims != null) ? dims[d] : d) << 1;
+          if(mms[d2 + 1] - mms[d2] >= 1E-10) {
+            ok = true;
+            break;
+          }
+        }
+        if(!ok) {
+          return;
+        }
+      }
+      final boolean inv = BitsUtil.get(bits, edim) ^ desc;
+      int fsplit, ssplit;
+      if(!inv) {
+        fsplit = pivotizeList1D(objs, start, end, edim, tfirst, false);
+        ssplit = (fsplit < end - 1) ? pivotizeList1D(objs, fsplit, end, edim, tsecond, false) : fsplit;
+      }
+      else {
+        fsplit = pivotizeList1D(objs, start, end, edim, tsecond, true);
+        ssplit = (fsplit < end - 1) ? pivotizeList1D(objs, fsplit, end, edim, tfirst, true) : fsplit;
+      }
+      int nextdim = (depth + 1) % numdim;
+      List<PeanoSortTask> tasks = new ArrayList<>(3);
+      if(start < fsplit - 1) {
+        double[] cmms = mms.clone();
+        cmms[2 * edim] = !inv ? min : tsecond;
+        cmms[2 * edim + 1] = !inv ? tfirst : max;
+        tasks.add(new PeanoSortTask(objs, start, fsplit, cmms, dims, nextdim, bits.clone(), desc));
+      }
+      if(fsplit < ssplit - 1) {
+        double[] cmms = mms.clone();
+        cmms[2 * edim] = tfirst;
+        cmms[2 * edim + 1] = tsecond;
+        long[] cbits = bits.clone();
+        BitsUtil.flipI(cbits, edim);
+        tasks.add(new PeanoSortTask(objs, fsplit, ssplit, cmms, dims, nextdim, cbits, !desc));
+      }
+      if(ssplit < end - 1) {
+        mms[2 * edim] = !inv ? tsecond : min;
+        mms[2 * edim + 1] = !inv ? max : tfirst;
+        tasks.add(new PeanoSortTask(objs, ssplit, end, mms, dims, nextdim, bits, desc));
+      }
+      invokeAll(tasks);
+    }
+  }
+
   /**
    * Parameterization class.
    * 
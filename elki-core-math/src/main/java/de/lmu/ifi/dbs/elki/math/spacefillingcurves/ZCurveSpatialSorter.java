@@ -21,6 +21,8 @@
 package de.lmu.ifi.dbs.elki.math.spacefillingcurves;
 
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import de.lmu.ifi.dbs.elki.data.spatial.SpatialComparable;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.AbstractParameterizer;
@@ -28,9 +30,14 @@ import de.lmu.ifi.dbs.elki.utilities.optionhandling.AbstractParameterizer;
 /**
  * Class to sort the data set by their Z-index, without doing a full
  * materialization of the Z indexes.
+ * <p>
+ * Large data sets are split in parallel, using the fork-join common pool; the
+ * resulting order is the same as with sequential sorting.
  * 
  * @author Erich Schubert
  * @since 0.5.0
+ *
+ * @has - - - ZSortTask
  */
 public class ZCurveSpatialSorter implements SpatialSorter {
   /**
@@ -43,6 +50,11 @@ public class ZCurveSpatialSorter implements SpatialSorter {
    */
   private static final double STOPVAL = 1E-10;
 
+  /**
+   * Minimum number of objects for processing partitions in parallel.
+   */
+  private static final int PARALLEL_THRESHOLD = 1 << 15;
+
   /**
    * Constructor, use {@link #STATIC} instead.
    */
@@ -52,7 +64,11 @@ public class ZCurveSpatialSorter implements SpatialSorter {
 
   @Override
   public void sort(List<? extends SpatialComparable> objs, int start, int end, double[] minmax, int[] dims) {
-    zSort(objs, start, end, minmax, dims, 0);
+    if(end - start < PARALLEL_THRESHOLD) {
+      zSort(objs, start, end, minmax, dims, 0);
+      return;
+    }
+    ForkJoinPool.commonPool().invoke(new ZSortTask(objs, start, end, minmax.clone(), dims, 0));
   }
 
   /**
@@ -103,6 +119,102 @@ public class ZCurveSpatialSorter implements SpatialSorter {
     mms[2 * edim + 1] = max;
   }
 
+  /**
+   * Parallel Z sorting of large partitions: as the two halves are disjoint, they
+   * can be sorted independently; small partitions are sorted sequentially with
+   * {@link #zSort}, so that the result is identical to sequential sorting.
+   *
+   * @author Erich Schubert
+   */
+  private class ZSortTask extends RecursiveAction {
+    /**
+     * Serialization version.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Objects to sort.
+     */
+    private List<? extends SpatialComparable> objs;
+
+    /**
+     * Range to sort, and current dimension.
+     */
+    private int start, end, depth;
+
+    /**
+     * Min-Max value ranges (private copy).
+     */
+    private double[] mms;
+
+    /**
+     * Dimensions to process.
+     */
+    private int[] dims;
+
+    /**
+     * Constructor.
+     *
+     * @param objs Objects to sort
+     * @param start Start
+     * @param end End
+     * @param mms Min-Max value ranges, will be modified
+     * @param dims Dimensions to process
+     * @param depth Current dimension
+     */
+    ZSortTask(List<? extends SpatialComparable> objs, int start, int end, double[] mms, int[] dims, int depth) {
+      this.objs = objs;
+      this.start = start;
+      this.end = end;
+      this.mms = mms;
+      this.dims = dims;
+      this.depth = depth;
+    }
+
+    @Override
+    protected void compute() {
+      if(end - start < PARALLEL_THRESHOLD) {
+        zSort(objs, start, end, mms, dims, depth);
+        return;
+      }
+      final int numdim = (dims != null) ? dims.length : (mms.length >> 1);
+      final int edim = (dims != null) ? dims[depth] : depth;
+      final double min = mms[2 * edim], max = mms[2 * edim + 1];
+      double spos = (min + max) / 2.;
+      if(max - spos < STOPVAL || spos - min < STOPVAL) {
+        boolean ok = false;
+        for(int d = 0; d < numdim; d++) {
+          int d2 = ((dims != null) ? dims[d] : d) << 1;
+          if(mms[d2 + 1] - mms[d2] >= STOPVAL) {
+            ok = true;
+            break;
+          }
+        }
+        if(!ok) {
+          return;
+        }
+      }
+      int split = pivotizeList1D(objs, start, end, edim, spos, false);
+      int nextdim = (depth + 1) % numdim;
+      ZSortTask left = null, right = null;
+      if(start < split - 1) {
+        double[] lmms = mms.clone();
+        lmms[2 * edim + 1] = spos;
+        left = new ZSortTask(objs, start, split, lmms, dims, nextdim);
+      }
+      if(split < end - 1) {
+        mms[2 * edim] = spos;
+        right = new ZSortTask(objs, split, end, mms, dims, nextdim);
+      }
+      if(left != null && right != null) {
+        invokeAll(left, right);
+      }
+      else if(left != null || right != null) {
+        (left != null ? left : right).compute();
+      }
+    }
+  }
+
   /**
    * "Pivotize" the list, such that all elements before the given position are
    * less than, all elements after the position are larger than the threshold
@@ -65,6 +65,21 @@ public class KolmogorovSmirnovTest implements GoodnessOfFitTest {
    * @return the largest difference between both functions
    */
   public static double calculateTestStatistic(double[] sample1, double[] sample2) {
+    return calculateTestStatistic(sample1, sample1.length, sample2, sample2.length);
+  }
+
+  /**
+   * Calculates the maximum distance between the two empirical CDFs of two data
+   * samples, using only a prefix of each array. The sample positions and CDFs
+   * must be synchronized!
+   * 
+   * @param sample1 first data sample positions
+   * @param len1 number of values to use from the first sample
+   * @param sample2 second data sample positions
+   * @param len2 number of values to use from the second sample
+   * @return the largest difference between both functions
+   */
+  public static double calculateTestStatistic(double[] sample1, int len1, double[] sample2, int len2) {
     double maximum = 0.0;
 
     int index1 = 0, index2 = 0;
@@ -72,26 +87,26 @@ public class KolmogorovSmirnovTest implements GoodnessOfFitTest {
 
     // Parallel iteration over both curves. We can stop if we reach either end,
     // As the difference can then only decrease!
-    while (index1 < sample1.length && index2 < sample2.length) {
+    while (index1 < len1 && index2 < len2) {
       // Next (!) positions
       final double x1 = sample1[index1], x2 = sample2[index2];
       // Advance on first curve
       if (x1 <= x2) {
         index1++;
         // Handle multiple points with same x:
-        while (index1 < sample1.length && sample1[index1] == x1) {
+        while (index1 < len1 && sample1[index1] == x1) {
           index1++;
         }
-        cdf1 = ((double) index1 + 1.) / (sample1.length + 1.);
+        cdf1 = ((double) index1 + 1.) / (len1 + 1.);
       }
       // Advance on second curve
       if (x1 >= x2) {
         index2++;
         // Handle multiple points with same x:
-        while (index2 < sample2.length && sample2[index2] == x2) {
+        while (index2 < len2 && sample2[index2] == x2) {
           index2++;
         }
-        cdf2 = ((double) index2 + 1.) / (sample2.length + 1.);
+        cdf2 = ((double) index2 + 1.) / (len2 + 1.);
       }
       maximum = Math.max(maximum, Math.abs(cdf1 - cdf2));
     }
@@ -158,6 +158,15 @@ public final class LUDecompositionTest {
     assertTrue("Not solved.", almostEquals(unitMatrix(3), times(p, o3), 1e-14));
   }
 
+  @Test
+  public void testInverse() {
+    // Partial pivoting permutes the rows in a cycle of length 3 here.
+    double[][] p = { { 1., 2., 0. }, { 3., 4., 1. }, { 0., 1., 5. } };
+    double[][] inv = new LUDecomposition(p).inverse();
+    assertTrue("Not inverted.", almostEquals(unitMatrix(3), times(p, inv), 1e-14));
+    assertTrue("Not inverted.", almostEquals(unitMatrix(3), times(inv, p), 1e-14));
+  }
+
   @Test
   public void testWikipediaQR() {
     double[][] M = { //
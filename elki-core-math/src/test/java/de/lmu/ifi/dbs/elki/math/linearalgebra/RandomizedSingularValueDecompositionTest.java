@@ -0,0 +1,103 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.math.linearalgebra;
+
+import static de.lmu.ifi.dbs.elki.math.linearalgebra.VMath.*;
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Test the randomized truncated singular value decomposition against the full
+ * decompositions.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ */
+public class RandomizedSingularValueDecompositionTest {
+  /**
+   * Generate a random matrix.
+   *
+   * @param r Random generator
+   * @param m Rows
+   * @param n Columns
+   * @return Matrix
+   */
+  private static double[][] randomMatrix(Random r, int m, int n) {
+    double[][] a = new double[m][n];
+    for(double[] row : a) {
+      for(int j = 0; j < n; j++) {
+        row[j] = r.nextGaussian();
+      }
+    }
+    return a;
+  }
+
+  @Test
+  public void testLowRank() {
+    Random r = new Random(0L);
+    // Rank 5 matrix, decomposed exactly:
+    double[][] a = times(randomMatrix(r, 200, 5), randomMatrix(r, 5, 60));
+    RandomizedSingularValueDecomposition rsvd = new RandomizedSingularValueDecomposition(a, 5, new Random(1L));
+    double[] ref = new SingularValueDecomposition(a).getSingularValues();
+    double[] s = rsvd.getSingularValues();
+    assertEquals(5, s.length);
+    for(int i = 0; i < s.length; i++) {
+      assertEquals("Singular value " + i, ref[i], s[i], 1e-10 * ref[0]);
+    }
+    double[][] a2 = times(rsvd.getU(), timesTranspose(rsvd.getS(), rsvd.getV()));
+    assertTrue("Not a proper decomposition.", almostEquals(a, a2, 1e-10 * ref[0]));
+    // Orthonormal singular vectors:
+    assertTrue(almostEquals(unitMatrix(5), transposeTimes(rsvd.getU(), rsvd.getU()), 1e-12));
+    assertTrue(almostEquals(unitMatrix(5), transposeTimes(rsvd.getV(), rsvd.getV()), 1e-12));
+  }
+
+  @Test
+  public void testCovarianceEigenvalues() {
+    Random r = new Random(0L);
+    // Data with a decaying spectrum:
+    double[][] data = randomMatrix(r, 500, 40);
+    for(double[] row : data) {
+      for(int j = 0; j < row.length; j++) {
+        row[j] *= Math.pow(.7, j);
+      }
+    }
+    double[][] cov = transposeTimes(data, data);
+    EigenvalueDecomposition evd = new EigenvalueDecomposition(cov);
+    // Eigenvalues are sorted descending:
+    double[] ev = evd.getRealEigenvalues();
+    double[][] evec = evd.getV();
+    RandomizedSingularValueDecomposition rsvd = new RandomizedSingularValueDecomposition(cov, 3, new Random(1L));
+    double[] s = rsvd.getSingularValues();
+    double[][] v = rsvd.getV();
+    for(int i = 0; i < 3; i++) {
+      assertEquals("Eigenvalue " + i, ev[i], s[i], 1e-8 * ev[i]);
+      // Eigenvectors agree up to the sign:
+      double dot = 0;
+      for(int j = 0; j < v.length; j++) {
+        dot += v[j][i] * evec[j][i];
+      }
+      assertEquals("Eigenvector " + i, 1., Math.abs(dot), 1e-8);
+    }
+  }
+}
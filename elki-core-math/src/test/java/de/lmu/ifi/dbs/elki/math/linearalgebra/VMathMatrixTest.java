@@ -24,6 +24,9 @@ import static de.lmu.ifi.dbs.elki.math.linearalgebra.VMath.*;
 import static de.lmu.ifi.dbs.elki.math.linearalgebra.VMathOperationsTest.assertDimensionMismatch;
 import static org.junit.Assert.*;
 
+import java.util.Arrays;
+import java.util.Random;
+
 import org.junit.Test;
 
 /**
@@ -250,6 +253,45 @@ public class VMathMatrixTest {
     assertTrue(almostEquals(transposeTimes(m3, m4), transposeTimesTranspose(m3, m4_t)));
   }
 
+  /**
+   * Testing the blocked and parallel matrix products against the plain dot
+   * products. Results must be identical, not just approximately.
+   */
+  @Test
+  public void testLargeMatrixMultiplication() {
+    final Random r = new Random(0L);
+    final double[][] m1 = new double[301][173], m2 = new double[173][257];
+    for(double[] row : m1) {
+      for(int i = 0; i < row.length; i++) {
+        row[i] = r.nextGaussian();
+      }
+    }
+    for(double[] row : m2) {
+      for(int i = 0; i < row.length; i++) {
+        row[i] = r.nextGaussian();
+      }
+    }
+    final double[][] m1_t = transpose(m1), m2_t = transpose(m2);
+
+    final double[][] prod = times(m1, m2);
+    assertEquals(m1.length, prod.length);
+    for(int i = 0; i < m1.length; i++) {
+      for(int j = 0; j < m2_t.length; j++) {
+        assertEquals(transposeTimes(m1[i], m2_t[j]), prod[i][j], 0.);
+      }
+    }
+    assertTrue(Arrays.deepEquals(prod, transposeTimes(m1_t, m2)));
+    assertTrue(Arrays.deepEquals(prod, timesTranspose(m1, m2_t)));
+
+    // Gram matrixes, which only compute one triangle:
+    final double[][] gram = transposeTimes(m1, m1);
+    assertTrue(Arrays.deepEquals(gram, transposeTimes(m1, copy(m1))));
+    assertTrue(Arrays.deepEquals(gram, transpose(gram)));
+    final double[][] gram2 = timesTranspose(m1, m1);
+    assertTrue(Arrays.deepEquals(gram2, timesTranspose(m1, copy(m1))));
+    assertTrue(Arrays.deepEquals(gram2, transpose(gram2)));
+  }
+
   /**
    * Testing the Matrix times Vector multiplications methods of VMath class.
    *
@@ -21,6 +21,7 @@
 package de.lmu.ifi.dbs.elki.math.spacefillingcurves;
 
 import static de.lmu.ifi.dbs.elki.math.spacefillingcurves.ZCurveSpatialSorterTest.assertSameOrder;
+import static de.lmu.ifi.dbs.elki.math.spacefillingcurves.ZCurveSpatialSorterTest.randomData;
 import static de.lmu.ifi.dbs.elki.math.spacefillingcurves.ZCurveSpatialSorterTest.shuffle;
 
 import java.util.ArrayList;
@@ -66,4 +67,13 @@ public class BinarySplitSpatialSorterTest {
     BinarySplitSpatialSorter.STATIC.sort(x);
     assertSameOrder("Binary split order incorrect", vs, x);
   }
+
+  @Test
+  public void testParallel() {
+    ArrayList<V> x = randomData(100000, 3, new Random(0L));
+    ArrayList<V> vs = new ArrayList<>(x);
+    BinarySplitSpatialSorter.STATIC.binarySplitSort(vs, 0, vs.size(), 0, 3, null, new BinarySplitSpatialSorter.Sorter(0));
+    BinarySplitSpatialSorter.STATIC.sort(x);
+    assertSameOrder("Parallel binary split order differs", vs, x);
+  }
 }
@@ -21,14 +21,17 @@
 package de.lmu.ifi.dbs.elki.math.spacefillingcurves;
 
 import static de.lmu.ifi.dbs.elki.math.spacefillingcurves.ZCurveSpatialSorterTest.assertSameOrder;
+import static de.lmu.ifi.dbs.elki.math.spacefillingcurves.ZCurveSpatialSorterTest.randomData;
 import static de.lmu.ifi.dbs.elki.math.spacefillingcurves.ZCurveSpatialSorterTest.shuffle;
 
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.Random;
 
 import org.junit.Test;
 
 import de.lmu.ifi.dbs.elki.math.spacefillingcurves.ZCurveSpatialSorterTest.V;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.BitsUtil;
 
 /**
  * Class to unit test the Hilbert curve based spatial sorter.
@@ -62,4 +65,23 @@ public class HilbertSpatialSorterTest {
     HilbertSpatialSorter.STATIC.sort(x);
     assertSameOrder("Hilbert order incorrect", vs, x);
   }
+
+  @Test
+  public void testParallel() {
+    ArrayList<V> x = randomData(100000, 3, new Random(0L));
+    ArrayList<V> vs = new ArrayList<>(x);
+    // Sequential reference implementation:
+    double[] mm = SpatialSorter.computeMinMax(vs);
+    IdentityHashMap<V, long[]> keys = new IdentityHashMap<>(vs.size());
+    int[] buf = new int[3];
+    for(V v : vs) {
+      for(int d = 0; d < 3; d++) {
+        buf[d] = (int) (Integer.MAX_VALUE * ((v.data[d] - mm[d << 1]) / (mm[(d << 1) + 1] - mm[d << 1])));
+      }
+      keys.put(v, HilbertSpatialSorter.coordinatesToHilbert(buf, Integer.SIZE - 1, 1));
+    }
+    vs.sort((a, b) -> BitsUtil.compare(keys.get(a), keys.get(b)));
+    HilbertSpatialSorter.STATIC.sort(x);
+    assertSameOrder("Parallel Hilbert order differs", vs, x);
+  }
 }
@@ -21,6 +21,7 @@
 package de.lmu.ifi.dbs.elki.math.spacefillingcurves;
 
 import static de.lmu.ifi.dbs.elki.math.spacefillingcurves.ZCurveSpatialSorterTest.assertSameOrder;
+import static de.lmu.ifi.dbs.elki.math.spacefillingcurves.ZCurveSpatialSorterTest.randomData;
 import static de.lmu.ifi.dbs.elki.math.spacefillingcurves.ZCurveSpatialSorterTest.shuffle;
 
 import java.util.ArrayList;
@@ -29,6 +30,7 @@ import java.util.Random;
 import org.junit.Test;
 
 import de.lmu.ifi.dbs.elki.math.spacefillingcurves.ZCurveSpatialSorterTest.V;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.BitsUtil;
 
 /**
  * Class to unit test the Peano curve based spatial sorter.
@@ -58,4 +60,13 @@ public class PeanoSpatialSorterTest {
     PeanoSpatialSorter.STATIC.sort(x);
     assertSameOrder("Peano order incorrect", vs, x);
   }
+
+  @Test
+  public void testParallel() {
+    ArrayList<V> x = randomData(100000, 3, new Random(0L));
+    ArrayList<V> vs = new ArrayList<>(x);
+    PeanoSpatialSorter.STATIC.peanoSort(vs, 0, vs.size(), SpatialSorter.computeMinMax(vs), null, 0, BitsUtil.zero(3), false);
+    PeanoSpatialSorter.STATIC.sort(x);
+    assertSameOrder("Parallel Peano order differs", vs, x);
+  }
 }
@@ -64,6 +64,35 @@ public class ZCurveSpatialSorterTest {
     assertSameOrder("Z-order incorrect", vs, x);
   }
 
+  @Test
+  public void testParallel() {
+    ArrayList<V> x = randomData(100000, 3, new Random(0L));
+    ArrayList<V> vs = new ArrayList<>(x);
+    ZCurveSpatialSorter.STATIC.zSort(vs, 0, vs.size(), SpatialSorter.computeMinMax(vs), null, 0);
+    ZCurveSpatialSorter.STATIC.sort(x);
+    assertSameOrder("Parallel Z-order differs", vs, x);
+  }
+
+  /**
+   * Generate random data.
+   *
+   * @param size Number of objects
+   * @param dim Dimensionality
+   * @param rnd Random generator
+   * @return Data
+   */
+  public static ArrayList<V> randomData(int size, int dim, Random rnd) {
+    ArrayList<V> x = new ArrayList<>(size);
+    for(int i = 0; i < size; i++) {
+      double[] v = new double[dim];
+      for(int d = 0; d < dim; d++) {
+        v[d] = rnd.nextDouble();
+      }
+      x.add(new V(v));
+    }
+    return x;
+  }
+
   /**
    * Compare two lists for the same order.
    * 
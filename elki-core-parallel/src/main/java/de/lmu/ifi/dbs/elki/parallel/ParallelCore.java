@@ -82,6 +82,19 @@ public class ParallelCore {
     return executor != null ? executor.getMaximumPoolSize() : processors;
   }
 
+  /**
+   * Test whether the current thread is a worker thread of the core.
+   * <p>
+   * Tasks running on the core must not submit further tasks and wait for them,
+   * as all workers may already be busy waiting; nested work should then be run
+   * in the current thread instead.
+   *
+   * @return {@code true} when called from a worker thread
+   */
+  public boolean isWorkerThread() {
+    return Thread.currentThread() instanceof WorkerThread;
+  }
+
   /**
    * Submit a task to the executor core.
    * 
@@ -98,7 +111,7 @@ public class ParallelCore {
    */
   public synchronized void connect() {
     if(executor == null) {
-      executor = new ThreadPoolExecutor(0, processors, 10L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>());
+      executor = new ThreadPoolExecutor(0, processors, 10L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), WorkerThread::new);
       executor.allowCoreThreadTimeOut(true);
     }
     if(++connected == 1) {
@@ -116,4 +129,20 @@ public class ParallelCore {
       executor.setCorePoolSize(0);
     }
   }
+
+  /**
+   * Worker threads of the core.
+   *
+   * @author Erich Schubert
+   */
+  private static class WorkerThread extends Thread {
+    /**
+     * Constructor.
+     *
+     * @param r Runnable
+     */
+    WorkerThread(Runnable r) {
+      super(r, "ELKI parallel worker");
+    }
+  }
 }
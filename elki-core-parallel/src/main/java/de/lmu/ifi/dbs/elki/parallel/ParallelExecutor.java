@@ -21,14 +21,20 @@
 package de.lmu.ifi.dbs.elki.parallel;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
 import de.lmu.ifi.dbs.elki.parallel.processor.Processor;
@@ -62,6 +68,11 @@ public final class ParallelExecutor {
    */
   public static void run(DBIDs ids, Processor... procs) {
     ParallelCore core = ParallelCore.getCore();
+    if(core.isWorkerThread()) {
+      // Nested parallelism: process in the current thread.
+      new BlockArrayRunner(DBIDUtil.ensureArray(ids), 0, ids.size(), procs).call();
+      return;
+    }
     core.connect();
     try {
       // TODO: try different strategies anyway!
@@ -95,6 +106,128 @@ public final class ParallelExecutor {
     }
   }
 
+  /**
+   * Run a list of independent tasks on all available CPUs, and wait for all of
+   * them to complete.
+   * <p>
+   * When called from within a parallel task, the tasks are run sequentially in
+   * the current thread.
+   *
+   * @param tasks Tasks to run
+   * @param <T> Result type
+   * @return Task results, in the order of the tasks
+   */
+  public static <T> List<T> runAll(List<? extends Callable<T>> tasks) {
+    ParallelCore core = ParallelCore.getCore();
+    if(core.isWorkerThread()) {
+      List<T> results = new ArrayList<>(tasks.size());
+      for(Callable<T> task : tasks) {
+        try {
+          results.add(task.call());
+        }
+        catch(RuntimeException e) {
+          throw e;
+        }
+        catch(Exception e) {
+          throw new RuntimeException("Processor execution failed.", e);
+        }
+      }
+      return results;
+    }
+    core.connect();
+    try {
+      List<Future<T>> futures = new ArrayList<>(tasks.size());
+      for(Callable<T> task : tasks) {
+        futures.add(core.submit(task));
+      }
+      List<T> results = new ArrayList<>(tasks.size());
+      for(Future<T> fut : futures) {
+        results.add(fut.get());
+      }
+      return results;
+    }
+    catch(ExecutionException e) {
+      if(e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new RuntimeException("Processor execution failed.", e);
+    }
+    catch(InterruptedException e) {
+      throw new RuntimeException("Parallel execution interrupted.");
+    }
+    finally {
+      core.disconnect();
+    }
+  }
+
+  /**
+   * Compute results for an array of IDs in chunks, with one task per chunk,
+   * and pass them to a consumer in the calling thread, in the order of the
+   * IDs.
+   * <p>
+   * This allows the computation to use bulk queries for each chunk. Chunks
+   * are processed in blocks of one chunk per thread, which bounds the memory
+   * used for intermediate results. The consumer is not called concurrently, so
+   * it can write to data stores and update progress.
+   *
+   * @param ids IDs to process
+   * @param chunksize Number of IDs per task
+   * @param compute Function computing the results of a chunk, in order
+   * @param store Consumer for each ID and its result
+   * @param <T> Result type
+   */
+  public static <T> void runChunked(ArrayDBIDs ids, int chunksize, Function<? super ArrayDBIDs, ? extends List<? extends T>> compute, BiConsumer<? super DBIDRef, ? super T> store) {
+    runChunked(ids, chunksize, () -> null, (state, chunk) -> compute.apply(chunk), store);
+  }
+
+  /**
+   * Compute results for an array of IDs in chunks, with one task per chunk,
+   * and pass them to a consumer in the calling thread, in the order of the
+   * IDs.
+   * <p>
+   * Each chunk gets its own state, such as work arrays or a random generator.
+   * The states are created in the calling thread, in the order of the chunks,
+   * before their tasks are started. The chunk boundaries do not depend on the
+   * number of threads, so random seeds drawn here give reproducible results.
+   *
+   * @param ids IDs to process
+   * @param chunksize Number of IDs per task
+   * @param init Create the state of a chunk
+   * @param compute Function computing the results of a chunk, in order
+   * @param store Consumer for each ID and its result
+   * @param <S> State type
+   * @param <T> Result type
+   */
+  public static <S, T> void runChunked(ArrayDBIDs ids, int chunksize, Supplier<? extends S> init, BiFunction<? super S, ? super ArrayDBIDs, ? extends List<? extends T>> compute, BiConsumer<? super DBIDRef, ? super T> store) {
+    final int size = ids.size();
+    final int bsize = Math.max(1, ParallelCore.getCore().getParallelism()) * chunksize;
+    List<Callable<List<? extends T>>> tasks = new ArrayList<>();
+    DBIDArrayIter iter = ids.iter();
+    for(int bstart = 0; bstart < size; bstart += bsize) {
+      final int bend = Math.min(bstart + bsize, size);
+      List<? extends List<? extends T>> parts;
+      if(bend - bstart <= chunksize) {
+        parts = Collections.singletonList(compute.apply(init.get(), ids.slice(bstart, bend)));
+      }
+      else {
+        tasks.clear();
+        for(int cstart = bstart; cstart < bend; cstart += chunksize) {
+          final ArrayDBIDs chunk = ids.slice(cstart, Math.min(cstart + chunksize, bend));
+          final S state = init.get();
+          tasks.add(() -> compute.apply(state, chunk));
+        }
+        parts = runAll(tasks);
+      }
+      for(List<? extends T> part : parts) {
+        for(T result : part) {
+          store.accept(iter, result);
+          iter.advance();
+        }
+      }
+    }
+  }
+
+
   /**
    * Run for an array part, without step size.
    *
@@ -0,0 +1,233 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.utilities.datastructures.heap;
+
+import java.util.Arrays;
+
+/**
+ * Updatable binary min heap for double keys and dense int values, such as the
+ * offsets of objects in an array. Each value can be contained at most once,
+ * and its key can be decreased. Ties are broken by the smaller value.
+ * <p>
+ * All storage is allocated once, and can be reused after {@link #clear()};
+ * no objects are allocated by heap operations.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ */
+public class DoubleIntegerUpdatableMinHeap {
+  /**
+   * Heap keys.
+   */
+  private double[] keys;
+
+  /**
+   * Heap values.
+   */
+  private int[] vals;
+
+  /**
+   * Position of each value in the heap, or -1.
+   */
+  private int[] index;
+
+  /**
+   * Current size of heap.
+   */
+  private int size;
+
+  /**
+   * Constructor.
+   *
+   * @param capacity Value range, values must be in [0, capacity)
+   */
+  public DoubleIntegerUpdatableMinHeap(int capacity) {
+    super();
+    final int initial = Math.min(capacity, (1 << 5) - 1);
+    this.keys = new double[initial];
+    this.vals = new int[initial];
+    this.index = new int[capacity];
+    Arrays.fill(index, -1);
+  }
+
+  /**
+   * Compare two heap entries.
+   *
+   * @param k1 First key
+   * @param v1 First value
+   * @param k2 Second key
+   * @param v2 Second value
+   * @return {@code true} if the first entry is smaller
+   */
+  private static boolean less(double k1, int v1, double k2, int v2) {
+    return k1 < k2 || (k1 == k2 && v1 < v2);
+  }
+
+  /**
+   * Add a new value, or decrease the key of an existing value. If the value
+   * is already in the heap with a smaller or equal key, nothing is changed.
+   *
+   * @param key Key
+   * @param val Value
+   * @return {@code true} if the heap was modified
+   */
+  public boolean offer(double key, int val) {
+    int pos = index[val];
+    if(pos >= 0) {
+      if(keys[pos] <= key) {
+        return false;
+      }
+      heapifyUp(pos, key, val);
+      return true;
+    }
+    if(size >= keys.length) {
+      final int newlen = Math.min(keys.length + keys.length + 1, index.length);
+      keys = Arrays.copyOf(keys, newlen);
+      vals = Arrays.copyOf(vals, newlen);
+    }
+    heapifyUp(size++, key, val);
+    return true;
+  }
+
+  /**
+   * Test if a value is in the heap.
+   *
+   * @param val Value
+   * @return {@code true} if contained
+   */
+  public boolean contains(int val) {
+    return index[val] >= 0;
+  }
+
+  /**
+   * Get the key of a value in the heap.
+   *
+   * @param val Value
+   * @return Key, or NaN if not contained
+   */
+  public double getKey(int val) {
+    final int pos = index[val];
+    return pos >= 0 ? keys[pos] : Double.NaN;
+  }
+
+  /**
+   * Get the smallest key.
+   *
+   * @return Key of the top element
+   */
+  public double peekKey() {
+    return keys[0];
+  }
+
+  /**
+   * Get the value of the smallest key.
+   *
+   * @return Value of the top element
+   */
+  public int peekValue() {
+    return vals[0];
+  }
+
+  /**
+   * Remove the top element.
+   */
+  public void poll() {
+    index[vals[0]] = -1;
+    if(--size > 0) {
+      heapifyDown(keys[size], vals[size]);
+    }
+  }
+
+  /**
+   * Heapify-Up method.
+   *
+   * @param pos Position
+   * @param cur Current key
+   * @param val Current value
+   */
+  private void heapifyUp(int pos, double cur, int val) {
+    while(pos > 0) {
+      final int parent = (pos - 1) >>> 1;
+      if(!less(cur, val, keys[parent], vals[parent])) {
+        break;
+      }
+      keys[pos] = keys[parent];
+      index[vals[pos] = vals[parent]] = pos;
+      pos = parent;
+    }
+    keys[pos] = cur;
+    index[vals[pos] = val] = pos;
+  }
+
+  /**
+   * Heapify-Down method for the root.
+   *
+   * @param cur Key to reinsert
+   * @param val Value to reinsert
+   */
+  private void heapifyDown(double cur, int val) {
+    final int stop = size >>> 1;
+    int pos = 0;
+    while(pos < stop) {
+      int bestchild = (pos << 1) + 1;
+      final int right = bestchild + 1;
+      if(right < size && less(keys[right], vals[right], keys[bestchild], vals[bestchild])) {
+        bestchild = right;
+      }
+      if(!less(keys[bestchild], vals[bestchild], cur, val)) {
+        break;
+      }
+      keys[pos] = keys[bestchild];
+      index[vals[pos] = vals[bestchild]] = pos;
+      pos = bestchild;
+    }
+    keys[pos] = cur;
+    index[vals[pos] = val] = pos;
+  }
+
+  /**
+   * Query the size.
+   *
+   * @return Size
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Is the heap empty?
+   *
+   * @return {@code true} when the size is 0.
+   */
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Remove all elements, keeping the storage for reuse.
+   */
+  public void clear() {
+    for(int i = 0; i < size; i++) {
+      index[vals[i]] = -1;
+    }
+    size = 0;
+  }
+}
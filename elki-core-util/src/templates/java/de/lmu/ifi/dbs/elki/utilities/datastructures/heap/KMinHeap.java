@@ -66,8 +66,8 @@ ${extra ? "\n  " + extra.fields +"\n" : ""}
 
   @Override
   public void clear() {
-    size = 0;
-    Arrays.fill(twoheap, ${zero});
+    // Keep the arrays for reuse, only clear references.
+${zero == "null" ? "    Arrays.fill(twoheap, 0, size, null);\n" : ""}    size = 0;
   }
 
   @Override
@@ -82,9 +82,8 @@ public class ${classname}${key.gend}${val.gend} implements ${key.boxed.equals("C
 
   @Override
   public void clear() {
-    size = 0;
-    Arrays.fill(twoheap, ${key.zero});
-    Arrays.fill(twovals, ${val.zero});
+    // Keep the arrays for reuse, only clear references.
+${key.zero == "null" ? "    Arrays.fill(twoheap, 0, size, null);\n" : ""}${val.zero == "null" ? "    Arrays.fill(twovals, 0, size, null);\n" : ""}    size = 0;
   }
 
   @Override
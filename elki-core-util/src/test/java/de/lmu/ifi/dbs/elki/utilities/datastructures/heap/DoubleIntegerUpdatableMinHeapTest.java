@@ -0,0 +1,78 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.utilities.datastructures.heap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Test the primitive updatable heap, against a brute-force simulation.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ */
+public class DoubleIntegerUpdatableMinHeapTest {
+  @Test
+  public void testUpdatableHeap() {
+    final int maxid = 5000;
+    final Random r = new Random(1);
+    DoubleIntegerUpdatableMinHeap heap = new DoubleIntegerUpdatableMinHeap(maxid);
+    double[] simulate = new double[maxid];
+    for(int round = 0; round < 2; round++) {
+      Arrays.fill(simulate, Double.NaN);
+      for(int i = 0; i < 100; i++) {
+        for(int j = r.nextInt(100); j > 0; j--) {
+          final int id = r.nextInt(maxid);
+          // Few distinct keys, to have ties:
+          final double key = r.nextInt(100);
+          final boolean improves = !(simulate[id] <= key);
+          assertEquals("Update status wrong.", improves, heap.offer(key, id));
+          simulate[id] = improves ? key : simulate[id];
+        }
+        for(int j = r.nextInt(heap.size() + 1); j > 0; j--) {
+          // Smallest key, ties by smallest value:
+          int best = -1;
+          for(int id = 0; id < maxid; id++) {
+            best = simulate[id] == simulate[id] && (best < 0 || simulate[id] < simulate[best]) ? id : best;
+          }
+          assertEquals("Key differs.", simulate[best], heap.peekKey(), 0.);
+          assertEquals("Value differs.", best, heap.peekValue());
+          heap.poll();
+          simulate[best] = Double.NaN;
+          assertFalse(heap.contains(best));
+        }
+      }
+      assertTrue(heap.size() > 0);
+      // Reuse after clear:
+      heap.clear();
+      assertTrue(heap.isEmpty());
+      for(int id = 0; id < maxid; id++) {
+        assertFalse(heap.contains(id));
+      }
+    }
+  }
+}
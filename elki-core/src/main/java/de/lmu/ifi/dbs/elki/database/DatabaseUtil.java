@@ -31,6 +31,7 @@ import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
 import de.lmu.ifi.dbs.elki.database.ids.*;
 import de.lmu.ifi.dbs.elki.database.query.DatabaseQuery;
 import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
+import de.lmu.ifi.dbs.elki.database.query.knn.InstrumentedKNNQuery;
 import de.lmu.ifi.dbs.elki.database.query.knn.KNNQuery;
 import de.lmu.ifi.dbs.elki.database.query.knn.PreprocessorKNNQuery;
 import de.lmu.ifi.dbs.elki.database.relation.ConvertToStringView;
@@ -190,7 +191,7 @@ public final class DatabaseUtil {
     // "HEAVY" flag for knn query since it is used more than once
     KNNQuery<O> knnq = database.getKNNQuery(dq, k, DatabaseQuery.HINT_HEAVY_USE, DatabaseQuery.HINT_OPTIMIZED_ONLY);
     // No optimized kNN query - use a preprocessor!
-    if(knnq instanceof PreprocessorKNNQuery) {
+    if(InstrumentedKNNQuery.unwrap(knnq) instanceof PreprocessorKNNQuery) {
       return knnq;
     }
     MaterializeKNNPreprocessor<O> preproc = new MaterializeKNNPreprocessor<>(relation, dq.getDistanceFunction(), k);
@@ -213,7 +214,7 @@ public final class DatabaseUtil {
     // "HEAVY" flag for knn query since it is used more than once
     KNNQuery<O> knnq = database.getKNNQuery(dq, k, DatabaseQuery.HINT_HEAVY_USE, DatabaseQuery.HINT_OPTIMIZED_ONLY);
     // No optimized kNN query - use a preprocessor!
-    if(knnq instanceof PreprocessorKNNQuery) {
+    if(InstrumentedKNNQuery.unwrap(knnq) instanceof PreprocessorKNNQuery) {
       return knnq;
     }
     MaterializeKNNPreprocessor<O> preproc = new MaterializeKNNPreprocessor<>(relation, dq.getDistanceFunction(), k);
@@ -253,6 +253,12 @@ public class AutotuningPCA extends PCARunner {
     }
   }
 
+  @Override
+  public PCARunner worker() {
+    CovarianceMatrixBuilder worker = covarianceMatrixBuilder.worker();
+    return worker == covarianceMatrixBuilder ? this : new AutotuningPCA(worker, filter);
+  }
+
   /**
    * Parameterization class.
    * 
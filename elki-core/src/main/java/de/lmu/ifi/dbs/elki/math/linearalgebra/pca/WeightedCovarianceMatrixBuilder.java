@@ -105,7 +105,7 @@ public class WeightedCovarianceMatrixBuilder implements CovarianceMatrixBuilder
   @Override
   public double[][] processIds(DBIDs ids, Relation<? extends NumberVector> relation) {
     final int dim = RelationUtil.dimensionality(relation);
-    final CovarianceMatrix cmat = new CovarianceMatrix(dim);
+    final CovarianceMatrix cmat = newMatrix(dim);
     final Centroid centroid = Centroid.make(relation, ids);
 
     // find maximum distance
@@ -131,7 +131,7 @@ public class WeightedCovarianceMatrixBuilder implements CovarianceMatrixBuilder
       double weight = weightfunction.getWeight(distance, maxdist, stddev);
       cmat.put(obj, weight);
     }
-    return cmat.destroyToPopulationMatrix();
+    return finish(cmat);
   }
 
   /**
@@ -147,7 +147,7 @@ public class WeightedCovarianceMatrixBuilder implements CovarianceMatrixBuilder
   @Override
   public double[][] processQueryResults(DoubleDBIDList results, Relation<? extends NumberVector> database, int k) {
     final int dim = RelationUtil.dimensionality(database);
-    final CovarianceMatrix cmat = new CovarianceMatrix(dim);
+    final CovarianceMatrix cmat = newMatrix(dim);
 
     // avoid bad parameters
     k = k <= results.size() ? k : results.size();
@@ -177,9 +177,71 @@ public class WeightedCovarianceMatrixBuilder implements CovarianceMatrixBuilder
       double weight = weightfunction.getWeight(dist, maxdist, stddev);
       cmat.put(obj, weight);
     }
+    return finish(cmat);
+  }
+
+  /**
+   * Get an empty covariance matrix to accumulate into.
+   * 
+   * @param dim Dimensionality
+   * @return Covariance matrix
+   */
+  protected CovarianceMatrix newMatrix(int dim) {
+    return new CovarianceMatrix(dim);
+  }
+
+  /**
+   * Obtain the result matrix.
+   * 
+   * @param cmat Covariance matrix from {@link #newMatrix}
+   * @return Covariance Matrix
+   */
+  protected double[][] finish(CovarianceMatrix cmat) {
     return cmat.destroyToPopulationMatrix();
   }
 
+  @Override
+  public CovarianceMatrixBuilder worker() {
+    return new Worker(weightfunction);
+  }
+
+  /**
+   * Builder for a single task, reusing the covariance work arrays.
+   * 
+   * @author Erich Schubert
+   */
+  private static class Worker extends WeightedCovarianceMatrixBuilder {
+    /**
+     * Work matrix.
+     */
+    private CovarianceMatrix work;
+
+    /**
+     * Constructor.
+     * 
+     * @param weightfunction Weighting function
+     */
+    Worker(WeightFunction weightfunction) {
+      super(weightfunction);
+    }
+
+    @Override
+    protected CovarianceMatrix newMatrix(int dim) {
+      if(work == null || work.getDimensionality() != dim) {
+        work = new CovarianceMatrix(dim);
+      }
+      else {
+        work.reset();
+      }
+      return work;
+    }
+
+    @Override
+    protected double[][] finish(CovarianceMatrix cmat) {
+      return cmat.makePopulationMatrix();
+    }
+  }
+
   /**
    * Parameterization class.
    * 
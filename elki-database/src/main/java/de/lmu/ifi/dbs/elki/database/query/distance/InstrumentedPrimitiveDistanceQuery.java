@@ -0,0 +1,59 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.database.query.distance;
+
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.PrimitiveDistanceFunction;
+import de.lmu.ifi.dbs.elki.logging.statistics.LongAdderCounter;
+import de.lmu.ifi.dbs.elki.logging.statistics.MetricsRegistry;
+
+/**
+ * Primitive distance query that counts the distance computations in the
+ * {@link MetricsRegistry}.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ *
+ * @param <O> Database object type.
+ */
+public class InstrumentedPrimitiveDistanceQuery<O> extends PrimitiveDistanceQuery<O> {
+  /**
+   * Distance computations.
+   */
+  private final LongAdderCounter distanceCalcs;
+
+  /**
+   * Constructor.
+   *
+   * @param relation Representation to use.
+   * @param distanceFunction Our distance function
+   */
+  public InstrumentedPrimitiveDistanceQuery(Relation<? extends O> relation, PrimitiveDistanceFunction<? super O> distanceFunction) {
+    super(relation, distanceFunction);
+    this.distanceCalcs = MetricsRegistry.counter(distanceFunction.getClass().getName() + ".distancecalcs");
+  }
+
+  @Override
+  public double distance(O o1, O o2) {
+    distanceCalcs.increment();
+    return distanceFunction.distance(o1, o2);
+  }
+}
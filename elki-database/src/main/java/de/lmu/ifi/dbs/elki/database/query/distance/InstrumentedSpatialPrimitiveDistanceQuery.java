@@ -0,0 +1,80 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.database.query.distance;
+
+import de.lmu.ifi.dbs.elki.data.spatial.SpatialComparable;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.SpatialPrimitiveDistanceFunction;
+import de.lmu.ifi.dbs.elki.logging.statistics.LongAdderCounter;
+import de.lmu.ifi.dbs.elki.logging.statistics.MetricsRegistry;
+
+/**
+ * Spatial distance query that counts the distance and minimum distance
+ * computations in the {@link MetricsRegistry}.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ *
+ * @param <V> Vector type to use
+ */
+public class InstrumentedSpatialPrimitiveDistanceQuery<V extends SpatialComparable> extends SpatialPrimitiveDistanceQuery<V> {
+  /**
+   * Distance computations.
+   */
+  private final LongAdderCounter distanceCalcs;
+
+  /**
+   * Minimum distance computations.
+   */
+  private final LongAdderCounter minDistCalcs;
+
+  /**
+   * Constructor.
+   *
+   * @param relation Representation to use
+   * @param distanceFunction Distance function to use
+   */
+  public InstrumentedSpatialPrimitiveDistanceQuery(Relation<? extends V> relation, SpatialPrimitiveDistanceFunction<? super V> distanceFunction) {
+    super(relation, distanceFunction);
+    final String prefix = distanceFunction.getClass().getName();
+    this.distanceCalcs = MetricsRegistry.counter(prefix + ".distancecalcs");
+    this.minDistCalcs = MetricsRegistry.counter(prefix + ".mindistcalcs");
+  }
+
+  @Override
+  public double distance(V o1, V o2) {
+    distanceCalcs.increment();
+    return distanceFunction.distance(o1, o2);
+  }
+
+  @Override
+  public double minDist(SpatialComparable mbr, V v) {
+    minDistCalcs.increment();
+    return distanceFunction.minDist(mbr, v);
+  }
+
+  @Override
+  public double minDist(SpatialComparable mbr, DBIDRef id) {
+    minDistCalcs.increment();
+    return distanceFunction.minDist(mbr, relation.get(id));
+  }
+}
@@ -0,0 +1,155 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.database.query.knn;
+
+import java.util.List;
+
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
+import de.lmu.ifi.dbs.elki.database.ids.KNNList;
+import de.lmu.ifi.dbs.elki.database.query.LinearScanQuery;
+import de.lmu.ifi.dbs.elki.logging.statistics.LatencyHistogram;
+import de.lmu.ifi.dbs.elki.logging.statistics.LongAdderCounter;
+import de.lmu.ifi.dbs.elki.logging.statistics.MetricsRegistry;
+
+/**
+ * kNN query wrapper that records the number of queries and their latency in
+ * the {@link MetricsRegistry}.
+ * <p>
+ * Use {@link #wrap} to obtain an instance, which preserves the
+ * {@link LinearScanQuery} marker of the wrapped query.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ *
+ * @param <O> Object type
+ */
+public class InstrumentedKNNQuery<O> implements KNNQuery<O> {
+  /**
+   * Wrapped query.
+   */
+  protected final KNNQuery<O> inner;
+
+  /**
+   * Number of queries.
+   */
+  private final LongAdderCounter queries;
+
+  /**
+   * Query latency.
+   */
+  private final LatencyHistogram latency;
+
+  /**
+   * Constructor.
+   *
+   * @param inner Wrapped query
+   */
+  protected InstrumentedKNNQuery(KNNQuery<O> inner) {
+    super();
+    this.inner = inner;
+    final String prefix = inner.getClass().getName();
+    this.queries = MetricsRegistry.counter(prefix + ".knnqueries");
+    this.latency = MetricsRegistry.histogram(prefix + ".knnlatency");
+  }
+
+  /**
+   * Wrap a kNN query.
+   *
+   * @param inner Query to wrap
+   * @param <O> Object type
+   * @return Instrumented query
+   */
+  public static <O> KNNQuery<O> wrap(KNNQuery<O> inner) {
+    return inner instanceof LinearScanQuery ? new LinearScan<>(inner) : new InstrumentedKNNQuery<>(inner);
+  }
+
+  /**
+   * Remove the instrumentation from a query, e.g., to test for the type of
+   * the underlying query.
+   *
+   * @param q Query
+   * @param <O> Object type
+   * @return Wrapped query, or the query itself if not instrumented
+   */
+  public static <O> KNNQuery<O> unwrap(KNNQuery<O> q) {
+    return q instanceof InstrumentedKNNQuery ? ((InstrumentedKNNQuery<O>) q).inner : q;
+  }
+
+  /**
+   * Get the wrapped query.
+   *
+   * @return Wrapped query
+   */
+  public KNNQuery<O> getInner() {
+    return inner;
+  }
+
+  @Override
+  public KNNList getKNNForDBID(DBIDRef id, int k) {
+    final long start = System.nanoTime();
+    KNNList res = inner.getKNNForDBID(id, k);
+    latency.record(System.nanoTime() - start);
+    queries.increment();
+    return res;
+  }
+
+  @Override
+  public List<? extends KNNList> getKNNForBulkDBIDs(ArrayDBIDs ids, int k) {
+    final long start = System.nanoTime();
+    List<? extends KNNList> res = inner.getKNNForBulkDBIDs(ids, k);
+    latency.record(System.nanoTime() - start, ids.size());
+    queries.increment(ids.size());
+    return res;
+  }
+
+  @Override
+  public KNNList getKNNForObject(O obj, int k) {
+    final long start = System.nanoTime();
+    KNNList res = inner.getKNNForObject(obj, k);
+    latency.record(System.nanoTime() - start);
+    queries.increment();
+    return res;
+  }
+
+  @Override
+  public String toString() {
+    return "Instrumented[" + inner + "]";
+  }
+
+  /**
+   * Instrumented linear scan query.
+   *
+   * @author Erich Schubert
+   *
+   * @param <O> Object type
+   */
+  private static class LinearScan<O> extends InstrumentedKNNQuery<O> implements LinearScanQuery {
+    /**
+     * Constructor.
+     *
+     * @param inner Wrapped query
+     */
+    private LinearScan(KNNQuery<O> inner) {
+      super(inner);
+    }
+  }
+}
@@ -0,0 +1,148 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.database.query.range;
+
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
+import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDList;
+import de.lmu.ifi.dbs.elki.database.ids.ModifiableDoubleDBIDList;
+import de.lmu.ifi.dbs.elki.database.query.LinearScanQuery;
+import de.lmu.ifi.dbs.elki.logging.statistics.LatencyHistogram;
+import de.lmu.ifi.dbs.elki.logging.statistics.LongAdderCounter;
+import de.lmu.ifi.dbs.elki.logging.statistics.MetricsRegistry;
+
+/**
+ * Range query wrapper that records the number of queries and their latency in
+ * the {@link MetricsRegistry}.
+ * <p>
+ * Use {@link #wrap} to obtain an instance, which preserves the
+ * {@link LinearScanQuery} marker of the wrapped query.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ *
+ * @param <O> Object type
+ */
+public class InstrumentedRangeQuery<O> implements RangeQuery<O> {
+  /**
+   * Wrapped query.
+   */
+  protected final RangeQuery<O> inner;
+
+  /**
+   * Number of queries.
+   */
+  private final LongAdderCounter queries;
+
+  /**
+   * Query latency.
+   */
+  private final LatencyHistogram latency;
+
+  /**
+   * Constructor.
+   *
+   * @param inner Wrapped query
+   */
+  protected InstrumentedRangeQuery(RangeQuery<O> inner) {
+    super();
+    this.inner = inner;
+    final String prefix = inner.getClass().getName();
+    this.queries = MetricsRegistry.counter(prefix + ".rangequeries");
+    this.latency = MetricsRegistry.histogram(prefix + ".rangelatency");
+  }
+
+  /**
+   * Wrap a range query.
+   *
+   * @param inner Query to wrap
+   * @param <O> Object type
+   * @return Instrumented query
+   */
+  public static <O> RangeQuery<O> wrap(RangeQuery<O> inner) {
+    return inner instanceof LinearScanQuery ? new LinearScan<>(inner) : new InstrumentedRangeQuery<>(inner);
+  }
+
+  /**
+   * Get the wrapped query.
+   *
+   * @return Wrapped query
+   */
+  public RangeQuery<O> getInner() {
+    return inner;
+  }
+
+  @Override
+  public DoubleDBIDList getRangeForDBID(DBIDRef id, double range) {
+    final long start = System.nanoTime();
+    DoubleDBIDList res = inner.getRangeForDBID(id, range);
+    latency.record(System.nanoTime() - start);
+    queries.increment();
+    return res;
+  }
+
+  @Override
+  public DoubleDBIDList getRangeForObject(O obj, double range) {
+    final long start = System.nanoTime();
+    DoubleDBIDList res = inner.getRangeForObject(obj, range);
+    latency.record(System.nanoTime() - start);
+    queries.increment();
+    return res;
+  }
+
+  @Override
+  public void getRangeForDBID(DBIDRef id, double range, ModifiableDoubleDBIDList result) {
+    final long start = System.nanoTime();
+    inner.getRangeForDBID(id, range, result);
+    latency.record(System.nanoTime() - start);
+    queries.increment();
+  }
+
+  @Override
+  public void getRangeForObject(O obj, double range, ModifiableDoubleDBIDList result) {
+    final long start = System.nanoTime();
+    inner.getRangeForObject(obj, range, result);
+    latency.record(System.nanoTime() - start);
+    queries.increment();
+  }
+
+  @Override
+  public String toString() {
+    return "Instrumented[" + inner + "]";
+  }
+
+  /**
+   * Instrumented linear scan query.
+   *
+   * @author Erich Schubert
+   *
+   * @param <O> Object type
+   */
+  private static class LinearScan<O> extends InstrumentedRangeQuery<O> implements LinearScanQuery {
+    /**
+     * Constructor.
+     *
+     * @param inner Wrapped query
+     */
+    private LinearScan(RangeQuery<O> inner) {
+      super(inner);
+    }
+  }
+}
@@ -22,14 +22,22 @@ package de.lmu.ifi.dbs.elki.database.relation;
 
 import de.lmu.ifi.dbs.elki.database.QueryUtil;
 import de.lmu.ifi.dbs.elki.database.query.DatabaseQuery;
+import de.lmu.ifi.dbs.elki.data.spatial.SpatialComparable;
 import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
+import de.lmu.ifi.dbs.elki.database.query.distance.InstrumentedPrimitiveDistanceQuery;
+import de.lmu.ifi.dbs.elki.database.query.distance.InstrumentedSpatialPrimitiveDistanceQuery;
+import de.lmu.ifi.dbs.elki.database.query.distance.PrimitiveDistanceQuery;
+import de.lmu.ifi.dbs.elki.database.query.distance.SpatialPrimitiveDistanceQuery;
+import de.lmu.ifi.dbs.elki.database.query.knn.InstrumentedKNNQuery;
 import de.lmu.ifi.dbs.elki.database.query.knn.KNNQuery;
+import de.lmu.ifi.dbs.elki.database.query.range.InstrumentedRangeQuery;
 import de.lmu.ifi.dbs.elki.database.query.range.RangeQuery;
 import de.lmu.ifi.dbs.elki.database.query.rknn.LinearScanRKNNQuery;
 import de.lmu.ifi.dbs.elki.database.query.rknn.RKNNQuery;
 import de.lmu.ifi.dbs.elki.database.query.similarity.SimilarityQuery;
 import de.lmu.ifi.dbs.elki.distance.distancefunction.DBIDDistanceFunction;
 import de.lmu.ifi.dbs.elki.distance.distancefunction.DistanceFunction;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.SpatialPrimitiveDistanceFunction;
 import de.lmu.ifi.dbs.elki.distance.similarityfunction.DBIDSimilarityFunction;
 import de.lmu.ifi.dbs.elki.distance.similarityfunction.SimilarityFunction;
 import de.lmu.ifi.dbs.elki.index.DistanceIndex;
@@ -39,6 +47,7 @@ import de.lmu.ifi.dbs.elki.index.RangeIndex;
 import de.lmu.ifi.dbs.elki.index.SimilarityIndex;
 import de.lmu.ifi.dbs.elki.index.SimilarityRangeIndex;
 import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.logging.statistics.MetricsRegistry;
 import de.lmu.ifi.dbs.elki.result.AbstractHierarchicalResult;
 import de.lmu.ifi.dbs.elki.utilities.datastructures.iterator.It;
 import de.lmu.ifi.dbs.elki.utilities.exceptions.AbortException;
@@ -78,7 +87,28 @@ public abstract class AbstractRelation<O> extends AbstractHierarchicalResult imp
         return null; // Linear scan is not desirable.
       }
     }
-    return distanceFunction.instantiate(this);
+    DistanceQuery<O> q = distanceFunction.instantiate(this);
+    return MetricsRegistry.isEnabled() ? instrument(q) : q;
+  }
+
+  /**
+   * Add instrumentation to a primitive distance query. Other distance queries
+   * are returned unchanged.
+   *
+   * @param q Distance query
+   * @return Instrumented query
+   */
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  private DistanceQuery<O> instrument(DistanceQuery<O> q) {
+    // Only wrap exactly these classes, to not lose any specialization.
+    if(q.getClass() == SpatialPrimitiveDistanceQuery.class) {
+      SpatialPrimitiveDistanceQuery<? extends SpatialComparable> sq = (SpatialPrimitiveDistanceQuery) q;
+      return new InstrumentedSpatialPrimitiveDistanceQuery(this, sq.getDistanceFunction());
+    }
+    if(q.getClass() == PrimitiveDistanceQuery.class) {
+      return new InstrumentedPrimitiveDistanceQuery<>(this, ((PrimitiveDistanceQuery<O>) q).getDistanceFunction());
+    }
+    return q;
   }
 
   @Override
@@ -114,7 +144,7 @@ public abstract class AbstractRelation<O> extends AbstractHierarchicalResult imp
         getLogger().debugFinest((q != null ? "Using" : "Not using") + " index for kNN query: " + it.get());
       }
       if(q != null) {
-        return q;
+        return MetricsRegistry.isEnabled() ? InstrumentedKNNQuery.wrap(q) : q;
       }
     }
 
@@ -136,7 +166,8 @@ public abstract class AbstractRelation<O> extends AbstractHierarchicalResult imp
       }
       getLogger().debugFinest(buf.toString());
     }
-    return QueryUtil.getLinearScanKNNQuery(distanceQuery);
+    KNNQuery<O> q = QueryUtil.getLinearScanKNNQuery(distanceQuery);
+    return MetricsRegistry.isEnabled() ? InstrumentedKNNQuery.wrap(q) : q;
   }
 
   @Override
@@ -150,7 +181,7 @@ public abstract class AbstractRelation<O> extends AbstractHierarchicalResult imp
         getLogger().debugFinest((q != null ? "Using" : "Not using") + " index for range query: " + it.get());
       }
       if(q != null) {
-        return q;
+        return MetricsRegistry.isEnabled() ? InstrumentedRangeQuery.wrap(q) : q;
       }
     }
 
@@ -172,7 +203,8 @@ public abstract class AbstractRelation<O> extends AbstractHierarchicalResult imp
       }
       getLogger().debugFinest(buf.toString());
     }
-    return QueryUtil.getLinearScanRangeQuery(distanceQuery);
+    RangeQuery<O> q = QueryUtil.getLinearScanRangeQuery(distanceQuery);
+    return MetricsRegistry.isEnabled() ? InstrumentedRangeQuery.wrap(q) : q;
   }
 
   @Override
@@ -21,8 +21,14 @@
 package de.lmu.ifi.dbs.elki.index.lsh;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayModifiableDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
@@ -51,10 +57,17 @@ import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraint
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.ObjectParameter;
-import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
 
 /**
  * Locality Sensitive Hashing.
+ * <p>
+ * Each hash table is stored in a compact compressed-row layout: the sorted
+ * distinct bucket keys, the offsets of each bucket, and the members of all
+ * buckets in a single array. The tables are built in parallel.
+ * <p>
+ * With multi-probe querying, each table is probed not only at the bucket of
+ * the query, but also at the most promising neighboring buckets, which
+ * allows similar recall with fewer tables.
  *
  * @author Erich Schubert
  * @since 0.6.0
@@ -85,6 +98,11 @@ public class InMemoryLSHIndex<V> implements IndexFactory<V> {
    */
   int numberOfBuckets;
 
+  /**
+   * Number of buckets to probe in each table.
+   */
+  int probes;
+
   /**
    * Constructor.
    *
@@ -93,15 +111,28 @@ public class InMemoryLSHIndex<V> implements IndexFactory<V> {
    * @param numberOfBuckets Number of buckets to use.
    */
   public InMemoryLSHIndex(LocalitySensitiveHashFunctionFamily<? super V> family, int l, int numberOfBuckets) {
+    this(family, l, numberOfBuckets, 1);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param family Projection family
+   * @param l Number of hash tables to use
+   * @param numberOfBuckets Number of buckets to use.
+   * @param probes Number of buckets to probe in each table.
+   */
+  public InMemoryLSHIndex(LocalitySensitiveHashFunctionFamily<? super V> family, int l, int numberOfBuckets, int probes) {
     super();
     this.family = family;
     this.l = l;
     this.numberOfBuckets = numberOfBuckets;
+    this.probes = probes;
   }
 
   @Override
   public Instance instantiate(Relation<V> relation) {
-    return new Instance(relation, family.generateHashFunctions(relation, l), numberOfBuckets);
+    return new Instance(relation, family.generateHashFunctions(relation, l), numberOfBuckets, probes);
   }
 
   @Override
@@ -123,25 +154,43 @@ public class InMemoryLSHIndex<V> implements IndexFactory<V> {
     ArrayList<? extends LocalitySensitiveHashFunction<? super V>> hashfunctions;
 
     /**
-     * The actual table
+     * Sorted bucket keys of each table.
+     */
+    int[][] keys;
+
+    /**
+     * Offsets of the buckets in each table; one extra entry.
+     */
+    int[][] offsets;
+
+    /**
+     * Bucket members of each table, in key order.
      */
-    ArrayList<Int2ObjectOpenHashMap<DBIDs>> hashtables;
+    ArrayDBIDs[] members;
 
     /**
      * Number of buckets to use.
      */
     private int numberOfBuckets;
 
+    /**
+     * Number of buckets to probe in each table.
+     */
+    private int probes;
+
     /**
      * Constructor.
      *
      * @param relation Relation to index.
      * @param hashfunctions Hash functions.
+     * @param numberOfBuckets Number of buckets to use.
+     * @param probes Number of buckets to probe in each table.
      */
-    public Instance(Relation<V> relation, ArrayList<? extends LocalitySensitiveHashFunction<? super V>> hashfunctions, int numberOfBuckets) {
+    public Instance(Relation<V> relation, ArrayList<? extends LocalitySensitiveHashFunction<? super V>> hashfunctions, int numberOfBuckets, int probes) {
       super(relation);
       this.hashfunctions = hashfunctions;
       this.numberOfBuckets = numberOfBuckets;
+      this.probes = probes;
     }
 
     @Override
@@ -157,55 +206,126 @@ public class InMemoryLSHIndex<V> implements IndexFactory<V> {
     @Override
     public void initialize() {
       final int numhash = hashfunctions.size();
-      hashtables = new ArrayList<>(numhash);
-      for(int i = 0; i < numhash; i++) {
-        hashtables.add(new Int2ObjectOpenHashMap<DBIDs>(numberOfBuckets));
-      }
-
-      // TODO: We assume all hash functions have the same dimensionality.
-      double[] buf = new double[hashfunctions.get(0).getNumberOfProjections()];
-      FiniteProgress progress = LOG.isVerbose() ? new FiniteProgress("Building LSH index", relation.size(), LOG) : null;
-      int expect = Math.max(2, (int) Math.ceil(relation.size() / (double) numberOfBuckets));
-      for(DBIDIter iter = relation.getDBIDs().iter(); iter.valid(); iter.advance()) {
-        V obj = relation.get(iter);
-        for(int i = 0; i < numhash; i++) {
-          final Int2ObjectOpenHashMap<DBIDs> table = hashtables.get(i);
-          final LocalitySensitiveHashFunction<? super V> hashfunc = hashfunctions.get(i);
-          // Get the initial (unbounded) hash code:
-          int hash = hashfunc.hashObject(obj, buf);
-          // Reduce to hash table size
-          int bucket = hash % numberOfBuckets;
-          DBIDs cur = table.get(bucket);
-          if(cur == null) {
-            table.put(bucket, DBIDUtil.deref(iter));
-          }
-          else if(cur.size() > 1) {
-            ((ModifiableDBIDs) cur).add(iter);
-          }
-          else {
-            ModifiableDBIDs newbuck = DBIDUtil.newArray(expect);
-            newbuck.addDBIDs(cur);
-            newbuck.add(iter);
-            table.put(bucket, newbuck);
-          }
-        }
-        LOG.incrementProcessed(progress);
-      }
+      keys = new int[numhash][];
+      offsets = new int[numhash][];
+      members = new ArrayDBIDs[numhash];
+      final ArrayDBIDs ids = DBIDUtil.ensureArray(relation.getDBIDs());
+      FiniteProgress progress = LOG.isVerbose() ? new FiniteProgress("Building LSH tables", numhash, LOG) : null;
+      // Each table has its own hash function, so tables can be built in
+      // parallel (projections use internal buffers).
+      ForkJoinPool.commonPool().invoke(new BuildTask(ids, 0, numhash, progress));
       LOG.ensureCompleted(progress);
       if(LOG.isStatistics()) {
         int min = Integer.MAX_VALUE, max = 0;
+        long bytes = 0;
         for(int i = 0; i < numhash; i++) {
-          final Int2ObjectOpenHashMap<DBIDs> table = hashtables.get(i);
-          for(DBIDs set : table.values()) {
-            final int size = set.size();
+          final int[] off = offsets[i];
+          for(int j = 1; j < off.length; j++) {
+            final int size = off[j] - off[j - 1];
             min = size < min ? size : min;
             max = size > max ? size : max;
           }
+          // Keys, offsets, and (integer) members.
+          bytes += (keys[i].length + off.length + members[i].size()) * (long) Integer.BYTES;
         }
         LOG.statistics(new LongStatistic(this.getClass().getName() + ".fill.min", min));
         LOG.statistics(new LongStatistic(this.getClass().getName() + ".fill.max", max));
-        LOG.statistics(new LongStatistic(this.getClass().getName() + ".hashtables", hashtables.size()));
+        LOG.statistics(new LongStatistic(this.getClass().getName() + ".hashtables", numhash));
+        LOG.statistics(new LongStatistic(this.getClass().getName() + ".hashtables.bytes", bytes));
+      }
+    }
+
+    /**
+     * Task to build a range of hash tables.
+     *
+     * @author Erich Schubert
+     */
+    private class BuildTask extends RecursiveAction {
+      /**
+       * Serialization version.
+       */
+      private static final long serialVersionUID = 1L;
+
+      /**
+       * Objects to index.
+       */
+      private final ArrayDBIDs ids;
+
+      /**
+       * Range of tables.
+       */
+      private final int begin, end;
+
+      /**
+       * Progress, may be {@code null}.
+       */
+      private final FiniteProgress progress;
+
+      /**
+       * Constructor.
+       *
+       * @param ids Objects to index
+       * @param begin First table
+       * @param end End (exclusive)
+       * @param progress Progress, may be {@code null}
+       */
+      BuildTask(ArrayDBIDs ids, int begin, int end, FiniteProgress progress) {
+        this.ids = ids;
+        this.begin = begin;
+        this.end = end;
+        this.progress = progress;
+      }
+
+      @Override
+      protected void compute() {
+        if(end - begin > 1) {
+          final int mid = (begin + end) >>> 1;
+          invokeAll(new BuildTask(ids, begin, mid, progress), new BuildTask(ids, mid, end, progress));
+          return;
+        }
+        buildTable(begin, ids);
+        LOG.incrementProcessed(progress);
+      }
+    }
+
+    /**
+     * Build a single hash table.
+     *
+     * @param t Table number
+     * @param ids Objects to index
+     */
+    private void buildTable(int t, ArrayDBIDs ids) {
+      final LocalitySensitiveHashFunction<? super V> hashfunc = hashfunctions.get(t);
+      final double[] buf = new double[hashfunc.getNumberOfProjections()];
+      final int size = ids.size();
+      // Bucket in the high bits, offset in the low bits, to sort by bucket:
+      final long[] pairs = new long[size];
+      DBIDArrayIter iter = ids.iter();
+      for(int i = 0; i < size; i++, iter.advance()) {
+        // Reduce the initial (unbounded) hash code to the hash table size
+        final int bucket = hashfunc.hashObject(relation.get(iter), buf) % numberOfBuckets;
+        pairs[i] = ((long) bucket << 32) | i;
+      }
+      Arrays.sort(pairs);
+      int nkeys = 0;
+      for(int i = 0; i < size; i++) {
+        if(i == 0 || (pairs[i] >> 32) != (pairs[i - 1] >> 32)) {
+          nkeys++;
+        }
       }
+      final int[] key = new int[nkeys], off = new int[nkeys + 1];
+      ArrayModifiableDBIDs mem = DBIDUtil.newArray(size);
+      for(int i = 0, k = -1; i < size; i++) {
+        if(i == 0 || (pairs[i] >> 32) != (pairs[i - 1] >> 32)) {
+          key[++k] = (int) (pairs[i] >> 32);
+          off[k] = i;
+        }
+        mem.add(iter.seek((int) pairs[i]));
+      }
+      off[nkeys] = size;
+      keys[t] = key;
+      offsets[t] = off;
+      members[t] = mem;
     }
 
     @Override
@@ -249,21 +369,26 @@ public class InMemoryLSHIndex<V> implements IndexFactory<V> {
      */
     protected DBIDs getCandidates(V obj) {
       ModifiableDBIDs candidates = null;
-      final int numhash = hashtables.size();
+      final int numhash = hashfunctions.size();
       double[] buf = new double[hashfunctions.get(0).getNumberOfProjections()];
+      int[] hashes = new int[probes];
       for(int i = 0; i < numhash; i++) {
-        final Int2ObjectOpenHashMap<DBIDs> table = hashtables.get(i);
         final LocalitySensitiveHashFunction<? super V> hashfunc = hashfunctions.get(i);
-        // Get the initial (unbounded) hash code:
-        int hash = hashfunc.hashObject(obj, buf);
-        // Reduce to hash table size
-        int bucket = hash % numberOfBuckets;
-        DBIDs cur = table.get(bucket);
-        if(cur != null) {
+        // Get the initial (unbounded) hash codes:
+        final int n = hashfunc.hashProbes(obj, buf, hashes);
+        for(int j = 0; j < n; j++) {
+          // Reduce to hash table size
+          final int pos = Arrays.binarySearch(keys[i], hashes[j] % numberOfBuckets);
+          if(pos < 0) {
+            continue;
+          }
+          final int begin = offsets[i][pos], end = offsets[i][pos + 1];
           if(candidates == null) {
-            candidates = DBIDUtil.newHashSet(cur.size() * numhash);
+            candidates = DBIDUtil.newHashSet((end - begin) * numhash * n);
+          }
+          for(DBIDArrayIter it = members[i].iter().seek(begin); it.getOffset() < end; it.advance()) {
+            candidates.add(it);
           }
-          candidates.addDBIDs(cur);
         }
       }
       return (candidates == null) ? DBIDUtil.EMPTYDBIDS : candidates;
@@ -349,6 +474,11 @@ public class InMemoryLSHIndex<V> implements IndexFactory<V> {
      */
     public static final OptionID BUCKETS_ID = new OptionID("lsh.buckets", "Number of hash buckets to use.");
 
+    /**
+     * Number of buckets to probe in each table (multi-probe LSH).
+     */
+    public static final OptionID PROBES_ID = new OptionID("lsh.probes", "Number of buckets to probe in each hash table (multi-probe LSH).");
+
     /**
      * LSH hash function family to use.
      */
@@ -364,6 +494,11 @@ public class InMemoryLSHIndex<V> implements IndexFactory<V> {
      */
     int numberOfBuckets;
 
+    /**
+     * Number of buckets to probe in each table.
+     */
+    int probes;
+
     @Override
     protected void makeOptions(Parameterization config) {
       super.makeOptions(config);
@@ -384,11 +519,17 @@ public class InMemoryLSHIndex<V> implements IndexFactory<V> {
       if(config.grab(bucketsP)) {
         numberOfBuckets = bucketsP.intValue();
       }
+
+      IntParameter probesP = new IntParameter(PROBES_ID, 1) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+      if(config.grab(probesP)) {
+        probes = probesP.intValue();
+      }
     }
 
     @Override
     protected InMemoryLSHIndex<V> makeInstance() {
-      return new InMemoryLSHIndex<>(family, l, numberOfBuckets);
+      return new InMemoryLSHIndex<>(family, l, numberOfBuckets, probes);
     }
   }
 }
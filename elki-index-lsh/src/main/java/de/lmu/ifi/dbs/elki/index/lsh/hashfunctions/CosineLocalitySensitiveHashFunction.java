@@ -23,6 +23,7 @@ package de.lmu.ifi.dbs.elki.index.lsh.hashfunctions;
 import de.lmu.ifi.dbs.elki.data.NumberVector;
 import de.lmu.ifi.dbs.elki.data.projection.random.RandomProjectionFamily;
 import de.lmu.ifi.dbs.elki.data.projection.random.RandomProjectionFamily.Projection;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.arrays.DoubleIntegerArrayQuickSort;
 import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
 
 /**
@@ -81,6 +82,33 @@ public class CosineLocalitySensitiveHashFunction implements LocalitySensitiveHas
     return hashValue;
   }
 
+  @Override
+  public int hashProbes(NumberVector obj, double[] buf, int[] probes) {
+    probes[0] = hashObject(obj, buf);
+    if(probes.length == 1) {
+      return 1;
+    }
+    // Candidate perturbations: flip the bits of the smallest projections.
+    final int n = Math.min(buf.length, Integer.SIZE);
+    final double[] cost = new double[n];
+    final int[] bit = new int[n];
+    for(int i = 0; i < n; i++) {
+      cost[i] = buf[i] * buf[i];
+      bit[i] = i;
+    }
+    DoubleIntegerArrayQuickSort.sort(cost, bit, n);
+    final long[] sets = new long[probes.length - 1];
+    final int c = MultiProbe.perturbations(cost, bit, n, sets, sets.length);
+    for(int j = 0; j < c; j++) {
+      int hash = probes[0];
+      for(long set = sets[j]; set != 0; set &= set - 1) {
+        hash ^= 1 << bit[Long.numberOfTrailingZeros(set)];
+      }
+      probes[j + 1] = hash;
+    }
+    return c + 1;
+  }
+
   @Override
   public int getNumberOfProjections() {
     return projection.getOutputDimensionality();
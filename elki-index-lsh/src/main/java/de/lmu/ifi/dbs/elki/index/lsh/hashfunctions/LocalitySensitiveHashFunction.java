@@ -46,6 +46,23 @@ public interface LocalitySensitiveHashFunction<V> {
    */
   int hashObject(V obj, double[] buf);
 
+  /**
+   * Compute the hash values of a probing sequence (multi-probe LSH): the hash
+   * value of the object, followed by the hash values of the most promising
+   * neighboring buckets.
+   * <p>
+   * The default implementation only probes the bucket of the object itself.
+   *
+   * @param obj Object to hash
+   * @param buf Buffer, sized according to the number of projections.
+   * @param probes Output buffer; its length is the maximum number of probes
+   * @return Number of hash values generated
+   */
+  default int hashProbes(V obj, double[] buf, int[] probes) {
+    probes[0] = hashObject(obj, buf);
+    return 1;
+  }
+
   /**
    * Get the number of projections performed.
    *
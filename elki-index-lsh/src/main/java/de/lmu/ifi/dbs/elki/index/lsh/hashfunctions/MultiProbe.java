@@ -0,0 +1,120 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.index.lsh.hashfunctions;
+
+import de.lmu.ifi.dbs.elki.utilities.datastructures.heap.DoubleLongMinHeap;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+
+/**
+ * Query-directed probing sequences for multi-probe LSH.
+ * <p>
+ * Given the costs of the individual perturbations of a hash key (e.g. the
+ * squared distance of a projection to the next bucket boundary), this
+ * enumerates sets of perturbations in order of increasing total cost, skipping
+ * sets that perturb the same component twice.
+ * <p>
+ * Reference:
+ * <p>
+ * Q. Lv, W. Josephson, Z. Wang, M. Charikar, K. Li<br>
+ * Multi-probe LSH: efficient indexing for high-dimensional similarity
+ * search<br>
+ * Proc. 33rd Int. Conf. on Very Large Data Bases (VLDB'07)
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ */
+@Reference(authors = "Q. Lv, W. Josephson, Z. Wang, M. Charikar, K. Li", //
+    title = "Multi-probe LSH: efficient indexing for high-dimensional similarity search", //
+    booktitle = "Proc. 33rd Int. Conf. on Very Large Data Bases (VLDB'07)", //
+    url = "http://www.vldb.org/conf/2007/papers/research/p950-lv.pdf", //
+    bibkey = "DBLP:conf/vldb/LvJWCL07")
+public final class MultiProbe {
+  /**
+   * Maximum number of candidate perturbations considered.
+   */
+  public static final int MAX_CANDIDATES = Long.SIZE;
+
+  /**
+   * Private constructor. Static methods only.
+   */
+  private MultiProbe() {
+    // Do not use.
+  }
+
+  /**
+   * Generate the cheapest valid perturbation sets.
+   * <p>
+   * Each set is returned as a bit mask of positions in the (sorted) candidate
+   * arrays. Only the first {@link #MAX_CANDIDATES} candidates are used.
+   *
+   * @param cost Cost of each candidate perturbation, sorted ascending
+   * @param component Component perturbed by each candidate
+   * @param n Number of candidates
+   * @param out Output array for the perturbation sets
+   * @param num Number of perturbation sets to generate
+   * @return Number of perturbation sets generated
+   */
+  public static int perturbations(double[] cost, int[] component, int n, long[] out, int num) {
+    n = Math.min(n, MAX_CANDIDATES);
+    if(n == 0 || num <= 0) {
+      return 0;
+    }
+    DoubleLongMinHeap heap = new DoubleLongMinHeap(num << 1);
+    heap.add(cost[0], 1L);
+    int c = 0;
+    while(c < num && !heap.isEmpty()) {
+      final double score = heap.peekKey();
+      final long set = heap.peekValue();
+      heap.poll();
+      final int max = Long.SIZE - 1 - Long.numberOfLeadingZeros(set);
+      if(max + 1 < n) {
+        final long next = 1L << (max + 1);
+        // Shift: replace the largest element with the next one
+        heap.add(score - cost[max] + cost[max + 1], (set ^ (1L << max)) | next);
+        // Expand: add the next element
+        heap.add(score + cost[max + 1], set | next);
+      }
+      if(isValid(set, component)) {
+        out[c++] = set;
+      }
+    }
+    return c;
+  }
+
+  /**
+   * Test that no component is perturbed twice.
+   *
+   * @param set Perturbation set
+   * @param component Component of each candidate
+   * @return {@code true} if valid
+   */
+  private static boolean isValid(long set, int[] component) {
+    for(long a = set; a != 0; a &= a - 1) {
+      final int ca = component[Long.numberOfTrailingZeros(a)];
+      for(long b = a & (a - 1); b != 0; b &= b - 1) {
+        if(component[Long.numberOfTrailingZeros(b)] == ca) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+}
@@ -24,6 +24,7 @@ import java.util.Random;
 
 import de.lmu.ifi.dbs.elki.data.NumberVector;
 import de.lmu.ifi.dbs.elki.data.projection.random.RandomProjectionFamily;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.arrays.DoubleIntegerArrayQuickSort;
 import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
 
 /**
@@ -118,6 +119,47 @@ public class MultipleProjectionsLocalitySensitiveHashFunction implements Localit
     return fastModPrime(t1sum);
   }
 
+  @Override
+  public int hashProbes(NumberVector vec, double[] buf, int[] probes) {
+    // Project the vector:
+    projection.project(vec, buf);
+    final int num = shift.length, n = num << 1;
+    // Candidate perturbations: move one bin down (even) or up (odd).
+    final double[] cost = new double[n];
+    final int[] pert = new int[n];
+    long t1sum = 0L;
+    for(int i = 0; i < num; i++) {
+      final double f = (buf[i] + shift[i]) * iwidth, fl = Math.floor(f);
+      t1sum += (randoms1[i] & MASK32) * (int) fl; // unsigned math!
+      final double lo = f - fl, hi = 1. - lo;
+      cost[i << 1] = lo * lo;
+      cost[(i << 1) + 1] = hi * hi;
+      pert[i << 1] = i << 1;
+      pert[(i << 1) + 1] = (i << 1) + 1;
+    }
+    probes[0] = fastModPrime(t1sum);
+    if(probes.length == 1) {
+      return 1;
+    }
+    DoubleIntegerArrayQuickSort.sort(cost, pert, n);
+    final int[] component = new int[n];
+    for(int j = 0; j < n; j++) {
+      component[j] = pert[j] >>> 1;
+    }
+    final long[] sets = new long[probes.length - 1];
+    final int c = MultiProbe.perturbations(cost, component, n, sets, sets.length);
+    for(int j = 0; j < c; j++) {
+      long sum = t1sum;
+      for(long set = sets[j]; set != 0; set &= set - 1) {
+        final int p = pert[Long.numberOfTrailingZeros(set)];
+        final long r = randoms1[p >>> 1] & MASK32;
+        sum += (p & 1) == 0 ? -r : r;
+      }
+      probes[j + 1] = fastModPrime(sum);
+    }
+    return c + 1;
+  }
+
   /**
    * Fast modulo operation for the largest unsigned integer prime.
    *
@@ -0,0 +1,104 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.index.lsh;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.StaticArrayDatabase;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.KNNList;
+import de.lmu.ifi.dbs.elki.database.query.DatabaseQuery;
+import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
+import de.lmu.ifi.dbs.elki.database.query.knn.KNNQuery;
+import de.lmu.ifi.dbs.elki.database.query.knn.LinearScanDistanceKNNQuery;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.datasource.ArrayAdapterDatabaseConnection;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.EuclideanDistanceFunction;
+import de.lmu.ifi.dbs.elki.index.lsh.hashfamilies.EuclideanHashFunctionFamily;
+import de.lmu.ifi.dbs.elki.utilities.ELKIBuilder;
+
+/**
+ * Unit test for the in-memory LSH index.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ */
+public class InMemoryLSHIndexTest {
+  /**
+   * Multi-probe querying must improve the recall with few tables.
+   */
+  @Test
+  public void testMultiProbe() {
+    Random rnd = new Random(0L);
+    double[][] data = new double[5000][8];
+    for(double[] row : data) {
+      for(int d = 0; d < row.length; d++) {
+        row[d] = rnd.nextDouble();
+      }
+    }
+    double single = recall(data, 1), multi = recall(data, 20);
+    assertTrue("Single probe recall too low: " + single, single > 0.1);
+    assertTrue("Multi-probe did not improve recall: " + single + " " + multi, multi > single + 0.2);
+  }
+
+  /**
+   * Build the index, and compute the recall of 10NN queries.
+   *
+   * @param data Data set
+   * @param probes Number of probes
+   * @return Recall
+   */
+  private double recall(double[][] data, int probes) {
+    InMemoryLSHIndex<?> factory = new ELKIBuilder<>(InMemoryLSHIndex.class) //
+        .with(InMemoryLSHIndex.Parameterizer.FAMILY_ID, EuclideanHashFunctionFamily.class) //
+        .with(EuclideanHashFunctionFamily.Parameterizer.RANDOM_ID, 0L) //
+        .with(EuclideanHashFunctionFamily.Parameterizer.WIDTH_ID, 0.5) //
+        .with(EuclideanHashFunctionFamily.Parameterizer.NUMPROJ_ID, 6) //
+        .with(InMemoryLSHIndex.Parameterizer.L_ID, 4) //
+        .with(InMemoryLSHIndex.Parameterizer.PROBES_ID, probes).build();
+    Database db = new StaticArrayDatabase(new ArrayAdapterDatabaseConnection(data), Arrays.asList(factory));
+    db.initialize();
+    Relation<DoubleVector> rel = db.getRelation(TypeUtil.DOUBLE_VECTOR_FIELD);
+    DistanceQuery<DoubleVector> dq = db.getDistanceQuery(rel, EuclideanDistanceFunction.STATIC);
+    KNNQuery<DoubleVector> knnq = db.getKNNQuery(dq, 10, DatabaseQuery.HINT_OPTIMIZED_ONLY);
+    assertTrue(knnq instanceof InMemoryLSHIndex.Instance.LSHKNNQuery);
+    LinearScanDistanceKNNQuery<DoubleVector> linknn = new LinearScanDistanceKNNQuery<>(dq);
+    int i = 0, found = 0, total = 0;
+    for(DBIDIter it = rel.iterDBIDs(); it.valid(); it.advance(), i++) {
+      if(i % 50 != 0) {
+        continue;
+      }
+      KNNList knn = knnq.getKNNForDBID(it, 10), exp = linknn.getKNNForDBID(it, 10);
+      found += DBIDUtil.intersectionSize(DBIDUtil.newHashSet(knn), DBIDUtil.newHashSet(exp));
+      total += exp.size();
+    }
+    return found / (double) total;
+  }
+}
@@ -35,6 +35,7 @@ import de.lmu.ifi.dbs.elki.index.tree.metrical.mtreevariants.strategies.split.di
 import de.lmu.ifi.dbs.elki.index.tree.metrical.mtreevariants.strategies.split.distribution.DistanceEntry;
 import de.lmu.ifi.dbs.elki.logging.Logging;
 import de.lmu.ifi.dbs.elki.logging.statistics.Counter;
+import de.lmu.ifi.dbs.elki.logging.statistics.LongAdderCounter;
 import de.lmu.ifi.dbs.elki.logging.statistics.LongStatistic;
 import de.lmu.ifi.dbs.elki.persistent.PageFile;
 import de.lmu.ifi.dbs.elki.utilities.io.FormatUtil;
@@ -151,8 +152,21 @@ public abstract class AbstractMTree<O, N extends AbstractMTreeNode<O, N, E>, E e
    * @param withPreInsert if this flag is true, the preInsert method will be
    *        called before inserting the object
    */
-  // todo: implement a bulk load for M-Tree and remove this method
   public void insert(E entry, boolean withPreInsert) {
+    insertEntry(entry, withPreInsert);
+  }
+
+  /**
+   * Inserts the specified entry into this M-Tree. Unlike
+   * {@link #insert(MTreeEntry, boolean)}, this method cannot be overridden,
+   * and can be used by variants that do not support single insertions.
+   *
+   * @param entry the entry to be inserted
+   * @param withPreInsert if this flag is true, the preInsert method will be
+   *        called before inserting the object
+   */
+  private void insertEntry(E entry, boolean withPreInsert) {
+    checkWritable();
     final Logging log = getLogger();
     if(log.isDebugging()) {
       log.debugFine("insert " + entry.getRoutingObjectID());
@@ -200,8 +214,76 @@ public abstract class AbstractMTree<O, N extends AbstractMTreeNode<O, N, E>, E e
     if(!initialized && !entries.isEmpty()) {
       initialize(entries.get(0));
     }
+    insertEntries(entries);
+  }
+
+  /**
+   * Insert entries into the (initialized) tree, without pre-insertion.
+   * <p>
+   * If a bulk loading strategy is configured and the tree is still empty, the
+   * tree is bulk loaded; otherwise the entries are inserted one by one.
+   *
+   * @param entries Entries to insert
+   */
+  protected final void insertEntries(List<E> entries) {
+    if(settings.bulkStrategy != null && entries.size() > 1 && getRoot().isLeaf() && getRoot().getNumEntries() == 0) {
+      bulkLoad(entries);
+      return;
+    }
     for(E entry : entries) {
-      insert(entry, false);
+      insertEntry(entry, false);
+    }
+  }
+
+  /**
+   * Bulk load an empty tree, bottom-up.
+   * <p>
+   * The bulk loading strategy partitions the entries into leaves, then the
+   * entries representing the leaves into directory nodes, until only the root
+   * remains. Covering radii are computed bottom-up from the parent distances
+   * assigned by the strategy.
+   *
+   * @param entries Entries to insert
+   */
+  protected void bulkLoad(List<E> entries) {
+    checkWritable();
+    List<List<E>> partitions = settings.bulkStrategy.partition(this, entries, leafCapacity - 1);
+    boolean leaf = true;
+    while(partitions.size() > 1) {
+      List<E> next = new ArrayList<>(partitions.size());
+      for(List<E> partition : partitions) {
+        N node = leaf ? createNewLeafNode() : createNewDirectoryNode();
+        for(E e : partition) {
+          if(leaf) {
+            node.addLeafEntry(e);
+          }
+          else {
+            node.addDirectoryEntry(e);
+          }
+        }
+        writeNode(node);
+        next.add(createNewDirectoryEntry(node, partition.get(0).getRoutingObjectID(), 0.));
+      }
+      partitions = settings.bulkStrategy.partition(this, next, dirCapacity - 1);
+      leaf = false;
+    }
+    // Fill the root node:
+    N root = leaf ? getRoot() : createNewDirectoryNode();
+    root.setPageID(getRootID());
+    final E rootEntry = getRootEntry();
+    for(E e : partitions.get(0)) {
+      e.setParentDistance(distance(rootEntry.getRoutingObjectID(), e.getRoutingObjectID()));
+      if(leaf) {
+        root.addLeafEntry(e);
+      }
+      else {
+        root.addDirectoryEntry(e);
+      }
+    }
+    writeNode(root);
+    root.adjustEntry(rootEntry, rootEntry.getRoutingObjectID(), rootEntry.getParentDistance(), this);
+    if(EXTRA_INTEGRITY_CHECKS) {
+      getRoot().integrityCheck(this, getRootEntry());
     }
   }
 
@@ -505,9 +587,10 @@ public abstract class AbstractMTree<O, N extends AbstractMTreeNode<O, N, E>, E e
     public Statistics() {
       super();
       Logging log = getLogger();
-      distanceCalcs = log.isStatistics() ? log.newCounter(this.getClass().getName() + ".distancecalcs") : null;
-      knnQueries = log.isStatistics() ? log.newCounter(this.getClass().getName() + ".knnqueries") : null;
-      rangeQueries = log.isStatistics() ? log.newCounter(this.getClass().getName() + ".rangequeries") : null;
+      // Thread-safe counters, for concurrent queries in read-only mode.
+      distanceCalcs = log.isStatistics() ? new LongAdderCounter(this.getClass().getName() + ".distancecalcs") : null;
+      knnQueries = log.isStatistics() ? new LongAdderCounter(this.getClass().getName() + ".knnqueries") : null;
+      rangeQueries = log.isStatistics() ? new LongAdderCounter(this.getClass().getName() + ".rangequeries") : null;
     }
 
     /**
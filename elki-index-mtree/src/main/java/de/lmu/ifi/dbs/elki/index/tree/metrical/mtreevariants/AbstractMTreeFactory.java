@@ -24,6 +24,7 @@ import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
 import de.lmu.ifi.dbs.elki.distance.distancefunction.DistanceFunction;
 import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.EuclideanDistanceFunction;
 import de.lmu.ifi.dbs.elki.index.PagedIndexFactory;
+import de.lmu.ifi.dbs.elki.index.tree.metrical.mtreevariants.strategies.bulk.MTreeBulkLoad;
 import de.lmu.ifi.dbs.elki.index.tree.metrical.mtreevariants.strategies.insert.MTreeInsert;
 import de.lmu.ifi.dbs.elki.index.tree.metrical.mtreevariants.strategies.insert.MinimumEnlargementInsert;
 import de.lmu.ifi.dbs.elki.index.tree.metrical.mtreevariants.strategies.split.MLBDistSplit;
@@ -91,6 +92,11 @@ public abstract class AbstractMTreeFactory<O, N extends AbstractMTreeNode<O, N,
      */
     public static final OptionID INSERT_STRATEGY_ID = new OptionID("mtree.insert", "Insertion strategy to use for constructing the M-tree.");
 
+    /**
+     * Parameter for bulk loading the tree.
+     */
+    public static final OptionID BULK_STRATEGY_ID = new OptionID("mtree.bulk", "Bulk loading strategy to use for constructing the M-tree. If not set, objects are inserted one at a time.");
+
     /**
      * Tree settings.
      */
@@ -112,6 +118,10 @@ public abstract class AbstractMTreeFactory<O, N extends AbstractMTreeNode<O, N,
       if(config.grab(insertStrategyP)) {
         settings.insertStrategy = insertStrategyP.instantiateClass(config);
       }
+      ObjectParameter<MTreeBulkLoad<E, N>> bulkStrategyP = new ObjectParameter<>(BULK_STRATEGY_ID, MTreeBulkLoad.class, true);
+      if(config.grab(bulkStrategyP)) {
+        settings.bulkStrategy = bulkStrategyP.instantiateClass(config);
+      }
     }
 
     abstract protected S makeSettings();
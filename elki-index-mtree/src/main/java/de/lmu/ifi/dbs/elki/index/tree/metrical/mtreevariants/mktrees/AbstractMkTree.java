@@ -20,8 +20,11 @@
  */
 package de.lmu.ifi.dbs.elki.index.tree.metrical.mtreevariants.mktrees;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 
 import de.lmu.ifi.dbs.elki.database.ids.*;
 import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
@@ -32,6 +35,7 @@ import de.lmu.ifi.dbs.elki.index.tree.metrical.mtreevariants.AbstractMTreeNode;
 import de.lmu.ifi.dbs.elki.index.tree.metrical.mtreevariants.MTreeEntry;
 import de.lmu.ifi.dbs.elki.index.tree.metrical.mtreevariants.MTreeSettings;
 import de.lmu.ifi.dbs.elki.index.tree.metrical.mtreevariants.query.MTreeKNNQuery;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
 import de.lmu.ifi.dbs.elki.persistent.PageFile;
 
 /**
@@ -47,6 +51,11 @@ import de.lmu.ifi.dbs.elki.persistent.PageFile;
  * @param <S> the type of Settings kept.
  */
 public abstract class AbstractMkTree<O, N extends AbstractMTreeNode<O, N, E>, E extends MTreeEntry, S extends MTreeSettings<O, N, E>> extends AbstractMTree<O, N, E, S> {
+  /**
+   * Number of queries per parallel task in {@link #batchNN}.
+   */
+  private static final int BATCH_BLOCK = 256;
+
   /**
    * Internal class for performing knn queries
    */
@@ -105,10 +114,31 @@ public abstract class AbstractMkTree<O, N extends AbstractMTreeNode<O, N, E>, E
    */
   @Deprecated
   protected final Map<DBID, KNNList> batchNN(N node, DBIDs ids, int kmax) {
-    Map<DBID, KNNList> res = new HashMap<>(ids.size());
-    for(DBIDIter iter = ids.iter(); iter.valid(); iter.advance()) {
-      DBID id = DBIDUtil.deref(iter);
-      res.put(id, knnq.getKNNForDBID(id, kmax));
+    final ArrayDBIDs aids = DBIDUtil.ensureArray(ids);
+    final int size = aids.size();
+    final KNNList[] knns = new KNNList[size];
+    // Queries run concurrently; read-only mode makes the page file safe.
+    final boolean readonly = isReadOnly();
+    setReadOnly(true);
+    try {
+      List<Callable<Void>> tasks = new ArrayList<>((size + BATCH_BLOCK - 1) / BATCH_BLOCK);
+      for(int begin = 0; begin < size; begin += BATCH_BLOCK) {
+        final int b = begin, e = Math.min(begin + BATCH_BLOCK, size);
+        tasks.add(() -> {
+          for(DBIDArrayIter iter = aids.iter().seek(b); iter.getOffset() < e; iter.advance()) {
+            knns[iter.getOffset()] = knnq.getKNNForDBID(iter, kmax);
+          }
+          return null;
+        });
+      }
+      ParallelExecutor.runAll(tasks);
+    }
+    finally {
+      setReadOnly(readonly);
+    }
+    Map<DBID, KNNList> res = new HashMap<>(size);
+    for(DBIDArrayIter iter = aids.iter(); iter.valid(); iter.advance()) {
+      res.put(DBIDUtil.deref(iter), knns[iter.getOffset()]);
     }
     return res;
   }
@@ -79,14 +79,13 @@ public abstract class AbstractMkTreeUnified<O, N extends AbstractMTreeNode<O, N,
     }
 
     ModifiableDBIDs ids = DBIDUtil.newArray(entries.size());
-
-    // insert sequentially
-    for (E entry : entries) {
+    for(E entry : entries) {
       ids.add(entry.getRoutingObjectID());
-      // insert the object
-      super.insert(entry, false);
     }
 
+    // insert (or bulk load) the objects
+    insertEntries(entries);
+
     // do batch nn
     Map<DBID, KNNList> knnLists = batchNN(getRoot(), ids, settings.kmax);
 
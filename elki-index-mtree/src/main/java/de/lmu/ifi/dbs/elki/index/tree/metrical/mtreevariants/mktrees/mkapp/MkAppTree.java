@@ -37,12 +37,10 @@ import de.lmu.ifi.dbs.elki.database.ids.ModifiableDoubleDBIDList;
 import de.lmu.ifi.dbs.elki.database.relation.Relation;
 import de.lmu.ifi.dbs.elki.index.tree.LeafEntry;
 import de.lmu.ifi.dbs.elki.index.tree.metrical.mtreevariants.mktrees.AbstractMkTree;
-import de.lmu.ifi.dbs.elki.index.tree.metrical.mtreevariants.query.MTreeSearchCandidate;
 import de.lmu.ifi.dbs.elki.logging.Logging;
 import de.lmu.ifi.dbs.elki.math.statistics.PolynomialRegression;
 import de.lmu.ifi.dbs.elki.persistent.PageFile;
-import de.lmu.ifi.dbs.elki.utilities.datastructures.heap.Heap;
-import de.lmu.ifi.dbs.elki.utilities.datastructures.heap.UpdatableHeap;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.heap.DoubleIntegerMinHeap;
 import de.lmu.ifi.dbs.elki.utilities.io.ByteArrayUtil;
 import net.jafama.FastMath;
 
@@ -112,14 +110,13 @@ public abstract class MkAppTree<O> extends AbstractMkTree<O, MkAppTreeNode<O>, M
     }
 
     ModifiableDBIDs ids = DBIDUtil.newArray(entries.size());
-
-    // insert
     for(MkAppEntry entry : entries) {
       ids.add(entry.getRoutingObjectID());
-      // insert the object
-      super.insert(entry, false);
     }
 
+    // insert (or bulk load) the objects
+    insertEntries(entries);
+
     // do batch nn
     Map<DBID, KNNList> knnLists = batchNN(getRoot(), ids, settings.kmax + 1);
 
@@ -142,17 +139,18 @@ public abstract class MkAppTree<O> extends AbstractMkTree<O, MkAppTreeNode<O>, M
   @Override
   public DoubleDBIDList reverseKNNQuery(DBIDRef id, int k) {
     ModifiableDoubleDBIDList result = DBIDUtil.newDistanceDBIDList();
-    final Heap<MTreeSearchCandidate> pq = new UpdatableHeap<>();
+    final DoubleIntegerMinHeap pq = new DoubleIntegerMinHeap();
 
     // push root
-    pq.add(new MTreeSearchCandidate(0., getRootID(), null, Double.NaN));
+    pq.add(0., getRootID());
 
     // search in tree
     while(!pq.isEmpty()) {
-      MTreeSearchCandidate pqNode = pq.poll();
+      final int nodeID = pq.peekValue();
+      pq.poll();
       // FIXME: cache the distance to the routing object in the queue node!
 
-      MkAppTreeNode<O> node = getNode(pqNode.nodeID);
+      MkAppTreeNode<O> node = getNode(nodeID);
 
       // directory node
       if(!node.isLeaf()) {
@@ -167,7 +165,7 @@ public abstract class MkAppTree<O> extends AbstractMkTree<O, MkAppTreeNode<O>, M
           }
 
           if(minDist <= approxValue) {
-            pq.add(new MTreeSearchCandidate(minDist, getPageID(entry), entry.getRoutingObjectID(), Double.NaN));
+            pq.add(minDist, getPageID(entry));
           }
         }
       }
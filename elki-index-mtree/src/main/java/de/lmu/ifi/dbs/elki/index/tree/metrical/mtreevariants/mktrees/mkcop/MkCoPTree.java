@@ -36,10 +36,9 @@ import de.lmu.ifi.dbs.elki.database.ids.ModifiableDoubleDBIDList;
 import de.lmu.ifi.dbs.elki.database.relation.Relation;
 import de.lmu.ifi.dbs.elki.index.tree.metrical.mtreevariants.mktrees.AbstractMkTree;
 import de.lmu.ifi.dbs.elki.index.tree.metrical.mtreevariants.mktrees.MkTreeSettings;
-import de.lmu.ifi.dbs.elki.index.tree.metrical.mtreevariants.query.MTreeSearchCandidate;
 import de.lmu.ifi.dbs.elki.logging.Logging;
 import de.lmu.ifi.dbs.elki.persistent.PageFile;
-import de.lmu.ifi.dbs.elki.utilities.datastructures.heap.ComparableMinHeap;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.heap.DoubleIntegerMinHeap;
 import de.lmu.ifi.dbs.elki.utilities.exceptions.AbortException;
 import de.lmu.ifi.dbs.elki.utilities.io.ByteArrayUtil;
 import de.lmu.ifi.dbs.elki.utilities.io.FormatUtil;
@@ -116,14 +115,13 @@ public abstract class MkCoPTree<O> extends AbstractMkTree<O, MkCoPTreeNode<O>, M
     }
 
     ModifiableDBIDs ids = DBIDUtil.newArray(entries.size());
-
-    // insert
     for(MkCoPEntry entry : entries) {
       ids.add(entry.getRoutingObjectID());
-      // insert the object
-      super.insert(entry, false);
     }
 
+    // insert (or bulk load) the objects
+    insertEntries(entries);
+
     // perform nearest neighbor queries
     Map<DBID, KNNList> knnLists = batchNN(getRoot(), ids, settings.kmax);
 
@@ -244,17 +242,18 @@ public abstract class MkCoPTree<O> extends AbstractMkTree<O, MkCoPTreeNode<O>, M
    *        refinement)
    */
   private void doReverseKNNQuery(int k, DBIDRef q, ModifiableDoubleDBIDList result, ModifiableDBIDs candidates) {
-    final ComparableMinHeap<MTreeSearchCandidate> pq = new ComparableMinHeap<>();
+    final DoubleIntegerMinHeap pq = new DoubleIntegerMinHeap();
 
     // push root
-    pq.add(new MTreeSearchCandidate(0., getRootID(), null, Double.NaN));
+    pq.add(0., getRootID());
 
     // search in tree
     while(!pq.isEmpty()) {
-      MTreeSearchCandidate pqNode = pq.poll();
+      final int nodeID = pq.peekValue();
+      pq.poll();
       // FIXME: cache the distance to the routing object in the queue node!
 
-      MkCoPTreeNode<O> node = getNode(pqNode.nodeID);
+      MkCoPTreeNode<O> node = getNode(nodeID);
 
       // directory node
       if(!node.isLeaf()) {
@@ -265,7 +264,7 @@ public abstract class MkCoPTree<O> extends AbstractMkTree<O, MkCoPTreeNode<O>, M
           double approximatedKnnDist_cons = entry.approximateConservativeKnnDistance(k);
 
           if(minDist <= approximatedKnnDist_cons) {
-            pq.add(new MTreeSearchCandidate(minDist, getPageID(entry), entry.getRoutingObjectID(), Double.NaN));
+            pq.add(minDist, getPageID(entry));
           }
         }
       }
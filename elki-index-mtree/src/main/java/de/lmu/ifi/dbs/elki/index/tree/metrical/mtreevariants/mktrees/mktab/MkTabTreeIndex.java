@@ -98,9 +98,8 @@ public class MkTabTreeIndex<O> extends MkTabTree<O>implements RangeIndex<O>, KNN
     super.initialize();
     List<MkTabEntry> objs = new ArrayList<>(relation.size());
     for(DBIDIter iter = relation.iterDBIDs(); iter.valid(); iter.advance()) {
-      DBID id = DBIDUtil.deref(iter); // FIXME: expensive
-      final O object = relation.get(id);
-      objs.add(createNewLeafEntry(id, object, Double.NaN));
+      // kNN distances are computed by the batch insertion.
+      objs.add(new MkTabLeafEntry(DBIDUtil.deref(iter), Double.NaN, new double[getKmax()]));
     }
     insertAll(objs);
   }
@@ -20,6 +20,8 @@
  */
 package de.lmu.ifi.dbs.elki.index.tree.metrical.mtreevariants.query;
 
+import java.util.Arrays;
+
 import de.lmu.ifi.dbs.elki.database.ids.DBID;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
 import de.lmu.ifi.dbs.elki.database.ids.KNNHeap;
@@ -30,7 +32,7 @@ import de.lmu.ifi.dbs.elki.index.tree.DirectoryEntry;
 import de.lmu.ifi.dbs.elki.index.tree.metrical.mtreevariants.AbstractMTree;
 import de.lmu.ifi.dbs.elki.index.tree.metrical.mtreevariants.AbstractMTreeNode;
 import de.lmu.ifi.dbs.elki.index.tree.metrical.mtreevariants.MTreeEntry;
-import de.lmu.ifi.dbs.elki.utilities.datastructures.heap.ComparableMinHeap;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.heap.DoubleIntegerMinHeap;
 
 /**
  * Instance of a KNN query for a particular spatial index.
@@ -39,7 +41,6 @@ import de.lmu.ifi.dbs.elki.utilities.datastructures.heap.ComparableMinHeap;
  * @since 0.4.0
  * 
  * @assoc - - - AbstractMTree
- * @assoc - - - MTreeSearchCandidate
  * 
  * @param <O> Object type
  */
@@ -70,22 +71,28 @@ public class MTreeKNNQuery<O> extends AbstractDistanceKNNQuery<O> {
     KNNHeap knnList = DBIDUtil.newHeap(k);
     double d_k = Double.POSITIVE_INFINITY;
 
-    final ComparableMinHeap<MTreeSearchCandidate> pq = new ComparableMinHeap<>();
+    // Candidates are slots, with the node and the routing distance:
+    final DoubleIntegerMinHeap pq = new DoubleIntegerMinHeap();
+    int[] nodes = new int[16];
+    double[] rdists = new double[16];
+    int slots = 0;
 
     // Push the root node
-    pq.add(new MTreeSearchCandidate(0., index.getRootID(), null, 0.));
+    nodes[slots] = index.getRootID();
+    rdists[slots] = 0.;
+    pq.add(0., slots++);
 
     // search in tree
     while(!pq.isEmpty()) {
-      MTreeSearchCandidate pqNode = pq.poll();
-
-      if(knnList.size() >= k && pqNode.mindist > d_k) {
+      if(knnList.size() >= k && pq.peekKey() > d_k) {
         break;
       }
+      final int slot = pq.peekValue();
+      pq.poll();
 
-      AbstractMTreeNode<?, ?, ?> node = index.getNode(pqNode.nodeID);
-      DBID id_p = pqNode.routingObjectID;
-      double d1 = pqNode.routingDistance;
+      AbstractMTreeNode<?, ?, ?> node = index.getNode(nodes[slot]);
+      final boolean isroot = slot == 0;
+      double d1 = rdists[slot];
 
       // directory node
       if(!node.isLeaf()) {
@@ -93,7 +100,7 @@ public class MTreeKNNQuery<O> extends AbstractDistanceKNNQuery<O> {
           MTreeEntry entry = node.getEntry(i);
           DBID o_r = entry.getRoutingObjectID();
           double r_or = entry.getCoveringRadius();
-          double d2 = id_p != null ? entry.getParentDistance() : 0.;
+          double d2 = !isroot ? entry.getParentDistance() : 0.;
 
           double diff = Math.abs(d1 - d2);
 
@@ -104,7 +111,13 @@ public class MTreeKNNQuery<O> extends AbstractDistanceKNNQuery<O> {
             index.statistics.countDistanceCalculation();
             double d_min = Math.max(d3 - r_or, 0.);
             if(d_min <= d_k) {
-              pq.add(new MTreeSearchCandidate(d_min, ((DirectoryEntry) entry).getPageID(), o_r, d3));
+              if(slots == nodes.length) {
+                nodes = Arrays.copyOf(nodes, slots << 1);
+                rdists = Arrays.copyOf(rdists, slots << 1);
+              }
+              nodes[slots] = ((DirectoryEntry) entry).getPageID();
+              rdists[slots] = d3;
+              pq.add(d_min, slots++);
             }
           }
         }
@@ -115,7 +128,7 @@ public class MTreeKNNQuery<O> extends AbstractDistanceKNNQuery<O> {
           MTreeEntry entry = node.getEntry(i);
           DBID o_j = entry.getRoutingObjectID();
 
-          double d2 = id_p != null ? entry.getParentDistance() : 0.;
+          double d2 = !isroot ? entry.getParentDistance() : 0.;
 
           double diff = Math.abs(d1 - d2);
 
@@ -0,0 +1,56 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.index.tree.metrical.mtreevariants.strategies.bulk;
+
+import java.util.List;
+
+import de.lmu.ifi.dbs.elki.index.tree.metrical.mtreevariants.AbstractMTree;
+import de.lmu.ifi.dbs.elki.index.tree.metrical.mtreevariants.AbstractMTreeNode;
+import de.lmu.ifi.dbs.elki.index.tree.metrical.mtreevariants.MTreeEntry;
+
+/**
+ * Interface for M-tree bulk loading strategies.
+ * <p>
+ * The tree is built bottom-up: the strategy is used to partition the data
+ * entries into leaves, then to partition the entries of the leaves into
+ * directory nodes, until only a single (root) node remains.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ *
+ * @param <E> the type of MTreeEntry used in the M-Tree
+ * @param <N> the type of AbstractMTreeNode used in the M-Tree
+ */
+public interface MTreeBulkLoad<E extends MTreeEntry, N extends AbstractMTreeNode<?, N, E>> {
+  /**
+   * Partition the entries into groups of at most {@code maxEntries} entries.
+   * <p>
+   * The first entry of each group is used as routing object, and the parent
+   * distance of every entry must be set to the distance to the routing object
+   * of its group.
+   *
+   * @param tree Tree to use
+   * @param entries Entries to partition
+   * @param maxEntries Maximum number of entries per group
+   * @return Groups
+   */
+  List<List<E>> partition(AbstractMTree<?, N, E, ?> tree, List<E> entries, int maxEntries);
+}
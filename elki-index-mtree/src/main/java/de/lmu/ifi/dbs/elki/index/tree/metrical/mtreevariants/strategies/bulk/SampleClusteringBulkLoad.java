@@ -0,0 +1,296 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.index.tree.metrical.mtreevariants.strategies.bulk;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+
+import de.lmu.ifi.dbs.elki.index.tree.metrical.mtreevariants.AbstractMTree;
+import de.lmu.ifi.dbs.elki.index.tree.metrical.mtreevariants.AbstractMTreeNode;
+import de.lmu.ifi.dbs.elki.index.tree.metrical.mtreevariants.MTreeEntry;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.AbstractParameterizer;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.RandomParameter;
+import de.lmu.ifi.dbs.elki.utilities.random.RandomFactory;
+
+/**
+ * Bulk loading of M-trees by recursive clustering around sampled seeds.
+ * <p>
+ * A set of entries that does not fit into a single node is partitioned by
+ * drawing a random sample of seeds, and assigning every entry to its nearest
+ * seed. Seeds that attract too few entries are discarded, and their entries
+ * are redistributed. Partitions that are still too large are processed
+ * recursively. The seed of each partition becomes its routing object, and the
+ * distances computed during the assignment are the parent distances, so no
+ * additional distance computations are needed to build the nodes.
+ * <p>
+ * Large partitions are processed in parallel. Because the random seeds are
+ * drawn before the parallel tasks are started, the result does not depend on
+ * the number of threads.
+ * <p>
+ * Reference:
+ * <p>
+ * P. Ciaccia, M. Patella<br>
+ * Bulk loading the M-tree<br>
+ * Proc. 9th Australasian Database Conference (ADC'98)
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ *
+ * @param <E> the type of MTreeEntry used in the M-Tree
+ * @param <N> the type of AbstractMTreeNode used in the M-Tree
+ */
+@Reference(authors = "P. Ciaccia, M. Patella", //
+    title = "Bulk loading the M-tree", //
+    booktitle = "Proc. 9th Australasian Database Conference (ADC'98)", //
+    url = "http://www-db.deis.unibo.it/research/papers/ADC98.pdf", //
+    bibkey = "conf/adc/CiacciaP98")
+public class SampleClusteringBulkLoad<E extends MTreeEntry, N extends AbstractMTreeNode<?, N, E>> implements MTreeBulkLoad<E, N> {
+  /**
+   * Minimum number of entries for processing partitions in parallel.
+   */
+  protected static final int PARALLEL_THRESHOLD = 1 << 12;
+
+  /**
+   * Number of entries assigned by a single parallel task.
+   */
+  private static final int BLOCK = 1 << 10;
+
+  /**
+   * Random generator.
+   */
+  private RandomFactory rnd;
+
+  /**
+   * Constructor.
+   *
+   * @param rnd Random generator
+   */
+  public SampleClusteringBulkLoad(RandomFactory rnd) {
+    super();
+    this.rnd = rnd;
+  }
+
+  @Override
+  public List<List<E>> partition(AbstractMTree<?, N, E, ?> tree, List<E> entries, int maxEntries) {
+    List<List<E>> ret = new ArrayList<>();
+    if(entries.size() <= maxEntries) {
+      final E routing = entries.get(0);
+      for(E e : entries) {
+        e.setParentDistance(tree.distance(routing, e));
+      }
+      ret.add(entries);
+      return ret;
+    }
+    partition(tree, new ArrayList<>(entries), maxEntries, rnd.getSingleThreadedRandom(), ret);
+    return ret;
+  }
+
+  /**
+   * Partition recursively.
+   *
+   * @param tree Tree to use
+   * @param entries Entries to partition (will be reordered)
+   * @param maxEntries Maximum number of entries per group
+   * @param random Random generator
+   * @param ret Output list
+   */
+  private void partition(AbstractMTree<?, N, E, ?> tree, List<E> entries, int maxEntries, Random random, List<List<E>> ret) {
+    if(entries.size() <= maxEntries) {
+      ret.add(entries);
+      return;
+    }
+    List<List<E>> groups = cluster(tree, entries, maxEntries, random);
+    if(entries.size() < PARALLEL_THRESHOLD) {
+      for(List<E> group : groups) {
+        partition(tree, group, maxEntries, random, ret);
+      }
+      return;
+    }
+    List<Callable<List<List<E>>>> tasks = new ArrayList<>(groups.size());
+    for(List<E> group : groups) {
+      final long seed = random.nextLong();
+      tasks.add(() -> {
+        List<List<E>> part = new ArrayList<>();
+        partition(tree, group, maxEntries, new Random(seed), part);
+        return part;
+      });
+    }
+    for(List<List<E>> part : ParallelExecutor.runAll(tasks)) {
+      ret.addAll(part);
+    }
+  }
+
+  /**
+   * Perform a single clustering step.
+   *
+   * @param tree Tree to use
+   * @param entries Entries to partition (will be reordered)
+   * @param maxEntries Maximum number of entries per group
+   * @param random Random generator
+   * @return Groups, the seed of each group first
+   */
+  private List<List<E>> cluster(AbstractMTree<?, N, E, ?> tree, List<E> entries, int maxEntries, Random random) {
+    final int size = entries.size();
+    final int k = Math.min(maxEntries, (size + maxEntries - 1) / maxEntries);
+    // Partial Fisher-Yates shuffle, to move the seeds to the front.
+    for(int i = 0; i < k; i++) {
+      Collections.swap(entries, i, i + random.nextInt(size - i));
+    }
+    final boolean[] alive = new boolean[k];
+    final int[] assign = new int[size];
+    final double[] dists = new double[size];
+    for(int i = 0; i < k; i++) {
+      alive[i] = true;
+      assign[i] = i;
+    }
+    if(size < PARALLEL_THRESHOLD) {
+      assign(tree, entries, alive, k, size, assign, dists);
+    }
+    else {
+      List<Callable<Void>> tasks = new ArrayList<>((size - k) / BLOCK + 1);
+      for(int begin = k; begin < size; begin += BLOCK) {
+        final int b = begin, e = Math.min(begin + BLOCK, size);
+        tasks.add(() -> {
+          assign(tree, entries, alive, b, e, assign, dists);
+          return null;
+        });
+      }
+      ParallelExecutor.runAll(tasks);
+    }
+    // Discard seeds with too few entries, unless this leaves a single seed.
+    final int[] counts = new int[k];
+    for(int i = 0; i < size; i++) {
+      counts[assign[i]]++;
+    }
+    final int minfill = Math.max(2, maxEntries >> 2);
+    int survivors = 0;
+    for(int j = 0; j < k; j++) {
+      survivors += counts[j] >= minfill ? 1 : 0;
+    }
+    if(survivors >= 2 && survivors < k) {
+      for(int j = 0; j < k; j++) {
+        alive[j] = counts[j] >= minfill;
+      }
+      for(int i = 0; i < size; i++) {
+        if(!alive[assign[i]]) {
+          counts[assign[i]]--;
+          assign(tree, entries, alive, i, i + 1, assign, dists);
+          counts[assign[i]]++;
+        }
+      }
+    }
+    // Build the groups, seeds first:
+    List<List<E>> groups = new ArrayList<>(survivors);
+    final int[] groupof = new int[k];
+    for(int j = 0; j < k; j++) {
+      if(alive[j]) {
+        groupof[j] = groups.size();
+        List<E> group = new ArrayList<>(counts[j]);
+        final E e = entries.get(j);
+        e.setParentDistance(0.);
+        group.add(e);
+        groups.add(group);
+      }
+    }
+    for(int i = 0; i < size; i++) {
+      if(i < k && alive[i]) {
+        continue; // Seed, already added.
+      }
+      final E e = entries.get(i);
+      e.setParentDistance(dists[i]);
+      groups.get(groupof[assign[i]]).add(e);
+    }
+    return groups;
+  }
+
+  /**
+   * Assign entries to the nearest live seed.
+   *
+   * @param tree Tree to use
+   * @param entries Entries, seeds first
+   * @param alive Seeds still in use
+   * @param begin First entry to assign
+   * @param end End of entries to assign (exclusive)
+   * @param assign Output assignment
+   * @param dists Output distances
+   */
+  private void assign(AbstractMTree<?, N, E, ?> tree, List<E> entries, boolean[] alive, int begin, int end, int[] assign, double[] dists) {
+    for(int i = begin; i < end; i++) {
+      final E e = entries.get(i);
+      double best = Double.POSITIVE_INFINITY;
+      int besti = -1;
+      for(int j = 0; j < alive.length; j++) {
+        if(alive[j]) {
+          final double d = tree.distance(entries.get(j), e);
+          if(d < best || besti < 0) {
+            best = d;
+            besti = j;
+          }
+        }
+      }
+      assign[i] = besti;
+      dists[i] = best;
+    }
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   *
+   * @hidden
+   *
+   * @param <E> the type of MTreeEntry used in the M-Tree
+   * @param <N> the type of AbstractMTreeNode used in the M-Tree
+   */
+  public static class Parameterizer<E extends MTreeEntry, N extends AbstractMTreeNode<?, N, E>> extends AbstractParameterizer {
+    /**
+     * Option ID for the random generator.
+     */
+    public static final OptionID RANDOM_ID = new OptionID("mtree.bulk.random", "Random generator / seed for choosing the seeds of the bulk loading partitions.");
+
+    /**
+     * Random generator
+     */
+    RandomFactory rnd = RandomFactory.DEFAULT;
+
+    @Override
+    protected void makeOptions(Parameterization config) {
+      super.makeOptions(config);
+      RandomParameter rndP = new RandomParameter(RANDOM_ID);
+      if(config.grab(rndP)) {
+        rnd = rndP.getValue();
+      }
+    }
+
+    @Override
+    protected SampleClusteringBulkLoad<E, N> makeInstance() {
+      return new SampleClusteringBulkLoad<>(rnd);
+    }
+  }
+}
@@ -0,0 +1,65 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.index.tree.metrical.mtreevariants.mktrees.mkapp;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.index.AbstractIndexStructureTest;
+import de.lmu.ifi.dbs.elki.index.tree.metrical.mtreevariants.AbstractMTreeFactory;
+import de.lmu.ifi.dbs.elki.index.tree.metrical.mtreevariants.query.MTreeKNNQuery;
+import de.lmu.ifi.dbs.elki.index.tree.metrical.mtreevariants.query.MkTreeRKNNQuery;
+import de.lmu.ifi.dbs.elki.index.tree.metrical.mtreevariants.strategies.bulk.SampleClusteringBulkLoad;
+import de.lmu.ifi.dbs.elki.persistent.AbstractPageFileFactory;
+import de.lmu.ifi.dbs.elki.utilities.ELKIBuilder;
+
+/**
+ * Unit test for the MkApp-tree.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ */
+public class MkAppTreeTest extends AbstractIndexStructureTest {
+  /**
+   * Test {@link MkAppTree} against a linear scan.
+   */
+  @Test
+  public void testKNNAndRKNN() {
+    MkAppTreeFactory<?> factory = new ELKIBuilder<>(MkAppTreeFactory.class) //
+        .with(MkAppTreeFactory.Parameterizer.K_ID, 10) //
+        .with(MkAppTreeFactory.Parameterizer.P_ID, 3) //
+        .with(AbstractPageFileFactory.Parameterizer.PAGE_SIZE_ID, 1000).build();
+    testKNNAndRKNN(factory, MTreeKNNQuery.class, MkTreeRKNNQuery.class, 10, 0.8);
+  }
+
+  /**
+   * Test {@link MkAppTree} with bulk loading against a linear scan.
+   */
+  @Test
+  public void testBulkLoad() {
+    MkAppTreeFactory<?> factory = new ELKIBuilder<>(MkAppTreeFactory.class) //
+        .with(MkAppTreeFactory.Parameterizer.K_ID, 10) //
+        .with(MkAppTreeFactory.Parameterizer.P_ID, 3) //
+        .with(AbstractMTreeFactory.Parameterizer.BULK_STRATEGY_ID, SampleClusteringBulkLoad.class) //
+        .with(SampleClusteringBulkLoad.Parameterizer.RANDOM_ID, 0L) //
+        .with(AbstractPageFileFactory.Parameterizer.PAGE_SIZE_ID, 1000).build();
+    testKNNAndRKNN(factory, MTreeKNNQuery.class, MkTreeRKNNQuery.class, 10, 0.8);
+  }
+}
@@ -24,8 +24,11 @@ import org.junit.Test;
 
 import de.lmu.ifi.dbs.elki.data.DoubleVector;
 import de.lmu.ifi.dbs.elki.index.AbstractIndexStructureTest;
+import de.lmu.ifi.dbs.elki.index.tree.IndexTree;
+import de.lmu.ifi.dbs.elki.index.tree.metrical.mtreevariants.AbstractMTreeFactory;
 import de.lmu.ifi.dbs.elki.index.tree.metrical.mtreevariants.query.MTreeKNNQuery;
 import de.lmu.ifi.dbs.elki.index.tree.metrical.mtreevariants.query.MTreeRangeQuery;
+import de.lmu.ifi.dbs.elki.index.tree.metrical.mtreevariants.strategies.bulk.SampleClusteringBulkLoad;
 import de.lmu.ifi.dbs.elki.persistent.AbstractPageFileFactory;
 import de.lmu.ifi.dbs.elki.utilities.ELKIBuilder;
 
@@ -46,4 +49,27 @@ public class MTreeTest extends AbstractIndexStructureTest {
     testExactEuclidean(factory, MTreeKNNQuery.class, MTreeRangeQuery.class);
     testSinglePoint(factory, MTreeKNNQuery.class, MTreeRangeQuery.class);
   }
+
+  /**
+   * Test {@link MTree} with bulk loading.
+   */
+  @Test
+  public void testBulkLoad() {
+    MTreeFactory<DoubleVector> factory = new ELKIBuilder<>(MTreeFactory.class) //
+        .with(AbstractMTreeFactory.Parameterizer.BULK_STRATEGY_ID, SampleClusteringBulkLoad.class) //
+        .with(SampleClusteringBulkLoad.Parameterizer.RANDOM_ID, 0L) //
+        .with(AbstractPageFileFactory.Parameterizer.PAGE_SIZE_ID, 300).build();
+    testExactEuclidean(factory, MTreeKNNQuery.class, MTreeRangeQuery.class);
+    testSinglePoint(factory, MTreeKNNQuery.class, MTreeRangeQuery.class);
+  }
+
+  /**
+   * Test concurrent queries on {@link MTree} in read-only mode.
+   */
+  @Test
+  public void testConcurrentReads() {
+    MTreeFactory<DoubleVector> factory = new ELKIBuilder<>(MTreeFactory.class) //
+        .with(AbstractPageFileFactory.Parameterizer.PAGE_SIZE_ID, 300).build();
+    testConcurrentKNN(factory, MTreeKNNQuery.class, idx -> ((IndexTree<?, ?>) idx).setReadOnly(true));
+  }
 }
@@ -407,7 +407,7 @@ public class MaterializeKNNAndRKNNPreprocessor<O> extends MaterializeKNNPreproce
      *
      * @author Erich Schubert
      */
-    public static class Parameterizer<O> extends MaterializeKNNPreprocessor.Factory.Parameterizer<O> {
+    public static class Parameterizer<O> extends AbstractMaterializeKNNPreprocessor.Factory.Parameterizer<O> {
       @Override
       protected Factory<O> makeInstance() {
         return new Factory<>(k, distanceFunction);
@@ -47,6 +47,9 @@ import de.lmu.ifi.dbs.elki.logging.statistics.LongStatistic;
 import de.lmu.ifi.dbs.elki.utilities.Alias;
 import de.lmu.ifi.dbs.elki.utilities.documentation.Description;
 import de.lmu.ifi.dbs.elki.utilities.documentation.Title;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.Flag;
 
 /**
  * A preprocessor for annotation of the k nearest neighbors (and their
@@ -84,6 +87,11 @@ public class MaterializeKNNPreprocessor<O> extends AbstractMaterializeKNNPreproc
    */
   protected final KNNQuery<O> knnQuery;
 
+  /**
+   * Store distances with single precision only, to reduce memory.
+   */
+  protected final boolean compact;
+
   /**
    * Holds the listener.
    */
@@ -97,8 +105,42 @@ public class MaterializeKNNPreprocessor<O> extends AbstractMaterializeKNNPreproc
    * @param k query k
    */
   public MaterializeKNNPreprocessor(Relation<O> relation, DistanceFunction<? super O> distanceFunction, int k) {
+    this(relation, distanceFunction, k, false);
+  }
+
+  /**
+   * Constructor with preprocessing step.
+   *
+   * @param relation Relation to preprocess
+   * @param distanceFunction the distance function to use
+   * @param k query k
+   * @param compact Store distances with single precision only
+   */
+  public MaterializeKNNPreprocessor(Relation<O> relation, DistanceFunction<? super O> distanceFunction, int k, boolean compact) {
     super(relation, distanceFunction, k);
     this.knnQuery = relation.getKNNQuery(distanceQuery, k, DatabaseQuery.HINT_BULK, DatabaseQuery.HINT_HEAVY_USE, DatabaseQuery.HINT_NO_CACHE);
+    this.compact = compact;
+  }
+
+  /**
+   * Convert a kNN list to the storage representation.
+   *
+   * @param knn kNN list
+   * @return kNN list to store
+   */
+  protected KNNList compact(KNNList knn) {
+    return compact ? DBIDUtil.newFloatKNNList(knn) : knn;
+  }
+
+  /**
+   * Round a distance to the precision of the stored kNN lists, such that it
+   * can be compared to their k-distance.
+   *
+   * @param dist Distance
+   * @return Distance, as stored
+   */
+  protected double compact(double dist) {
+    return compact ? (float) dist : dist;
   }
 
   /**
@@ -123,7 +165,7 @@ public class MaterializeKNNPreprocessor<O> extends AbstractMaterializeKNNPreproc
       if(kNNList != null) {
         int i = 0;
         for(DBIDIter id = ids.iter(); id.valid(); id.advance(), i++) {
-          storage.put(id, kNNList.get(i));
+          storage.put(id, compact(kNNList.get(i)));
           log.incrementProcessed(progress);
         }
       }
@@ -135,7 +177,7 @@ public class MaterializeKNNPreprocessor<O> extends AbstractMaterializeKNNPreproc
           log.incrementProcessed(progress);
           continue; // Previously computed (duplicate point?)
         }
-        KNNList knn = knnQuery.getKNNForDBID(iter, k);
+        KNNList knn = compact(knnQuery.getKNNForDBID(iter, k));
         storage.put(iter, knn);
         if(ismetric) {
           for(DoubleDBIDListIter it = knn.iter(); it.valid() && it.doubleValue() == 0.; it.advance()) {
@@ -195,7 +237,7 @@ public class MaterializeKNNPreprocessor<O> extends AbstractMaterializeKNNPreproc
     // Store in storage
     DBIDIter iter = aids.iter();
     for(int i = 0; i < aids.size(); i++, iter.advance()) {
-      storage.put(iter, kNNList.get(i));
+      storage.put(iter, compact(kNNList.get(i)));
     }
 
     // update the affected kNNs
@@ -226,14 +268,14 @@ public class MaterializeKNNPreprocessor<O> extends AbstractMaterializeKNNPreproc
       // look for new kNNs
       KNNHeap heap = null;
       for(DBIDIter iter2 = ids.iter(); iter2.valid(); iter2.advance()) {
-        final double dist = distanceQuery.distance(iter, iter2);
+        final double dist = compact(distanceQuery.distance(iter, iter2));
         if(dist <= knnDist) {
           heap = heap != null ? heap : DBIDUtil.newHeap(kNNs);
           heap.insert(dist, iter2);
         }
       }
       if(heap != null) {
-        storage.put(iter, kNNs = heap.toKNNList());
+        storage.put(iter, kNNs = compact(heap.toKNNList()));
         rkNN_ids.add(iter);
       }
     }
@@ -264,7 +306,7 @@ public class MaterializeKNNPreprocessor<O> extends AbstractMaterializeKNNPreproc
     List<? extends KNNList> kNNList = knnQuery.getKNNForBulkDBIDs(rkNN_ids, k);
     DBIDIter iter = rkNN_ids.iter();
     for(int i = 0; i < rkNN_ids.size(); i++, iter.advance()) {
-      storage.put(iter, kNNList.get(i));
+      storage.put(iter, compact(kNNList.get(i)));
     }
 
     return rkNN_ids;
@@ -390,6 +432,11 @@ public class MaterializeKNNPreprocessor<O> extends AbstractMaterializeKNNPreproc
    * @param <O> The object type
    */
   public static class Factory<O> extends AbstractMaterializeKNNPreprocessor.Factory<O> {
+    /**
+     * Store distances with single precision only.
+     */
+    protected boolean compact;
+
     /**
      * Index factory.
      *
@@ -397,12 +444,24 @@ public class MaterializeKNNPreprocessor<O> extends AbstractMaterializeKNNPreproc
      * @param distanceFunction distance function
      */
     public Factory(int k, DistanceFunction<? super O> distanceFunction) {
+      this(k, distanceFunction, false);
+    }
+
+    /**
+     * Index factory.
+     *
+     * @param k k parameter
+     * @param distanceFunction distance function
+     * @param compact Store distances with single precision only
+     */
+    public Factory(int k, DistanceFunction<? super O> distanceFunction, boolean compact) {
       super(k, distanceFunction);
+      this.compact = compact;
     }
 
     @Override
     public MaterializeKNNPreprocessor<O> instantiate(Relation<O> relation) {
-      MaterializeKNNPreprocessor<O> instance = new MaterializeKNNPreprocessor<O>(relation, distanceFunction, k);
+      MaterializeKNNPreprocessor<O> instance = new MaterializeKNNPreprocessor<O>(relation, distanceFunction, k, compact);
       return instance;
     }
 
@@ -412,9 +471,28 @@ public class MaterializeKNNPreprocessor<O> extends AbstractMaterializeKNNPreproc
      * @author Erich Schubert
      */
     public static class Parameterizer<O> extends AbstractMaterializeKNNPreprocessor.Factory.Parameterizer<O> {
+      /**
+       * Option to store distances with single precision only.
+       */
+      public static final OptionID COMPACT_ID = new OptionID("materialize.float", "Store the kNN distances with single (float) precision only, to reduce memory usage.");
+
+      /**
+       * Store distances with single precision only.
+       */
+      protected boolean compact;
+
+      @Override
+      protected void makeOptions(Parameterization config) {
+        super.makeOptions(config);
+        Flag compactF = new Flag(COMPACT_ID);
+        if(config.grab(compactF)) {
+          compact = compactF.isTrue();
+        }
+      }
+
       @Override
       protected Factory<O> makeInstance() {
-        return new Factory<>(k, distanceFunction);
+        return new Factory<>(k, distanceFunction, compact);
       }
     }
   }
@@ -20,8 +20,13 @@
  */
 package de.lmu.ifi.dbs.elki.index.preprocessed.knn;
 
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
+
 import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
-import de.lmu.ifi.dbs.elki.database.datastore.WritableDataStore;
 import de.lmu.ifi.dbs.elki.database.ids.*;
 import de.lmu.ifi.dbs.elki.database.query.DatabaseQuery;
 import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
@@ -33,6 +38,7 @@ import de.lmu.ifi.dbs.elki.logging.progress.IndefiniteProgress;
 import de.lmu.ifi.dbs.elki.logging.statistics.DoubleStatistic;
 import de.lmu.ifi.dbs.elki.logging.statistics.LongStatistic;
 import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+import de.lmu.ifi.dbs.elki.utilities.exceptions.AbortException;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
@@ -40,6 +46,7 @@ import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.DoubleParameter;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.Flag;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.RandomParameter;
+import de.lmu.ifi.dbs.elki.utilities.random.FastNonThreadsafeRandom;
 import de.lmu.ifi.dbs.elki.utilities.random.RandomFactory;
 
 /**
@@ -47,6 +54,18 @@ import de.lmu.ifi.dbs.elki.utilities.random.RandomFactory;
  * algorithm beginning with a random sample, then iteratively refining this
  * sample until.
  * <p>
+ * All working sets are stored in fixed-capacity primitive arrays indexed by
+ * the object offset: the current neighbors of each object as a max-heap with a
+ * flag bit marking new neighbors, and bounded samples of new and old forward
+ * and reverse neighbors. Reverse neighbors are grouped by object in a
+ * compressed array, and sampled with reservoir sampling into their fixed-size
+ * buffers. Each phase of an iteration runs in parallel on blocks of objects,
+ * with random generators derived from the seed by block position, so the
+ * samples do not depend on thread scheduling. During the local join, neighbor
+ * heaps are updated concurrently under striped locks; hence ties in the
+ * distances and the update counts used for termination may still depend on
+ * the order of execution.
+ * <p>
  * Reference:
  * <p>
  * W. Dong and C. Moses and K. Li<br>
@@ -55,6 +74,7 @@ import de.lmu.ifi.dbs.elki.utilities.random.RandomFactory;
  * Proc. 20th Int. Conf. on World Wide Web (WWW'11)
  *
  * @author Evelyn Kirner
+ * @author Erich Schubert
  * @since 0.7.5
  *
  * @param <O> Object type
@@ -70,6 +90,31 @@ public class NNDescent<O> extends AbstractMaterializeKNNPreprocessor<O> {
    */
   private static final Logging LOG = Logging.getLogger(NNDescent.class);
 
+  /**
+   * Flag bit for new neighbors.
+   */
+  private static final int NEW = 0x80000000;
+
+  /**
+   * Mask to remove the flag bit.
+   */
+  private static final int MASK = 0x7FFFFFFF;
+
+  /**
+   * Marker for empty neighbor slots.
+   */
+  private static final int EMPTY = Integer.MAX_VALUE;
+
+  /**
+   * Number of lock stripes, a power of two.
+   */
+  private static final int LOCK_STRIPES = 1 << 12;
+
+  /**
+   * Number of objects processed by a single parallel task.
+   */
+  private static final int BLOCK = 1 << 10;
+
   /**
    * Log prefix.
    */
@@ -101,9 +146,76 @@ public class NNDescent<O> extends AbstractMaterializeKNNPreprocessor<O> {
   private boolean noInitialNeighbors;
 
   /**
-   * store for neighbors
+   * Objects, the arrays below refer to their offsets.
+   */
+  private ArrayDBIDs ids;
+
+  /**
+   * Number of neighbors per object, excluding the object itself.
+   */
+  private int kk;
+
+  /**
+   * Sample size.
+   */
+  private int items;
+
+  /**
+   * Neighbors, kk per object, as max-heap; new neighbors have the flag bit.
+   */
+  private int[] nbr;
+
+  /**
+   * Neighbor distances, kk per object.
+   */
+  private double[] dist;
+
+  /**
+   * Sampled new forward neighbors, items per object.
+   */
+  private int[] newFwd;
+
+  /**
+   * Old forward neighbors, kk per object.
+   */
+  private int[] oldFwd;
+
+  /**
+   * Sampled new reverse neighbors, items per object.
+   */
+  private int[] newRev;
+
+  /**
+   * Sampled old reverse neighbors, items per object.
+   */
+  private int[] oldRev;
+
+  /**
+   * Number of new and old forward neighbors.
+   */
+  private int[] newFwdCnt, oldFwdCnt;
+
+  /**
+   * Number of new and old reverse neighbors seen (may exceed the buffer
+   * size).
+   */
+  private int[] newRevCnt, oldRevCnt;
+
+  /**
+   * Reverse neighbors of all objects, grouped by object, and the start offsets
+   * of each object in this array.
+   */
+  private int[] revAll, revStart;
+
+  /**
+   * Locks for the neighbor heaps.
    */
-  private WritableDataStore<KNNHeap> store;
+  private Object[] locks;
+
+  /**
+   * Number of distance computations in the current local join.
+   */
+  private final LongAdder scanned = new LongAdder();
 
   /**
    * Constructor.
@@ -128,107 +240,60 @@ public class NNDescent<O> extends AbstractMaterializeKNNPreprocessor<O> {
 
   @Override
   protected void preprocess() {
-    final DBIDs ids = relation.getDBIDs();
+    ids = DBIDUtil.ensureArray(relation.getDBIDs());
     final long starttime = System.currentTimeMillis();
     IndefiniteProgress progress = LOG.isVerbose() ? new IndefiniteProgress("KNNGraph iteration", LOG) : null;
 
+    final int size = ids.size();
     // to add query point itself in the end, internally (k-1) is used
-    final int internal_k = k - 1;
-
-    // kNN store
-    store = DataStoreFactory.FACTORY.makeStorage(ids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_TEMP, KNNHeap.class);
-    // store for new reverse neighbors
-    WritableDataStore<HashSetModifiableDBIDs> newReverseNeighbors = DataStoreFactory.FACTORY.makeStorage(ids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_TEMP, HashSetModifiableDBIDs.class);
-    // store for new reverse neighbors
-    WritableDataStore<HashSetModifiableDBIDs> oldReverseNeighbors = DataStoreFactory.FACTORY.makeStorage(ids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_TEMP, HashSetModifiableDBIDs.class);
-    // Sample of new forward neighbors.
-    WritableDataStore<HashSetModifiableDBIDs> sampleNewNeighbors = DataStoreFactory.FACTORY.makeStorage(ids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_TEMP, HashSetModifiableDBIDs.class);
-    // data structures for new and sampled new neighbors
-    WritableDataStore<HashSetModifiableDBIDs> flag = DataStoreFactory.FACTORY.makeStorage(ids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_TEMP, HashSetModifiableDBIDs.class);
-
-    // Initialize data structures:
-    for(DBIDIter iditer = ids.iter(); iditer.valid(); iditer.advance()) {
-      store.put(iditer, DBIDUtil.newHeap(internal_k));
-      newReverseNeighbors.put(iditer, DBIDUtil.newHashSet());
-      oldReverseNeighbors.put(iditer, DBIDUtil.newHashSet());
-    }
-
+    kk = Math.max(0, Math.min(k - 1, size - 1));
     // this variable is the sampling size
-    final int items = (int) Math.ceil(rho * internal_k);
-
-    long counter_all = 0;
-
-    // initialize neighbors (depends on -setInitialNeighbors option)
-    for(DBIDIter iditer = ids.iter(); iditer.valid(); iditer.advance()) {
-      // initialize sampled NN
-      ModifiableDBIDs sampleNew = DBIDUtil.randomSampleExcept(ids, iditer, items, rnd);
-      sampleNewNeighbors.put(iditer, DBIDUtil.newHashSet(sampleNew));
-      // initialize RNN
-      ModifiableDBIDs sampleRev = DBIDUtil.randomSampleExcept(ids, iditer, items, rnd);
-      newReverseNeighbors.put(iditer, DBIDUtil.newHashSet(sampleRev));
-      // initialize new neighbors
-      flag.put(iditer, DBIDUtil.newHashSet());
-      // initialize store
-      if(!noInitialNeighbors) {
-        HashSetModifiableDBIDs flags = flag.get(iditer);
-        for(DBIDIter siter = sampleNew.iter(); siter.valid(); siter.advance()) {
-          if(add(iditer, siter, distanceQuery.distance(iditer, siter))) {
-            flags.add(siter);
-          }
-        }
-        counter_all += sampleNew.size();
-      }
+    items = Math.min((int) Math.ceil(rho * kk), kk);
+    if((long) size * kk > Integer.MAX_VALUE) {
+      throw new AbortException("Too many objects for NNDescent with k=" + k);
+    }
+    nbr = new int[size * kk];
+    dist = new double[size * kk];
+    Arrays.fill(nbr, EMPTY);
+    Arrays.fill(dist, Double.POSITIVE_INFINITY);
+    newFwd = new int[size * items];
+    oldFwd = new int[size * kk];
+    newRev = new int[size * items];
+    oldRev = new int[size * items];
+    newFwdCnt = new int[size];
+    oldFwdCnt = new int[size];
+    newRevCnt = new int[size];
+    oldRevCnt = new int[size];
+    revAll = new int[size * kk];
+    revStart = new int[size + 1];
+    locks = new Object[LOCK_STRIPES];
+    for(int i = 0; i < LOCK_STRIPES; i++) {
+      locks[i] = new Object();
     }
+    final Random seeds = rnd.getSingleThreadedRandom();
 
-    final int size = relation.size();
-    double rate = 0.0;
+    long counter_all = kk > 0 ? parallel(this::initialize, seeds.nextLong()) : 0;
     int iter = 0;
-
-    for(; iter < iterations; iter++) {
-      long counter = 0;
-
-      // iterate through dataset
-      for(DBIDIter iditer = relation.iterDBIDs(); iditer.valid(); iditer.advance()) {
-        // determine new and old neighbors
-        HashSetModifiableDBIDs newNeighbors = flag.get(iditer);
-        HashSetModifiableDBIDs oldNeighbors = DBIDUtil.newHashSet();
-        KNNHeap heap = store.get(iditer);
-        for(DoubleDBIDListIter heapiter = heap.unorderedIterator(); heapiter.valid(); heapiter.advance()) {
-          if(!newNeighbors.contains(heapiter)) {
-            oldNeighbors.add(heapiter);
-          }
-        }
-
-        // Sampling
-        HashSetModifiableDBIDs sampleNew = sampleNewNeighbors.get(iditer);
-
-        HashSetModifiableDBIDs newRev = newReverseNeighbors.get(iditer);
-        newRev.removeDBIDs(sampleNew);
-        boundSize(newRev, items);
-
-        HashSetModifiableDBIDs oldRev = oldReverseNeighbors.get(iditer);
-        oldRev.removeDBIDs(oldNeighbors);
-        boundSize(oldRev, items);
-        counter += processNewNeighbors(flag, sampleNew, oldNeighbors, newRev, oldRev);
+    for(; kk > 0 && iter < iterations; iter++) {
+      // With no initial neighbors, the random sample is the first new sample
+      if(iter > 0 || !noInitialNeighbors) {
+        parallel(this::sampleForward, seeds.nextLong());
       }
+      sampleReverse(newFwd, items, newFwdCnt, newRev, newRevCnt, seeds.nextLong());
+      sampleReverse(oldFwd, kk, oldFwdCnt, oldRev, oldRevCnt, seeds.nextLong());
+      scanned.reset();
+      // t is the number of neighbor updates
+      final long t = parallel(this::localJoin, 0L);
+      final long counter = scanned.sum();
       counter_all += counter;
       if(LOG.isStatistics()) {
         LOG.statistics(new DoubleStatistic(prefix + ".scan-rate", counter_all * .5 / (size * (size - 1L))));
       }
-
-      // t is the number of new neighbors
-      int t = sampleNew(ids, sampleNewNeighbors, flag, items);
-
-      // calculate old and new reverse neighbors
-      clearAll(ids, newReverseNeighbors);
-      clearAll(ids, oldReverseNeighbors);
-      reverse(sampleNewNeighbors, newReverseNeighbors, oldReverseNeighbors);
-
-      rate = (double) t / (double) (internal_k * size);
+      final double rate = (double) t / (double) (kk * (long) size);
       if(LOG.isStatistics()) {
         LOG.statistics(new DoubleStatistic(prefix + ".update-rate", rate));
       }
-      if(counter < delta * internal_k * size) {
+      if(counter < delta * kk * size) {
         LOG.verbose("KNNGraph terminated because we performaned delta*k*size distance computations.");
         break;
       }
@@ -242,18 +307,26 @@ public class NNDescent<O> extends AbstractMaterializeKNNPreprocessor<O> {
       LOG.verbose("KNNGraph terminated because the maximum number of iterations was reached.");
     }
     LOG.setCompleted(progress);
-    // convert store to storage
+    newFwd = oldFwd = newRev = oldRev = null;
+    newFwdCnt = oldFwdCnt = newRevCnt = oldRevCnt = null;
+    revAll = revStart = null;
+    locks = null;
+    // convert heaps to storage
     storage = DataStoreFactory.FACTORY.makeStorage(ids, DataStoreFactory.HINT_DB, KNNList.class);
-    for(DBIDIter iditer = relation.iterDBIDs(); iditer.valid(); iditer.advance()) {
+    DBIDArrayIter a = ids.iter(), b = ids.iter();
+    for(int i = 0; i < size; i++) {
       KNNHeap tempHeap = DBIDUtil.newHeap(k);
       // Add query point and convert heap to list:
-      KNNHeap heap = store.get(iditer);
-      tempHeap.insert(0, iditer);
-      for(DoubleDBIDListIter heapiter = heap.unorderedIterator(); heapiter.valid(); heapiter.advance()) {
-        tempHeap.insert(heapiter.doubleValue(), heapiter);
+      tempHeap.insert(0, a.seek(i));
+      for(int j = i * kk, e = j + kk; j < e; j++) {
+        if(nbr[j] != EMPTY) {
+          tempHeap.insert(dist[j], b.seek(nbr[j] & MASK));
+        }
       }
-      storage.put(iditer, tempHeap.toKNNList());
+      storage.put(a, tempHeap.toKNNList());
     }
+    nbr = null;
+    dist = null;
     final long end = System.currentTimeMillis();
     if(LOG.isStatistics()) {
       LOG.statistics(new LongStatistic(prefix + ".construction-time.ms", end - starttime));
@@ -261,193 +334,356 @@ public class NNDescent<O> extends AbstractMaterializeKNNPreprocessor<O> {
   }
 
   /**
-   * Clear (but reuse) all sets in the given storage.
-   * 
-   * @param ids Ids to process
-   * @param sets Sets to clear
+   * Draw the initial random neighbors.
+   *
+   * @param begin First object
+   * @param end End (exclusive)
+   * @param r Random generator
+   * @return Number of distance computations
    */
-  private void clearAll(DBIDs ids, WritableDataStore<HashSetModifiableDBIDs> sets) {
-    for(DBIDIter it = ids.iter(); it.valid(); it.advance()) {
-      sets.get(it).clear();
+  private long initialize(int begin, int end, Random r) {
+    final int size = ids.size();
+    final DBIDArrayIter a = ids.iter(), b = ids.iter();
+    long counter = 0;
+    for(int i = begin; i < end; i++) {
+      final int base = i * items;
+      int c = 0;
+      while(c < items) {
+        final int o = r.nextInt(size - 1);
+        final int cand = o < i ? o : o + 1; // Skip i itself
+        if(!contains(newFwd, base, c, cand)) {
+          newFwd[base + c++] = cand;
+        }
+      }
+      newFwdCnt[i] = c;
+      if(!noInitialNeighbors) {
+        a.seek(i);
+        for(int j = 0; j < c; j++) {
+          final int o = newFwd[base + j];
+          add(i, o, distanceQuery.distance(a, b.seek(o)));
+        }
+        counter += c;
+      }
     }
+    return counter;
   }
 
   /**
-   * Bound the size of a set by random sampling.
-   * 
-   * @param set Set to process
-   * @param items Maximum size
+   * Sample the new forward neighbors, and collect the old forward neighbors.
+   * Sampled neighbors are no longer flagged as new.
+   *
+   * @param begin First object
+   * @param end End (exclusive)
+   * @param r Random generator
+   * @return Number of new neighbors
    */
-  private void boundSize(HashSetModifiableDBIDs set, int items) {
-    if(set.size() > items) {
-      DBIDs sample = DBIDUtil.randomSample(set, items, rnd);
-      set.clear();
-      set.addDBIDs(sample);
+  private long sampleForward(int begin, int end, Random r) {
+    long t = 0;
+    for(int i = begin; i < end; i++) {
+      final int base = i * kk, fbase = i * items;
+      int seen = 0, old = 0;
+      for(int j = base, e = base + kk; j < e; j++) {
+        final int x = nbr[j];
+        if(x == EMPTY) {
+          continue;
+        }
+        if((x & NEW) == 0) {
+          oldFwd[base + old++] = x;
+          continue;
+        }
+        // Reservoir sample of heap positions:
+        if(seen < items) {
+          newFwd[fbase + seen] = j;
+        }
+        else {
+          final int p = r.nextInt(seen + 1);
+          if(p < items) {
+            newFwd[fbase + p] = j;
+          }
+        }
+        seen++;
+      }
+      final int c = Math.min(seen, items);
+      for(int j = fbase, e = fbase + c; j < e; j++) {
+        final int pos = newFwd[j];
+        newFwd[j] = nbr[pos] &= MASK;
+      }
+      newFwdCnt[i] = c;
+      oldFwdCnt[i] = old;
+      t += seen;
     }
+    return t;
   }
 
   /**
-   * Process new neighbors.
-   * 
-   * This is a complex join, because we do not need to join old neighbors with
-   * old neighbors, and we have forward- and reverse neighbors each.
+   * Sample the reverse neighbors, from the forward samples.
+   * <p>
+   * The reverse neighbors are first collected for each object in the order of
+   * the objects, then sampled in parallel for each object. Reverse neighbors
+   * that are also forward neighbors are skipped.
    *
-   * @param flag Flags to mark new neighbors.
-   * @param newFwd New forward neighbors
-   * @param oldFwd Old forward neighbors
-   * @param newRev New reverse neighbors
-   * @param oldRev Old reverse neighbors
-   * @return Number of new neighbors
+   * @param fwd Forward neighbors
+   * @param fwdSize Forward neighbor buffer size
+   * @param fwdCnt Number of forward neighbors
+   * @param rev Reverse neighbor buffers (output)
+   * @param revCnt Number of reverse neighbors seen (output, may exceed the
+   *        buffer size)
+   * @param seed Random seed
    */
-  private int processNewNeighbors(WritableDataStore<HashSetModifiableDBIDs> flag, HashSetModifiableDBIDs newFwd, HashSetModifiableDBIDs oldFwd, HashSetModifiableDBIDs newRev, HashSetModifiableDBIDs oldRev) {
-    int counter = 0;
-    // nn_new
-    if(!newFwd.isEmpty()) {
-      for(DBIDIter sniter = newFwd.iter(); sniter.valid(); sniter.advance()) {
-        // nn_new X nn_new
-        for(DBIDIter niter2 = newFwd.iter(); niter2.valid(); niter2.advance()) {
-          if(DBIDUtil.compare(sniter, niter2) < 0) { // Only x < y.
-            addpair(flag, sniter, niter2);
-            counter++;
-          }
-        }
-        // nn_new X nn_old
-        for(DBIDMIter niter2 = oldFwd.iter(); niter2.valid(); niter2.advance()) {
-          if(DBIDUtil.equal(sniter, niter2)) {
-            continue;
-          }
-          addpair(flag, sniter, niter2);
-          counter++;
-        }
+  private void sampleReverse(int[] fwd, int fwdSize, int[] fwdCnt, int[] rev, int[] revCnt, long seed) {
+    final int size = ids.size();
+    final int[] start = revStart, all = revAll;
+    Arrays.fill(start, 0);
+    for(int i = 0; i < size; i++) {
+      for(int j = i * fwdSize, e = j + fwdCnt[i]; j < e; j++) {
+        start[fwd[j] + 1]++;
       }
     }
-    // rnn_new
-    if(!newRev.isEmpty()) {
-      for(DBIDIter nriter = newRev.iter(); nriter.valid(); nriter.advance()) {
-        // rnn_new X rnn_new
-        for(DBIDIter niter2 = newRev.iter(); niter2.valid(); niter2.advance()) {
-          if(DBIDUtil.compare(nriter, niter2) < 0) { // Only x < y
-            addpair(flag, nriter, niter2);
-            counter++;
-          }
-        }
-        // rnn_new X rnn_old
-        for(DBIDIter niter2 = oldRev.iter(); niter2.valid(); niter2.advance()) {
-          if(DBIDUtil.equal(nriter, niter2)) {
+    for(int i = 0; i < size; i++) {
+      start[i + 1] += start[i];
+    }
+    Arrays.fill(revCnt, 0);
+    for(int i = 0; i < size; i++) {
+      for(int j = i * fwdSize, e = j + fwdCnt[i]; j < e; j++) {
+        final int o = fwd[j];
+        all[start[o] + revCnt[o]++] = i;
+      }
+    }
+    parallel((begin, end, r) -> {
+      for(int o = begin; o < end; o++) {
+        final int base = o * items;
+        int seen = 0;
+        for(int p = start[o], e = start[o + 1]; p < e; p++) {
+          final int cand = all[p];
+          if(contains(fwd, o * fwdSize, fwdCnt[o], cand)) {
             continue;
           }
-          addpair(flag, nriter, niter2);
-          counter++;
+          if(seen < items) {
+            rev[base + seen] = cand;
+          }
+          else {
+            final int q = r.nextInt(seen + 1);
+            if(q < items) {
+              rev[base + q] = cand;
+            }
+          }
+          seen++;
         }
+        revCnt[o] = seen;
       }
-    }
+      return 0;
+    }, seed);
+  }
 
-    // nn_new
-    if(!newFwd.isEmpty()) {
-      for(DBIDIter sniter2 = newFwd.iter(); sniter2.valid(); sniter2.advance()) {
-        // nn_new X rnn_old
-        for(DBIDIter niter2 = oldRev.iter(); niter2.valid(); niter2.advance()) {
-          if(!DBIDUtil.equal(sniter2, niter2)) {
-            addpair(flag, sniter2, niter2);
+  /**
+   * Local join: compare all new neighbors with each other, and with the old
+   * neighbors (forward and reverse each).
+   *
+   * @param begin First object
+   * @param end End (exclusive)
+   * @param r Random generator (unused)
+   * @return Number of neighbor updates
+   */
+  private long localJoin(int begin, int end, Random r) {
+    final int[] nb = new int[items << 1], ob = new int[kk + items];
+    final DBIDArrayIter a = ids.iter(), b = ids.iter();
+    long updates = 0, counter = 0;
+    for(int i = begin; i < end; i++) {
+      final int nf = newFwdCnt[i], nr = Math.min(newRevCnt[i], items);
+      final int of = oldFwdCnt[i], or = Math.min(oldRevCnt[i], items);
+      if(nf + nr == 0) {
+        continue;
+      }
+      System.arraycopy(newFwd, i * items, nb, 0, nf);
+      System.arraycopy(newRev, i * items, nb, nf, nr);
+      System.arraycopy(oldFwd, i * kk, ob, 0, of);
+      System.arraycopy(oldRev, i * items, ob, of, or);
+      final int nn = nf + nr, no = of + or;
+      for(int x = 0; x < nn; x++) {
+        final int o1 = nb[x];
+        a.seek(o1);
+        // new X new
+        for(int y = x + 1; y < nn; y++) {
+          final int o2 = nb[y];
+          if(o1 != o2) {
+            updates += addpair(a, o1, b, o2);
             counter++;
           }
         }
-        // nn_new X rnn_new
-        for(DBIDIter niter2 = newRev.iter(); niter2.valid(); niter2.advance()) {
-          if(DBIDUtil.compare(sniter2, niter2) < 0) {
-            addpair(flag, sniter2, niter2);
+        // new X old
+        for(int y = 0; y < no; y++) {
+          final int o2 = ob[y];
+          if(o1 != o2) {
+            updates += addpair(a, o1, b, o2);
             counter++;
           }
         }
       }
     }
-    // nn_old
-    if(!newRev.isEmpty() && !oldFwd.isEmpty()) {
-      for(DBIDIter niter = oldFwd.iter(); niter.valid(); niter.advance()) {
-        // nn_old X rnn_new
-        for(DBIDIter niter2 = newRev.iter(); niter2.valid(); niter2.advance()) {
-          if(DBIDUtil.equal(niter, niter2)) {
-            continue;
-          }
-          addpair(flag, niter, niter2);
-          counter++;
-        }
-      }
-    }
-    return counter;
+    scanned.add(counter);
+    return updates;
+  }
+
+  /**
+   * Compute the distance of a pair, and update both neighbor heaps.
+   *
+   * @param a Iterator positioned at the first object
+   * @param o1 First object offset
+   * @param b Iterator for the second object
+   * @param o2 Second object offset
+   * @return Number of updates
+   */
+  private int addpair(DBIDArrayIter a, int o1, DBIDArrayIter b, int o2) {
+    final double distance = distanceQuery.distance(a, b.seek(o2));
+    return add(o1, o2, distance) + add(o2, o1, distance);
   }
 
   /**
    * Add cand to cur's heap neighbors with distance
    *
-   * @param cur Current object
-   * @param cand Neighbor candidate
+   * @param cur Current object offset
+   * @param cand Neighbor candidate offset
    * @param distance Distance
-   * @return {@code true} if it was a new neighbor.
+   * @return 1 if it was a new neighbor, 0 otherwise.
    */
-  private boolean add(DBIDRef cur, DBIDRef cand, double distance) {
-    KNNHeap neighbors = store.get(cur);
-    if(neighbors.contains(cand)) {
-      return false;
+  private int add(int cur, int cand, double distance) {
+    final int base = cur * kk;
+    // Unsynchronized check first: the heap top only ever decreases.
+    if(!(distance < dist[base])) {
+      return 0;
+    }
+    synchronized(locks[cur & (LOCK_STRIPES - 1)]) {
+      if(!(distance < dist[base])) {
+        return 0;
+      }
+      for(int j = base, e = base + kk; j < e; j++) {
+        if((nbr[j] & MASK) == cand) {
+          return 0;
+        }
+      }
+      // Replace the farthest neighbor, and sift down.
+      int pos = 0;
+      while(true) {
+        int c = (pos << 1) + 1;
+        if(c >= kk) {
+          break;
+        }
+        if(c + 1 < kk && dist[base + c + 1] > dist[base + c]) {
+          c++;
+        }
+        if(dist[base + c] <= distance) {
+          break;
+        }
+        dist[base + pos] = dist[base + c];
+        nbr[base + pos] = nbr[base + c];
+        pos = c;
+      }
+      dist[base + pos] = distance;
+      nbr[base + pos] = cand | NEW;
+      return 1;
     }
-    double newKDistance = neighbors.insert(distance, cand);
-    return (distance <= newKDistance);
   }
 
-  private void addpair(WritableDataStore<HashSetModifiableDBIDs> newNeighbors, DBIDRef o1, DBIDRef o2) {
-    final double distance = distanceQuery.distance(o1, o2);
-    if(add(o1, o2, distance)) {
-      newNeighbors.get(o1).add(o2);
-    }
-    if(add(o2, o1, distance)) {
-      newNeighbors.get(o2).add(o1);
+  /**
+   * Test if an array range contains a value.
+   *
+   * @param arr Array
+   * @param start Start of the range
+   * @param len Length of the range
+   * @param v Value
+   * @return {@code true} when contained
+   */
+  private static boolean contains(int[] arr, int start, int len, int v) {
+    for(int j = start, e = start + len; j < e; j++) {
+      if(arr[j] == v) {
+        return true;
+      }
     }
+    return false;
   }
 
   /**
-   * samples newNeighbors for every object
+   * Run a processor on all objects in parallel, in blocks.
    *
-   * @param ids All ids
-   * @param sampleNewNeighbors Output of sampled new neighbors
-   * @param newNeighborHash - new neighbors for every object
-   * @param items Number of items to collect
-   * @return Number of new neighbors
+   * @param proc Processor
+   * @param seed Random seed; each block uses a derived seed
+   * @return Sum of the processor results
    */
-  private int sampleNew(DBIDs ids, WritableDataStore<HashSetModifiableDBIDs> sampleNewNeighbors, WritableDataStore<HashSetModifiableDBIDs> newNeighborHash, int items) {
-    int t = 0;
-    for(DBIDIter iditer = ids.iter(); iditer.valid(); iditer.advance()) {
-      KNNHeap realNeighbors = store.get(iditer);
-      HashSetModifiableDBIDs newNeighbors = newNeighborHash.get(iditer);
-      HashSetModifiableDBIDs realNewNeighbors = sampleNewNeighbors.get(iditer);
-      realNewNeighbors.clear(); // Reuse
-      for(DoubleDBIDListIter heapiter = realNeighbors.unorderedIterator(); heapiter.valid(); heapiter.advance()) {
-        if(newNeighbors.contains(heapiter)) {
-          realNewNeighbors.add(heapiter);
-          t++;
-        }
-      }
-      boundSize(realNewNeighbors, items);
+  private long parallel(BlockProcessor proc, long seed) {
+    return ForkJoinPool.commonPool().invoke(new BlockTask(proc, seed, 0, ids.size()));
+  }
 
-      newNeighbors.removeDBIDs(realNewNeighbors);
-      newNeighborHash.put(iditer, newNeighbors);
-    }
-    return t;
+  /**
+   * Process a block of objects.
+   *
+   * @author Erich Schubert
+   */
+  @FunctionalInterface
+  private interface BlockProcessor {
+    /**
+     * Process a block of objects.
+     *
+     * @param begin First object
+     * @param end End (exclusive)
+     * @param r Random generator
+     * @return Counter
+     */
+    long process(int begin, int end, Random r);
   }
 
   /**
-   * calculates new and old neighbors for database
-   * 
-   * @param sampleNewHash new neighbors for every object
-   * @param newReverseNeighbors new reverse neighbors
-   * @param oldReverseNeighbors old reverse neighbors
+   * Fork-join task splitting the objects into blocks.
+   *
+   * @author Erich Schubert
    */
-  private void reverse(WritableDataStore<HashSetModifiableDBIDs> sampleNewHash, WritableDataStore<HashSetModifiableDBIDs> newReverseNeighbors, WritableDataStore<HashSetModifiableDBIDs> oldReverseNeighbors) {
-    for(DBIDIter iditer = relation.iterDBIDs(); iditer.valid(); iditer.advance()) {
-      KNNHeap heap = store.get(iditer);
-      HashSetDBIDs newNeighbors = sampleNewHash.get(iditer);
-      for(DoubleDBIDListIter heapiter = heap.unorderedIterator(); heapiter.valid(); heapiter.advance()) {
-        (newNeighbors.contains(heapiter) ? newReverseNeighbors : oldReverseNeighbors).get(heapiter).add(iditer);
+  private static class BlockTask extends RecursiveTask<Long> {
+    /**
+     * Serialization version.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Processor.
+     */
+    private final BlockProcessor proc;
+
+    /**
+     * Random seed.
+     */
+    private final long seed;
+
+    /**
+     * Range of objects.
+     */
+    private final int begin, end;
+
+    /**
+     * Constructor.
+     *
+     * @param proc Processor
+     * @param seed Random seed
+     * @param begin First object
+     * @param end End (exclusive)
+     */
+    BlockTask(BlockProcessor proc, long seed, int begin, int end) {
+      this.proc = proc;
+      this.seed = seed;
+      this.begin = begin;
+      this.end = end;
+    }
+
+    @Override
+    protected Long compute() {
+      if(end - begin > BLOCK) {
+        // Split at block boundaries, so the random generator of each block
+        // does not depend on scheduling (heap updates in the join still may).
+        final int mid = begin + ((end - begin + BLOCK - 1) / BLOCK >>> 1) * BLOCK;
+        BlockTask right = new BlockTask(proc, seed, mid, end);
+        right.fork();
+        final long l = new BlockTask(proc, seed, begin, mid).compute();
+        return l + right.join();
       }
+      return proc.process(begin, end, new FastNonThreadsafeRandom(seed + begin));
     }
   }
 
@@ -44,6 +44,7 @@ import de.lmu.ifi.dbs.elki.database.query.knn.KNNQuery;
 import de.lmu.ifi.dbs.elki.database.query.knn.LinearScanDistanceKNNQuery;
 import de.lmu.ifi.dbs.elki.database.relation.Relation;
 import de.lmu.ifi.dbs.elki.database.relation.RelationUtil;
+import de.lmu.ifi.dbs.elki.datasource.ArrayAdapterDatabaseConnection;
 import de.lmu.ifi.dbs.elki.datasource.InputStreamDatabaseConnection;
 import de.lmu.ifi.dbs.elki.datasource.bundle.MultipleObjectsBundle;
 import de.lmu.ifi.dbs.elki.datasource.parser.NumberVectorLabelParser;
@@ -141,6 +142,38 @@ public class MaterializedKNNPreprocessorTest {
     testKNNQueries(rep, lin_knn_query, preproc_knn_query, k);
   }
 
+  @Test
+  public void testFloatInsertionBoundary() {
+    // 0.7 is rounded down when stored as float.
+    assertTrue((float) .7 < .7);
+    UpdatableDatabase db = new HashmapDatabase(new ArrayAdapterDatabaseConnection(new double[][] { { 0. }, { .7 } }), null);
+    db.initialize();
+    Relation<DoubleVector> rep = db.getRelation(TypeUtil.DOUBLE_VECTOR_FIELD);
+    DistanceQuery<DoubleVector> distanceQuery = db.getDistanceQuery(rep, EuclideanDistanceFunction.STATIC);
+    MaterializeKNNPreprocessor<DoubleVector> preproc = //
+        new ELKIBuilder<MaterializeKNNPreprocessor.Factory<DoubleVector>>(MaterializeKNNPreprocessor.Factory.class) //
+            .with(MaterializeKNNPreprocessor.Factory.DISTANCE_FUNCTION_ID, distanceQuery.getDistanceFunction()) //
+            .with(MaterializeKNNPreprocessor.Factory.K_ID, 2) //
+            .with(MaterializeKNNPreprocessor.Factory.Parameterizer.COMPACT_ID) //
+            .build().instantiate(rep);
+    KNNQuery<DoubleVector> knnq = preproc.getKNNQuery(distanceQuery, 2);
+    db.getHierarchy().add(rep, preproc);
+    DBIDVar origin = DBIDUtil.newVar();
+    for(DBIDIter it = rep.iterDBIDs(); it.valid(); it.advance()) {
+      if(rep.get(it).doubleValue(0) == 0.) {
+        origin.set(it);
+      }
+    }
+    assertEquals("Initial kNN size", 2, knnq.getKNNForDBID(origin, 2).size());
+    // The new object ties with the k-distance of the origin.
+    List<DoubleVector> insertions = new ArrayList<>();
+    insertions.add(DoubleVector.wrap(new double[] { -.7 }));
+    db.insert(MultipleObjectsBundle.makeSimple(rep.getDataTypeInformation(), insertions));
+    KNNList knn = knnq.getKNNForDBID(origin, 2);
+    assertEquals("Tie at the k-distance not added.", 3, knn.size());
+    assertEquals("k-distance not stored as float.", (float) .7, knn.getKNNDistance(), 0.);
+  }
+
   public static void testKNNQueries(Relation<DoubleVector> rep, KNNQuery<DoubleVector> lin_knn_query, KNNQuery<DoubleVector> preproc_knn_query, int k) {
     ArrayDBIDs sample = DBIDUtil.ensureArray(rep.getDBIDs());
     List<? extends KNNList> lin_knn_ids = lin_knn_query.getKNNForBulkDBIDs(sample, k);
@@ -44,6 +44,7 @@ import de.lmu.ifi.dbs.elki.index.tree.spatial.SpatialPointLeafEntry;
 import de.lmu.ifi.dbs.elki.index.tree.spatial.rstarvariants.util.NodeArrayAdapter;
 import de.lmu.ifi.dbs.elki.logging.Logging;
 import de.lmu.ifi.dbs.elki.logging.statistics.Counter;
+import de.lmu.ifi.dbs.elki.logging.statistics.LongAdderCounter;
 import de.lmu.ifi.dbs.elki.logging.statistics.LongStatistic;
 import de.lmu.ifi.dbs.elki.persistent.PageFile;
 import de.lmu.ifi.dbs.elki.utilities.datastructures.BitsUtil;
@@ -139,6 +140,7 @@ public abstract class AbstractRStarTree<N extends AbstractRStarTreeNode<N, E>, E
 
   @Override
   public void insertLeaf(E leaf) {
+    checkWritable();
     if(!initialized) {
       initialize(leaf);
     }
@@ -156,6 +158,7 @@ public abstract class AbstractRStarTree<N extends AbstractRStarTreeNode<N, E>, E
    * @param entry the leaf entry to be inserted
    */
   protected void insertLeafEntry(E entry) {
+    checkWritable();
     lastInsertedEntry = entry;
     // choose subtree for insertion
     IndexTreePath<E> subtree = choosePath(getRootPath(), entry, height, 1);
@@ -180,6 +183,7 @@ public abstract class AbstractRStarTree<N extends AbstractRStarTreeNode<N, E>, E
    * @param depth the depth at which the directory entry is to be inserted
    */
   protected void insertDirectoryEntry(E entry, int depth) {
+    checkWritable();
     lastInsertedEntry = entry;
     // choose node for insertion of o
     IndexTreePath<E> subtree = choosePath(getRootPath(), entry, depth, 1);
@@ -201,6 +205,7 @@ public abstract class AbstractRStarTree<N extends AbstractRStarTreeNode<N, E>, E
    * @param deletionPath Path to delete
    */
   protected void deletePath(IndexTreePath<E> deletionPath) {
+    checkWritable();
     N leaf = getNode(deletionPath.getParentPath().getEntry());
     int index = deletionPath.getIndex();
 
@@ -846,9 +851,10 @@ public abstract class AbstractRStarTree<N extends AbstractRStarTreeNode<N, E>, E
       super();
       Logging log = getLogger();
       final String prefix = AbstractRStarTree.this.getClass().getName();
-      distanceCalcs = log.isStatistics() ? log.newCounter(prefix + ".distancecalcs") : null;
-      knnQueries = log.isStatistics() ? log.newCounter(prefix + ".knnqueries") : null;
-      rangeQueries = log.isStatistics() ? log.newCounter(prefix + ".rangequeries") : null;
+      // Thread-safe counters, for concurrent queries in read-only mode.
+      distanceCalcs = log.isStatistics() ? new LongAdderCounter(prefix + ".distancecalcs") : null;
+      knnQueries = log.isStatistics() ? new LongAdderCounter(prefix + ".knnqueries") : null;
+      rangeQueries = log.isStatistics() ? new LongAdderCounter(prefix + ".rangequeries") : null;
     }
 
     /**
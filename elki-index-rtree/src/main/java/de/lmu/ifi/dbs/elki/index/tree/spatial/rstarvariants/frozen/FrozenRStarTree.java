@@ -0,0 +1,626 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.index.tree.spatial.rstarvariants.frozen;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.data.spatial.SpatialComparable;
+import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayModifiableDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.KNNHeap;
+import de.lmu.ifi.dbs.elki.database.ids.KNNList;
+import de.lmu.ifi.dbs.elki.database.ids.ModifiableDoubleDBIDList;
+import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
+import de.lmu.ifi.dbs.elki.database.query.knn.AbstractDistanceKNNQuery;
+import de.lmu.ifi.dbs.elki.database.query.knn.KNNQuery;
+import de.lmu.ifi.dbs.elki.database.query.range.AbstractDistanceRangeQuery;
+import de.lmu.ifi.dbs.elki.database.query.range.RangeQuery;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.database.relation.RelationUtil;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.DistanceFunction;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.SpatialPrimitiveDistanceFunction;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.EuclideanDistanceFunction;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.SquaredEuclideanDistanceFunction;
+import de.lmu.ifi.dbs.elki.index.AbstractIndex;
+import de.lmu.ifi.dbs.elki.index.Index;
+import de.lmu.ifi.dbs.elki.index.IndexFactory;
+import de.lmu.ifi.dbs.elki.index.KNNIndex;
+import de.lmu.ifi.dbs.elki.index.RangeIndex;
+import de.lmu.ifi.dbs.elki.index.tree.LeafEntry;
+import de.lmu.ifi.dbs.elki.index.tree.spatial.SpatialEntry;
+import de.lmu.ifi.dbs.elki.index.tree.spatial.rstarvariants.AbstractRStarTree;
+import de.lmu.ifi.dbs.elki.index.tree.spatial.rstarvariants.AbstractRStarTreeFactory;
+import de.lmu.ifi.dbs.elki.index.tree.spatial.rstarvariants.AbstractRStarTreeNode;
+import de.lmu.ifi.dbs.elki.index.tree.spatial.rstarvariants.rstar.RStarTreeFactory;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.logging.statistics.Counter;
+import de.lmu.ifi.dbs.elki.logging.statistics.LongAdderCounter;
+import de.lmu.ifi.dbs.elki.logging.statistics.LongStatistic;
+import de.lmu.ifi.dbs.elki.utilities.Alias;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.heap.DoubleLongMinHeap;
+import de.lmu.ifi.dbs.elki.utilities.exceptions.AbortException;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.AbstractParameterizer;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.ObjectParameter;
+
+/**
+ * Immutable ("frozen") in-memory R*-tree for static data.
+ * <p>
+ * The tree is first built with a regular R*-tree factory (usually using a bulk
+ * load such as STR), then all nodes are packed level by level into flat
+ * arrays, and the pointer-based tree is discarded. For each level, the
+ * bounding boxes of all entries are stored in a structure-of-arrays layout,
+ * i.e. {@code min[d * count + i]}; the children of an entry form a contiguous
+ * range on the next level. The last level stores the points themselves, in
+ * the same layout.
+ * <p>
+ * Because the children of a node are contiguous, the distances to all of them
+ * are computed in simple loops over primitive arrays, without object access
+ * or virtual calls. For Euclidean and squared Euclidean distance this fast
+ * path is used; other spatial distance functions are supported via their
+ * minimum distance to bounding boxes.
+ * <p>
+ * The index does not support insertions or deletions.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ *
+ * @has - - - FrozenKNNQuery
+ * @has - - - FrozenRangeQuery
+ *
+ * @param <O> Vector type
+ */
+public class FrozenRStarTree<O extends NumberVector> extends AbstractIndex<O> implements KNNIndex<O>, RangeIndex<O> {
+  /**
+   * Class logger
+   */
+  private static final Logging LOG = Logging.getLogger(FrozenRStarTree.class);
+
+  /**
+   * Factory for building the initial tree.
+   */
+  private AbstractRStarTreeFactory<O, ?, ?, ?> factory;
+
+  /**
+   * Dimensionality.
+   */
+  int dims;
+
+  /**
+   * Number of levels, the last level contains the points.
+   */
+  int height;
+
+  /**
+   * Number of entries on each level.
+   */
+  int[] count;
+
+  /**
+   * Minimum and maximum coordinates on each level, as {@code [d * count + i]}.
+   * On the point level, both refer to the same array.
+   */
+  double[][] min, max;
+
+  /**
+   * Start of the children of each directory entry on the next level, with an
+   * additional end marker.
+   */
+  int[][] child;
+
+  /**
+   * Object ids, in the order of the point level.
+   */
+  ArrayModifiableDBIDs ids;
+
+  /**
+   * Maximum number of entries in a node.
+   */
+  int fanout;
+
+  /**
+   * Counter for distance computations.
+   */
+  final Counter distcalc;
+
+  /**
+   * Constructor.
+   *
+   * @param relation Relation to index
+   * @param factory Factory for building the initial tree
+   */
+  public FrozenRStarTree(Relation<O> relation, AbstractRStarTreeFactory<O, ?, ?, ?> factory) {
+    super(relation);
+    this.factory = factory;
+    this.distcalc = LOG.isStatistics() ? new LongAdderCounter(this.getClass().getName() + ".distancecalcs") : null;
+  }
+
+  @Override
+  public void initialize() {
+    Index tree = factory.instantiate(relation);
+    tree.initialize();
+    if(!(tree instanceof AbstractRStarTree)) {
+      throw new AbortException("The factory did not produce an R-tree.");
+    }
+    dims = relation.size() > 0 ? RelationUtil.dimensionality(relation) : 0;
+    freeze((AbstractRStarTree<?, ?, ?>) tree);
+    factory = null; // Not needed anymore.
+  }
+
+  /**
+   * Pack the tree into arrays, level by level.
+   *
+   * @param tree Tree to pack
+   */
+  private <N extends AbstractRStarTreeNode<N, E>, E extends SpatialEntry> void freeze(AbstractRStarTree<N, E, ?> tree) {
+    List<double[]> mins = new ArrayList<>(), maxs = new ArrayList<>();
+    List<int[]> childs = new ArrayList<>();
+    ids = DBIDUtil.newArray(relation.size());
+    List<N> nodes = Collections.singletonList(tree.getRoot());
+    while(true) {
+      int cnt = 0;
+      for(N node : nodes) {
+        cnt += node.getNumEntries();
+        fanout = Math.max(fanout, node.getNumEntries());
+      }
+      final boolean leaf = nodes.get(0).isLeaf();
+      final double[] mn = new double[dims * cnt], mx = leaf ? mn : new double[dims * cnt];
+      final int[] ch = leaf ? null : new int[cnt + 1];
+      final List<N> next = leaf ? null : new ArrayList<N>(cnt);
+      int i = 0, off = 0;
+      for(N node : nodes) {
+        for(int j = 0; j < node.getNumEntries(); j++, i++) {
+          E e = node.getEntry(j);
+          for(int d = 0, p = i; d < dims; d++, p += cnt) {
+            mn[p] = e.getMin(d);
+            mx[p] = e.getMax(d);
+          }
+          if(leaf) {
+            ids.add(((LeafEntry) e).getDBID());
+            continue;
+          }
+          N c = tree.getNode(e);
+          next.add(c);
+          ch[i] = off;
+          off += c.getNumEntries();
+        }
+      }
+      mins.add(mn);
+      maxs.add(mx);
+      childs.add(ch);
+      if(leaf) {
+        break;
+      }
+      ch[cnt] = off;
+      nodes = next;
+    }
+    height = mins.size();
+    min = mins.toArray(new double[height][]);
+    max = maxs.toArray(new double[height][]);
+    child = childs.toArray(new int[height][]);
+    count = new int[height];
+    for(int l = 0; l < height; l++) {
+      count[l] = l < height - 1 ? child[l].length - 1 : ids.size();
+    }
+  }
+
+  @Override
+  public String getLongName() {
+    return "Frozen R*-Tree";
+  }
+
+  @Override
+  public String getShortName() {
+    return "frozen-rstartree";
+  }
+
+  @Override
+  public void logStatistics() {
+    LOG.statistics(new LongStatistic(this.getClass().getName() + ".height", height));
+    if(distcalc != null) {
+      LOG.statistics(distcalc);
+    }
+  }
+
+  /**
+   * Count distance computations.
+   *
+   * @param n Number of computations
+   */
+  protected void countDistanceComputations(int n) {
+    if(distcalc != null) {
+      distcalc.increment(n);
+    }
+  }
+
+  @Override
+  public KNNQuery<O> getKNNQuery(DistanceQuery<O> distanceQuery, Object... hints) {
+    if(distanceQuery.getRelation() != relation) {
+      return null;
+    }
+    DistanceFunction<? super O> df = distanceQuery.getDistanceFunction();
+    return df instanceof SpatialPrimitiveDistanceFunction ? new FrozenKNNQuery(distanceQuery) : null;
+  }
+
+  @Override
+  public RangeQuery<O> getRangeQuery(DistanceQuery<O> distanceQuery, Object... hints) {
+    if(distanceQuery.getRelation() != relation) {
+      return null;
+    }
+    DistanceFunction<? super O> df = distanceQuery.getDistanceFunction();
+    return df instanceof SpatialPrimitiveDistanceFunction ? new FrozenRangeQuery(distanceQuery) : null;
+  }
+
+  /**
+   * Compute the squared Euclidean distances of a query to a range of points.
+   *
+   * @param q Query vector
+   * @param pts Point level
+   * @param cnt Number of points on the level
+   * @param s Start
+   * @param e End (exclusive)
+   * @param buf Output buffer
+   */
+  private void squaredDistances(double[] q, double[] pts, int cnt, int s, int e, double[] buf) {
+    final int n = e - s;
+    Arrays.fill(buf, 0, n, 0.);
+    for(int d = 0, base = s; d < dims; d++, base += cnt) {
+      final double qd = q[d];
+      for(int i = 0; i < n; i++) {
+        final double v = pts[base + i] - qd;
+        buf[i] += v * v;
+      }
+    }
+    countDistanceComputations(n);
+  }
+
+  /**
+   * Compute the squared Euclidean minimum distances of a query to a range of
+   * bounding boxes.
+   *
+   * @param q Query vector
+   * @param mn Minimum coordinates
+   * @param mx Maximum coordinates
+   * @param cnt Number of entries on the level
+   * @param s Start
+   * @param e End (exclusive)
+   * @param buf Output buffer
+   */
+  private void squaredMinDistances(double[] q, double[] mn, double[] mx, int cnt, int s, int e, double[] buf) {
+    final int n = e - s;
+    Arrays.fill(buf, 0, n, 0.);
+    for(int d = 0, base = s; d < dims; d++, base += cnt) {
+      final double qd = q[d];
+      for(int i = 0; i < n; i++) {
+        final double lo = mn[base + i] - qd, hi = qd - mx[base + i];
+        final double v = lo > 0 ? lo : hi > 0 ? hi : 0.;
+        buf[i] += v * v;
+      }
+    }
+    countDistanceComputations(n);
+  }
+
+  /**
+   * Compute distances with an arbitrary spatial distance function.
+   *
+   * @param df Distance function
+   * @param obj Query object
+   * @param level Level
+   * @param s Start
+   * @param e End (exclusive)
+   * @param buf Output buffer
+   */
+  private void spatialDistances(SpatialPrimitiveDistanceFunction<? super O> df, O obj, int level, int s, int e, double[] buf) {
+    Entry ref = new Entry(level);
+    for(int i = s; i < e; i++) {
+      ref.i = i;
+      buf[i - s] = df.minDist(ref, obj);
+    }
+    countDistanceComputations(e - s);
+  }
+
+  /**
+   * Flyweight view of a packed entry, for generic distance functions.
+   *
+   * @author Erich Schubert
+   */
+  private class Entry implements SpatialComparable {
+    /**
+     * Level and entry offset.
+     */
+    int level, i;
+
+    /**
+     * Constructor.
+     *
+     * @param level Level
+     */
+    Entry(int level) {
+      this.level = level;
+    }
+
+    @Override
+    public int getDimensionality() {
+      return dims;
+    }
+
+    @Override
+    public double getMin(int dimension) {
+      return min[level][dimension * count[level] + i];
+    }
+
+    @Override
+    public double getMax(int dimension) {
+      return max[level][dimension * count[level] + i];
+    }
+  }
+
+  /**
+   * kNN query for the frozen R*-tree, using best-first search.
+   *
+   * @author Erich Schubert
+   */
+  public class FrozenKNNQuery extends AbstractDistanceKNNQuery<O> {
+    /**
+     * Distance function.
+     */
+    private SpatialPrimitiveDistanceFunction<? super O> df;
+
+    /**
+     * Use the fast path for (squared) Euclidean distance.
+     */
+    private boolean euclidean, squared;
+
+    /**
+     * Constructor.
+     *
+     * @param distanceQuery Distance query
+     */
+    public FrozenKNNQuery(DistanceQuery<O> distanceQuery) {
+      super(distanceQuery);
+      this.df = (SpatialPrimitiveDistanceFunction<? super O>) distanceQuery.getDistanceFunction();
+      this.squared = df instanceof SquaredEuclideanDistanceFunction;
+      this.euclidean = squared || df instanceof EuclideanDistanceFunction;
+    }
+
+    @Override
+    public KNNList getKNNForObject(O obj, int k) {
+      final KNNHeap knns = DBIDUtil.newHeap(k);
+      if(height == 0 || count[0] == 0) {
+        return knns.toKNNList();
+      }
+      final double[] q = euclidean ? obj.toArray() : null;
+      final double[] buf = new double[fanout];
+      final DoubleLongMinHeap pq = new DoubleLongMinHeap(Math.min(k << 1, 21));
+      final DBIDArrayIter iter = ids.iter();
+      double maxdist = expand(obj, q, 0, 0, count[0], knns, pq, buf, iter, Double.POSITIVE_INFINITY);
+      while(!pq.isEmpty()) {
+        if(pq.peekKey() > maxdist) {
+          break;
+        }
+        final long v = pq.peekValue();
+        pq.poll();
+        final int level = (int) (v >>> 32), i = (int) v;
+        maxdist = expand(obj, q, level + 1, child[level][i], child[level][i + 1], knns, pq, buf, iter, maxdist);
+      }
+      return euclidean && !squared ? knns.toKNNListSqrt() : knns.toKNNList();
+    }
+
+    /**
+     * Expand a range of entries.
+     *
+     * @param obj Query object
+     * @param q Query vector, for Euclidean distance
+     * @param level Level
+     * @param s Start
+     * @param e End (exclusive)
+     * @param knns kNN heap
+     * @param pq Priority queue
+     * @param buf Distance buffer
+     * @param iter Iterator on the ids
+     * @param maxdist Current kNN distance
+     * @return New kNN distance
+     */
+    private double expand(O obj, double[] q, int level, int s, int e, KNNHeap knns, DoubleLongMinHeap pq, double[] buf, DBIDArrayIter iter, double maxdist) {
+      final boolean leaf = level == height - 1;
+      if(!euclidean) {
+        spatialDistances(df, obj, level, s, e, buf);
+      }
+      else if(leaf) {
+        squaredDistances(q, min[level], count[level], s, e, buf);
+      }
+      else {
+        squaredMinDistances(q, min[level], max[level], count[level], s, e, buf);
+      }
+      if(leaf) {
+        for(int i = s; i < e; i++) {
+          final double dist = buf[i - s];
+          if(dist <= maxdist) {
+            maxdist = knns.insert(dist, iter.seek(i));
+          }
+        }
+        return maxdist;
+      }
+      final long lv = ((long) level) << 32;
+      for(int i = s; i < e; i++) {
+        final double dist = buf[i - s];
+        if(dist <= maxdist) {
+          pq.add(dist, lv | i);
+        }
+      }
+      return maxdist;
+    }
+  }
+
+  /**
+   * Range query for the frozen R*-tree, using depth-first search.
+   *
+   * @author Erich Schubert
+   */
+  public class FrozenRangeQuery extends AbstractDistanceRangeQuery<O> {
+    /**
+     * Distance function.
+     */
+    private SpatialPrimitiveDistanceFunction<? super O> df;
+
+    /**
+     * Use the fast path for (squared) Euclidean distance.
+     */
+    private boolean euclidean, squared;
+
+    /**
+     * Constructor.
+     *
+     * @param distanceQuery Distance query
+     */
+    public FrozenRangeQuery(DistanceQuery<O> distanceQuery) {
+      super(distanceQuery);
+      this.df = (SpatialPrimitiveDistanceFunction<? super O>) distanceQuery.getDistanceFunction();
+      this.squared = df instanceof SquaredEuclideanDistanceFunction;
+      this.euclidean = squared || df instanceof EuclideanDistanceFunction;
+    }
+
+    @Override
+    public void getRangeForObject(O obj, double range, ModifiableDoubleDBIDList result) {
+      if(height == 0 || count[0] == 0) {
+        return;
+      }
+      final double[] q = euclidean ? obj.toArray() : null;
+      final double r = euclidean && !squared ? range * range : range;
+      search(obj, q, 0, 0, count[0], r, result, new double[height][fanout], ids.iter());
+    }
+
+    /**
+     * Search a range of entries.
+     *
+     * @param obj Query object
+     * @param q Query vector, for Euclidean distance
+     * @param level Level
+     * @param s Start
+     * @param e End (exclusive)
+     * @param r Query radius (squared, for Euclidean distance)
+     * @param result Output list
+     * @param bufs Distance buffers, for each level
+     * @param iter Iterator on the ids
+     */
+    private void search(O obj, double[] q, int level, int s, int e, double r, ModifiableDoubleDBIDList result, double[][] bufs, DBIDArrayIter iter) {
+      final boolean leaf = level == height - 1;
+      final double[] buf = bufs[level];
+      if(!euclidean) {
+        spatialDistances(df, obj, level, s, e, buf);
+      }
+      else if(leaf) {
+        squaredDistances(q, min[level], count[level], s, e, buf);
+      }
+      else {
+        squaredMinDistances(q, min[level], max[level], count[level], s, e, buf);
+      }
+      for(int i = s; i < e; i++) {
+        final double dist = buf[i - s];
+        if(dist > r) {
+          continue;
+        }
+        if(leaf) {
+          result.add(euclidean && !squared ? Math.sqrt(dist) : dist, iter.seek(i));
+        }
+        else {
+          search(obj, q, level + 1, child[level][i], child[level][i + 1], r, result, bufs, iter);
+        }
+      }
+    }
+  }
+
+  /**
+   * Factory class
+   *
+   * @author Erich Schubert
+   *
+   * @stereotype factory
+   * @has - - - FrozenRStarTree
+   *
+   * @param <O> Vector type
+   */
+  @Alias({ "frozenrstar" })
+  public static class Factory<O extends NumberVector> implements IndexFactory<O> {
+    /**
+     * Factory for building the initial tree.
+     */
+    AbstractRStarTreeFactory<O, ?, ?, ?> factory;
+
+    /**
+     * Constructor.
+     *
+     * @param factory Factory for building the initial tree
+     */
+    public Factory(AbstractRStarTreeFactory<O, ?, ?, ?> factory) {
+      super();
+      this.factory = factory;
+    }
+
+    @Override
+    public FrozenRStarTree<O> instantiate(Relation<O> relation) {
+      return new FrozenRStarTree<>(relation, factory);
+    }
+
+    @Override
+    public TypeInformation getInputTypeRestriction() {
+      return factory.getInputTypeRestriction();
+    }
+
+    /**
+     * Parameterization class.
+     *
+     * @author Erich Schubert
+     */
+    public static class Parameterizer<O extends NumberVector> extends AbstractParameterizer {
+      /**
+       * Option for the R-tree factory used to build the tree.
+       */
+      public static final OptionID RTREE_ID = new OptionID("frozen.rtree", "R-tree factory used to build the tree before freezing it. A bulk load, such as sort-tile-recursive, is recommended.");
+
+      /**
+       * Factory for building the initial tree.
+       */
+      AbstractRStarTreeFactory<O, ?, ?, ?> factory;
+
+      @Override
+      protected void makeOptions(Parameterization config) {
+        super.makeOptions(config);
+        ObjectParameter<AbstractRStarTreeFactory<O, ?, ?, ?>> factoryP = new ObjectParameter<>(RTREE_ID, AbstractRStarTreeFactory.class, RStarTreeFactory.class);
+        if(config.grab(factoryP)) {
+          factory = factoryP.instantiateClass(config);
+        }
+      }
+
+      @Override
+      protected Factory<O> makeInstance() {
+        return new Factory<>(factory);
+      }
+    }
+  }
+}
@@ -21,7 +21,15 @@
 package de.lmu.ifi.dbs.elki.index.tree.spatial.rstarvariants.strategies.bulk;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Callable;
+
+import de.lmu.ifi.dbs.elki.data.spatial.SpatialComparable;
+import de.lmu.ifi.dbs.elki.data.spatial.SpatialSingleMeanComparator;
+import de.lmu.ifi.dbs.elki.parallel.ParallelCore;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.QuickSelect;
 /**
  * Encapsulates the required parameters for a bulk split of a spatial index.
  * 
@@ -29,6 +37,11 @@ import java.util.List;
  * @since 0.4.0
  */
 public abstract class AbstractBulkSplit implements BulkSplit {
+  /**
+   * Minimum number of objects for processing partitions in parallel.
+   */
+  protected static final int PARALLEL_THRESHOLD = 1 << 16;
+
   /**
    * Constructor
    */
@@ -85,4 +98,135 @@ public abstract class AbstractBulkSplit implements BulkSplit {
     }
     return partitions;
   }
+
+  /**
+   * Split a range into slabs of (almost) equal size along a single dimension,
+   * as used by sort-tile-recursive. The slab boundaries are selected by
+   * recursive bisection, such that each slab contains the objects of the
+   * corresponding quantile range. Large ranges are processed in parallel; as
+   * the same selections are performed on the same ranges, the result does not
+   * depend on parallelism.
+   *
+   * @param objs Object list
+   * @param start Subinterval start
+   * @param end Subinterval end
+   * @param s Number of slabs
+   * @param c Comparison helper, sorting by the desired dimension
+   * @param dim Dimension to split
+   * @param <T> data type
+   * @return Slab boundaries, of length {@code s+1}
+   */
+  protected static <T extends SpatialComparable> int[] selectSlabs(List<T> objs, int start, int end, int s, SpatialSingleMeanComparator c, int dim) {
+    final int[] bounds = new int[s + 1];
+    final double len = end - start; // double intentional!
+    for(int i = 0; i <= s; i++) {
+      bounds[i] = start + (int) ((i * len) / s);
+    }
+    if(end - start < PARALLEL_THRESHOLD || s < 3) {
+      c.setDimension(dim);
+      selectSlabs(objs, bounds, 0, s, c);
+      return bounds;
+    }
+    // Bisect level-wise, until there is enough work for all threads.
+    final int parallelism = ParallelCore.getCore().getParallelism();
+    List<int[]> ranges = Collections.singletonList(new int[] { 0, s });
+    while(!ranges.isEmpty()) {
+      final boolean last = ranges.size() >= parallelism;
+      List<Callable<Void>> tasks = new ArrayList<>(ranges.size());
+      List<int[]> next = new ArrayList<>(ranges.size() << 1);
+      for(int[] r : ranges) {
+        final int lo = r[0], hi = r[1], mid = (lo + hi) >>> 1;
+        if(last) {
+          tasks.add(() -> {
+            selectSlabs(objs, bounds, lo, hi, new SpatialSingleMeanComparator(dim));
+            return null;
+          });
+          continue;
+        }
+        tasks.add(() -> {
+          QuickSelect.quickSelect(objs, new SpatialSingleMeanComparator(dim), bounds[lo], bounds[hi], bounds[mid]);
+          return null;
+        });
+        if(mid - lo > 1) {
+          next.add(new int[] { lo, mid });
+        }
+        if(hi - mid > 1) {
+          next.add(new int[] { mid, hi });
+        }
+      }
+      ParallelExecutor.runAll(tasks);
+      ranges = last ? Collections.<int[]> emptyList() : next;
+    }
+    return bounds;
+  }
+
+  /**
+   * Select the slab boundaries by recursive bisection, sequentially.
+   *
+   * @param objs Object list
+   * @param bounds Slab boundaries
+   * @param lo First slab boundary (already selected)
+   * @param hi Last slab boundary (already selected)
+   * @param c Comparison helper
+   * @param <T> data type
+   */
+  private static <T extends SpatialComparable> void selectSlabs(List<T> objs, int[] bounds, int lo, int hi, SpatialSingleMeanComparator c) {
+    if(hi - lo < 2) {
+      return;
+    }
+    final int mid = (lo + hi) >>> 1;
+    QuickSelect.quickSelect(objs, c, bounds[lo], bounds[hi], bounds[mid]);
+    selectSlabs(objs, bounds, lo, mid, c);
+    selectSlabs(objs, bounds, mid, hi, c);
+  }
+
+  /**
+   * Partition each slab, in parallel for large partitions. The output order
+   * is the same as for sequential processing.
+   *
+   * @param bounds Slab boundaries
+   * @param slab Partitioning function for a single slab
+   * @param ret Output list
+   * @param <T> data type
+   */
+  protected static <T> void partitionSlabs(int[] bounds, SlabPartitioner<T> slab, List<List<T>> ret) {
+    final int s = bounds.length - 1;
+    if(bounds[s] - bounds[0] < PARALLEL_THRESHOLD || s < 2) {
+      for(int i = 0; i < s; i++) {
+        slab.partition(bounds[i], bounds[i + 1], ret);
+      }
+      return;
+    }
+    List<Callable<List<List<T>>>> tasks = new ArrayList<>(s);
+    for(int i = 0; i < s; i++) {
+      final int s2 = bounds[i], e2 = bounds[i + 1];
+      tasks.add(() -> {
+        List<List<T>> part = new ArrayList<>();
+        slab.partition(s2, e2, part);
+        return part;
+      });
+    }
+    for(List<List<T>> part : ParallelExecutor.runAll(tasks)) {
+      ret.addAll(part);
+    }
+  }
+
+  /**
+   * Partitioning function for a single slab.
+   *
+   * @author Erich Schubert
+   *
+   * @param <T> data type
+   */
+  @FunctionalInterface
+  protected interface SlabPartitioner<T> {
+    /**
+     * Partition a slab.
+     *
+     * @param start Slab start
+     * @param end Slab end
+     * @param ret Output list
+     */
+    void partition(int start, int end, List<List<T>> ret);
+  }
 }
\ No newline at end of file
@@ -26,7 +26,6 @@ import java.util.List;
 import de.lmu.ifi.dbs.elki.data.spatial.SpatialComparable;
 import de.lmu.ifi.dbs.elki.data.spatial.SpatialSingleMeanComparator;
 import de.lmu.ifi.dbs.elki.utilities.Alias;
-import de.lmu.ifi.dbs.elki.utilities.datastructures.QuickSelect;
 import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.AbstractParameterizer;
 import net.jafama.FastMath;
@@ -35,6 +34,9 @@ import net.jafama.FastMath;
  * Sort-Tile-Recursive aims at tiling the data space with a grid-like structure
  * for partitioning the dataset into the required number of buckets.
  * <p>
+ * The slabs are found by recursive bisection of the quantiles, and large data
+ * sets are partitioned in parallel.
+ * <p>
  * Reference:
  * <p>
  * S. T. Leutenegger, M. A. Lopez, J. Edgington<br>
@@ -82,24 +84,15 @@ public class SortTileRecursiveBulkSplit extends AbstractBulkSplit {
     final int p = (int) FastMath.ceil((end - start) / (double) maxEntries);
     final int s = (int) FastMath.ceil(FastMath.pow(p, 1.0 / (dims - depth)));
 
-    final double len = end - start; // double intentional!
-    for(int i = 0; i < s; i++) {
-      // We don't completely sort, but only ensure the quantile is invariant.
-      int s2 = start + (int) ((i * len) / s);
-      int e2 = start + (int) (((i + 1) * len) / s);
-      // LoggingUtil.warning("STR " + dim + " s2:" + s2 + " e2:" + e2);
-      if(e2 < end) {
-        c.setDimension(depth);
-        QuickSelect.quickSelect(objs, c, s2, end, e2);
-      }
-      if(depth + 1 == dims) {
-        ret.add(objs.subList(s2, e2));
-      }
-      else {
-        // Descend
-        strPartition(objs, s2, e2, depth + 1, dims, maxEntries, c, ret);
+    final int[] bounds = selectSlabs(objs, start, end, s, c, depth);
+    if(depth + 1 == dims) {
+      for(int i = 0; i < s; i++) {
+        ret.add(objs.subList(bounds[i], bounds[i + 1]));
       }
+      return;
     }
+    // Descend
+    partitionSlabs(bounds, (s2, e2, out) -> strPartition(objs, s2, e2, depth + 1, dims, maxEntries, new SpatialSingleMeanComparator(0), out), ret);
   }
 
   /**
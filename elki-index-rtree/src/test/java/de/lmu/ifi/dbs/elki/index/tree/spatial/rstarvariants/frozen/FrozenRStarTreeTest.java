@@ -0,0 +1,71 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.index.tree.spatial.rstarvariants.frozen;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.index.AbstractIndexStructureTest;
+import de.lmu.ifi.dbs.elki.index.tree.spatial.rstarvariants.rstar.RStarTreeFactory;
+import de.lmu.ifi.dbs.elki.index.tree.spatial.rstarvariants.strategies.bulk.SortTileRecursiveBulkSplit;
+import de.lmu.ifi.dbs.elki.persistent.AbstractPageFileFactory;
+import de.lmu.ifi.dbs.elki.utilities.ELKIBuilder;
+
+/**
+ * Unit test for the frozen R*-tree.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ */
+public class FrozenRStarTreeTest extends AbstractIndexStructureTest {
+  /**
+   * Test {@link FrozenRStarTree} built from a bulk loaded tree.
+   */
+  @Test
+  public void testSortTileRecursive() {
+    RStarTreeFactory<NumberVector> rtree = new ELKIBuilder<>(RStarTreeFactory.class) //
+        .with(AbstractPageFileFactory.Parameterizer.PAGE_SIZE_ID, 300) //
+        .with(RStarTreeFactory.Parameterizer.BULK_SPLIT_ID, SortTileRecursiveBulkSplit.class) //
+        .build();
+    FrozenRStarTree.Factory<NumberVector> factory = new ELKIBuilder<>(FrozenRStarTree.Factory.class) //
+        .with(FrozenRStarTree.Factory.Parameterizer.RTREE_ID, rtree) //
+        .build();
+    testExactEuclidean(factory, FrozenRStarTree.FrozenKNNQuery.class, FrozenRStarTree.FrozenRangeQuery.class);
+    testExactCosine(factory, FrozenRStarTree.FrozenKNNQuery.class, FrozenRStarTree.FrozenRangeQuery.class);
+    testSinglePoint(factory, FrozenRStarTree.FrozenKNNQuery.class, FrozenRStarTree.FrozenRangeQuery.class);
+  }
+
+  /**
+   * Test {@link FrozenRStarTree} built by insertion.
+   */
+  @Test
+  public void testInsertion() {
+    RStarTreeFactory<NumberVector> rtree = new ELKIBuilder<>(RStarTreeFactory.class) //
+        .with(AbstractPageFileFactory.Parameterizer.PAGE_SIZE_ID, 300) //
+        .build();
+    FrozenRStarTree.Factory<NumberVector> factory = new ELKIBuilder<>(FrozenRStarTree.Factory.class) //
+        .with(FrozenRStarTree.Factory.Parameterizer.RTREE_ID, rtree) //
+        .build();
+    testExactEuclidean(factory, FrozenRStarTree.FrozenKNNQuery.class, FrozenRStarTree.FrozenRangeQuery.class);
+    testExactCosine(factory, FrozenRStarTree.FrozenKNNQuery.class, FrozenRStarTree.FrozenRangeQuery.class);
+    testSinglePoint(factory, FrozenRStarTree.FrozenKNNQuery.class, FrozenRStarTree.FrozenRangeQuery.class);
+  }
+}
@@ -24,6 +24,7 @@ import org.junit.Test;
 
 import de.lmu.ifi.dbs.elki.data.NumberVector;
 import de.lmu.ifi.dbs.elki.index.AbstractIndexStructureTest;
+import de.lmu.ifi.dbs.elki.index.tree.IndexTree;
 import de.lmu.ifi.dbs.elki.index.tree.spatial.rstarvariants.AbstractRStarTreeFactory;
 import de.lmu.ifi.dbs.elki.index.tree.spatial.rstarvariants.query.RStarTreeKNNQuery;
 import de.lmu.ifi.dbs.elki.index.tree.spatial.rstarvariants.query.RStarTreeRangeQuery;
@@ -282,4 +283,15 @@ public class RStarTreeTest extends AbstractIndexStructureTest {
     testExactCosine(factory, RStarTreeKNNQuery.class, RStarTreeRangeQuery.class);
     testSinglePoint(factory, RStarTreeKNNQuery.class, RStarTreeRangeQuery.class);
   }
+
+  /**
+   * Test concurrent queries on {@link RStarTree} in read-only mode.
+   */
+  @Test
+  public void testConcurrentReads() {
+    RStarTreeFactory<NumberVector> factory = new ELKIBuilder<>(RStarTreeFactory.class) //
+        .with(AbstractPageFileFactory.Parameterizer.PAGE_SIZE_ID, 300) //
+        .build();
+    testConcurrentKNN(factory, RStarTreeKNNQuery.class, idx -> ((IndexTree<?, ?>) idx).setReadOnly(true));
+  }
 }
@@ -0,0 +1,96 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.index.tree.spatial.rstarvariants.strategies.bulk;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.data.spatial.SpatialSingleMeanComparator;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.QuickSelect;
+import net.jafama.FastMath;
+
+/**
+ * Unit test for sort-tile-recursive bulk loading.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ */
+public class SortTileRecursiveBulkSplitTest {
+  /**
+   * Compare the (parallel) partitioning of a large data set to the classic
+   * sequential algorithm.
+   */
+  @Test
+  public void testLarge() {
+    Random rnd = new Random(0L);
+    List<DoubleVector> data = new ArrayList<>();
+    for(int i = 0; i < 200000; i++) {
+      data.add(new DoubleVector(new double[] { rnd.nextDouble(), rnd.nextDouble() }));
+    }
+    List<List<DoubleVector>> parts = SortTileRecursiveBulkSplit.STATIC.partition(new ArrayList<>(data), 50, 100);
+    List<List<DoubleVector>> ref = new ArrayList<>();
+    reference(data, 0, data.size(), 0, 2, 100, ref);
+    assertEquals("Number of partitions differs.", ref.size(), parts.size());
+    for(int i = 0; i < ref.size(); i++) {
+      List<DoubleVector> p = parts.get(i);
+      assertTrue("Partition too large.", p.size() <= 100);
+      assertEquals("Partition " + i + " differs.", new HashSet<>(ref.get(i)), new HashSet<>(p));
+    }
+  }
+
+  /**
+   * Classic sequential sort-tile-recursive.
+   *
+   * @param objs Object list
+   * @param start Subinterval start
+   * @param end Subinterval end
+   * @param depth Iteration depth
+   * @param dims Total number of dimensions
+   * @param maxEntries Maximum page size
+   * @param ret Output list
+   */
+  private static void reference(List<DoubleVector> objs, int start, int end, int depth, int dims, int maxEntries, List<List<DoubleVector>> ret) {
+    final int p = (int) FastMath.ceil((end - start) / (double) maxEntries);
+    final int s = (int) FastMath.ceil(FastMath.pow(p, 1.0 / (dims - depth)));
+    final double len = end - start;
+    for(int i = 0; i < s; i++) {
+      int s2 = start + (int) ((i * len) / s);
+      int e2 = start + (int) (((i + 1) * len) / s);
+      if(e2 < end) {
+        QuickSelect.quickSelect(objs, new SpatialSingleMeanComparator(depth), s2, end, e2);
+      }
+      if(depth + 1 == dims) {
+        ret.add(objs.subList(s2, e2));
+      }
+      else {
+        reference(objs, s2, e2, depth + 1, dims, maxEntries, ret);
+      }
+    }
+  }
+}
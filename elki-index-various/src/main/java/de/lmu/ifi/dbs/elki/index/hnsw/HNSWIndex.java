@@ -0,0 +1,1260 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.index.hnsw;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.KNNHeap;
+import de.lmu.ifi.dbs.elki.database.ids.KNNList;
+import de.lmu.ifi.dbs.elki.database.ids.ModifiableDoubleDBIDList;
+import de.lmu.ifi.dbs.elki.database.query.DatabaseQuery;
+import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
+import de.lmu.ifi.dbs.elki.database.query.knn.AbstractDistanceKNNQuery;
+import de.lmu.ifi.dbs.elki.database.query.knn.KNNQuery;
+import de.lmu.ifi.dbs.elki.database.query.range.AbstractDistanceRangeQuery;
+import de.lmu.ifi.dbs.elki.database.query.range.RangeQuery;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.DistanceFunction;
+import de.lmu.ifi.dbs.elki.index.AbstractIndex;
+import de.lmu.ifi.dbs.elki.index.IndexFactory;
+import de.lmu.ifi.dbs.elki.index.KNNIndex;
+import de.lmu.ifi.dbs.elki.index.RangeIndex;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.logging.statistics.Counter;
+import de.lmu.ifi.dbs.elki.logging.statistics.DoubleStatistic;
+import de.lmu.ifi.dbs.elki.logging.statistics.Duration;
+import de.lmu.ifi.dbs.elki.logging.statistics.LongAdderCounter;
+import de.lmu.ifi.dbs.elki.logging.statistics.LongStatistic;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.arrays.DoubleIntegerArrayQuickSort;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.heap.DoubleIntegerMaxHeap;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.heap.DoubleIntegerMinHeap;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+import de.lmu.ifi.dbs.elki.utilities.exceptions.AbortException;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.AbstractParameterizer;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.TrackParameters;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.TrackedParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.FileParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.ObjectParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.Parameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.RandomParameter;
+import de.lmu.ifi.dbs.elki.utilities.random.RandomFactory;
+
+import net.jafama.FastMath;
+
+/**
+ * Hierarchical navigable small world (HNSW) graph index for approximate
+ * nearest neighbor search (in-memory).
+ * <p>
+ * Every object is inserted into the layers 0 to l of a hierarchy of proximity
+ * graphs, where l is drawn from an exponentially decaying distribution. A query
+ * descends greedily through the sparse upper layers, then performs a
+ * best-first search with a candidate list of size efSearch in the bottom
+ * layer. Larger values of efSearch increase recall at the cost of more
+ * distance computations.
+ * <p>
+ * The graph is stored in flat int arrays: a fixed-size block of 2M+1 entries
+ * per object for the bottom layer (neighbor count followed by neighbor
+ * offsets), and blocks of M+1 entries for the few objects in upper layers.
+ * Objects are inserted in parallel, using striped locks on the adjacency
+ * lists. Queries keep their search state in reusable per-thread buffers.
+ * <p>
+ * If a file is given, the graph is written to this file after construction,
+ * and loaded from it instead of being rebuilt when the file already exists.
+ * The file only stores offsets into the relation, together with a fingerprint
+ * of the data (the vector values, or the DBIDs for other data types, in
+ * relation order) and the distance function class and parameters. Files that
+ * were built for other data or another distance function are rejected. The
+ * parameters of the distance function are only known if the index was
+ * configured using the parameterization API; otherwise, only the class name is
+ * checked.
+ * <p>
+ * Reference:
+ * <p>
+ * Yu. A. Malkov, D. A. Yashunin<br>
+ * Efficient and robust approximate nearest neighbor search using Hierarchical
+ * Navigable Small World graphs<br>
+ * IEEE Trans. Pattern Analysis and Machine Intelligence
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ *
+ * @has - - - HNSWKNNQuery
+ * @has - - - HNSWRangeQuery
+ *
+ * @param <O> Object type
+ */
+@Reference(authors = "Yu. A. Malkov, D. A. Yashunin", //
+    title = "Efficient and robust approximate nearest neighbor search using Hierarchical Navigable Small World graphs", //
+    booktitle = "IEEE Trans. Pattern Analysis and Machine Intelligence", //
+    url = "https://doi.org/10.1109/TPAMI.2018.2889473", //
+    bibkey = "DBLP:journals/pami/MalkovY20")
+public class HNSWIndex<O> extends AbstractIndex<O> implements KNNIndex<O>, RangeIndex<O> {
+  /**
+   * Class logger.
+   */
+  private static final Logging LOG = Logging.getLogger(HNSWIndex.class);
+
+  /**
+   * Magic number of the file format ("HNS2").
+   */
+  private static final int MAGIC = 0x484E5332;
+
+  /**
+   * Number of lock stripes for the adjacency lists, a power of two.
+   */
+  private static final int LOCK_STRIPES = 1 << 10;
+
+  /**
+   * Number of objects inserted sequentially, before parallel insertion.
+   */
+  private static final int SEQUENTIAL_INSERTS = 1000;
+
+  /**
+   * Number of objects inserted by a single parallel task.
+   */
+  private static final int INSERT_BATCH = 256;
+
+  /**
+   * Maximum layer.
+   */
+  private static final int MAX_LEVEL = 30;
+
+  /**
+   * Distance function.
+   */
+  protected final DistanceFunction<? super O> distanceFunction;
+
+  /**
+   * Distance function class and parameters, to validate graph files.
+   */
+  private final String distanceSettings;
+
+  /**
+   * Distance query.
+   */
+  protected final DistanceQuery<O> distanceQuery;
+
+  /**
+   * Maximum number of neighbors in the upper layers.
+   */
+  protected final int m;
+
+  /**
+   * Maximum number of neighbors in the bottom layer.
+   */
+  protected final int m0;
+
+  /**
+   * Candidate list size during construction.
+   */
+  protected final int efConstruction;
+
+  /**
+   * Candidate list size during search.
+   */
+  protected final int efSearch;
+
+  /**
+   * Random generator for the layer assignment.
+   */
+  protected final RandomFactory random;
+
+  /**
+   * File to store the graph in, may be {@code null}.
+   */
+  protected final File file;
+
+  /**
+   * Indexed objects; the graph refers to their offsets.
+   */
+  private ArrayDBIDs ids;
+
+  /**
+   * Top layer of each object.
+   */
+  private int[] levels;
+
+  /**
+   * Bottom layer adjacency, m0 + 1 entries per object.
+   */
+  private int[] layer0;
+
+  /**
+   * Upper layer adjacency, m + 1 entries per object and layer, may be null.
+   */
+  private int[][] upper;
+
+  /**
+   * Entry point of the search.
+   */
+  private int entry = -1;
+
+  /**
+   * Top layer of the entry point.
+   */
+  private int maxLevel = -1;
+
+  /**
+   * Adjacency list locks, only during construction.
+   */
+  private Object[] locks;
+
+  /**
+   * Search state of each thread.
+   */
+  private final ThreadLocal<SearchState> state = ThreadLocal.withInitial(SearchState::new);
+
+  /**
+   * Number of distance computations, may be {@code null}.
+   */
+  private final Counter distcalc;
+
+  /**
+   * Constructor.
+   *
+   * @param relation Data relation
+   * @param distanceFunction Distance function
+   * @param m Maximum number of neighbors in the upper layers
+   * @param efConstruction Candidate list size during construction
+   * @param efSearch Candidate list size during search
+   * @param random Random generator
+   * @param file File to store the graph in, may be {@code null}
+   */
+  public HNSWIndex(Relation<O> relation, DistanceFunction<? super O> distanceFunction, int m, int efConstruction, int efSearch, RandomFactory random, File file) {
+    this(relation, distanceFunction, null, m, efConstruction, efSearch, random, file);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param relation Data relation
+   * @param distanceFunction Distance function
+   * @param distanceSettings Distance function class and parameters, to
+   *        validate graph files; {@code null} to use the class name only
+   * @param m Maximum number of neighbors in the upper layers
+   * @param efConstruction Candidate list size during construction
+   * @param efSearch Candidate list size during search
+   * @param random Random generator
+   * @param file File to store the graph in, may be {@code null}
+   */
+  public HNSWIndex(Relation<O> relation, DistanceFunction<? super O> distanceFunction, String distanceSettings, int m, int efConstruction, int efSearch, RandomFactory random, File file) {
+    super(relation);
+    this.distanceFunction = distanceFunction;
+    this.distanceSettings = distanceSettings != null ? distanceSettings : distanceFunction.getClass().getName();
+    this.distanceQuery = distanceFunction.instantiate(relation);
+    this.m = m;
+    this.m0 = m << 1;
+    this.efConstruction = efConstruction;
+    this.efSearch = efSearch;
+    this.random = random;
+    this.file = file;
+    this.distcalc = LOG.isStatistics() ? new LongAdderCounter(this.getClass().getName() + ".distancecalcs") : null;
+  }
+
+  @Override
+  public void initialize() {
+    ids = DBIDUtil.ensureArray(relation.getDBIDs());
+    final int size = ids.size();
+    if(size == 0) {
+      return;
+    }
+    if((long) size * (m0 + 1) > Integer.MAX_VALUE) {
+      throw new AbortException("Too many objects for a HNSW graph with M=" + m);
+    }
+    try {
+      if(file != null && file.exists()) {
+        load(file);
+        return;
+      }
+      Duration dur = LOG.isStatistics() ? LOG.newDuration(this.getClass().getName() + ".construction-time").begin() : null;
+      build();
+      if(dur != null) {
+        LOG.statistics(dur.end());
+      }
+      if(file != null) {
+        save(file);
+      }
+    }
+    catch(IOException e) {
+      throw new AbortException("I/O error on HNSW graph file " + file, e);
+    }
+  }
+
+  /**
+   * Build the graph.
+   */
+  private void build() {
+    final int size = ids.size();
+    levels = new int[size];
+    upper = new int[size][];
+    layer0 = new int[size * (m0 + 1)];
+    // Layer assignment, sequential for reproducibility:
+    final Random rnd = random.getSingleThreadedRandom();
+    final double mult = 1. / FastMath.log(m);
+    for(int i = 0; i < size; i++) {
+      final int l = Math.min((int) (-FastMath.log(1. - rnd.nextDouble()) * mult), MAX_LEVEL);
+      levels[i] = l;
+      upper[i] = l > 0 ? new int[l * (m + 1)] : null;
+    }
+    locks = new Object[LOCK_STRIPES];
+    for(int i = 0; i < LOCK_STRIPES; i++) {
+      locks[i] = new Object();
+    }
+    entry = 0;
+    maxLevel = levels[0];
+    // Insert a first part sequentially, to get a well-connected graph:
+    final int seq = Math.min(size, SEQUENTIAL_INSERTS);
+    for(int i = 1; i < seq; i++) {
+      insert(i);
+    }
+    if(seq < size) {
+      ForkJoinPool.commonPool().invoke(new InsertTask(seq, size));
+    }
+    locks = null;
+  }
+
+  /**
+   * Insert a single object into the graph.
+   *
+   * @param i Object offset
+   */
+  private void insert(int i) {
+    final SearchState st = state.get();
+    final O q = relation.get(st.a.seek(i));
+    final int level = levels[i];
+    int ep, top;
+    synchronized(this) {
+      ep = entry;
+      top = maxLevel;
+    }
+    double d = distance(st, q, ep);
+    for(int lc = top; lc > level; lc--) {
+      ep = greedy(st, q, ep, d, lc);
+      d = st.dist;
+    }
+    for(int lc = Math.min(top, level); lc >= 0; lc--) {
+      searchLayer(st, q, ep, d, efConstruction, lc);
+      final int nc = st.drainResults();
+      ep = st.cand[0];
+      d = st.candd[0];
+      final int ns = selectNeighbors(st, st.cand, st.candd, nc, m, st.sel);
+      final int[] arr = lc == 0 ? layer0 : upper[i];
+      final int off = lc == 0 ? i * (m0 + 1) : (lc - 1) * (m + 1);
+      synchronized(locks[i & (LOCK_STRIPES - 1)]) {
+        arr[off] = ns;
+        System.arraycopy(st.sel, 0, arr, off + 1, ns);
+      }
+      // Distances of the selected neighbors, for the back links:
+      for(int j = 0, k = 0; j < ns; j++) {
+        while(st.cand[k] != st.sel[j]) {
+          k++;
+        }
+        addNeighbor(st, st.sel[j], i, st.candd[k], lc);
+      }
+    }
+    if(level > top) {
+      synchronized(this) {
+        if(level > maxLevel) {
+          maxLevel = level;
+          entry = i;
+        }
+      }
+    }
+  }
+
+  /**
+   * Add a back link to an adjacency list, shrinking the list if necessary.
+   *
+   * @param st Search state
+   * @param node Node to modify
+   * @param other Node to link to
+   * @param dist Distance of the two nodes
+   * @param lc Layer
+   */
+  private void addNeighbor(SearchState st, int node, int other, double dist, int lc) {
+    final int max = lc == 0 ? m0 : m;
+    final int[] arr = lc == 0 ? layer0 : upper[node];
+    final int off = lc == 0 ? node * (m0 + 1) : (lc - 1) * (m + 1);
+    synchronized(locks[node & (LOCK_STRIPES - 1)]) {
+      final int cnt = arr[off];
+      if(cnt < max) {
+        arr[off + 1 + cnt] = other;
+        arr[off] = cnt + 1;
+        return;
+      }
+      // Overflow: choose the neighbors again among the old ones and the new.
+      final int[] tc = st.tmp;
+      final double[] td = st.tmpd;
+      tc[0] = other;
+      td[0] = dist;
+      final O o = relation.get(st.b.seek(node));
+      for(int j = 0; j < cnt; j++) {
+        tc[j + 1] = arr[off + 1 + j];
+        td[j + 1] = distance(st, o, tc[j + 1]);
+      }
+      DoubleIntegerArrayQuickSort.sort(td, tc, cnt + 1);
+      final int ns = selectNeighbors(st, tc, td, cnt + 1, max, st.sel2);
+      arr[off] = ns;
+      System.arraycopy(st.sel2, 0, arr, off + 1, ns);
+    }
+  }
+
+  /**
+   * Neighbor selection heuristic: a candidate is kept only if it is closer to
+   * the query than to every already selected neighbor.
+   *
+   * @param st Search state
+   * @param cand Candidates, sorted by distance
+   * @param candd Candidate distances
+   * @param nc Number of candidates
+   * @param max Maximum number of neighbors
+   * @param out Output array
+   * @return Number of selected neighbors
+   */
+  private int selectNeighbors(SearchState st, int[] cand, double[] candd, int nc, int max, int[] out) {
+    int ns = 0;
+    for(int j = 0; j < nc && ns < max; j++) {
+      final int c = cand[j];
+      final double dc = candd[j];
+      boolean keep = true;
+      for(int r = 0; r < ns; r++) {
+        if(distance(st, c, out[r]) < dc) {
+          keep = false;
+          break;
+        }
+      }
+      if(keep) {
+        out[ns++] = c;
+      }
+    }
+    return ns;
+  }
+
+  /**
+   * Copy the neighbors of a node.
+   *
+   * @param node Node
+   * @param lc Layer
+   * @param buf Output buffer
+   * @return Number of neighbors
+   */
+  private int neighbors(int node, int lc, int[] buf) {
+    final int[] arr = lc == 0 ? layer0 : upper[node];
+    final int off = lc == 0 ? node * (m0 + 1) : (lc - 1) * (m + 1);
+    final Object[] locks = this.locks;
+    if(locks == null) {
+      final int cnt = arr[off];
+      System.arraycopy(arr, off + 1, buf, 0, cnt);
+      return cnt;
+    }
+    synchronized(locks[node & (LOCK_STRIPES - 1)]) {
+      final int cnt = arr[off];
+      System.arraycopy(arr, off + 1, buf, 0, cnt);
+      return cnt;
+    }
+  }
+
+  /**
+   * Greedy search for the nearest neighbor in one layer.
+   *
+   * @param st Search state, receives the distance
+   * @param q Query object
+   * @param ep Entry point
+   * @param d Distance of the entry point
+   * @param lc Layer
+   * @return Closest node found
+   */
+  private int greedy(SearchState st, O q, int ep, double d, int lc) {
+    final int[] buf = st.nbuf;
+    boolean changed = true;
+    while(changed) {
+      changed = false;
+      final int cnt = neighbors(ep, lc, buf);
+      for(int j = 0; j < cnt; j++) {
+        final double dj = distance(st, q, buf[j]);
+        if(dj < d) {
+          d = dj;
+          ep = buf[j];
+          changed = true;
+        }
+      }
+    }
+    st.dist = d;
+    return ep;
+  }
+
+  /**
+   * Best-first search in one layer, leaving the ef closest nodes found in the
+   * result heap of the search state.
+   *
+   * @param st Search state
+   * @param q Query object
+   * @param ep Entry point
+   * @param d Distance of the entry point
+   * @param ef Candidate list size
+   * @param lc Layer
+   */
+  private void searchLayer(SearchState st, O q, int ep, double d, int ef, int lc) {
+    final DoubleIntegerMinHeap cand = st.candidates;
+    final DoubleIntegerMaxHeap res = st.results;
+    final int[] buf = st.nbuf;
+    st.newVisit();
+    st.visit(ep);
+    cand.add(d, ep);
+    res.add(d, ep);
+    while(!cand.isEmpty()) {
+      if(cand.peekKey() > res.peekKey()) {
+        break; // All remaining candidates are farther than the results.
+      }
+      final int c = cand.peekValue();
+      cand.poll();
+      final int cnt = neighbors(c, lc, buf);
+      for(int j = 0; j < cnt; j++) {
+        final int e = buf[j];
+        if(!st.visit(e)) {
+          continue;
+        }
+        final double de = distance(st, q, e);
+        if(res.size() < ef || de < res.peekKey()) {
+          cand.add(de, e);
+          res.add(de, e);
+          if(res.size() > ef) {
+            res.poll();
+          }
+        }
+      }
+    }
+    cand.clear();
+  }
+
+  /**
+   * Descend through the upper layers.
+   *
+   * @param st Search state, receives the distance
+   * @param q Query object
+   * @return Entry point into the bottom layer
+   */
+  private int descend(SearchState st, O q) {
+    int ep = entry;
+    double d = distance(st, q, ep);
+    for(int lc = maxLevel; lc > 0; lc--) {
+      ep = greedy(st, q, ep, d, lc);
+      d = st.dist;
+    }
+    st.dist = d;
+    return ep;
+  }
+
+  /**
+   * Compute the distance to an indexed object.
+   *
+   * @param st Search state
+   * @param q Query object
+   * @param o Object offset
+   * @return Distance
+   */
+  private double distance(SearchState st, O q, int o) {
+    if(distcalc != null) {
+      distcalc.increment();
+    }
+    return distanceQuery.distance(q, st.b.seek(o));
+  }
+
+  /**
+   * Compute the distance of two indexed objects.
+   *
+   * @param st Search state
+   * @param o1 First object offset
+   * @param o2 Second object offset
+   * @return Distance
+   */
+  private double distance(SearchState st, int o1, int o2) {
+    if(distcalc != null) {
+      distcalc.increment();
+    }
+    return distanceQuery.distance(st.a.seek(o1), st.b.seek(o2));
+  }
+
+  /**
+   * Write the graph to a file.
+   *
+   * @param f Output file
+   * @throws IOException on I/O errors
+   */
+  private void save(File f) throws IOException {
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(f)))) {
+      final int size = ids.size();
+      out.writeInt(MAGIC);
+      out.writeInt(size);
+      out.writeInt(m);
+      out.writeLong(fingerprint());
+      out.writeUTF(distanceSettings);
+      out.writeInt(entry);
+      out.writeInt(maxLevel);
+      for(int i = 0; i < size; i++) {
+        out.writeInt(levels[i]);
+      }
+      for(int i = 0; i < size; i++) {
+        // Only store the used part of each block:
+        final int off = i * (m0 + 1);
+        for(int j = 0, e = layer0[off]; j <= e; j++) {
+          out.writeInt(layer0[off + j]);
+        }
+        for(int lc = 1; lc <= levels[i]; lc++) {
+          final int uoff = (lc - 1) * (m + 1);
+          for(int j = 0, e = upper[i][uoff]; j <= e; j++) {
+            out.writeInt(upper[i][uoff + j]);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Load the graph from a file.
+   *
+   * @param f Input file
+   * @throws IOException on I/O errors
+   */
+  private void load(File f) throws IOException {
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(f)))) {
+      final int size = ids.size();
+      if(in.readInt() != MAGIC) {
+        throw new AbortException("Not a HNSW graph file: " + f);
+      }
+      final int fsize = in.readInt(), fm = in.readInt();
+      if(fsize != size || fm != m) {
+        throw new AbortException("HNSW graph file " + f + " was built for " + fsize + " objects with M=" + fm + ", but the index has " + size + " objects with M=" + m);
+      }
+      final long fprint = in.readLong();
+      final String fdist = in.readUTF();
+      if(!fdist.equals(distanceSettings)) {
+        throw new AbortException("HNSW graph file " + f + " was built for distance " + fdist + ", but the index uses " + distanceSettings);
+      }
+      if(fprint != fingerprint()) {
+        throw new AbortException("HNSW graph file " + f + " was built for different data.");
+      }
+      entry = in.readInt();
+      maxLevel = in.readInt();
+      levels = new int[size];
+      upper = new int[size][];
+      layer0 = new int[size * (m0 + 1)];
+      for(int i = 0; i < size; i++) {
+        final int l = levels[i] = in.readInt();
+        upper[i] = l > 0 ? new int[l * (m + 1)] : null;
+      }
+      for(int i = 0; i < size; i++) {
+        readList(in, layer0, i * (m0 + 1), m0, size);
+        for(int lc = 1; lc <= levels[i]; lc++) {
+          readList(in, upper[i], (lc - 1) * (m + 1), m, size);
+        }
+      }
+    }
+  }
+
+  /**
+   * Compute a fingerprint of the indexed data, to detect stale graph files.
+   * <p>
+   * For vector data, the values are hashed, as the DBIDs differ between runs.
+   * For other data, only the DBIDs can be used.
+   *
+   * @return Fingerprint
+   */
+  private long fingerprint() {
+    long h = ids.size();
+    for(DBIDArrayIter it = ids.iter(); it.valid(); it.advance()) {
+      final O o = relation.get(it);
+      if(o instanceof NumberVector) {
+        final NumberVector v = (NumberVector) o;
+        final int dim = v.getDimensionality();
+        h = h * 31 + dim;
+        for(int d = 0; d < dim; d++) {
+          h = h * 31 + Double.doubleToLongBits(v.doubleValue(d));
+        }
+      }
+      else {
+        h = h * 31 + DBIDUtil.asInteger(it);
+      }
+    }
+    return h;
+  }
+
+  /**
+   * Read a single adjacency list.
+   *
+   * @param in Input stream
+   * @param arr Output array
+   * @param off Offset
+   * @param max Maximum list length
+   * @param size Number of objects
+   * @throws IOException on I/O errors
+   */
+  private static void readList(DataInputStream in, int[] arr, int off, int max, int size) throws IOException {
+    final int cnt = arr[off] = in.readInt();
+    if(cnt < 0 || cnt > max) {
+      throw new AbortException("Corrupt HNSW graph file.");
+    }
+    for(int j = 1; j <= cnt; j++) {
+      final int v = arr[off + j] = in.readInt();
+      if(v < 0 || v >= size) {
+        throw new AbortException("Corrupt HNSW graph file.");
+      }
+    }
+  }
+
+  @Override
+  public void logStatistics() {
+    if(levels != null) {
+      long edges = 0;
+      for(int i = 0, off = 0; i < levels.length; i++, off += m0 + 1) {
+        edges += layer0[off];
+      }
+      LOG.statistics(new LongStatistic(this.getClass().getName() + ".maxlevel", maxLevel));
+      LOG.statistics(new DoubleStatistic(this.getClass().getName() + ".mean-degree", edges / (double) levels.length));
+    }
+    if(distcalc != null) {
+      LOG.statistics(distcalc);
+    }
+  }
+
+  @Override
+  public KNNQuery<O> getKNNQuery(DistanceQuery<O> distanceQuery, Object... hints) {
+    for(Object hint : hints) {
+      if(DatabaseQuery.HINT_EXACT.equals(hint)) {
+        return null;
+      }
+    }
+    if(distanceQuery.getRelation() != relation || !this.distanceFunction.equals(distanceQuery.getDistanceFunction())) {
+      return null;
+    }
+    return new HNSWKNNQuery(this.distanceQuery);
+  }
+
+  @Override
+  public RangeQuery<O> getRangeQuery(DistanceQuery<O> distanceQuery, Object... hints) {
+    for(Object hint : hints) {
+      if(DatabaseQuery.HINT_EXACT.equals(hint)) {
+        return null;
+      }
+    }
+    if(distanceQuery.getRelation() != relation || !this.distanceFunction.equals(distanceQuery.getDistanceFunction())) {
+      return null;
+    }
+    return new HNSWRangeQuery(this.distanceQuery);
+  }
+
+  @Override
+  public String getLongName() {
+    return "HNSW graph";
+  }
+
+  @Override
+  public String getShortName() {
+    return "hnsw";
+  }
+
+  /**
+   * Task to insert a range of objects.
+   *
+   * @author Erich Schubert
+   */
+  private class InsertTask extends RecursiveAction {
+    /**
+     * Serialization version.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Range of objects to insert.
+     */
+    private final int begin, end;
+
+    /**
+     * Constructor.
+     *
+     * @param begin First object
+     * @param end End (exclusive)
+     */
+    InsertTask(int begin, int end) {
+      this.begin = begin;
+      this.end = end;
+    }
+
+    @Override
+    protected void compute() {
+      if(end - begin > INSERT_BATCH) {
+        final int mid = (begin + end) >>> 1;
+        invokeAll(new InsertTask(begin, mid), new InsertTask(mid, end));
+        return;
+      }
+      for(int i = begin; i < end; i++) {
+        insert(i);
+      }
+    }
+  }
+
+  /**
+   * Per-thread search state, reused across searches.
+   *
+   * @author Erich Schubert
+   */
+  private class SearchState {
+    /**
+     * Visit marker of each object.
+     */
+    final int[] visited = new int[ids.size()];
+
+    /**
+     * Current visit marker.
+     */
+    int tag = 0;
+
+    /**
+     * Candidates to expand.
+     */
+    final DoubleIntegerMinHeap candidates = new DoubleIntegerMinHeap();
+
+    /**
+     * Best results found.
+     */
+    final DoubleIntegerMaxHeap results = new DoubleIntegerMaxHeap();
+
+    /**
+     * Sorted results.
+     */
+    int[] cand = new int[Math.max(efConstruction, efSearch) + 1];
+
+    /**
+     * Sorted result distances.
+     */
+    double[] candd = new double[cand.length];
+
+    /**
+     * Neighbor buffer.
+     */
+    final int[] nbuf = new int[m0];
+
+    /**
+     * Selected neighbors.
+     */
+    final int[] sel = new int[m0], sel2 = new int[m0];
+
+    /**
+     * Buffers for shrinking adjacency lists.
+     */
+    final int[] tmp = new int[m0 + 1];
+
+    /**
+     * Buffers for shrinking adjacency lists.
+     */
+    final double[] tmpd = new double[m0 + 1];
+
+    /**
+     * Stack for range queries.
+     */
+    int[] stack = new int[64];
+
+    /**
+     * Last distance computed by the greedy search.
+     */
+    double dist;
+
+    /**
+     * Iterators for accessing objects.
+     */
+    final DBIDArrayIter a = ids.iter(), b = ids.iter();
+
+    /**
+     * Begin a new visit, invalidating all markers.
+     */
+    void newVisit() {
+      if(++tag == 0) {
+        Arrays.fill(visited, 0);
+        tag = 1;
+      }
+    }
+
+    /**
+     * Mark an object as visited.
+     *
+     * @param o Object offset
+     * @return {@code true} if the object was not yet visited
+     */
+    boolean visit(int o) {
+      if(visited[o] == tag) {
+        return false;
+      }
+      visited[o] = tag;
+      return true;
+    }
+
+    /**
+     * Move the results into the sorted arrays.
+     *
+     * @return Number of results
+     */
+    int drainResults() {
+      final int n = results.size();
+      if(n > cand.length) {
+        cand = new int[n];
+        candd = new double[n];
+      }
+      for(int j = n - 1; j >= 0; j--) {
+        cand[j] = results.peekValue();
+        candd[j] = results.peekKey();
+        results.poll();
+      }
+      return n;
+    }
+
+    /**
+     * Push an object onto the stack.
+     *
+     * @param o Object offset
+     * @param sp Stack size
+     */
+    void push(int o, int sp) {
+      if(sp == stack.length) {
+        stack = Arrays.copyOf(stack, sp << 1);
+      }
+      stack[sp] = o;
+    }
+  }
+
+  /**
+   * kNN query class.
+   *
+   * @author Erich Schubert
+   */
+  public class HNSWKNNQuery extends AbstractDistanceKNNQuery<O> implements KNNQuery<O> {
+    /**
+     * Constructor.
+     *
+     * @param distanceQuery Distance query
+     */
+    public HNSWKNNQuery(DistanceQuery<O> distanceQuery) {
+      super(distanceQuery);
+    }
+
+    @Override
+    public KNNList getKNNForObject(O obj, int k) {
+      final KNNHeap heap = DBIDUtil.newHeap(k);
+      if(entry < 0) {
+        return heap.toKNNList();
+      }
+      final SearchState st = state.get();
+      final int ep = descend(st, obj);
+      searchLayer(st, obj, ep, st.dist, Math.max(efSearch, k), 0);
+      final DoubleIntegerMaxHeap res = st.results;
+      for(; !res.isEmpty(); res.poll()) {
+        heap.insert(res.peekKey(), st.a.seek(res.peekValue()));
+      }
+      return heap.toKNNList();
+    }
+  }
+
+  /**
+   * Range query class.
+   * <p>
+   * The ef closest objects are found with the usual search, then the query
+   * expands over bottom layer neighbors that are within the query radius.
+   *
+   * @author Erich Schubert
+   */
+  public class HNSWRangeQuery extends AbstractDistanceRangeQuery<O> implements RangeQuery<O> {
+    /**
+     * Constructor.
+     *
+     * @param distanceQuery Distance query
+     */
+    public HNSWRangeQuery(DistanceQuery<O> distanceQuery) {
+      super(distanceQuery);
+    }
+
+    @Override
+    public void getRangeForObject(O obj, double range, ModifiableDoubleDBIDList result) {
+      if(entry < 0) {
+        return;
+      }
+      final SearchState st = state.get();
+      final int ep = descend(st, obj);
+      searchLayer(st, obj, ep, st.dist, efSearch, 0);
+      // Expand from the results, with fresh visit markers:
+      st.newVisit();
+      final DoubleIntegerMaxHeap res = st.results;
+      int sp = 0;
+      for(; !res.isEmpty(); res.poll()) {
+        final int o = res.peekValue();
+        st.visit(o);
+        if(res.peekKey() <= range) {
+          result.add(res.peekKey(), st.a.seek(o));
+          st.push(o, sp++);
+        }
+      }
+      final int[] buf = st.nbuf;
+      while(sp > 0) {
+        final int cnt = neighbors(st.stack[--sp], 0, buf);
+        for(int j = 0; j < cnt; j++) {
+          final int e = buf[j];
+          if(!st.visit(e)) {
+            continue;
+          }
+          final double de = distance(st, obj, e);
+          if(de <= range) {
+            result.add(de, st.a.seek(e));
+            st.push(e, sp++);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Index factory.
+   *
+   * @author Erich Schubert
+   *
+   * @has - - - HNSWIndex
+   *
+   * @param <O> Object type
+   */
+  public static class Factory<O> implements IndexFactory<O> {
+    /**
+     * Distance function.
+     */
+    protected DistanceFunction<? super O> distanceFunction;
+
+    /**
+     * Distance function class and parameters, may be {@code null}.
+     */
+    protected String distanceSettings;
+
+    /**
+     * Maximum number of neighbors in the upper layers.
+     */
+    protected int m;
+
+    /**
+     * Candidate list size during construction.
+     */
+    protected int efConstruction;
+
+    /**
+     * Candidate list size during search.
+     */
+    protected int efSearch;
+
+    /**
+     * Random generator.
+     */
+    protected RandomFactory random;
+
+    /**
+     * File to store the graph in, may be {@code null}.
+     */
+    protected File file;
+
+    /**
+     * Constructor.
+     *
+     * @param distanceFunction Distance function
+     * @param m Maximum number of neighbors in the upper layers
+     * @param efConstruction Candidate list size during construction
+     * @param efSearch Candidate list size during search
+     * @param random Random generator
+     * @param file File to store the graph in, may be {@code null}
+     */
+    public Factory(DistanceFunction<? super O> distanceFunction, int m, int efConstruction, int efSearch, RandomFactory random, File file) {
+      this(distanceFunction, null, m, efConstruction, efSearch, random, file);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param distanceFunction Distance function
+     * @param distanceSettings Distance function class and parameters, to
+     *        validate graph files; {@code null} to use the class name only
+     * @param m Maximum number of neighbors in the upper layers
+     * @param efConstruction Candidate list size during construction
+     * @param efSearch Candidate list size during search
+     * @param random Random generator
+     * @param file File to store the graph in, may be {@code null}
+     */
+    public Factory(DistanceFunction<? super O> distanceFunction, String distanceSettings, int m, int efConstruction, int efSearch, RandomFactory random, File file) {
+      super();
+      this.distanceFunction = distanceFunction;
+      this.distanceSettings = distanceSettings;
+      this.m = m;
+      this.efConstruction = efConstruction;
+      this.efSearch = efSearch;
+      this.random = random;
+      this.file = file;
+    }
+
+    @Override
+    public HNSWIndex<O> instantiate(Relation<O> relation) {
+      return new HNSWIndex<>(relation, distanceFunction, distanceSettings, m, efConstruction, efSearch, random, file);
+    }
+
+    @Override
+    public TypeInformation getInputTypeRestriction() {
+      return distanceFunction.getInputTypeRestriction();
+    }
+
+    /**
+     * Parameterization class.
+     *
+     * @author Erich Schubert
+     */
+    public static class Parameterizer<O> extends AbstractParameterizer {
+      /**
+       * Distance function to use.
+       */
+      public static final OptionID DISTANCE_FUNCTION_ID = new OptionID("hnsw.distancefunction", "Distance function to determine the distance between objects.");
+
+      /**
+       * Maximum number of neighbors per layer.
+       */
+      public static final OptionID M_ID = new OptionID("hnsw.m", "Maximum number of neighbors in the upper layers; the bottom layer allows twice as many.");
+
+      /**
+       * Candidate list size during construction.
+       */
+      public static final OptionID EF_CONSTRUCTION_ID = new OptionID("hnsw.efconstruction", "Size of the candidate list during construction.");
+
+      /**
+       * Candidate list size during search.
+       */
+      public static final OptionID EF_SEARCH_ID = new OptionID("hnsw.efsearch", "Size of the candidate list during search (at least k is used).");
+
+      /**
+       * Random seed for the layer assignment.
+       */
+      public static final OptionID SEED_ID = new OptionID("hnsw.seed", "Random generator seed for the layer assignment.");
+
+      /**
+       * File to store the graph in.
+       */
+      public static final OptionID FILE_ID = new OptionID("hnsw.file", "File to store the graph in, and to load it from if it exists.");
+
+      /**
+       * Distance function.
+       */
+      protected DistanceFunction<? super O> distanceFunction;
+
+      /**
+       * Distance function class and parameters.
+       */
+      protected String distanceSettings;
+
+      /**
+       * Maximum number of neighbors in the upper layers.
+       */
+      protected int m;
+
+      /**
+       * Candidate list size during construction.
+       */
+      protected int efConstruction;
+
+      /**
+       * Candidate list size during search.
+       */
+      protected int efSearch;
+
+      /**
+       * Random generator.
+       */
+      protected RandomFactory random;
+
+      /**
+       * File to store the graph in.
+       */
+      protected File file;
+
+      @Override
+      protected void makeOptions(Parameterization config) {
+        super.makeOptions(config);
+        ObjectParameter<DistanceFunction<O>> distanceFunctionP = new ObjectParameter<>(DISTANCE_FUNCTION_ID, DistanceFunction.class);
+        if(config.grab(distanceFunctionP)) {
+          // Track the parameters of the distance, to validate graph files.
+          TrackParameters track = new TrackParameters(config);
+          distanceFunction = distanceFunctionP.instantiateClass(track);
+          StringBuilder buf = new StringBuilder(100).append(distanceFunction.getClass().getName());
+          for(TrackedParameter p : track.getAllParameters()) {
+            Parameter<?> par = p.getParameter();
+            buf.append(' ').append(par.getOptionID().getName()).append('=') //
+                .append(par.isDefined() ? par.getValueAsString() : "");
+          }
+          distanceSettings = buf.toString();
+        }
+        IntParameter mP = new IntParameter(M_ID, 16) //
+            .addConstraint(CommonConstraints.GREATER_THAN_ONE_INT);
+        if(config.grab(mP)) {
+          m = mP.intValue();
+        }
+        IntParameter efConstructionP = new IntParameter(EF_CONSTRUCTION_ID, 200) //
+            .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+        if(config.grab(efConstructionP)) {
+          efConstruction = efConstructionP.intValue();
+        }
+        IntParameter efSearchP = new IntParameter(EF_SEARCH_ID, 50) //
+            .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+        if(config.grab(efSearchP)) {
+          efSearch = efSearchP.intValue();
+        }
+        RandomParameter randomP = new RandomParameter(SEED_ID);
+        if(config.grab(randomP)) {
+          random = randomP.getValue();
+        }
+        FileParameter fileP = new FileParameter(FILE_ID, FileParameter.FileType.OUTPUT_FILE, true);
+        if(config.grab(fileP)) {
+          file = fileP.getValue();
+        }
+      }
+
+      @Override
+      protected HNSWIndex.Factory<O> makeInstance() {
+        return new HNSWIndex.Factory<>(distanceFunction, distanceSettings, m, efConstruction, efSearch, random, file);
+      }
+    }
+  }
+}
@@ -0,0 +1,516 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.index.invertedlist;
+
+import java.util.Arrays;
+
+import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.KNNHeap;
+import de.lmu.ifi.dbs.elki.database.ids.KNNList;
+import de.lmu.ifi.dbs.elki.database.ids.ModifiableDoubleDBIDList;
+import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
+import de.lmu.ifi.dbs.elki.database.query.knn.KNNQuery;
+import de.lmu.ifi.dbs.elki.database.query.range.RangeQuery;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.strings.LevenshteinDistanceFunction;
+import de.lmu.ifi.dbs.elki.index.AbstractRefiningIndex;
+import de.lmu.ifi.dbs.elki.index.IndexFactory;
+import de.lmu.ifi.dbs.elki.index.KNNIndex;
+import de.lmu.ifi.dbs.elki.index.RangeIndex;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.logging.statistics.LongStatistic;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.arraylike.IntegerArray;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.AbstractParameterizer;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.LessEqualConstraint;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
+
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+
+/**
+ * Inverted index of the q-grams of strings, for similarity search with the
+ * Levenshtein distance.
+ * <p>
+ * Strings within edit distance k share at least max(|s|,|t|)+q-1-kq of their
+ * (padded) q-grams. Range queries only verify the candidates that pass this
+ * count filter and a length filter. kNN queries derive a lower bound of the
+ * edit distance from the number of shared q-grams, and verify candidates in
+ * ascending order of this bound, until the bound exceeds the current kNN
+ * distance. Verification uses the bounded Levenshtein distance.
+ * <p>
+ * Reference:
+ * <p>
+ * L. Gravano, P. G. Ipeirotis, H. V. Jagadish, N. Koudas, S. Muthukrishnan,
+ * D. Srivastava<br>
+ * Approximate String Joins in a Database (Almost) for Free<br>
+ * Proc. 27th Int. Conf. on Very Large Data Bases (VLDB 2001)
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ *
+ * @has - - - QGramKNNQuery
+ * @has - - - QGramRangeQuery
+ */
+@Reference(authors = "L. Gravano, P. G. Ipeirotis, H. V. Jagadish, N. Koudas, S. Muthukrishnan, D. Srivastava", //
+    title = "Approximate String Joins in a Database (Almost) for Free", //
+    booktitle = "Proc. 27th Int. Conf. on Very Large Data Bases (VLDB 2001)", //
+    url = "http://www.vldb.org/conf/2001/P491.pdf", //
+    bibkey = "DBLP:conf/vldb/GravanoIJKMS01")
+public class QGramIndex extends AbstractRefiningIndex<String> implements KNNIndex<String>, RangeIndex<String> {
+  /**
+   * Class logger.
+   */
+  private static final Logging LOG = Logging.getLogger(QGramIndex.class);
+
+  /**
+   * Length of the q-grams.
+   */
+  private final int q;
+
+  /**
+   * Indexed objects.
+   */
+  private ArrayDBIDs ids;
+
+  /**
+   * String lengths.
+   */
+  private int[] lengths;
+
+  /**
+   * Maximum string length.
+   */
+  private int maxlen;
+
+  /**
+   * Dictionary of q-grams.
+   */
+  private Long2IntOpenHashMap dictionary;
+
+  /**
+   * Posting lists, with interleaved object offsets and q-gram multiplicity.
+   */
+  private int[][] postings;
+
+  /**
+   * Search state of each thread.
+   */
+  private final ThreadLocal<SearchState> state = ThreadLocal.withInitial(SearchState::new);
+
+  /**
+   * Constructor.
+   *
+   * @param relation Data relation
+   * @param q Length of the q-grams
+   */
+  public QGramIndex(Relation<String> relation, int q) {
+    super(relation);
+    this.q = q;
+  }
+
+  @Override
+  public void initialize() {
+    ids = DBIDUtil.ensureArray(relation.getDBIDs());
+    lengths = new int[ids.size()];
+    dictionary = new Long2IntOpenHashMap();
+    dictionary.defaultReturnValue(-1);
+    IntegerArray[] lists = new IntegerArray[16];
+    int nlists = 0;
+    long[] buf = new long[16];
+    for(DBIDArrayIter it = ids.iter(); it.valid(); it.advance()) {
+      final String s = relation.get(it);
+      final int off = it.getOffset(), len = lengths[off] = s.length();
+      maxlen = len > maxlen ? len : maxlen;
+      buf = buf.length >= len + q - 1 ? buf : new long[len + q - 1];
+      final int n = qgrams(s, buf);
+      for(int i = 0; i < n;) {
+        final long code = buf[i];
+        final int start = i;
+        while(++i < n && buf[i] == code) {
+          // Count run length
+        }
+        int list = dictionary.get(code);
+        if(list < 0) {
+          dictionary.put(code, list = nlists++);
+          if(list == lists.length) {
+            lists = Arrays.copyOf(lists, list << 1);
+          }
+          lists[list] = new IntegerArray(4);
+        }
+        lists[list].add(off);
+        lists[list].add(i - start);
+      }
+    }
+    postings = new int[nlists][];
+    for(int i = 0; i < nlists; i++) {
+      postings[i] = lists[i].toArray();
+    }
+    if(LOG.isStatistics()) {
+      LOG.statistics(new LongStatistic(this.getClass().getName() + ".qgrams", nlists));
+    }
+  }
+
+  /**
+   * Compute the sorted (padded) q-grams of a string.
+   *
+   * @param s String
+   * @param buf Output buffer, of length at least s.length() + q - 1
+   * @return Number of q-grams
+   */
+  private int qgrams(String s, long[] buf) {
+    final int len = s.length(), n = len + q - 1;
+    long code = 0L;
+    // The q-1 leading (and trailing) padding characters are 0.
+    for(int i = 0; i < n; i++) {
+      code = (code << 16) | (i < len ? s.charAt(i) : 0);
+      buf[i] = q < 4 ? code & ((1L << (q << 4)) - 1) : code;
+    }
+    Arrays.sort(buf, 0, n);
+    return n;
+  }
+
+  /**
+   * Count the shared q-grams with all indexed objects.
+   *
+   * @param st Search state
+   * @param query Query string
+   */
+  private void countShared(SearchState st, String query) {
+    final int n = qgrams(query, st.grams(query.length() + q - 1));
+    final long[] buf = st.grams;
+    final int[] common = st.common, touched = st.touched;
+    int nt = 0;
+    for(int i = 0; i < n;) {
+      final long code = buf[i];
+      final int start = i;
+      while(++i < n && buf[i] == code) {
+        // Count run length
+      }
+      final int list = dictionary.get(code);
+      if(list < 0) {
+        continue;
+      }
+      final int cq = i - start;
+      final int[] posting = postings[list];
+      for(int j = 0; j < posting.length; j += 2) {
+        final int doc = posting[j], cd = posting[j + 1];
+        if(common[doc] == 0) {
+          touched[nt++] = doc;
+        }
+        common[doc] += cq < cd ? cq : cd;
+      }
+    }
+    st.ntouched = nt;
+  }
+
+  @Override
+  public Logging getLogger() {
+    return LOG;
+  }
+
+  @Override
+  public KNNQuery<String> getKNNQuery(DistanceQuery<String> distanceQuery, Object... hints) {
+    if(distanceQuery.getRelation() != relation || !(distanceQuery.getDistanceFunction() instanceof LevenshteinDistanceFunction)) {
+      return null;
+    }
+    return new QGramKNNQuery(distanceQuery);
+  }
+
+  @Override
+  public RangeQuery<String> getRangeQuery(DistanceQuery<String> distanceQuery, Object... hints) {
+    if(distanceQuery.getRelation() != relation || !(distanceQuery.getDistanceFunction() instanceof LevenshteinDistanceFunction)) {
+      return null;
+    }
+    return new QGramRangeQuery(distanceQuery);
+  }
+
+  @Override
+  public String getLongName() {
+    return "q-gram inverted index";
+  }
+
+  @Override
+  public String getShortName() {
+    return "qgram-index";
+  }
+
+  /**
+   * Per-thread search state.
+   *
+   * @author Erich Schubert
+   */
+  private class SearchState {
+    /**
+     * Number of shared q-grams, for each object.
+     */
+    int[] common = new int[ids.size()];
+
+    /**
+     * Objects with shared q-grams.
+     */
+    int[] touched = new int[ids.size()];
+
+    /**
+     * Number of objects with shared q-grams.
+     */
+    int ntouched;
+
+    /**
+     * Candidates, sorted by lower bound.
+     */
+    int[] order = new int[ids.size()];
+
+    /**
+     * Q-gram buffer.
+     */
+    long[] grams = new long[16];
+
+    /**
+     * Iterator, for accessing objects.
+     */
+    DBIDArrayIter iter = ids.iter();
+
+    /**
+     * Get the q-gram buffer.
+     *
+     * @param n Required size
+     * @return Buffer
+     */
+    long[] grams(int n) {
+      return grams.length >= n ? grams : (grams = new long[n]);
+    }
+
+    /**
+     * Reset the shared q-gram counts.
+     */
+    void reset() {
+      for(int i = 0; i < ntouched; i++) {
+        common[touched[i]] = 0;
+      }
+      ntouched = 0;
+    }
+  }
+
+  /**
+   * kNN query class.
+   *
+   * @author Erich Schubert
+   */
+  public class QGramKNNQuery extends AbstractRefiningIndex<String>.AbstractKNNQuery {
+    /**
+     * Constructor.
+     *
+     * @param distanceQuery Distance query
+     */
+    public QGramKNNQuery(DistanceQuery<String> distanceQuery) {
+      super(distanceQuery);
+    }
+
+    @Override
+    public KNNList getKNNForObject(String obj, int k) {
+      final KNNHeap heap = DBIDUtil.newHeap(k);
+      final SearchState st = state.get();
+      countShared(st, obj);
+      final int lq = obj.length(), size = lengths.length;
+      final int[] common = st.common, order = st.order;
+      // Bucket sort by the lower bound of the edit distance:
+      final int maxlb = (lq > maxlen ? lq : maxlen) + q;
+      int[] counts = new int[maxlb + 2];
+      for(int doc = 0; doc < size; doc++) {
+        ++counts[lowerBound(lq, lengths[doc], common[doc]) + 1];
+      }
+      for(int i = 1; i < counts.length; i++) {
+        counts[i] += counts[i - 1];
+      }
+      for(int doc = 0; doc < size; doc++) {
+        order[counts[lowerBound(lq, lengths[doc], common[doc])]++] = doc;
+      }
+      // Verify in ascending order of the bound:
+      double kdist = Double.POSITIVE_INFINITY;
+      final DBIDArrayIter it = st.iter;
+      for(int i = 0; i < size; i++) {
+        final int doc = order[i];
+        if(lowerBound(lq, lengths[doc], common[doc]) > kdist) {
+          break;
+        }
+        final int max = kdist < Integer.MAX_VALUE ? (int) kdist : Integer.MAX_VALUE;
+        countRefinements(1);
+        final int d = LevenshteinDistanceFunction.levenshteinDistance(obj, relation.get(it.seek(doc)), max);
+        if(d <= kdist) {
+          kdist = heap.insert(d, it);
+        }
+      }
+      st.reset();
+      return heap.toKNNList();
+    }
+  }
+
+  /**
+   * Range query class.
+   *
+   * @author Erich Schubert
+   */
+  public class QGramRangeQuery extends AbstractRefiningIndex<String>.AbstractRangeQuery {
+    /**
+     * Constructor.
+     *
+     * @param distanceQuery Distance query
+     */
+    public QGramRangeQuery(DistanceQuery<String> distanceQuery) {
+      super(distanceQuery);
+    }
+
+    @Override
+    public void getRangeForObject(String obj, double range, ModifiableDoubleDBIDList result) {
+      if(range < 0) {
+        return;
+      }
+      final int k = range < Integer.MAX_VALUE ? (int) range : Integer.MAX_VALUE;
+      final int lq = obj.length();
+      final SearchState st = state.get();
+      final DBIDArrayIter it = st.iter;
+      // Objects without any shared q-gram may qualify, use a length filter only:
+      if((long) lq + q - 1 - (long) k * q <= 0) {
+        for(int doc = 0; doc < lengths.length; doc++) {
+          if(Math.abs(lengths[doc] - lq) <= k) {
+            verify(obj, it.seek(doc), k, result);
+          }
+        }
+        return;
+      }
+      countShared(st, obj);
+      final int[] common = st.common, touched = st.touched;
+      for(int i = 0; i < st.ntouched; i++) {
+        final int doc = touched[i], ld = lengths[doc];
+        if(Math.abs(ld - lq) <= k && common[doc] >= (lq > ld ? lq : ld) + q - 1 - k * q) {
+          verify(obj, it.seek(doc), k, result);
+        }
+      }
+      st.reset();
+    }
+
+    /**
+     * Verify a candidate.
+     *
+     * @param obj Query object
+     * @param it Candidate
+     * @param k Maximum distance
+     * @param result Output list
+     */
+    private void verify(String obj, DBIDArrayIter it, int k, ModifiableDoubleDBIDList result) {
+      countRefinements(1);
+      final int d = LevenshteinDistanceFunction.levenshteinDistance(obj, relation.get(it), k);
+      if(d <= k) {
+        result.add(d, it);
+      }
+    }
+  }
+
+  /**
+   * Lower bound of the edit distance, from the lengths and the number of
+   * shared q-grams.
+   *
+   * @param lq Query length
+   * @param ld Object length
+   * @param common Number of shared q-grams
+   * @return Lower bound
+   */
+  private int lowerBound(int lq, int ld, int common) {
+    final int diff = lq > ld ? lq - ld : ld - lq;
+    final int missing = (lq > ld ? lq : ld) + q - 1 - common;
+    final int qbound = missing > 0 ? (missing + q - 1) / q : 0;
+    return diff > qbound ? diff : qbound;
+  }
+
+  /**
+   * Index factory.
+   *
+   * @author Erich Schubert
+   *
+   * @has - - - QGramIndex
+   */
+  public static class Factory implements IndexFactory<String> {
+    /**
+     * Length of the q-grams.
+     */
+    protected int q;
+
+    /**
+     * Constructor.
+     *
+     * @param q Length of the q-grams
+     */
+    public Factory(int q) {
+      super();
+      this.q = q;
+    }
+
+    @Override
+    public QGramIndex instantiate(Relation<String> relation) {
+      return new QGramIndex(relation, q);
+    }
+
+    @Override
+    public TypeInformation getInputTypeRestriction() {
+      return TypeUtil.STRING;
+    }
+
+    /**
+     * Parameterization class.
+     *
+     * @author Erich Schubert
+     */
+    public static class Parameterizer extends AbstractParameterizer {
+      /**
+       * Length of the q-grams.
+       */
+      public static final OptionID Q_ID = new OptionID("qgram.q", "Length of the q-grams (at most 4).");
+
+      /**
+       * Length of the q-grams.
+       */
+      protected int q;
+
+      @Override
+      protected void makeOptions(Parameterization config) {
+        super.makeOptions(config);
+        IntParameter qP = new IntParameter(Q_ID, 3) //
+            .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT) //
+            .addConstraint(new LessEqualConstraint(4));
+        if(config.grab(qP)) {
+          q = qP.intValue();
+        }
+      }
+
+      @Override
+      protected Factory makeInstance() {
+        return new Factory(q);
+      }
+    }
+  }
+}
@@ -0,0 +1,525 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.index.timeseries;
+
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.KNNHeap;
+import de.lmu.ifi.dbs.elki.database.ids.KNNList;
+import de.lmu.ifi.dbs.elki.database.ids.ModifiableDoubleDBIDList;
+import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
+import de.lmu.ifi.dbs.elki.database.query.knn.KNNQuery;
+import de.lmu.ifi.dbs.elki.database.query.range.RangeQuery;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.timeseries.DTWDistanceFunction;
+import de.lmu.ifi.dbs.elki.index.AbstractRefiningIndex;
+import de.lmu.ifi.dbs.elki.index.IndexFactory;
+import de.lmu.ifi.dbs.elki.index.KNNIndex;
+import de.lmu.ifi.dbs.elki.index.RangeIndex;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.logging.statistics.Counter;
+import de.lmu.ifi.dbs.elki.logging.statistics.LongAdderCounter;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.AbstractParameterizer;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.ObjectParameter;
+
+/**
+ * Exact similarity search for time series with dynamic time warping, using a
+ * cascade of lower bounds and early abandoning.
+ * <p>
+ * Candidates are first checked with LB_Kim (the first and last points must be
+ * aligned), then with LB_Keogh using the envelope of the query, and LB_Keogh
+ * using the precomputed envelope of the candidate. Only the remaining
+ * candidates are refined with dynamic time warping, which is abandoned as soon
+ * as it exceeds the current kNN distance. The lower bounds are only used with
+ * {@link DTWDistanceFunction} itself; its variants (such as ERP, EDR and
+ * derivative DTW) only benefit from early abandoning. LB_Keogh requires series
+ * of the same length, otherwise only LB_Kim is used.
+ * <p>
+ * Search state (the envelope of the query and the DTW buffer) is kept in
+ * reusable per-thread buffers.
+ * <p>
+ * Reference:
+ * <p>
+ * T. Rakthanmanon, B. Campana, A. Mueen, G. Batista, B. Westover, Q. Zhu, J.
+ * Zakaria, E. Keogh<br>
+ * Searching and mining trillions of time series subsequences under dynamic
+ * time warping<br>
+ * Proc. 18th ACM SIGKDD Int. Conf. Knowledge Discovery and Data Mining
+ * <p>
+ * E. Keogh, C. A. Ratanamahatana<br>
+ * Exact indexing of dynamic time warping<br>
+ * Knowledge and Information Systems 7(3)
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ *
+ * @has - - - LBKeoghKNNQuery
+ * @has - - - LBKeoghRangeQuery
+ *
+ * @param <V> Vector type
+ */
+@Reference(authors = "T. Rakthanmanon, B. Campana, A. Mueen, G. Batista, B. Westover, Q. Zhu, J. Zakaria, E. Keogh", //
+    title = "Searching and mining trillions of time series subsequences under dynamic time warping", //
+    booktitle = "Proc. 18th ACM SIGKDD Int. Conf. Knowledge Discovery and Data Mining", //
+    url = "https://doi.org/10.1145/2339530.2339576", //
+    bibkey = "DBLP:conf/kdd/RakthanmanonCMBWZZK12")
+@Reference(authors = "E. Keogh, C. A. Ratanamahatana", //
+    title = "Exact indexing of dynamic time warping", //
+    booktitle = "Knowledge and Information Systems 7(3)", //
+    url = "https://doi.org/10.1007/s10115-004-0154-9", //
+    bibkey = "DBLP:journals/kais/KeoghR05")
+public class LBKeoghIndex<V extends NumberVector> extends AbstractRefiningIndex<V> implements KNNIndex<V>, RangeIndex<V> {
+  /**
+   * Class logger.
+   */
+  private static final Logging LOG = Logging.getLogger(LBKeoghIndex.class);
+
+  /**
+   * Distance function.
+   */
+  private final DTWDistanceFunction distanceFunction;
+
+  /**
+   * Use the lower bounds (only valid for plain DTW).
+   */
+  private final boolean lowerBounds;
+
+  /**
+   * Indexed objects.
+   */
+  private ArrayDBIDs ids;
+
+  /**
+   * Upper and lower envelopes of the indexed series.
+   */
+  private double[][] upper, lower;
+
+  /**
+   * Search state of each thread.
+   */
+  private final ThreadLocal<SearchState> state = ThreadLocal.withInitial(SearchState::new);
+
+  /**
+   * Pruning counters, may be {@code null}.
+   */
+  private final Counter kimPruned, keoghPruned, abandoned;
+
+  /**
+   * Constructor.
+   *
+   * @param relation Data relation
+   * @param distanceFunction Distance function
+   */
+  public LBKeoghIndex(Relation<V> relation, DTWDistanceFunction distanceFunction) {
+    super(relation);
+    this.distanceFunction = distanceFunction;
+    // Subclasses use different costs, the bounds need not hold.
+    this.lowerBounds = distanceFunction.getClass() == DTWDistanceFunction.class;
+    final String prefix = this.getClass().getName();
+    this.kimPruned = LOG.isStatistics() ? new LongAdderCounter(prefix + ".lb-kim-pruned") : null;
+    this.keoghPruned = LOG.isStatistics() ? new LongAdderCounter(prefix + ".lb-keogh-pruned") : null;
+    this.abandoned = LOG.isStatistics() ? new LongAdderCounter(prefix + ".abandoned") : null;
+  }
+
+  @Override
+  public void initialize() {
+    ids = DBIDUtil.ensureArray(relation.getDBIDs());
+    if(!lowerBounds) {
+      return;
+    }
+    final int size = ids.size();
+    upper = new double[size][];
+    lower = new double[size][];
+    double[] buf = new double[0];
+    int[] dq1 = new int[0], dq2 = new int[0];
+    for(DBIDArrayIter it = ids.iter(); it.valid(); it.advance()) {
+      final V v = relation.get(it);
+      final int dim = v.getDimensionality();
+      if(buf.length < dim) {
+        buf = new double[dim];
+        dq1 = new int[dim];
+        dq2 = new int[dim];
+      }
+      for(int d = 0; d < dim; d++) {
+        buf[d] = v.doubleValue(d);
+      }
+      final int off = it.getOffset();
+      envelope(buf, dim, distanceFunction.effectiveBandSize(dim, dim), //
+          upper[off] = new double[dim], lower[off] = new double[dim], dq1, dq2);
+    }
+  }
+
+  /**
+   * Compute the upper and lower envelope of a series, using the streaming
+   * minimum and maximum algorithm of Lemire.
+   *
+   * @param x Series
+   * @param n Length of the series
+   * @param w Window width (band size)
+   * @param upper Output upper envelope
+   * @param lower Output lower envelope
+   * @param dq1 Deque buffer, length at least n
+   * @param dq2 Deque buffer, length at least n
+   */
+  protected static void envelope(double[] x, int n, int w, double[] upper, double[] lower, int[] dq1, int[] dq2) {
+    w = w < n ? w : n - 1;
+    int h1 = 0, t1 = 0, h2 = 0, t2 = 0;
+    for(int i = 0, j = -w; j < n; i++, j++) {
+      if(i < n) {
+        final double v = x[i];
+        while(t1 > h1 && x[dq1[t1 - 1]] <= v) {
+          --t1;
+        }
+        dq1[t1++] = i;
+        while(t2 > h2 && x[dq2[t2 - 1]] >= v) {
+          --t2;
+        }
+        dq2[t2++] = i;
+      }
+      if(j >= 0) {
+        // Expire elements left of the window:
+        while(dq1[h1] < j - w) {
+          ++h1;
+        }
+        while(dq2[h2] < j - w) {
+          ++h2;
+        }
+        upper[j] = x[dq1[h1]];
+        lower[j] = x[dq2[h2]];
+      }
+    }
+  }
+
+  /**
+   * Compute LB_Keogh, and abandon early when the limit is exceeded.
+   *
+   * @param upper Upper envelope
+   * @param lower Lower envelope
+   * @param v Series
+   * @param limit Limit on the squared distance
+   * @return Lower bound of the squared distance
+   */
+  private static double lbKeogh(double[] upper, double[] lower, NumberVector v, double limit) {
+    double agg = 0.;
+    for(int d = 0; d < upper.length && agg <= limit; d++) {
+      final double x = v.doubleValue(d);
+      final double diff = x > upper[d] ? x - upper[d] : x < lower[d] ? lower[d] - x : 0.;
+      agg += diff * diff;
+    }
+    return agg;
+  }
+
+  /**
+   * Compute LB_Keogh, and abandon early when the limit is exceeded.
+   *
+   * @param upper Upper envelope
+   * @param lower Lower envelope
+   * @param x Series
+   * @param limit Limit on the squared distance
+   * @return Lower bound of the squared distance
+   */
+  private static double lbKeogh(double[] upper, double[] lower, double[] x, double limit) {
+    double agg = 0.;
+    for(int d = 0; d < upper.length && agg <= limit; d++) {
+      final double v = x[d];
+      final double diff = v > upper[d] ? v - upper[d] : v < lower[d] ? lower[d] - v : 0.;
+      agg += diff * diff;
+    }
+    return agg;
+  }
+
+  /**
+   * Compute the distance of the query to a candidate, unless it is known to
+   * exceed the threshold.
+   *
+   * @param st Search state, prepared for the query
+   * @param q Query
+   * @param it Candidate
+   * @param threshold Distance threshold
+   * @return Distance, or infinity if it exceeds the threshold
+   */
+  private double distance(SearchState st, V q, DBIDArrayIter it, double threshold) {
+    final V v = relation.get(it);
+    if(lowerBounds && threshold < Double.POSITIVE_INFINITY) {
+      // Bounds and exact distance may be rounded differently, add some slack:
+      final double limit = threshold * threshold * (1 + 1e-12);
+      final int dim = v.getDimensionality(), qdim = st.dim;
+      // LB_Kim: first and last points are always aligned.
+      double diff = st.q[0] - v.doubleValue(0), lb = diff * diff;
+      if(dim > 1 && qdim > 1) {
+        diff = st.q[qdim - 1] - v.doubleValue(dim - 1);
+        lb += diff * diff;
+      }
+      if(lb > limit) {
+        if(kimPruned != null) {
+          kimPruned.increment();
+        }
+        return Double.POSITIVE_INFINITY;
+      }
+      // LB_Keogh, using the envelope of the query, then of the candidate:
+      if(dim == qdim && (lbKeogh(st.upper, st.lower, v, limit) > limit //
+          || lbKeogh(upper[it.getOffset()], lower[it.getOffset()], st.q, limit) > limit)) {
+        if(keoghPruned != null) {
+          keoghPruned.increment();
+        }
+        return Double.POSITIVE_INFINITY;
+      }
+    }
+    countRefinements(1);
+    final double d = distanceFunction.distance(q, v, st.buffer(v.getDimensionality()), threshold);
+    if(d > threshold && abandoned != null) {
+      abandoned.increment();
+    }
+    return d;
+  }
+
+  @Override
+  public Logging getLogger() {
+    return LOG;
+  }
+
+  @Override
+  public void logStatistics() {
+    super.logStatistics();
+    if(kimPruned != null) {
+      LOG.statistics(kimPruned);
+      LOG.statistics(keoghPruned);
+      LOG.statistics(abandoned);
+    }
+  }
+
+  @Override
+  public KNNQuery<V> getKNNQuery(DistanceQuery<V> distanceQuery, Object... hints) {
+    if(distanceQuery.getRelation() != relation || !this.distanceFunction.equals(distanceQuery.getDistanceFunction())) {
+      return null;
+    }
+    return new LBKeoghKNNQuery(distanceQuery);
+  }
+
+  @Override
+  public RangeQuery<V> getRangeQuery(DistanceQuery<V> distanceQuery, Object... hints) {
+    if(distanceQuery.getRelation() != relation || !this.distanceFunction.equals(distanceQuery.getDistanceFunction())) {
+      return null;
+    }
+    return new LBKeoghRangeQuery(distanceQuery);
+  }
+
+  @Override
+  public String getLongName() {
+    return "LB_Keogh DTW index";
+  }
+
+  @Override
+  public String getShortName() {
+    return "lb-keogh";
+  }
+
+  /**
+   * Per-thread search state.
+   *
+   * @author Erich Schubert
+   */
+  private class SearchState {
+    /**
+     * Query values, envelope, and DTW buffer.
+     */
+    double[] q = new double[0], upper = new double[0], lower = new double[0],
+        buf = new double[0];
+
+    /**
+     * Deque buffers for computing the envelope.
+     */
+    int[] dq1 = new int[0], dq2 = new int[0];
+
+    /**
+     * Query length.
+     */
+    int dim;
+
+    /**
+     * Prepare the state for a new query.
+     *
+     * @param obj Query object
+     */
+    void prepare(V obj) {
+      final int dim = this.dim = obj.getDimensionality();
+      if(q.length < dim) {
+        q = new double[dim];
+      }
+      for(int d = 0; d < dim; d++) {
+        q[d] = obj.doubleValue(d);
+      }
+      if(lowerBounds) {
+        if(upper.length != dim) {
+          upper = new double[dim];
+          lower = new double[dim];
+        }
+        if(dq1.length < dim) {
+          dq1 = new int[dim];
+          dq2 = new int[dim];
+        }
+        envelope(q, dim, distanceFunction.effectiveBandSize(dim, dim), upper, lower, dq1, dq2);
+      }
+    }
+
+    /**
+     * Get the DTW buffer.
+     *
+     * @param dim2 Length of the second series
+     * @return Buffer
+     */
+    double[] buffer(int dim2) {
+      return buf.length >= dim2 << 1 ? buf : (buf = new double[dim2 << 1]);
+    }
+  }
+
+  /**
+   * kNN query class.
+   *
+   * @author Erich Schubert
+   */
+  public class LBKeoghKNNQuery extends AbstractRefiningIndex<V>.AbstractKNNQuery {
+    /**
+     * Constructor.
+     *
+     * @param distanceQuery Distance query
+     */
+    public LBKeoghKNNQuery(DistanceQuery<V> distanceQuery) {
+      super(distanceQuery);
+    }
+
+    @Override
+    public KNNList getKNNForObject(V obj, int k) {
+      final KNNHeap heap = DBIDUtil.newHeap(k);
+      final SearchState st = state.get();
+      st.prepare(obj);
+      double kdist = Double.POSITIVE_INFINITY;
+      for(DBIDArrayIter it = ids.iter(); it.valid(); it.advance()) {
+        final double d = distance(st, obj, it, kdist);
+        if(d <= kdist) {
+          kdist = heap.insert(d, it);
+        }
+      }
+      return heap.toKNNList();
+    }
+  }
+
+  /**
+   * Range query class.
+   *
+   * @author Erich Schubert
+   */
+  public class LBKeoghRangeQuery extends AbstractRefiningIndex<V>.AbstractRangeQuery {
+    /**
+     * Constructor.
+     *
+     * @param distanceQuery Distance query
+     */
+    public LBKeoghRangeQuery(DistanceQuery<V> distanceQuery) {
+      super(distanceQuery);
+    }
+
+    @Override
+    public void getRangeForObject(V obj, double range, ModifiableDoubleDBIDList result) {
+      final SearchState st = state.get();
+      st.prepare(obj);
+      for(DBIDArrayIter it = ids.iter(); it.valid(); it.advance()) {
+        final double d = distance(st, obj, it, range);
+        if(d <= range) {
+          result.add(d, it);
+        }
+      }
+    }
+  }
+
+  /**
+   * Index factory.
+   *
+   * @author Erich Schubert
+   *
+   * @has - - - LBKeoghIndex
+   *
+   * @param <V> Vector type
+   */
+  public static class Factory<V extends NumberVector> implements IndexFactory<V> {
+    /**
+     * Distance function.
+     */
+    protected DTWDistanceFunction distanceFunction;
+
+    /**
+     * Constructor.
+     *
+     * @param distanceFunction Distance function
+     */
+    public Factory(DTWDistanceFunction distanceFunction) {
+      super();
+      this.distanceFunction = distanceFunction;
+    }
+
+    @Override
+    public LBKeoghIndex<V> instantiate(Relation<V> relation) {
+      return new LBKeoghIndex<>(relation, distanceFunction);
+    }
+
+    @Override
+    public TypeInformation getInputTypeRestriction() {
+      return distanceFunction.getInputTypeRestriction();
+    }
+
+    /**
+     * Parameterization class.
+     *
+     * @author Erich Schubert
+     */
+    public static class Parameterizer<V extends NumberVector> extends AbstractParameterizer {
+      /**
+       * Distance function to use.
+       */
+      public static final OptionID DISTANCE_FUNCTION_ID = new OptionID("lbkeogh.distancefunction", "Time series distance function (dynamic time warping or a variant).");
+
+      /**
+       * Distance function.
+       */
+      protected DTWDistanceFunction distanceFunction;
+
+      @Override
+      protected void makeOptions(Parameterization config) {
+        super.makeOptions(config);
+        ObjectParameter<DTWDistanceFunction> distanceFunctionP = new ObjectParameter<>(DISTANCE_FUNCTION_ID, DTWDistanceFunction.class, DTWDistanceFunction.class);
+        if(config.grab(distanceFunctionP)) {
+          distanceFunction = distanceFunctionP.instantiateClass(config);
+        }
+      }
+
+      @Override
+      protected LBKeoghIndex.Factory<V> makeInstance() {
+        return new LBKeoghIndex.Factory<>(distanceFunction);
+      }
+    }
+  }
+}
@@ -29,7 +29,8 @@ import de.lmu.ifi.dbs.elki.index.AbstractIndex;
 import de.lmu.ifi.dbs.elki.index.IndexFactory;
 import de.lmu.ifi.dbs.elki.logging.Logging;
 import de.lmu.ifi.dbs.elki.logging.LoggingUtil;
-import de.lmu.ifi.dbs.elki.logging.statistics.LongStatistic;
+import de.lmu.ifi.dbs.elki.logging.statistics.Counter;
+import de.lmu.ifi.dbs.elki.logging.statistics.LongAdderCounter;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.AbstractParameterizer;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
@@ -77,9 +78,10 @@ public abstract class AbstractCoverTree<O> extends AbstractIndex<O> {
   private DistanceQuery<O> distanceQuery;
 
   /**
-   * Distance computations performed.
+   * Distance computations performed, only counted when logging statistics.
+   * Thread-safe, as queries may be run concurrently.
    */
-  protected long distComputations = 0L;
+  protected final Counter distComputations;
 
   /**
    * Stop refining the tree at this size, but build a leaf.
@@ -102,6 +104,7 @@ public abstract class AbstractCoverTree<O> extends AbstractIndex<O> {
     this.expansion = expansion;
     this.invLogExpansion = 1. / FastMath.log(expansion);
     this.scaleBottom = (int) Math.ceil(FastMath.log(Double.MIN_NORMAL) * invLogExpansion);
+    this.distComputations = getLogger().isStatistics() ? new LongAdderCounter(this.getClass().getName() + ".distance-computations") : null;
   }
 
   /**
@@ -147,7 +150,9 @@ public abstract class AbstractCoverTree<O> extends AbstractIndex<O> {
    * @return Distance
    */
   protected double distance(DBIDRef a, DBIDRef b) {
-    ++distComputations;
+    if(distComputations != null) {
+      distComputations.increment();
+    }
     return distanceQuery.distance(a, b);
   }
 
@@ -159,7 +164,9 @@ public abstract class AbstractCoverTree<O> extends AbstractIndex<O> {
    * @return Distance
    */
   protected double distance(O a, DBIDRef b) {
-    ++distComputations;
+    if(distComputations != null) {
+      distComputations.increment();
+    }
     return distanceQuery.distance(a, b);
   }
 
@@ -208,7 +215,9 @@ public abstract class AbstractCoverTree<O> extends AbstractIndex<O> {
 
   @Override
   public void logStatistics() {
-    getLogger().statistics(new LongStatistic(this.getClass().getName() + ".distance-computations", distComputations));
+    if(distComputations != null) {
+      getLogger().statistics(distComputations);
+    }
   }
 
   /**
@@ -0,0 +1,860 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.index.tree.metrical.covertree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+import de.lmu.ifi.dbs.elki.database.ids.*;
+import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
+import de.lmu.ifi.dbs.elki.database.query.knn.AbstractDistanceKNNQuery;
+import de.lmu.ifi.dbs.elki.database.query.knn.KNNQuery;
+import de.lmu.ifi.dbs.elki.database.query.range.AbstractDistanceRangeQuery;
+import de.lmu.ifi.dbs.elki.database.query.range.RangeQuery;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.DistanceFunction;
+import de.lmu.ifi.dbs.elki.index.KNNIndex;
+import de.lmu.ifi.dbs.elki.index.RangeIndex;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.logging.statistics.DoubleStatistic;
+import de.lmu.ifi.dbs.elki.logging.statistics.LongStatistic;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.heap.DoubleIntegerMinHeap;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+
+/**
+ * Compact cover tree, stored in parallel primitive arrays (in-memory).
+ * <p>
+ * This uses the same bulk-load and metrical pruning as {@link CoverTree}, but
+ * after construction the tree is stored in depth-first order in a few flat
+ * arrays: the objects of each node are stored consecutively (routing object
+ * first) together with their distance to the routing object, and each node
+ * only stores its maximum distance, the offset of its objects, and the index of
+ * the next node after its subtree. Children of a node follow it immediately,
+ * so both the memory footprint and the number of cache misses during search
+ * are much lower than with linked node objects.
+ * <p>
+ * Large subtrees are constructed in parallel using fork-join work-stealing,
+ * and the distance computations for large candidate sets are also
+ * parallelized. Queries keep their search state in reusable per-thread
+ * buffers, so apart from the result no objects are allocated.
+ * <p>
+ * Reference:
+ * <p>
+ * A. Beygelzimer, S. Kakade, J. Langford<br>
+ * Cover trees for nearest neighbor<br>
+ * In Proc. 23rd Int. Conf. Machine Learning (ICML 2006)
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ *
+ * @has - - - CompactCoverTreeRangeQuery
+ * @has - - - CompactCoverTreeKNNQuery
+ */
+@Reference(authors = "A. Beygelzimer, S. Kakade, J. Langford", //
+    title = "Cover trees for nearest neighbor", //
+    booktitle = "In Proc. 23rd Int. Conf. Machine Learning (ICML 2006)", //
+    url = "https://doi.org/10.1145/1143844.1143857", //
+    bibkey = "DBLP:conf/icml/BeygelzimerKL06")
+public class CompactCoverTree<O> extends AbstractCoverTree<O> implements RangeIndex<O>, KNNIndex<O> {
+  /**
+   * Class logger.
+   */
+  private static final Logging LOG = Logging.getLogger(CompactCoverTree.class);
+
+  /**
+   * Minimum number of candidates to build a subtree or compute distances in
+   * parallel.
+   */
+  protected static final int PARALLEL_THRESHOLD = 1 << 12;
+
+  /**
+   * Objects of all nodes, in depth-first order.
+   */
+  private ArrayModifiableDBIDs ids;
+
+  /**
+   * Distance of each object to the routing object of its node; for the
+   * routing object itself, the distance to the parent routing object.
+   */
+  private double[] dists;
+
+  /**
+   * Offset of the first object of each node; has one extra entry.
+   */
+  private int[] start;
+
+  /**
+   * Index of the next node after the subtree of each node.
+   */
+  private int[] next;
+
+  /**
+   * Maximum distance of each node to its descendants.
+   */
+  private double[] maxDist;
+
+  /**
+   * Constructor.
+   *
+   * @param relation data relation
+   * @param distanceFunction distance function
+   * @param expansion Expansion rate
+   * @param truncate Truncate branches with less than this number of instances.
+   */
+  public CompactCoverTree(Relation<O> relation, DistanceFunction<? super O> distanceFunction, double expansion, int truncate) {
+    super(relation, distanceFunction, expansion, truncate);
+  }
+
+  /**
+   * Temporary node object, used during construction only.
+   *
+   * @author Erich Schubert
+   */
+  private static final class Node {
+    /**
+     * Objects in this node, the first is the routing object.
+     */
+    ModifiableDoubleDBIDList singletons;
+
+    /**
+     * Maximum distance to descendants.
+     */
+    double maxDist;
+
+    /**
+     * Distance to parent.
+     */
+    double parentDist;
+
+    /**
+     * Child nodes.
+     */
+    ArrayList<Node> children;
+
+    /**
+     * Constructor.
+     *
+     * @param r Object.
+     * @param maxDist Maximum distance to any descendant.
+     * @param parentDist Distance from parent.
+     */
+    public Node(DBIDRef r, double maxDist, double parentDist) {
+      this.singletons = DBIDUtil.newDistanceDBIDList();
+      this.singletons.add(0., r);
+      this.children = new ArrayList<>();
+      this.maxDist = maxDist;
+      this.parentDist = parentDist;
+    }
+
+    /**
+     * Constructor for leaf node.
+     *
+     * @param r Object.
+     * @param maxDist Maximum distance to any descendant.
+     * @param parentDist Distance from parent.
+     * @param singletons Singletons.
+     */
+    public Node(DBIDRef r, double maxDist, double parentDist, DoubleDBIDList singletons) {
+      assert (!singletons.contains(r));
+      this.singletons = DBIDUtil.newDistanceDBIDList(singletons.size() + 1);
+      this.singletons.add(0., r);
+      for(DoubleDBIDListIter it = singletons.iter(); it.valid(); it.advance()) {
+        this.singletons.add(it.doubleValue(), it);
+      }
+      this.children = null;
+      this.maxDist = maxDist;
+      this.parentDist = parentDist;
+    }
+
+    /**
+     * True, if the node is a leaf.
+     *
+     * @return {@code true}, if this is a leaf node.
+     */
+    public boolean isLeaf() {
+      return children == null || children.isEmpty();
+    }
+  }
+
+  @Override
+  public void initialize() {
+    bulkLoad(relation.getDBIDs());
+    if(LOG.isVerbose() && start != null) {
+      final int numnodes = next.length;
+      long sumdepth = 0;
+      int maxdepth = 0, leaves = 0;
+      // Depth of each node, via the subtree ends of the ancestors:
+      int[] stack = new int[numnodes];
+      for(int i = 0, depth = 0; i < numnodes; i++) {
+        while(depth > 0 && stack[depth - 1] <= i) {
+          --depth;
+        }
+        sumdepth += depth;
+        maxdepth = depth > maxdepth ? depth : maxdepth;
+        leaves += next[i] == i + 1 ? 1 : 0;
+        stack[depth++] = next[i];
+      }
+      final String prefix = this.getClass().getName();
+      LOG.statistics(new LongStatistic(prefix + ".nodes", numnodes));
+      LOG.statistics(new LongStatistic(prefix + ".leaves", leaves));
+      LOG.statistics(new DoubleStatistic(prefix + ".avg-depth", sumdepth / (double) numnodes));
+      LOG.statistics(new LongStatistic(prefix + ".max-depth", maxdepth));
+      LOG.statistics(new LongStatistic(prefix + ".entries", ids.size()));
+    }
+  }
+
+  /**
+   * Bulk-load the index.
+   *
+   * @param ids IDs to load
+   */
+  public void bulkLoad(DBIDs ids) {
+    if(ids.size() == 0) {
+      return;
+    }
+    assert (start == null) : "Tree already initialized.";
+    DBIDIter iter = ids.iter();
+    DBID first = DBIDUtil.deref(iter);
+    ArrayModifiableDBIDs aids = DBIDUtil.newArray(ids.size() - 1);
+    for(iter.advance(); iter.valid(); iter.advance()) {
+      aids.add(iter);
+    }
+    // Compute distances to all neighbors:
+    double[] d = new double[aids.size()];
+    computeDistances(first, aids, d, 0, aids.size());
+    ModifiableDoubleDBIDList candidates = DBIDUtil.newDistanceDBIDList(aids.size());
+    for(DBIDArrayIter it = aids.iter(); it.valid(); it.advance()) {
+      candidates.add(d[it.getOffset()], it);
+    }
+    d = null;
+    aids = null;
+    Node root = candidates.size() >= PARALLEL_THRESHOLD ? //
+        ForkJoinPool.commonPool().invoke(new BuildTask(first, Integer.MAX_VALUE, 0., candidates)) : //
+        bulkConstruct(first, Integer.MAX_VALUE, 0., candidates);
+    flatten(root, ids.size());
+  }
+
+  /**
+   * Bulk-load the cover tree, as in {@link CoverTree}.
+   * <p>
+   * Large child subtrees are forked as tasks, and must then be invoked from a
+   * fork-join pool.
+   *
+   * @param cur Current routing object
+   * @param maxScale Maximum scale
+   * @param parentDist Distance to parent
+   * @param elems Candidates
+   * @return Root node of subtree
+   */
+  protected Node bulkConstruct(DBIDRef cur, int maxScale, double parentDist, ModifiableDoubleDBIDList elems) {
+    assert (!elems.contains(cur));
+    final double max = maxDistance(elems);
+    final int scale = Math.min(distToScale(max) - 1, maxScale);
+    final int nextScale = scale - 1;
+    // Leaf node, because points coincide, we are too deep, or have too few
+    // elements remaining:
+    if(max <= 0 || scale <= scaleBottom || elems.size() < truncate) {
+      return new Node(cur, max, parentDist, elems);
+    }
+    // Find neighbors in the cover of the current object:
+    ModifiableDoubleDBIDList candidates = DBIDUtil.newDistanceDBIDList();
+    excludeNotCovered(elems, scaleToDist(scale), candidates);
+    // If no elements were not in the cover, build a compact tree:
+    if(candidates.size() == 0) {
+      LOG.warning("Scale not chosen appropriately? " + max + " " + scaleToDist(scale));
+      return bulkConstruct(cur, nextScale, parentDist, elems);
+    }
+    // We will have at least one other child, so build the parent:
+    Node node = new Node(cur, max, parentDist);
+    // Subtrees built concurrently, and their position in the children list:
+    ArrayList<BuildTask> tasks = null;
+    // Routing element now is a singleton:
+    final boolean curSingleton = elems.size() == 0;
+    if(!curSingleton) {
+      // Add node for the routing object:
+      if(elems.size() >= PARALLEL_THRESHOLD) {
+        tasks = new ArrayList<>();
+        tasks.add(fork(node, cur, nextScale, 0., elems));
+        elems = DBIDUtil.newDistanceDBIDList();
+      }
+      else {
+        node.children.add(bulkConstruct(cur, nextScale, 0., elems));
+      }
+    }
+    final double fmax = scaleToDist(nextScale);
+    // Build additional cover nodes:
+    for(DoubleDBIDListIter it = candidates.iter(); it.valid();) {
+      assert (it.getOffset() == 0);
+      elems.clear(); // Recycle.
+      collectByCover(it, candidates, fmax, elems);
+      if(elems.size() == 0) { // Singleton
+        node.singletons.add(it.doubleValue(), it);
+      }
+      else if(elems.size() >= PARALLEL_THRESHOLD) {
+        tasks = tasks != null ? tasks : new ArrayList<>();
+        tasks.add(fork(node, DBIDUtil.deref(it), nextScale, it.doubleValue(), elems));
+        elems = DBIDUtil.newDistanceDBIDList();
+      }
+      else {
+        // Build a full child node:
+        node.children.add(bulkConstruct(it, nextScale, it.doubleValue(), elems));
+      }
+      candidates.removeSwap(0);
+    }
+    assert (candidates.size() == 0);
+    if(tasks != null) {
+      for(BuildTask task : tasks) {
+        node.children.set(task.pos, task.join());
+      }
+    }
+    // Routing object is not yet handled:
+    if(curSingleton) {
+      if(node.isLeaf()) {
+        node.children = null; // First in leaf is enough.
+      }
+      else {
+        node.singletons.add(0., cur); // Add as regular singleton.
+      }
+    }
+    return node;
+  }
+
+  /**
+   * Fork the construction of a subtree, reserving its position in the
+   * children list.
+   *
+   * @param node Parent node
+   * @param cur Routing object
+   * @param maxScale Maximum scale
+   * @param parentDist Distance to parent
+   * @param elems Candidates (will be owned by the task)
+   * @return Forked task
+   */
+  private BuildTask fork(Node node, DBIDRef cur, int maxScale, double parentDist, ModifiableDoubleDBIDList elems) {
+    BuildTask task = new BuildTask(DBIDUtil.deref(cur), maxScale, parentDist, elems);
+    task.pos = node.children.size();
+    node.children.add(null); // Placeholder
+    task.fork();
+    return task;
+  }
+
+  @Override
+  protected void collectByCover(DBIDRef cur, ModifiableDoubleDBIDList candidates, double fmax, ModifiableDoubleDBIDList collect) {
+    final int size = candidates.size();
+    if(size < PARALLEL_THRESHOLD) {
+      super.collectByCover(cur, candidates, fmax, collect);
+      return;
+    }
+    assert (collect.size() == 0) : "Not empty";
+    // Compute the distances in parallel, except for the first = cur:
+    double[] d = new double[size];
+    computeDistances(cur, candidates, d, 1, size);
+    // Collect sequentially, mirroring the swaps on the distances.
+    DoubleDBIDListIter it = candidates.iter().advance();
+    for(int i = 1, end = size; i < end;) {
+      if(d[i] <= fmax) { // Collect
+        collect.add(d[i], it.seek(i));
+        candidates.removeSwap(i);
+        d[i] = d[--end];
+      }
+      else {
+        ++i; // Keep in candidates, outside cover radius.
+      }
+    }
+  }
+
+  /**
+   * Compute the distances of a range of objects to a reference object, in
+   * parallel for large ranges.
+   *
+   * @param ref Reference object
+   * @param objs Objects
+   * @param d Output array, same offsets as the objects
+   * @param begin First offset
+   * @param end End offset (exclusive)
+   */
+  private void computeDistances(DBIDRef ref, DBIDs objs, double[] d, int begin, int end) {
+    DistanceTask task = new DistanceTask(DBIDUtil.deref(ref), DBIDUtil.ensureArray(objs), d, begin, end);
+    if(end - begin < PARALLEL_THRESHOLD) {
+      task.compute();
+    }
+    else {
+      task.invoke();
+    }
+  }
+
+  /**
+   * Store the tree in depth-first order in the flat arrays.
+   *
+   * @param root Root node
+   * @param size Number of objects
+   */
+  private void flatten(Node root, int size) {
+    int numnodes = countNodes(root);
+    int numobjs = size + numnodes; // Routing objects may be duplicated.
+    ids = DBIDUtil.newArray(numobjs);
+    dists = new double[numobjs];
+    start = new int[numnodes + 1];
+    next = new int[numnodes];
+    maxDist = new double[numnodes];
+    int n = store(root, 0);
+    assert (n == numnodes);
+    start[numnodes] = ids.size();
+    // Trim the unused capacity:
+    if(ids.size() < numobjs) {
+      double[] trimmed = new double[ids.size()];
+      System.arraycopy(dists, 0, trimmed, 0, trimmed.length);
+      dists = trimmed;
+      ids = DBIDUtil.newArray(ids);
+    }
+  }
+
+  /**
+   * Count the nodes in a subtree.
+   *
+   * @param node Subtree root
+   * @return Number of nodes
+   */
+  private static int countNodes(Node node) {
+    int c = 1;
+    if(node.children != null) {
+      for(Node child : node.children) {
+        c += countNodes(child);
+      }
+    }
+    return c;
+  }
+
+  /**
+   * Store a subtree in depth-first order.
+   *
+   * @param node Subtree root
+   * @param n Index of the node
+   * @return Index of the next node after the subtree
+   */
+  private int store(Node node, int n) {
+    start[n] = ids.size();
+    maxDist[n] = node.maxDist;
+    DoubleDBIDListIter it = node.singletons.iter();
+    // Routing object, with the distance to the parent:
+    ids.add(it);
+    dists[ids.size() - 1] = node.parentDist;
+    for(it.advance(); it.valid(); it.advance()) {
+      ids.add(it);
+      dists[ids.size() - 1] = it.doubleValue();
+    }
+    int c = n + 1;
+    if(!node.isLeaf()) {
+      for(Node child : node.children) {
+        c = store(child, c);
+      }
+    }
+    return next[n] = c;
+  }
+
+  @Override
+  public RangeQuery<O> getRangeQuery(DistanceQuery<O> distanceQuery, Object... hints) {
+    // Query on the relation we index
+    if(distanceQuery.getRelation() != relation) {
+      return null;
+    }
+    DistanceFunction<? super O> distanceFunction = (DistanceFunction<? super O>) distanceQuery.getDistanceFunction();
+    if(!this.distanceFunction.equals(distanceFunction)) {
+      LOG.debug("Distance function not supported by index - or 'equals' not implemented right!");
+      return null;
+    }
+    DistanceQuery<O> dq = distanceFunction.instantiate(relation);
+    return new CompactCoverTreeRangeQuery(dq);
+  }
+
+  @Override
+  public KNNQuery<O> getKNNQuery(DistanceQuery<O> distanceQuery, Object... hints) {
+    // Query on the relation we index
+    if(distanceQuery.getRelation() != relation) {
+      return null;
+    }
+    DistanceFunction<? super O> distanceFunction = (DistanceFunction<? super O>) distanceQuery.getDistanceFunction();
+    if(!this.distanceFunction.equals(distanceFunction)) {
+      LOG.debug("Distance function not supported by index - or 'equals' not implemented right!");
+      return null;
+    }
+    DistanceQuery<O> dq = distanceFunction.instantiate(relation);
+    return new CompactCoverTreeKNNQuery(dq);
+  }
+
+  @Override
+  public String getLongName() {
+    return "Compact Cover Tree";
+  }
+
+  @Override
+  public String getShortName() {
+    return "compact-cover-tree";
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Task to build a subtree.
+   *
+   * @author Erich Schubert
+   */
+  private class BuildTask extends RecursiveTask<Node> {
+    /**
+     * Serialization version.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Routing object.
+     */
+    private final DBID cur;
+
+    /**
+     * Maximum scale.
+     */
+    private final int maxScale;
+
+    /**
+     * Distance to parent.
+     */
+    private final double parentDist;
+
+    /**
+     * Candidates.
+     */
+    private final ModifiableDoubleDBIDList elems;
+
+    /**
+     * Position in the parent's children.
+     */
+    int pos;
+
+    /**
+     * Constructor.
+     *
+     * @param cur Routing object
+     * @param maxScale Maximum scale
+     * @param parentDist Distance to parent
+     * @param elems Candidates
+     */
+    BuildTask(DBID cur, int maxScale, double parentDist, ModifiableDoubleDBIDList elems) {
+      this.cur = cur;
+      this.maxScale = maxScale;
+      this.parentDist = parentDist;
+      this.elems = elems;
+    }
+
+    @Override
+    protected Node compute() {
+      return bulkConstruct(cur, maxScale, parentDist, elems);
+    }
+  }
+
+  /**
+   * Task to compute the distances of many objects to a reference object.
+   *
+   * @author Erich Schubert
+   */
+  private class DistanceTask extends RecursiveAction {
+    /**
+     * Serialization version.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Reference object.
+     */
+    private final DBID ref;
+
+    /**
+     * Objects.
+     */
+    private final ArrayDBIDs objs;
+
+    /**
+     * Output array.
+     */
+    private final double[] d;
+
+    /**
+     * Range to process.
+     */
+    private final int begin, end;
+
+    /**
+     * Constructor.
+     *
+     * @param ref Reference object
+     * @param objs Objects
+     * @param d Output array
+     * @param begin First offset
+     * @param end End offset (exclusive)
+     */
+    DistanceTask(DBID ref, ArrayDBIDs objs, double[] d, int begin, int end) {
+      this.ref = ref;
+      this.objs = objs;
+      this.d = d;
+      this.begin = begin;
+      this.end = end;
+    }
+
+    @Override
+    protected void compute() {
+      if(end - begin >= PARALLEL_THRESHOLD) {
+        final int mid = (begin + end) >>> 1;
+        ForkJoinTask.invokeAll(new DistanceTask(ref, objs, d, begin, mid), new DistanceTask(ref, objs, d, mid, end));
+        return;
+      }
+      for(DBIDArrayIter it = objs.iter().seek(begin); it.getOffset() < end; it.advance()) {
+        d[it.getOffset()] = distance(ref, it);
+      }
+    }
+  }
+
+  /**
+   * Per-thread query state, reused across queries.
+   *
+   * @author Erich Schubert
+   */
+  private class QueryState {
+    /**
+     * Priority queue of nodes.
+     */
+    final DoubleIntegerMinHeap pq = new DoubleIntegerMinHeap();
+
+    /**
+     * LIFO stack of nodes.
+     */
+    int[] stack = new int[64];
+
+    /**
+     * Iterator over the node objects.
+     */
+    final DBIDArrayIter it = ids.iter();
+
+    /**
+     * Iterator over the routing objects of children.
+     */
+    final DBIDArrayIter child = ids.iter();
+  }
+
+  /**
+   * Range query class.
+   *
+   * @author Erich Schubert
+   */
+  public class CompactCoverTreeRangeQuery extends AbstractDistanceRangeQuery<O> implements RangeQuery<O> {
+    /**
+     * Query state of each thread.
+     */
+    private final ThreadLocal<QueryState> state = ThreadLocal.withInitial(QueryState::new);
+
+    /**
+     * Constructor.
+     *
+     * @param distanceQuery Distance query
+     */
+    public CompactCoverTreeRangeQuery(DistanceQuery<O> distanceQuery) {
+      super(distanceQuery);
+    }
+
+    @Override
+    public void getRangeForObject(O obj, double range, ModifiableDoubleDBIDList ret) {
+      if(start == null) {
+        return;
+      }
+      final QueryState s = state.get();
+      final DBIDArrayIter it = s.it;
+      int[] stack = s.stack;
+      int top = 0;
+      stack[top++] = 0; // Root
+      while(top > 0) {
+        final int cur = stack[--top]; // pop()
+        final int begin = start[cur], end = start[cur + 1];
+        final double d = distance(obj, it.seek(begin));
+        // Covered area not in range (metric assumption!):
+        if(d - maxDist[cur] > range) {
+          continue;
+        }
+        if(next[cur] > cur + 1) { // Inner node:
+          for(int c = cur + 1; c < next[cur]; c = next[c]) {
+            if(d - maxDist[c] - dists[start[c]] <= range) {
+              if(top == stack.length) {
+                s.stack = stack = Arrays.copyOf(stack, stack.length << 1);
+              }
+              stack[top++] = c;
+            }
+          }
+        }
+        else { // Leaf node
+          // Consider routing object, too:
+          if(d <= range) {
+            ret.add(d, it); // First element is a candidate now
+          }
+        }
+        // For remaining singletons, compute the distances:
+        for(int i = begin + 1; i < end; i++) {
+          if(d - dists[i] <= range) {
+            final double d2 = distance(obj, it.seek(i));
+            if(d2 <= range) {
+              ret.add(d2, it);
+            }
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * KNN Query class.
+   *
+   * @author Erich Schubert
+   */
+  public class CompactCoverTreeKNNQuery extends AbstractDistanceKNNQuery<O> implements KNNQuery<O> {
+    /**
+     * Query state of each thread.
+     */
+    private final ThreadLocal<QueryState> state = ThreadLocal.withInitial(QueryState::new);
+
+    /**
+     * Constructor.
+     *
+     * @param distanceQuery Distance
+     */
+    public CompactCoverTreeKNNQuery(DistanceQuery<O> distanceQuery) {
+      super(distanceQuery);
+    }
+
+    @Override
+    public KNNList getKNNForObject(O obj, int k) {
+      if(k < 1) {
+        throw new IllegalArgumentException("At least one object has to be requested!");
+      }
+      KNNHeap knnList = DBIDUtil.newHeap(k);
+      if(start == null) {
+        return knnList.toKNNList();
+      }
+      double d_k = Double.POSITIVE_INFINITY;
+
+      final QueryState s = state.get();
+      final DoubleIntegerMinHeap pq = s.pq;
+      final DBIDArrayIter it = s.it, f = s.child;
+      if(!pq.isEmpty()) {
+        pq.clear(); // Left over from an aborted query.
+      }
+
+      // Push the root node
+      final double rootdist = distance(obj, it.seek(0));
+      pq.add(rootdist - maxDist[0], 0);
+
+      // search in tree
+      while(!pq.isEmpty()) {
+        final int cur = pq.peekValue();
+        final double prio = pq.peekKey(); // Minimum distance to cover
+        final double d = prio + maxDist[cur]; // Restore distance to center.
+        pq.poll(); // Remove
+
+        if(knnList.size() >= k && prio > d_k) {
+          continue;
+        }
+
+        final int begin = start[cur], end = start[cur + 1];
+        it.seek(begin);
+        if(next[cur] > cur + 1) { // Inner node:
+          for(int c = cur + 1; c < next[cur]; c = next[c]) {
+            final int cbegin = start[c];
+            if(d - maxDist[c] - dists[cbegin] <= d_k) {
+              final double dist = DBIDUtil.equal(f.seek(cbegin), it) ? d : distance(obj, f);
+              final double newprio = dist - maxDist[c]; // Minimum distance
+              if(newprio <= d_k) {
+                pq.add(newprio, c);
+              }
+            }
+          }
+        }
+        else { // Leaf node
+          // Consider routing object, too:
+          if(d <= d_k) {
+            d_k = knnList.insert(d, it); // First element is a candidate now
+          }
+        }
+        // For remaining singletons, compute the distances:
+        for(int i = begin + 1; i < end; i++) {
+          if(d - dists[i] <= d_k) {
+            final double d2 = distance(obj, it.seek(i));
+            if(d2 <= d_k) {
+              d_k = knnList.insert(d2, it);
+            }
+          }
+        }
+      }
+      return knnList.toKNNList();
+    }
+  }
+
+  /**
+   * Index factory.
+   *
+   * @author Erich Schubert
+   *
+   * @has - - - CompactCoverTree
+   *
+   * @param <O> Object type
+   */
+  public static class Factory<O> extends AbstractCoverTree.Factory<O> {
+    /**
+     * Constructor.
+     *
+     * @param distanceFunction Distance function
+     * @param expansion Expansion rate
+     * @param truncate Truncate branches with less than this number of
+     *        instances.
+     */
+    public Factory(DistanceFunction<? super O> distanceFunction, double expansion, int truncate) {
+      super(distanceFunction, expansion, truncate);
+    }
+
+    @Override
+    public CompactCoverTree<O> instantiate(Relation<O> relation) {
+      return new CompactCoverTree<O>(relation, distanceFunction, expansion, truncate);
+    }
+
+    /**
+     * Parameterization class.
+     *
+     * @author Erich Schubert
+     */
+    public static class Parameterizer<O> extends AbstractCoverTree.Factory.Parameterizer<O> {
+      @Override
+      protected CompactCoverTree.Factory<O> makeInstance() {
+        return new CompactCoverTree.Factory<>(distanceFunction, expansion, truncate);
+      }
+    }
+  }
+}
@@ -44,6 +44,7 @@ import de.lmu.ifi.dbs.elki.index.KNNIndex;
 import de.lmu.ifi.dbs.elki.index.RangeIndex;
 import de.lmu.ifi.dbs.elki.logging.Logging;
 import de.lmu.ifi.dbs.elki.logging.statistics.Counter;
+import de.lmu.ifi.dbs.elki.logging.statistics.LongAdderCounter;
 import de.lmu.ifi.dbs.elki.utilities.Alias;
 import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.AbstractParameterizer;
@@ -127,8 +128,9 @@ public class MinimalisticMemoryKDTree<O extends NumberVector> extends AbstractIn
     assert (leafsize >= 1);
     if(LOG.isStatistics()) {
       String prefix = this.getClass().getName();
-      this.objaccess = LOG.newCounter(prefix + ".objaccess");
-      this.distcalc = LOG.newCounter(prefix + ".distancecalcs");
+      // Thread-safe counters, as queries may be run concurrently.
+      this.objaccess = new LongAdderCounter(prefix + ".objaccess");
+      this.distcalc = new LongAdderCounter(prefix + ".distancecalcs");
     }
     else {
       this.objaccess = null;
@@ -42,6 +42,7 @@ import de.lmu.ifi.dbs.elki.index.KNNIndex;
 import de.lmu.ifi.dbs.elki.index.RangeIndex;
 import de.lmu.ifi.dbs.elki.logging.Logging;
 import de.lmu.ifi.dbs.elki.logging.statistics.Counter;
+import de.lmu.ifi.dbs.elki.logging.statistics.LongAdderCounter;
 import de.lmu.ifi.dbs.elki.utilities.Alias;
 import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.AbstractParameterizer;
@@ -123,8 +124,9 @@ public class SmallMemoryKDTree<O extends NumberVector> extends AbstractIndex<O>
     assert (leafsize >= 1);
     if(LOG.isStatistics()) {
       String prefix = this.getClass().getName();
-      this.objaccess = LOG.newCounter(prefix + ".objaccess");
-      this.distcalc = LOG.newCounter(prefix + ".distancecalcs");
+      // Thread-safe counters, as queries may be run concurrently.
+      this.objaccess = new LongAdderCounter(prefix + ".objaccess");
+      this.distcalc = new LongAdderCounter(prefix + ".distancecalcs");
     }
     else {
       this.objaccess = null;
@@ -174,6 +176,27 @@ public class SmallMemoryKDTree<O extends NumberVector> extends AbstractIndex<O>
     }
   }
 
+  /**
+   * Get the objects in tree order. The interval {@code [left;right[} of a node
+   * is a leaf if it contains at most {@link #getLeafSize()} objects; otherwise
+   * the object at {@code (left+right)>>>1} is the splitting object, and the
+   * intervals before and after it are the children.
+   *
+   * @return Objects in tree order, do not modify
+   */
+  public DoubleDBIDList getTreeOrder() {
+    return sorted;
+  }
+
+  /**
+   * Get the maximum leaf size.
+   *
+   * @return Leaf size
+   */
+  public int getLeafSize() {
+    return leafsize;
+  }
+
   @Override
   public String getLongName() {
     return "kd-tree";
@@ -0,0 +1,246 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.index.hnsw;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.StaticArrayDatabase;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDListIter;
+import de.lmu.ifi.dbs.elki.database.ids.KNNList;
+import de.lmu.ifi.dbs.elki.database.query.DatabaseQuery;
+import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
+import de.lmu.ifi.dbs.elki.database.query.knn.KNNQuery;
+import de.lmu.ifi.dbs.elki.database.query.knn.LinearScanDistanceKNNQuery;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.datasource.ArrayAdapterDatabaseConnection;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.EuclideanDistanceFunction;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.LPNormDistanceFunction;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.ManhattanDistanceFunction;
+import de.lmu.ifi.dbs.elki.index.AbstractIndexStructureTest;
+import de.lmu.ifi.dbs.elki.utilities.ELKIBuilder;
+import de.lmu.ifi.dbs.elki.utilities.exceptions.AbortException;
+
+/**
+ * Unit test for the HNSW index.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ */
+public class HNSWIndexTest extends AbstractIndexStructureTest {
+  /**
+   * Test {@link HNSWIndex} using a file based database connection.
+   */
+  @Test
+  public void testHNSW() {
+    HNSWIndex.Factory<?> factory = new ELKIBuilder<>(HNSWIndex.Factory.class) //
+        .with(HNSWIndex.Factory.Parameterizer.DISTANCE_FUNCTION_ID, EuclideanDistanceFunction.class) //
+        .with(HNSWIndex.Factory.Parameterizer.EF_SEARCH_ID, 100) //
+        .with(HNSWIndex.Factory.Parameterizer.SEED_ID, 0L).build();
+    testExactEuclidean(factory, HNSWIndex.HNSWKNNQuery.class, HNSWIndex.HNSWRangeQuery.class);
+    testSinglePoint(factory, HNSWIndex.HNSWKNNQuery.class, HNSWIndex.HNSWRangeQuery.class);
+  }
+
+  /**
+   * Test concurrent queries on {@link HNSWIndex}.
+   */
+  @Test
+  public void testConcurrentReads() {
+    HNSWIndex.Factory<?> factory = new ELKIBuilder<>(HNSWIndex.Factory.class) //
+        .with(HNSWIndex.Factory.Parameterizer.DISTANCE_FUNCTION_ID, EuclideanDistanceFunction.class) //
+        .with(HNSWIndex.Factory.Parameterizer.EF_SEARCH_ID, 100) //
+        .with(HNSWIndex.Factory.Parameterizer.SEED_ID, 0L).build();
+    testConcurrentKNN(factory, HNSWIndex.HNSWKNNQuery.class, null);
+  }
+
+  /**
+   * Test the recall on a data set large enough for parallel insertion, and
+   * the round trip through a graph file.
+   *
+   * @throws IOException on errors creating the temporary file
+   */
+  @Test
+  public void testRecallAndFile() throws IOException {
+    Random rnd = new Random(0L);
+    double[][] data = new double[10000][5];
+    for(double[] row : data) {
+      for(int d = 0; d < row.length; d++) {
+        row[d] = rnd.nextDouble();
+      }
+    }
+    File file = File.createTempFile("elki-hnsw", ".bin");
+    assertTrue(file.delete());
+    try {
+      KNNList[] first = run(data, file, 0.95);
+      assertTrue("Graph file was not written.", file.exists());
+      // Second run loads the graph, and must give the same results:
+      KNNList[] second = run(data, file, 0.95);
+      for(int i = 0; i < first.length; i++) {
+        for(DoubleDBIDListIter a = first[i].iter(), b = second[i].iter(); a.valid(); a.advance(), b.advance()) {
+          assertEquals("Results differ after loading.", a.doubleValue(), b.doubleValue(), 0.);
+        }
+      }
+    }
+    finally {
+      file.delete();
+    }
+  }
+
+  /**
+   * Test that graph files built for other data or another distance function
+   * are rejected.
+   *
+   * @throws IOException on errors creating the temporary file
+   */
+  @Test
+  public void testFileMismatch() throws IOException {
+    Random rnd = new Random(0L);
+    double[][] data = new double[1000][3];
+    for(double[] row : data) {
+      for(int d = 0; d < row.length; d++) {
+        row[d] = rnd.nextDouble();
+      }
+    }
+    File file = File.createTempFile("elki-hnsw", ".bin");
+    assertTrue(file.delete());
+    try {
+      build(data, file, EuclideanDistanceFunction.class);
+      assertTrue("Graph file was not written.", file.exists());
+      // Same data, but in a new database with new DBIDs:
+      build(data, file, EuclideanDistanceFunction.class);
+      try {
+        build(data, file, ManhattanDistanceFunction.class);
+        fail("Graph file for another distance function was accepted.");
+      }
+      catch(AbortException e) {
+        // Expected.
+      }
+      data[500][1] += 1e-10;
+      try {
+        build(data, file, EuclideanDistanceFunction.class);
+        fail("Graph file for other data was accepted.");
+      }
+      catch(AbortException e) {
+        // Expected.
+      }
+      // Same distance function class (integer L_p norm), but another p:
+      assertTrue(file.delete());
+      build(data, builder(file, LPNormDistanceFunction.class).with(LPNormDistanceFunction.Parameterizer.P_ID, 3.).build());
+      build(data, builder(file, LPNormDistanceFunction.class).with(LPNormDistanceFunction.Parameterizer.P_ID, 3.).build());
+      try {
+        build(data, builder(file, LPNormDistanceFunction.class).with(LPNormDistanceFunction.Parameterizer.P_ID, 4.).build());
+        fail("Graph file for other distance parameters was accepted.");
+      }
+      catch(AbortException e) {
+        // Expected.
+      }
+    }
+    finally {
+      file.delete();
+    }
+  }
+
+  /**
+   * Build a database with a HNSW index.
+   *
+   * @param data Data set
+   * @param file Graph file
+   * @param distance Distance function class
+   * @return Database
+   */
+  private static Database build(double[][] data, File file, Class<?> distance) {
+    return build(data, builder(file, distance).build());
+  }
+
+  /**
+   * Get a builder for the HNSW index.
+   *
+   * @param file Graph file
+   * @param distance Distance function class
+   * @return Builder
+   */
+  private static ELKIBuilder<HNSWIndex.Factory<?>> builder(File file, Class<?> distance) {
+    return new ELKIBuilder<HNSWIndex.Factory<?>>(HNSWIndex.Factory.class) //
+        .with(HNSWIndex.Factory.Parameterizer.DISTANCE_FUNCTION_ID, distance) //
+        .with(HNSWIndex.Factory.Parameterizer.M_ID, 8) //
+        .with(HNSWIndex.Factory.Parameterizer.EF_CONSTRUCTION_ID, 100) //
+        .with(HNSWIndex.Factory.Parameterizer.FILE_ID, file) //
+        .with(HNSWIndex.Factory.Parameterizer.SEED_ID, 0L);
+  }
+
+  /**
+   * Build a database with a HNSW index.
+   *
+   * @param data Data set
+   * @param factory Index factory
+   * @return Database
+   */
+  private static Database build(double[][] data, HNSWIndex.Factory<?> factory) {
+    Database db = new StaticArrayDatabase(new ArrayAdapterDatabaseConnection(data), Arrays.asList(factory));
+    db.initialize();
+    return db;
+  }
+
+  /**
+   * Build the index, and check the recall of 10NN queries.
+   *
+   * @param data Data set
+   * @param file Graph file
+   * @param minrecall Minimum recall
+   * @return Query results
+   */
+  private KNNList[] run(double[][] data, File file, double minrecall) {
+    Database db = build(data, file, EuclideanDistanceFunction.class);
+    Relation<DoubleVector> rel = db.getRelation(TypeUtil.DOUBLE_VECTOR_FIELD);
+    DistanceQuery<DoubleVector> dq = db.getDistanceQuery(rel, EuclideanDistanceFunction.STATIC);
+    KNNQuery<DoubleVector> knnq = db.getKNNQuery(dq, 10, DatabaseQuery.HINT_OPTIMIZED_ONLY);
+    assertTrue(knnq instanceof HNSWIndex.HNSWKNNQuery);
+    assertTrue("Approximate index used for exact queries.", !(db.getKNNQuery(dq, 10, DatabaseQuery.HINT_EXACT) instanceof HNSWIndex.HNSWKNNQuery));
+    LinearScanDistanceKNNQuery<DoubleVector> linknn = new LinearScanDistanceKNNQuery<>(dq);
+    KNNList[] results = new KNNList[data.length / 100];
+    int i = 0, found = 0, total = 0;
+    for(DBIDIter it = rel.iterDBIDs(); it.valid(); it.advance(), i++) {
+      if(i % 100 != 0) {
+        continue;
+      }
+      KNNList knn = knnq.getKNNForDBID(it, 10), exp = linknn.getKNNForDBID(it, 10);
+      results[i / 100] = knn;
+      assertEquals("Wrong number of neighbors.", 10, knn.size());
+      found += DBIDUtil.intersectionSize(DBIDUtil.newHashSet(knn), DBIDUtil.newHashSet(exp));
+      total += exp.size();
+    }
+    assertTrue("Recall too low: " + found / (double) total, found >= minrecall * total);
+    return results;
+  }
+}
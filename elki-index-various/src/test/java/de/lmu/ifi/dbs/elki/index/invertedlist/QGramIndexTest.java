@@ -0,0 +1,121 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.index.invertedlist;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.StaticArrayDatabase;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDList;
+import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDListIter;
+import de.lmu.ifi.dbs.elki.database.ids.KNNList;
+import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
+import de.lmu.ifi.dbs.elki.database.query.knn.KNNQuery;
+import de.lmu.ifi.dbs.elki.database.query.knn.LinearScanDistanceKNNQuery;
+import de.lmu.ifi.dbs.elki.database.query.range.LinearScanDistanceRangeQuery;
+import de.lmu.ifi.dbs.elki.database.query.range.RangeQuery;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.datasource.MultipleObjectsBundleDatabaseConnection;
+import de.lmu.ifi.dbs.elki.datasource.bundle.MultipleObjectsBundle;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.strings.LevenshteinDistanceFunction;
+import de.lmu.ifi.dbs.elki.utilities.ELKIBuilder;
+
+/**
+ * Unit test for the q-gram index.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ */
+public class QGramIndexTest {
+  /**
+   * Compare the index results to a linear scan.
+   */
+  @Test
+  public void testLevenshtein() {
+    Random rnd = new Random(0L);
+    // Clusters of similar strings, of varying length:
+    List<String> data = new ArrayList<>();
+    for(int i = 0; i < 50; i++) {
+      StringBuilder base = new StringBuilder();
+      for(int j = rnd.nextInt(40); j >= 0; j--) {
+        base.append((char) ('a' + rnd.nextInt(26)));
+      }
+      for(int j = 0; j < 20; j++) {
+        StringBuilder buf = new StringBuilder(base);
+        for(int e = rnd.nextInt(5); e > 0 && buf.length() > 0; e--) {
+          buf.setCharAt(rnd.nextInt(buf.length()), (char) ('a' + rnd.nextInt(26)));
+        }
+        if(rnd.nextBoolean()) {
+          buf.append((char) ('a' + rnd.nextInt(26)));
+        }
+        data.add(buf.toString());
+      }
+    }
+    QGramIndex.Factory factory = new ELKIBuilder<>(QGramIndex.Factory.class) //
+        .with(QGramIndex.Factory.Parameterizer.Q_ID, 3).build();
+    Database db = new StaticArrayDatabase(new MultipleObjectsBundleDatabaseConnection(MultipleObjectsBundle.makeSimple(TypeUtil.STRING, data)), Arrays.asList(factory));
+    db.initialize();
+    Relation<String> rel = db.getRelation(TypeUtil.STRING);
+    DistanceQuery<String> dq = db.getDistanceQuery(rel, LevenshteinDistanceFunction.STATIC_SENSITIVE);
+    KNNQuery<String> knnq = db.getKNNQuery(dq, 10);
+    assertTrue("Index not used: " + knnq.getClass(), knnq instanceof QGramIndex.QGramKNNQuery);
+    RangeQuery<String> rq = db.getRangeQuery(dq, 3.);
+    assertTrue("Index not used: " + rq.getClass(), rq instanceof QGramIndex.QGramRangeQuery);
+    LinearScanDistanceKNNQuery<String> linknn = new LinearScanDistanceKNNQuery<>(dq);
+    LinearScanDistanceRangeQuery<String> linrange = new LinearScanDistanceRangeQuery<>(dq);
+    int i = 0;
+    for(DBIDIter it = rel.iterDBIDs(); it.valid(); it.advance(), i++) {
+      if(i % 7 != 0) {
+        continue;
+      }
+      KNNList knn = knnq.getKNNForDBID(it, 10), exp = linknn.getKNNForDBID(it, 10);
+      assertEquals("kNN size differs", exp.size(), knn.size());
+      for(DoubleDBIDListIter a = exp.iter(), b = knn.iter(); a.valid(); a.advance(), b.advance()) {
+        assertEquals("kNN distances differ", a.doubleValue(), b.doubleValue(), 0.);
+      }
+      for(int r = 0; r < 6; r += 2) {
+        assertSameSet(linrange.getRangeForDBID(it, r), rq.getRangeForDBID(it, r));
+      }
+    }
+  }
+
+  /**
+   * Compare two range query results.
+   *
+   * @param exp Expected result
+   * @param res Actual result
+   */
+  private static void assertSameSet(DoubleDBIDList exp, DoubleDBIDList res) {
+    assertEquals("Result size differs", exp.size(), res.size());
+    assertEquals("Results differ", exp.size(), DBIDUtil.intersectionSize(DBIDUtil.newHashSet(exp), DBIDUtil.newHashSet(res)));
+  }
+}
@@ -0,0 +1,130 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.index.timeseries;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.StaticArrayDatabase;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDList;
+import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDListIter;
+import de.lmu.ifi.dbs.elki.database.ids.KNNList;
+import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
+import de.lmu.ifi.dbs.elki.database.query.knn.KNNQuery;
+import de.lmu.ifi.dbs.elki.database.query.knn.LinearScanDistanceKNNQuery;
+import de.lmu.ifi.dbs.elki.database.query.range.LinearScanDistanceRangeQuery;
+import de.lmu.ifi.dbs.elki.database.query.range.RangeQuery;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.datasource.ArrayAdapterDatabaseConnection;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.timeseries.AbstractEditDistanceFunction;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.timeseries.DTWDistanceFunction;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.timeseries.ERPDistanceFunction;
+import de.lmu.ifi.dbs.elki.utilities.ELKIBuilder;
+
+/**
+ * Unit test for the LB_Keogh time series index.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ */
+public class LBKeoghIndexTest {
+  /**
+   * Test exact DTW search with the lower bounds.
+   */
+  @Test
+  public void testDTW() {
+    DTWDistanceFunction dist = new ELKIBuilder<>(DTWDistanceFunction.class) //
+        .with(AbstractEditDistanceFunction.Parameterizer.BANDSIZE_ID, 0.1).build();
+    compareToLinearScan(dist);
+  }
+
+  /**
+   * Test ERP search, using early abandoning only.
+   */
+  @Test
+  public void testERP() {
+    ERPDistanceFunction dist = new ELKIBuilder<>(ERPDistanceFunction.class) //
+        .with(AbstractEditDistanceFunction.Parameterizer.BANDSIZE_ID, 5).build();
+    compareToLinearScan(dist);
+  }
+
+  /**
+   * Compare the index results to a linear scan, on random walks.
+   *
+   * @param dist Distance function
+   */
+  private void compareToLinearScan(DTWDistanceFunction dist) {
+    Random rnd = new Random(0L);
+    double[][] data = new double[500][64];
+    for(double[] row : data) {
+      double v = 0.;
+      for(int d = 0; d < row.length; d++) {
+        row[d] = v += rnd.nextGaussian();
+      }
+    }
+    LBKeoghIndex.Factory<?> factory = new ELKIBuilder<>(LBKeoghIndex.Factory.class) //
+        .with(LBKeoghIndex.Factory.Parameterizer.DISTANCE_FUNCTION_ID, dist).build();
+    Database db = new StaticArrayDatabase(new ArrayAdapterDatabaseConnection(data), Arrays.asList(factory));
+    db.initialize();
+    Relation<DoubleVector> rel = db.getRelation(TypeUtil.DOUBLE_VECTOR_FIELD);
+    DistanceQuery<DoubleVector> dq = db.getDistanceQuery(rel, dist);
+    KNNQuery<DoubleVector> knnq = db.getKNNQuery(dq, 10);
+    assertTrue("Index not used: " + knnq.getClass(), knnq instanceof LBKeoghIndex.LBKeoghKNNQuery);
+    RangeQuery<DoubleVector> rq = db.getRangeQuery(dq, 20.);
+    assertTrue("Index not used: " + rq.getClass(), rq instanceof LBKeoghIndex.LBKeoghRangeQuery);
+    LinearScanDistanceKNNQuery<DoubleVector> linknn = new LinearScanDistanceKNNQuery<>(dq);
+    LinearScanDistanceRangeQuery<DoubleVector> linrange = new LinearScanDistanceRangeQuery<>(dq);
+    int i = 0;
+    for(DBIDIter it = rel.iterDBIDs(); it.valid(); it.advance(), i++) {
+      if(i % 10 != 0) {
+        continue;
+      }
+      KNNList knn = knnq.getKNNForDBID(it, 10), exp = linknn.getKNNForDBID(it, 10);
+      assertSameResult(exp, knn);
+      final double r = exp.getKNNDistance();
+      assertSameResult(linrange.getRangeForDBID(it, r), rq.getRangeForDBID(it, r));
+    }
+  }
+
+  /**
+   * Compare two result lists.
+   *
+   * @param exp Expected result
+   * @param res Actual result
+   */
+  private static void assertSameResult(DoubleDBIDList exp, DoubleDBIDList res) {
+    assertEquals("Result size differs", exp.size(), res.size());
+    assertEquals("Results differ", DBIDUtil.newHashSet(exp).size(), DBIDUtil.intersectionSize(DBIDUtil.newHashSet(exp), DBIDUtil.newHashSet(res)));
+    for(DoubleDBIDListIter a = exp.iter(), b = res.iter(); a.valid(); a.advance(), b.advance()) {
+      assertEquals("Distances differ", a.doubleValue(), b.doubleValue(), 0.);
+    }
+  }
+}
@@ -0,0 +1,112 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.index.tree.metrical.covertree;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.StaticArrayDatabase;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDList;
+import de.lmu.ifi.dbs.elki.database.ids.KNNList;
+import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
+import de.lmu.ifi.dbs.elki.database.query.knn.KNNQuery;
+import de.lmu.ifi.dbs.elki.database.query.knn.LinearScanDistanceKNNQuery;
+import de.lmu.ifi.dbs.elki.database.query.range.LinearScanDistanceRangeQuery;
+import de.lmu.ifi.dbs.elki.database.query.range.RangeQuery;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.datasource.ArrayAdapterDatabaseConnection;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.EuclideanDistanceFunction;
+import de.lmu.ifi.dbs.elki.index.AbstractIndexStructureTest;
+import de.lmu.ifi.dbs.elki.utilities.ELKIBuilder;
+
+/**
+ * Unit test for the compact cover tree.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ */
+public class CompactCoverTreeTest extends AbstractIndexStructureTest {
+  /**
+   * Test {@link CompactCoverTree} using a file based database connection.
+   */
+  @Test
+  public void testCompactCovertree() {
+    CompactCoverTree.Factory<?> factory = new ELKIBuilder<>(CompactCoverTree.Factory.class) //
+        .with(CompactCoverTree.Factory.Parameterizer.DISTANCE_FUNCTION_ID, EuclideanDistanceFunction.class).build();
+    testExactEuclidean(factory, CompactCoverTree.CompactCoverTreeKNNQuery.class, CompactCoverTree.CompactCoverTreeRangeQuery.class);
+    testSinglePoint(factory, CompactCoverTree.CompactCoverTreeKNNQuery.class, CompactCoverTree.CompactCoverTreeRangeQuery.class);
+  }
+
+  /**
+   * Test concurrent queries on {@link CompactCoverTree}.
+   */
+  @Test
+  public void testConcurrentReads() {
+    CompactCoverTree.Factory<?> factory = new ELKIBuilder<>(CompactCoverTree.Factory.class) //
+        .with(CompactCoverTree.Factory.Parameterizer.DISTANCE_FUNCTION_ID, EuclideanDistanceFunction.class).build();
+    testConcurrentKNN(factory, CompactCoverTree.CompactCoverTreeKNNQuery.class, null);
+  }
+
+  /**
+   * Test the parallel construction, on a data set large enough to fork.
+   */
+  @Test
+  public void testParallelBuild() {
+    Random rnd = new Random(0L);
+    double[][] data = new double[50000][3];
+    for(double[] row : data) {
+      for(int d = 0; d < row.length; d++) {
+        row[d] = rnd.nextDouble();
+      }
+    }
+    CompactCoverTree.Factory<?> factory = new ELKIBuilder<>(CompactCoverTree.Factory.class) //
+        .with(CompactCoverTree.Factory.Parameterizer.DISTANCE_FUNCTION_ID, EuclideanDistanceFunction.class).build();
+    Database db = new StaticArrayDatabase(new ArrayAdapterDatabaseConnection(data), Arrays.asList(factory));
+    db.initialize();
+    Relation<DoubleVector> rel = db.getRelation(TypeUtil.DOUBLE_VECTOR_FIELD);
+    DistanceQuery<DoubleVector> dq = db.getDistanceQuery(rel, EuclideanDistanceFunction.STATIC);
+    KNNQuery<DoubleVector> knnq = db.getKNNQuery(dq, 10);
+    RangeQuery<DoubleVector> rangeq = db.getRangeQuery(dq, 0.05);
+    assertTrue(knnq instanceof CompactCoverTree.CompactCoverTreeKNNQuery);
+    assertTrue(rangeq instanceof CompactCoverTree.CompactCoverTreeRangeQuery);
+    LinearScanDistanceKNNQuery<DoubleVector> linknn = new LinearScanDistanceKNNQuery<>(dq);
+    LinearScanDistanceRangeQuery<DoubleVector> linrange = new LinearScanDistanceRangeQuery<>(dq);
+    int i = 0;
+    for(DBIDIter it = rel.iterDBIDs(); it.valid(); it.advance(), i++) {
+      if(i % 500 != 0) {
+        continue;
+      }
+      KNNList knn = knnq.getKNNForDBID(it, 10), exp = linknn.getKNNForDBID(it, 10);
+      assertEquals("kNN distance does not match", exp.getKNNDistance(), knn.getKNNDistance(), 1e-15);
+      DoubleDBIDList range = rangeq.getRangeForDBID(it, 0.05);
+      assertEquals("Range query size does not match", linrange.getRangeForDBID(it, 0.05).size(), range.size());
+    }
+  }
+}
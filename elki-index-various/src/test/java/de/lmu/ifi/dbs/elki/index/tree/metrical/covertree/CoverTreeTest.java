@@ -43,4 +43,14 @@ public class CoverTreeTest extends AbstractIndexStructureTest {
     testExactEuclidean(factory, CoverTree.CoverTreeKNNQuery.class, CoverTree.CoverTreeRangeQuery.class);
     testSinglePoint(factory, CoverTree.CoverTreeKNNQuery.class, CoverTree.CoverTreeRangeQuery.class);
   }
+
+  /**
+   * Test concurrent queries on {@link CoverTree}.
+   */
+  @Test
+  public void testConcurrentReads() {
+    CoverTree.Factory<?> factory = new ELKIBuilder<>(CoverTree.Factory.class) //
+        .with(CoverTree.Factory.Parameterizer.DISTANCE_FUNCTION_ID, EuclideanDistanceFunction.class).build();
+    testConcurrentKNN(factory, CoverTree.CoverTreeKNNQuery.class, null);
+  }
 }
@@ -41,4 +41,13 @@ public class SmallMemoryKDTreeTest extends AbstractIndexStructureTest {
     testExactEuclidean(factory, SmallMemoryKDTree.KDTreeKNNQuery.class, SmallMemoryKDTree.KDTreeRangeQuery.class);
     testSinglePoint(factory, SmallMemoryKDTree.KDTreeKNNQuery.class, SmallMemoryKDTree.KDTreeRangeQuery.class);
   }
+
+  /**
+   * Test concurrent queries on {@link SmallMemoryKDTree}.
+   */
+  @Test
+  public void testConcurrentReads() {
+    SmallMemoryKDTree.Factory<?> factory = new ELKIBuilder<>(SmallMemoryKDTree.Factory.class).build();
+    testConcurrentKNN(factory, SmallMemoryKDTree.KDTreeKNNQuery.class, null);
+  }
 }
@@ -181,6 +181,39 @@ public abstract class IndexTree<N extends Node<E>, E extends Entry> implements I
     return getNode(getPageID(entry));
   }
 
+  /**
+   * Enable or disable the read-only mode of this tree.
+   * <p>
+   * In read-only mode, nodes are only read and the tree may be queried from
+   * multiple threads concurrently, while any modification is rejected. The
+   * mode must not be changed while queries are running.
+   *
+   * @param readonly {@code true} to enable concurrent read-only access
+   */
+  public void setReadOnly(boolean readonly) {
+    file.setReadOnly(readonly);
+  }
+
+  /**
+   * Test whether the tree is in read-only mode.
+   *
+   * @return {@code true} when the tree is read-only
+   */
+  public boolean isReadOnly() {
+    return file.isReadOnly();
+  }
+
+  /**
+   * Ensure that the tree may be modified.
+   *
+   * @throws IllegalStateException when in read-only mode
+   */
+  protected void checkWritable() {
+    if(file.isReadOnly()) {
+      throw new IllegalStateException("Index tree is in read-only mode.");
+    }
+  }
+
   /**
    * Write a node to the backing storage.
    *
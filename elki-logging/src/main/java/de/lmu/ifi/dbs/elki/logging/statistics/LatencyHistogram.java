@@ -0,0 +1,157 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.logging.statistics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread-safe histogram of latencies in nanoseconds, with power-of-two
+ * buckets.
+ * <p>
+ * Bucket b counts durations in [2<sup>b-1</sup>, 2<sup>b</sup>), bucket 0
+ * counts durations of 0. Quantiles are reported as the upper bound of the
+ * bucket, i.e., they may overestimate by up to a factor of two.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ */
+public class LatencyHistogram extends AbstractStatistic {
+  /**
+   * Number of buckets.
+   */
+  private static final int BUCKETS = 64;
+
+  /**
+   * Counts per bucket.
+   */
+  private final LongAdder[] buckets = new LongAdder[BUCKETS];
+
+  /**
+   * Total duration.
+   */
+  private final LongAdder sum = new LongAdder();
+
+  /**
+   * Constructor.
+   *
+   * @param key Key to report.
+   */
+  public LatencyHistogram(String key) {
+    super(key);
+    for(int i = 0; i < BUCKETS; i++) {
+      buckets[i] = new LongAdder();
+    }
+  }
+
+  /**
+   * Record a single event.
+   *
+   * @param nanos Duration in nanoseconds
+   */
+  public void record(long nanos) {
+    nanos = nanos > 0 ? nanos : 0;
+    buckets[BUCKETS - Long.numberOfLeadingZeros(nanos)].increment();
+    sum.add(nanos);
+  }
+
+  /**
+   * Record a batch of events, with their total duration.
+   *
+   * @param nanos Total duration in nanoseconds
+   * @param count Number of events
+   */
+  public void record(long nanos, int count) {
+    if(count <= 0) {
+      return;
+    }
+    nanos = nanos > 0 ? nanos : 0;
+    buckets[BUCKETS - Long.numberOfLeadingZeros(nanos / count)].add(count);
+    sum.add(nanos);
+  }
+
+  /**
+   * Get the number of recorded events.
+   *
+   * @return Count
+   */
+  public long getCount() {
+    long c = 0;
+    for(LongAdder b : buckets) {
+      c += b.sum();
+    }
+    return c;
+  }
+
+  /**
+   * Get the total duration.
+   *
+   * @return Sum of durations in nanoseconds
+   */
+  public long getSum() {
+    return sum.sum();
+  }
+
+  /**
+   * Get the mean duration.
+   *
+   * @return Mean in nanoseconds
+   */
+  public double getMean() {
+    final long c = getCount();
+    return c > 0 ? getSum() / (double) c : 0.;
+  }
+
+  /**
+   * Get an upper bound for a quantile.
+   *
+   * @param q Quantile, in [0;1]
+   * @return Upper bound of the bucket containing the quantile, in nanoseconds
+   */
+  public long getQuantile(double q) {
+    final long c = getCount();
+    final long rank = (long) Math.ceil(q * c);
+    long seen = 0;
+    for(int b = 0; b < BUCKETS; b++) {
+      seen += buckets[b].sum();
+      if(seen >= rank && seen > 0) {
+        return b == 0 ? 0L : b < BUCKETS - 1 ? 1L << b : Long.MAX_VALUE;
+      }
+    }
+    return 0L;
+  }
+
+  /**
+   * Reset the histogram.
+   */
+  public void reset() {
+    for(LongAdder b : buckets) {
+      b.reset();
+    }
+    sum.reset();
+  }
+
+  @Override
+  public String formatValue() {
+    return "count=" + getCount() + " mean=" + (long) getMean() + "ns" //
+        + " p50<=" + getQuantile(.5) + "ns p90<=" + getQuantile(.9) + "ns" //
+        + " p99<=" + getQuantile(.99) + "ns max<=" + getQuantile(1.) + "ns";
+  }
+}
@@ -0,0 +1,85 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.logging.statistics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Class to count events in a striped, thread-safe counter.
+ * <p>
+ * Unlike {@link AtomicLongCounter}, concurrent increments do not contend on a
+ * single memory location, which makes this counter suitable for hot paths
+ * executed by multiple threads. Obtaining the value requires summing all
+ * stripes; hot paths should ignore the return value of the increment methods.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ */
+public class LongAdderCounter extends AbstractStatistic implements Counter {
+  /**
+   * The counter to use.
+   */
+  LongAdder counter = new LongAdder();
+
+  /**
+   * Constructor.
+   *
+   * @param key Key to report.
+   */
+  public LongAdderCounter(String key) {
+    super(key);
+  }
+
+  @Override
+  public long increment() {
+    counter.increment();
+    return counter.sum();
+  }
+
+  @Override
+  public long decrement() {
+    counter.decrement();
+    return counter.sum();
+  }
+
+  @Override
+  public long increment(long i) {
+    counter.add(i);
+    return counter.sum();
+  }
+
+  @Override
+  public long getValue() {
+    return counter.sum();
+  }
+
+  /**
+   * Reset the counter to zero.
+   */
+  public void reset() {
+    counter.reset();
+  }
+
+  @Override
+  public String formatValue() {
+    return Long.toString(getValue());
+  }
+}
@@ -0,0 +1,236 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.logging.statistics;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import de.lmu.ifi.dbs.elki.logging.Logging;
+
+/**
+ * Global registry of low-overhead hot path metrics, such as the number of
+ * distance computations and query latencies.
+ * <p>
+ * Instrumentation is only installed when the registry is enabled at the time a
+ * query is created; when disabled, the uninstrumented queries are used, and
+ * there is no overhead in the hot paths.
+ * <p>
+ * Metrics are aggregated per run (usually one algorithm execution), logged
+ * with {@link Logging#statistics}, and can be written as a JSON report.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ *
+ * @composed - - - LongAdderCounter
+ * @composed - - - LatencyHistogram
+ */
+public final class MetricsRegistry {
+  /**
+   * Flag to enable instrumentation.
+   */
+  private static volatile boolean enabled = false;
+
+  /**
+   * Metrics of the current run.
+   */
+  private static final Map<String, AbstractStatistic> METRICS = new ConcurrentSkipListMap<>();
+
+  /**
+   * Completed runs, as JSON objects.
+   */
+  private static final List<String> RUNS = new ArrayList<>();
+
+  /**
+   * Private constructor. Static methods only.
+   */
+  private MetricsRegistry() {
+    // Do not use.
+  }
+
+  /**
+   * Test whether instrumentation is enabled.
+   *
+   * @return {@code true} when enabled
+   */
+  public static boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Enable or disable instrumentation. This only affects queries created
+   * afterwards.
+   *
+   * @param enable New value
+   */
+  public static void setEnabled(boolean enable) {
+    enabled = enable;
+  }
+
+  /**
+   * Get or create a counter.
+   *
+   * @param key Counter key
+   * @return Counter
+   */
+  public static LongAdderCounter counter(String key) {
+    AbstractStatistic s = METRICS.computeIfAbsent(key, LongAdderCounter::new);
+    if(!(s instanceof LongAdderCounter)) {
+      throw new IllegalStateException("Metric " + key + " is not a counter.");
+    }
+    return (LongAdderCounter) s;
+  }
+
+  /**
+   * Get or create a latency histogram.
+   *
+   * @param key Histogram key
+   * @return Histogram
+   */
+  public static LatencyHistogram histogram(String key) {
+    AbstractStatistic s = METRICS.computeIfAbsent(key, LatencyHistogram::new);
+    if(!(s instanceof LatencyHistogram)) {
+      throw new IllegalStateException("Metric " + key + " is not a histogram.");
+    }
+    return (LatencyHistogram) s;
+  }
+
+  /**
+   * Finish a run: log all non-empty metrics, record them for the JSON report,
+   * and reset them to zero.
+   * <p>
+   * Metrics are reset, not removed, as long-lived queries and indexes keep
+   * references to their counters.
+   *
+   * @param name Run name
+   * @param log Logger to report to
+   */
+  public static synchronized void finishRun(String name, Logging log) {
+    StringBuilder buf = new StringBuilder(1000);
+    buf.append("{\"name\":");
+    quote(buf, name);
+    buf.append(",\"metrics\":{");
+    boolean first = true;
+    for(AbstractStatistic s : METRICS.values()) {
+      if(s instanceof LongAdderCounter) {
+        LongAdderCounter c = (LongAdderCounter) s;
+        final long v = c.getValue();
+        if(v == 0) {
+          continue;
+        }
+        if(log != null && log.isStatistics()) {
+          log.statistics(c);
+        }
+        buf.append(first ? "" : ",");
+        quote(buf, c.getKey());
+        buf.append(':').append(v);
+        c.reset();
+      }
+      else if(s instanceof LatencyHistogram) {
+        LatencyHistogram h = (LatencyHistogram) s;
+        final long n = h.getCount();
+        if(n == 0) {
+          continue;
+        }
+        if(log != null && log.isStatistics()) {
+          log.statistics(h);
+        }
+        buf.append(first ? "" : ",");
+        quote(buf, h.getKey());
+        buf.append(":{\"count\":").append(n) //
+            .append(",\"sum_ns\":").append(h.getSum()) //
+            .append(",\"mean_ns\":").append((long) h.getMean()) //
+            .append(",\"p50_ns\":").append(h.getQuantile(.5)) //
+            .append(",\"p90_ns\":").append(h.getQuantile(.9)) //
+            .append(",\"p99_ns\":").append(h.getQuantile(.99)) //
+            .append(",\"max_ns\":").append(h.getQuantile(1.)).append('}');
+        h.reset();
+      }
+      else {
+        continue;
+      }
+      first = false;
+    }
+    RUNS.add(buf.append("}}").toString());
+  }
+
+  /**
+   * Write the report of all finished runs as JSON.
+   *
+   * @param out Output
+   * @throws IOException on write errors
+   */
+  public static synchronized void writeJSON(Appendable out) throws IOException {
+    out.append("{\"runs\":[");
+    for(int i = 0; i < RUNS.size(); i++) {
+      out.append(i > 0 ? ",\n" : "\n").append(RUNS.get(i));
+    }
+    out.append("\n]}\n");
+  }
+
+  /**
+   * Remove all metrics and finished runs.
+   */
+  public static synchronized void clear() {
+    METRICS.clear();
+    RUNS.clear();
+  }
+
+  /**
+   * Append a JSON string literal.
+   *
+   * @param buf Output buffer
+   * @param s String to quote
+   */
+  private static void quote(StringBuilder buf, String s) {
+    buf.append('"');
+    for(int i = 0; i < s.length(); i++) {
+      final char c = s.charAt(i);
+      switch(c){
+      case '"':
+        buf.append("\\\"");
+        break;
+      case '\\':
+        buf.append("\\\\");
+        break;
+      case '\n':
+        buf.append("\\n");
+        break;
+      case '\r':
+        buf.append("\\r");
+        break;
+      case '\t':
+        buf.append("\\t");
+        break;
+      default:
+        if(c < 0x20) {
+          buf.append(String.format("\\u%04x", (int) c));
+        }
+        else {
+          buf.append(c);
+        }
+      }
+    }
+    buf.append('"');
+  }
+}
@@ -0,0 +1,83 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.logging.statistics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+/**
+ * Test the metrics registry and latency histograms.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ */
+public class MetricsRegistryTest {
+  @Test
+  public void testHistogram() {
+    LatencyHistogram h = new LatencyHistogram("test");
+    for(int i = 0; i < 90; i++) {
+      h.record(100);
+    }
+    for(int i = 0; i < 10; i++) {
+      h.record(10000);
+    }
+    h.record(0, 0); // Ignored
+    assertEquals(100, h.getCount());
+    assertEquals(90 * 100 + 10 * 10000, h.getSum());
+    assertEquals(1090., h.getMean(), 0.);
+    // Upper bounds of power-of-two buckets.
+    assertEquals(128, h.getQuantile(.5));
+    assertEquals(128, h.getQuantile(.9));
+    assertEquals(16384, h.getQuantile(.99));
+    assertEquals(16384, h.getQuantile(1.));
+    h.record(10000, 10);
+    assertEquals(110, h.getCount());
+    assertEquals(1024, h.getQuantile(.9));
+    h.reset();
+    assertEquals(0, h.getCount());
+    assertEquals(0, h.getQuantile(.5));
+  }
+
+  @Test
+  public void testReport() throws IOException {
+    MetricsRegistry.clear();
+    MetricsRegistry.counter("a.distancecalcs").increment(42);
+    MetricsRegistry.counter("b.unused");
+    MetricsRegistry.histogram("a.knnlatency").record(100);
+    MetricsRegistry.finishRun("run \"1\"", null);
+    assertEquals("Counters are not reset.", 0, MetricsRegistry.counter("a.distancecalcs").getValue());
+    MetricsRegistry.counter("a.distancecalcs").increment();
+    MetricsRegistry.finishRun("run2", null);
+    StringBuilder buf = new StringBuilder();
+    MetricsRegistry.writeJSON(buf);
+    MetricsRegistry.clear();
+    String json = buf.toString();
+    assertTrue(json, json.startsWith("{\"runs\":["));
+    assertTrue(json, json.contains("{\"name\":\"run \\\"1\\\"\",\"metrics\":{\"a.distancecalcs\":42,\"a.knnlatency\":{\"count\":1,"));
+    assertTrue(json, json.contains("{\"name\":\"run2\",\"metrics\":{\"a.distancecalcs\":1}}"));
+    assertFalse("Empty counters should be omitted.", json.contains("b.unused"));
+  }
+}
@@ -0,0 +1,416 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.outlier.distance;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import de.lmu.ifi.dbs.elki.algorithm.AbstractDistanceBasedAlgorithm;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.OutlierAlgorithm;
+import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayModifiableDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
+import de.lmu.ifi.dbs.elki.database.relation.DoubleRelation;
+import de.lmu.ifi.dbs.elki.database.relation.MaterializedDoubleRelation;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.DistanceFunction;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.logging.progress.FiniteProgress;
+import de.lmu.ifi.dbs.elki.logging.statistics.LongStatistic;
+import de.lmu.ifi.dbs.elki.math.DoubleMinMax;
+import de.lmu.ifi.dbs.elki.parallel.ParallelCore;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
+import de.lmu.ifi.dbs.elki.result.outlier.BasicOutlierScoreMeta;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierScoreMeta;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.heap.DoubleIntegerHeap;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.heap.DoubleIntegerMinHeap;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.heap.DoubleMaxHeap;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Description;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Title;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.Flag;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.RandomParameter;
+import de.lmu.ifi.dbs.elki.utilities.random.RandomFactory;
+
+/**
+ * Top-n distance-based outlier detection with randomization and a simple
+ * pruning rule (ORCA).
+ * <p>
+ * The data is processed in random order, in blocks of candidates. For each
+ * block, the data set is scanned (in the same random order) and the nearest
+ * neighbors of every candidate are collected. As these partial neighbor sets
+ * only improve, their score is an upper bound of the final score: a candidate
+ * is abandoned as soon as this bound falls below the score of the current
+ * n-th best outlier. Because in random data most objects find close neighbors
+ * quickly, this usually needs far fewer distance computations than the full
+ * kNN join of {@link KNNOutlier} or {@link KNNWeightOutlier}.
+ * <p>
+ * The scores of the top n objects are the same as with {@link KNNOutlier}
+ * (distance to the k nearest neighbor) or, optionally, {@link KNNWeightOutlier}
+ * (sum of the k nearest neighbor distances). All other objects are given a
+ * score of 0, as their exact score is not determined. The candidates of a
+ * block can optionally be processed in parallel.
+ * <p>
+ * Reference:
+ * <p>
+ * S. D. Bay, M. Schwabacher<br>
+ * Mining distance-based outliers in near linear time with randomization and a
+ * simple pruning rule<br>
+ * Proc. 9th ACM SIGKDD Int. Conf. on Knowledge Discovery and Data Mining
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ *
+ * @param <O> the type of objects handled by this algorithm
+ */
+@Title("ORCA: Top-n distance-based outliers with randomization and pruning")
+@Description("Top-n kNN outlier detection, abandoning candidates once their score falls below the current top-n cutoff.")
+@Reference(authors = "S. D. Bay, M. Schwabacher", //
+    title = "Mining distance-based outliers in near linear time with randomization and a simple pruning rule", //
+    booktitle = "Proc. 9th ACM SIGKDD Int. Conf. on Knowledge Discovery and Data Mining", //
+    url = "https://doi.org/10.1145/956750.956758", //
+    bibkey = "DBLP:conf/kdd/BayS03")
+public class ORCA<O> extends AbstractDistanceBasedAlgorithm<O, OutlierResult> implements OutlierAlgorithm {
+  /**
+   * The logger for this class.
+   */
+  private static final Logging LOG = Logging.getLogger(ORCA.class);
+
+  /**
+   * Number of neighbors (excluding the query point).
+   */
+  private int k;
+
+  /**
+   * Number of outliers to find.
+   */
+  private int n;
+
+  /**
+   * Number of candidates processed together.
+   */
+  private int blocksize;
+
+  /**
+   * Use the sum of distances (kNN weight) instead of the k-distance.
+   */
+  private boolean weight;
+
+  /**
+   * Process the candidates of a block in parallel.
+   */
+  private boolean parallel;
+
+  /**
+   * Random generator for the processing order.
+   */
+  private RandomFactory rnd;
+
+  /**
+   * Constructor.
+   *
+   * @param distanceFunction Distance function
+   * @param k Number of neighbors (excluding the query point)
+   * @param n Number of outliers to find
+   * @param blocksize Number of candidates processed together
+   * @param weight Use the kNN weight (sum of distances) instead of the
+   *        k-distance
+   * @param parallel Process the candidates of a block in parallel
+   * @param rnd Random generator
+   */
+  public ORCA(DistanceFunction<? super O> distanceFunction, int k, int n, int blocksize, boolean weight, boolean parallel, RandomFactory rnd) {
+    super(distanceFunction);
+    this.k = k;
+    this.n = n;
+    this.blocksize = blocksize;
+    this.weight = weight;
+    this.parallel = parallel;
+    this.rnd = rnd;
+  }
+
+  /**
+   * Run the algorithm.
+   *
+   * @param relation Data relation
+   * @return Outlier result
+   */
+  public OutlierResult run(Relation<O> relation) {
+    final DistanceQuery<O> dq = relation.getDistanceQuery(getDistanceFunction());
+    final ArrayModifiableDBIDs ids = DBIDUtil.newArray(relation.getDBIDs());
+    DBIDUtil.randomShuffle(ids, rnd);
+    final int size = ids.size(), bsize = Math.min(blocksize, size);
+    final int nchunks = parallel ? Math.max(1, Math.min(ParallelCore.getCore().getParallelism(), bsize)) : 1;
+
+    // Per-candidate state of the current block.
+    final DoubleMaxHeap[] heaps = new DoubleMaxHeap[bsize];
+    for(int i = 0; i < bsize; i++) {
+      heaps[i] = new DoubleMaxHeap(k);
+    }
+    final double[] sums = new double[bsize];
+    final boolean[] pruned = new boolean[bsize];
+    // Current top n outliers, by offset in ids.
+    DoubleIntegerMinHeap top = new DoubleIntegerMinHeap(n);
+    long pruneCount = 0;
+
+    FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("ORCA candidates", size, LOG) : null;
+    List<Callable<Long>> tasks = new ArrayList<>(nchunks);
+    for(int start = 0; start < size; start += bsize) {
+      final int end = Math.min(start + bsize, size);
+      final double cutoff = top.size() < n ? Double.NEGATIVE_INFINITY : top.peekKey();
+      for(int i = 0; i < end - start; i++) {
+        heaps[i].clear();
+        sums[i] = 0.;
+        pruned[i] = false;
+      }
+      if(nchunks > 1) {
+        tasks.clear();
+        final int csize = (end - start + nchunks - 1) / nchunks;
+        for(int cstart = start; cstart < end; cstart += csize) {
+          final int b = cstart, e = Math.min(cstart + csize, end), off = start;
+          tasks.add(() -> processCandidates(dq, ids, b, e, off, cutoff, heaps, sums, pruned));
+        }
+        for(Long c : ParallelExecutor.runAll(tasks)) {
+          pruneCount += c;
+        }
+      }
+      else {
+        pruneCount += processCandidates(dq, ids, start, end, start, cutoff, heaps, sums, pruned);
+      }
+      // Update the top n with the non-pruned candidates.
+      for(int i = start; i < end; i++) {
+        final int j = i - start;
+        if(!pruned[j]) {
+          top.add(score(heaps[j], sums[j]), i, n);
+        }
+      }
+      if(prog != null) {
+        prog.setProcessed(end, LOG);
+      }
+    }
+    LOG.ensureCompleted(prog);
+    if(LOG.isStatistics()) {
+      LOG.statistics(new LongStatistic(ORCA.class.getName() + ".pruned-candidates", pruneCount));
+    }
+
+    // Output the top n only.
+    DoubleMinMax minmax = new DoubleMinMax();
+    minmax.put(0.);
+    WritableDoubleDataStore scores = DataStoreUtil.makeDoubleStorage(relation.getDBIDs(), DataStoreFactory.HINT_STATIC, 0.);
+    DBIDArrayIter it = ids.iter();
+    for(DoubleIntegerHeap.UnsortedIter iter = top.unsortedIter(); iter.valid(); iter.advance()) {
+      scores.putDouble(it.seek(iter.getValue()), iter.getKey());
+      minmax.put(iter.getKey());
+    }
+    DoubleRelation scoreres = new MaterializedDoubleRelation(weight ? "ORCA kNN weight" : "ORCA kNN distance", "orca-outlier", scores, relation.getDBIDs());
+    OutlierScoreMeta meta = new BasicOutlierScoreMeta(minmax.getMin(), minmax.getMax(), 0., Double.POSITIVE_INFINITY, 0.);
+    return new OutlierResult(meta, scoreres);
+  }
+
+  /**
+   * Scan the data set for a range of candidates.
+   *
+   * @param dq Distance query
+   * @param ids Data set, in processing order
+   * @param begin First candidate
+   * @param end End of candidates (exclusive)
+   * @param offset Offset of the current block
+   * @param cutoff Current cutoff score
+   * @param heaps Neighbor distances of the block candidates
+   * @param sums Sum of the neighbor distances
+   * @param pruned Pruning flags
+   * @return Number of pruned candidates
+   */
+  private long processCandidates(DistanceQuery<O> dq, ArrayDBIDs ids, int begin, int end, int offset, double cutoff, DoubleMaxHeap[] heaps, double[] sums, boolean[] pruned) {
+    DBIDArrayIter cand = ids.iter();
+    int active = end - begin;
+    for(DBIDArrayIter it = ids.iter(); it.valid() && active > 0; it.advance()) {
+      for(int i = begin; i < end; i++) {
+        final int j = i - offset;
+        if(pruned[j] || i == it.getOffset()) {
+          continue;
+        }
+        final DoubleMaxHeap heap = heaps[j];
+        final double dist = dq.distance(cand.seek(i), it);
+        if(heap.size() < k) {
+          heap.add(dist);
+          sums[j] += dist;
+          if(heap.size() < k) {
+            continue;
+          }
+        }
+        else if(dist < heap.peek()) {
+          sums[j] += dist - heap.replaceTopElement(dist);
+        }
+        else {
+          continue;
+        }
+        // The neighbor set has changed; the score can only decrease further.
+        if(score(heap, sums[j]) < cutoff) {
+          pruned[j] = true;
+          --active;
+        }
+      }
+    }
+    return end - begin - active;
+  }
+
+  /**
+   * Compute the score of a candidate.
+   *
+   * @param heap Neighbor distances
+   * @param sum Sum of neighbor distances
+   * @return Score
+   */
+  private double score(DoubleMaxHeap heap, double sum) {
+    return heap.size() < k ? Double.POSITIVE_INFINITY : weight ? sum : heap.peek();
+  }
+
+  @Override
+  public TypeInformation[] getInputTypeRestriction() {
+    return TypeUtil.array(getDistanceFunction().getInputTypeRestriction());
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   *
+   * @hidden
+   *
+   * @param <O> Object type
+   */
+  public static class Parameterizer<O> extends AbstractDistanceBasedAlgorithm.Parameterizer<O> {
+    /**
+     * Parameter for the number of neighbors.
+     */
+    public static final OptionID K_ID = new OptionID("orca.k", "The k nearest neighbor, excluding the query point.");
+
+    /**
+     * Parameter for the number of outliers to find.
+     */
+    public static final OptionID N_ID = new OptionID("orca.n", "The number of top outliers to find.");
+
+    /**
+     * Parameter for the block size.
+     */
+    public static final OptionID BLOCKSIZE_ID = new OptionID("orca.blocksize", "The number of candidates to process together.");
+
+    /**
+     * Flag to use the kNN weight instead of the kNN distance.
+     */
+    public static final OptionID WEIGHT_ID = new OptionID("orca.knnw", "Use the sum of the k nearest neighbor distances (kNN weight) instead of the k-distance.");
+
+    /**
+     * Flag to enable parallel processing.
+     */
+    public static final OptionID PARALLEL_ID = new OptionID("orca.parallel", "Process the candidates of each block in parallel.");
+
+    /**
+     * Parameter for the random generator.
+     */
+    public static final OptionID SEED_ID = new OptionID("orca.seed", "The random seed for the processing order.");
+
+    /**
+     * Number of neighbors
+     */
+    protected int k;
+
+    /**
+     * Number of outliers
+     */
+    protected int n;
+
+    /**
+     * Block size
+     */
+    protected int blocksize;
+
+    /**
+     * Use the kNN weight
+     */
+    protected boolean weight;
+
+    /**
+     * Parallel processing
+     */
+    protected boolean parallel;
+
+    /**
+     * Random generator
+     */
+    protected RandomFactory rnd;
+
+    @Override
+    protected void makeOptions(Parameterization config) {
+      super.makeOptions(config);
+      final IntParameter kP = new IntParameter(K_ID) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+      if(config.grab(kP)) {
+        k = kP.getValue();
+      }
+      final IntParameter nP = new IntParameter(N_ID, 100) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+      if(config.grab(nP)) {
+        n = nP.getValue();
+      }
+      final IntParameter blocksizeP = new IntParameter(BLOCKSIZE_ID, 1000) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+      if(config.grab(blocksizeP)) {
+        blocksize = blocksizeP.getValue();
+      }
+      final Flag weightF = new Flag(WEIGHT_ID);
+      if(config.grab(weightF)) {
+        weight = weightF.isTrue();
+      }
+      final Flag parallelF = new Flag(PARALLEL_ID);
+      if(config.grab(parallelF)) {
+        parallel = parallelF.isTrue();
+      }
+      final RandomParameter rndP = new RandomParameter(SEED_ID);
+      if(config.grab(rndP)) {
+        rnd = rndP.getValue();
+      }
+    }
+
+    @Override
+    protected ORCA<O> makeInstance() {
+      return new ORCA<>(distanceFunction, k, n, blocksize, weight, parallel, rnd);
+    }
+  }
+}
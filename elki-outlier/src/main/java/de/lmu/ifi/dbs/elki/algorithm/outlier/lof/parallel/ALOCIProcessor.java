@@ -0,0 +1,174 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.outlier.lof.parallel;
+
+import de.lmu.ifi.dbs.elki.algorithm.outlier.lof.parallel.ParallelALOCI.ZOrderCountGrid;
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.parallel.Executor;
+import de.lmu.ifi.dbs.elki.parallel.processor.AbstractDoubleProcessor;
+import de.lmu.ifi.dbs.elki.parallel.variables.SharedDouble;
+
+/**
+ * Processor for the aLOCI score, used by {@link ParallelALOCI}.
+ * 
+ * @author Erich Schubert
+ * @since 0.7.5
+ *
+ * @has - - - Instance
+ *
+ * @param <O> Object type
+ */
+public class ALOCIProcessor<O extends NumberVector> extends AbstractDoubleProcessor {
+  /**
+   * Data relation
+   */
+  private Relation<O> relation;
+
+  /**
+   * Shifted count grids
+   */
+  private ZOrderCountGrid[] grids;
+
+  /**
+   * Minimum of the data extend
+   */
+  private double[] min;
+
+  /**
+   * Side length of the data extend
+   */
+  private double extent;
+
+  /**
+   * Level difference of sampling and counting neighborhoods
+   */
+  private int alpha;
+
+  /**
+   * Minimum size of a sampling neighborhood
+   */
+  private int nmin;
+
+  /**
+   * Constructor.
+   *
+   * @param relation Data relation
+   * @param grids Shifted count grids
+   * @param min Minimum of the data extend
+   * @param extent Side length of the data extend
+   * @param alpha Level difference of sampling and counting neighborhoods
+   * @param nmin Minimum size of a sampling neighborhood
+   */
+  protected ALOCIProcessor(Relation<O> relation, ZOrderCountGrid[] grids, double[] min, double extent, int alpha, int nmin) {
+    super();
+    this.relation = relation;
+    this.grids = grids;
+    this.min = min;
+    this.extent = extent;
+    this.alpha = alpha;
+    this.nmin = nmin;
+  }
+
+  @Override
+  public Instance instantiate(Executor master) {
+    return new Instance(master.getInstance(output));
+  }
+
+  /**
+   * Instance, with reusable buffers.
+   * 
+   * @author Erich Schubert
+   */
+  private class Instance extends AbstractDoubleProcessor.Instance {
+    /**
+     * Normalized position of the current object.
+     */
+    private double[] pos = new double[min.length];
+
+    /**
+     * Center of the counting neighborhood.
+     */
+    private double[] center = new double[min.length];
+
+    /**
+     * Constructor.
+     * 
+     * @param output Output variable
+     */
+    protected Instance(SharedDouble.Instance output) {
+      super(output);
+    }
+
+    @Override
+    public void map(DBIDRef id) {
+      ParallelALOCI.normalize(relation.get(id), min, extent, pos);
+      double maxmdefnorm = 0;
+      for(int l = alpha;; l++) {
+        // Counting neighborhood: the closest cell center at level l.
+        ZOrderCountGrid ci = null;
+        double best = Double.POSITIVE_INFINITY;
+        for(ZOrderCountGrid grid : grids) {
+          if(l < grid.levels) {
+            final double d = grid.distanceToCenter(pos, l);
+            if(d < best) {
+              ci = grid;
+              best = d;
+            }
+          }
+        }
+        if(ci == null) {
+          break; // No grid has this level.
+        }
+        final int cpos = ci.find(l, ci.cellKey(pos, l));
+        if(cpos < 0) {
+          break; // Not in the indexed data.
+        }
+        final int cgcount = ci.counts[l][cpos];
+        ci.cellCenter(pos, l, center);
+        // Sampling neighborhood: closest cell to this center at level l-alpha.
+        final int sl = l - alpha;
+        ZOrderCountGrid cj = null;
+        best = Double.POSITIVE_INFINITY;
+        for(ZOrderCountGrid grid : grids) {
+          if(sl < grid.samplingLevels()) {
+            final double d = grid.distanceToCenter(center, sl);
+            if(d < best) {
+              cj = grid;
+              best = d;
+            }
+          }
+        }
+        if(cj == null) {
+          continue;
+        }
+        final int spos = cj.find(sl, cj.cellKey(center, sl));
+        if(spos < 0 || cj.counts[sl][spos] < nmin) {
+          continue;
+        }
+        final double mdefnorm = ParallelALOCI.mdefNorm(cj.counts[sl][spos], cj.sqsums[sl][spos], cj.cbsums[sl][spos], cgcount);
+        maxmdefnorm = mdefnorm > maxmdefnorm ? mdefnorm : maxmdefnorm;
+      }
+      output.set(maxmdefnorm);
+    }
+  }
+}
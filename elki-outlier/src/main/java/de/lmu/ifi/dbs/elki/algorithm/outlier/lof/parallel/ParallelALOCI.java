@@ -0,0 +1,584 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.outlier.lof.parallel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+
+import de.lmu.ifi.dbs.elki.algorithm.AbstractAlgorithm;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.OutlierAlgorithm;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.lof.ALOCI;
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
+import de.lmu.ifi.dbs.elki.database.relation.DoubleRelation;
+import de.lmu.ifi.dbs.elki.database.relation.MaterializedDoubleRelation;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.database.relation.RelationUtil;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.math.DoubleMinMax;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
+import de.lmu.ifi.dbs.elki.parallel.processor.DoubleMinMaxProcessor;
+import de.lmu.ifi.dbs.elki.parallel.processor.WriteDoubleDataStoreProcessor;
+import de.lmu.ifi.dbs.elki.parallel.variables.SharedDouble;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierScoreMeta;
+import de.lmu.ifi.dbs.elki.result.outlier.QuotientOutlierScoreMeta;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+import de.lmu.ifi.dbs.elki.utilities.exceptions.AbortException;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.AbstractParameterizer;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.RandomParameter;
+import de.lmu.ifi.dbs.elki.utilities.random.RandomFactory;
+
+import net.jafama.FastMath;
+
+/**
+ * Parallel and memory-bounded variant of the "approximate Local Correlation
+ * Integral" (aLOCI) outlier detection.
+ * <p>
+ * Instead of a quadtree with one object per node, every shifted grid is stored
+ * as sorted arrays of Z-order (bit-interleaved) cell keys, with the cell counts
+ * and the sums of squared and cubed counts of the cells {@code alpha} levels
+ * below. Cells are located by binary search, so scoring does not allocate, and
+ * is performed in parallel. The number of levels stored is limited by an
+ * explicit memory budget, which also covers the temporary sorted keys used
+ * while building the grids.
+ * <p>
+ * In contrast to {@link ALOCI}, the closest cells are chosen by Euclidean
+ * distance to the cell centers, and the grid levels are power-of-two
+ * subdivisions as described in the original publication.
+ * <p>
+ * Reference:
+ * <p>
+ * S. Papadimitriou, H. Kitagawa, P. B. Gibbons and C. Faloutsos:<br>
+ * LOCI: Fast Outlier Detection Using the Local Correlation Integral.<br>
+ * In: Proc. 19th IEEE Int. Conf. on Data Engineering (ICDE '03)
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ *
+ * @composed - - - ZOrderCountGrid
+ * @composed - - - ALOCIProcessor
+ *
+ * @param <O> Object type
+ */
+@Reference(authors = "S. Papadimitriou, H. Kitagawa, P. B. Gibbons, C. Faloutsos", //
+    title = "LOCI: Fast Outlier Detection Using the Local Correlation Integral", //
+    booktitle = "Proc. 19th IEEE Int. Conf. on Data Engineering (ICDE '03)", //
+    url = "https://doi.org/10.1109/ICDE.2003.1260802", //
+    bibkey = "DBLP:conf/icde/PapadimitriouKGF03")
+public class ParallelALOCI<O extends NumberVector> extends AbstractAlgorithm<OutlierResult> implements OutlierAlgorithm {
+  /**
+   * The logger for this class.
+   */
+  private static final Logging LOG = Logging.getLogger(ParallelALOCI.class);
+
+  /**
+   * Maximum number of bits per dimension.
+   */
+  private static final int MAX_BITS = 30;
+
+  /**
+   * Minimum size of a sampling neighborhood.
+   */
+  private int nmin;
+
+  /**
+   * Alpha (level difference of sampling and counting neighborhoods)
+   */
+  private int alpha;
+
+  /**
+   * Number of grids to generate
+   */
+  private int g;
+
+  /**
+   * Memory budget for building the grids, in bytes.
+   */
+  private long memory;
+
+  /**
+   * Random generator
+   */
+  private RandomFactory rnd;
+
+  /**
+   * Constructor.
+   *
+   * @param nmin Minimum neighborhood size
+   * @param alpha Alpha value
+   * @param g Number of grids to use
+   * @param memory Memory budget for building the grids, in bytes
+   * @param rnd Random generator.
+   */
+  public ParallelALOCI(int nmin, int alpha, int g, long memory, RandomFactory rnd) {
+    super();
+    this.nmin = nmin;
+    this.alpha = alpha;
+    this.g = g;
+    this.memory = memory;
+    this.rnd = rnd;
+  }
+
+  /**
+   * Run the algorithm.
+   *
+   * @param relation Relation to process
+   * @return Outlier result
+   */
+  public OutlierResult run(Relation<O> relation) {
+    final int dim = RelationUtil.dimensionality(relation);
+    final int bits = Math.min(MAX_BITS, 63 / dim);
+    if(bits <= alpha) {
+      throw new AbortException("Data dimensionality " + dim + " too high for alpha=" + alpha + ": Z-order keys are limited to 63 bits.");
+    }
+    final Random random = rnd.getSingleThreadedRandom();
+    DBIDs ids = relation.getDBIDs();
+
+    // Compute extend of dataset, with equal lengths.
+    double[][] hbbs = RelationUtil.computeMinMax(relation);
+    final double[] min = hbbs[0];
+    double maxd = 0;
+    for(int i = 0; i < dim; i++) {
+      maxd = Math.max(maxd, hbbs[1][i] - min[i]);
+    }
+    for(int i = 0; i < dim; i++) {
+      min[i] -= (maxd - (hbbs[1][i] - min[i])) * .5;
+    }
+    // Slightly enlarge, so that the maximum is not wrapped to the minimum.
+    final double extent = maxd > 0 ? maxd * (1 + 1e-9) : 1.;
+
+    // First grid is unshifted, the others are randomly shifted.
+    final long budget = memory / g;
+    List<Callable<ZOrderCountGrid>> tasks = new ArrayList<>(g);
+    for(int i = 0; i < g; i++) {
+      final double[] shift = new double[dim];
+      for(int d = 0; i > 0 && d < dim; d++) {
+        shift[d] = random.nextDouble();
+      }
+      tasks.add(() -> new ZOrderCountGrid(relation, ids, min, extent, shift, bits, alpha, nmin, budget));
+    }
+    List<ZOrderCountGrid> grids = ParallelExecutor.runAll(tasks);
+    if(LOG.isVerbose()) {
+      StringBuilder buf = new StringBuilder(100).append("aLOCI grid levels:");
+      long bytes = 0;
+      for(ZOrderCountGrid grid : grids) {
+        buf.append(' ').append(grid.levels);
+        bytes += grid.memoryUsage();
+      }
+      LOG.verbose(buf.append(", memory used: ").append(bytes >> 20).append(" MB").toString());
+    }
+    for(ZOrderCountGrid grid : grids) {
+      if(grid.levels <= alpha) {
+        LOG.warning("Memory budget or data set size too small to use a counting level in some grid.");
+        break;
+      }
+    }
+
+    WritableDoubleDataStore mdef_norm = DataStoreUtil.makeDoubleStorage(ids, DataStoreFactory.HINT_STATIC);
+    ALOCIProcessor<O> alocim = new ALOCIProcessor<>(relation, grids.toArray(new ZOrderCountGrid[g]), min, extent, alpha, nmin);
+    SharedDouble scorev = new SharedDouble();
+    alocim.connectOutput(scorev);
+    WriteDoubleDataStoreProcessor storem = new WriteDoubleDataStoreProcessor(mdef_norm);
+    storem.connectInput(scorev);
+    DoubleMinMaxProcessor mmm = new DoubleMinMaxProcessor();
+    mmm.connectInput(scorev);
+    ParallelExecutor.run(ids, alocim, storem, mmm);
+
+    DoubleMinMax minmax = mmm.getMinMax();
+    DoubleRelation scoreResult = new MaterializedDoubleRelation("aLOCI normalized MDEF", "aloci-mdef-outlier", mdef_norm, ids);
+    OutlierScoreMeta scoreMeta = new QuotientOutlierScoreMeta(minmax.getMin(), minmax.getMax(), 0.0, Double.POSITIVE_INFINITY);
+    return new OutlierResult(scoreMeta, scoreResult);
+  }
+
+  /**
+   * Compute the normalized MDEF.
+   *
+   * @param sncount Sampling neighborhood count
+   * @param sq Sum of squared counts in the sampling neighborhood
+   * @param cb Sum of cubed counts in the sampling neighborhood
+   * @param cgcount Counting neighborhood count
+   * @return MDEF norm
+   */
+  protected static double mdefNorm(long sncount, long sq, double cb, long cgcount) {
+    // All counting neighborhoods contain at most one object: no outlier.
+    if(sq == sncount) {
+      return 0.0;
+    }
+    final double n_hat = (double) sq / sncount;
+    final double sig_n_hat = FastMath.sqrt(cb * sncount - (double) sq * sq) / sncount;
+    // Avoid NaN - correct result 0.0?
+    if(!(sig_n_hat >= Double.MIN_NORMAL)) {
+      return 0.0;
+    }
+    return (n_hat - cgcount) / sig_n_hat;
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  @Override
+  public TypeInformation[] getInputTypeRestriction() {
+    return TypeUtil.array(TypeUtil.NUMBER_VECTOR_FIELD);
+  }
+
+  /**
+   * Shifted grid, with cell counts stored in sorted arrays of Z-order keys.
+   * <p>
+   * Level {@code l} divides each dimension into {@code 2^l} intervals; the key
+   * of a cell at level {@code l} interleaves the {@code l} most significant
+   * bits of each coordinate, so all descendants of a cell form a contiguous
+   * range of the next levels.
+   *
+   * @author Erich Schubert
+   */
+  static class ZOrderCountGrid {
+    /**
+     * Grid shift, in normalized coordinates.
+     */
+    final double[] shift;
+
+    /**
+     * Number of levels stored.
+     */
+    final int levels;
+
+    /**
+     * Sorted cell keys, for each level.
+     */
+    final long[][] keys;
+
+    /**
+     * Cell counts, for each level.
+     */
+    final int[][] counts;
+
+    /**
+     * Sum of squared counts of the cells {@code alpha} levels below.
+     */
+    final long[][] sqsums;
+
+    /**
+     * Sum of cubed counts of the cells {@code alpha} levels below.
+     */
+    final double[][] cbsums;
+
+    /**
+     * Constructor.
+     *
+     * @param relation Data relation
+     * @param ids Object IDs
+     * @param min Minimum of the (cubic) data extend
+     * @param extent Side length of the data extend
+     * @param shift Grid shift, in normalized coordinates
+     * @param bits Maximum number of bits per dimension
+     * @param alpha Level difference of sampling and counting neighborhoods
+     * @param nmin Minimum size of a sampling neighborhood
+     * @param budget Memory budget in bytes, including the temporary keys
+     */
+    ZOrderCountGrid(Relation<? extends NumberVector> relation, DBIDs ids, double[] min, double extent, double[] shift, int bits, int alpha, int nmin, long budget) {
+      this.shift = shift;
+      final int dim = shift.length;
+      // Compute the full-resolution keys, and sort them.
+      long[] all = new long[ids.size()];
+      double[] pos = new double[dim];
+      int p = 0;
+      for(DBIDIter it = ids.iter(); it.valid(); it.advance()) {
+        normalize(relation.get(it), min, extent, pos);
+        all[p++] = cellKey(pos, bits);
+      }
+      Arrays.sort(all);
+
+      long[][] keys = new long[bits + 1][];
+      int[][] counts = new int[bits + 1][];
+      long[][] sqsums = new long[bits + 1][];
+      double[][] cbsums = new double[bits + 1][];
+      // The sorted keys are kept while the levels are built.
+      long used = all.length * 8L;
+      int l = 0;
+      for(; l <= bits; l++) {
+        final int s = dim * (bits - l);
+        // Count the non-empty cells, and the largest sampling cell.
+        int cells = 0;
+        long prev = -1;
+        for(long k : all) {
+          if((k >>> s) != prev) {
+            prev = k >>> s;
+            ++cells;
+          }
+        }
+        final long need = cells * 12L + (l >= alpha ? keys[l - alpha].length * 16L : 0L);
+        if(used + need > budget) {
+          break;
+        }
+        if(l >= alpha) {
+          int maxcount = 0;
+          for(int c : counts[l - alpha]) {
+            maxcount = Math.max(maxcount, c);
+          }
+          if(maxcount < nmin) {
+            break; // Sampling neighborhoods too small.
+          }
+        }
+        used += need;
+        long[] lkeys = keys[l] = new long[cells];
+        int[] lcounts = counts[l] = new int[cells];
+        int c = -1;
+        prev = -1;
+        for(long k : all) {
+          if((k >>> s) != prev) {
+            lkeys[++c] = prev = k >>> s;
+          }
+          ++lcounts[c];
+        }
+        if(l >= alpha) {
+          final long[] pkeys = keys[l - alpha];
+          final long[] psq = sqsums[l - alpha] = new long[pkeys.length];
+          final double[] pcb = cbsums[l - alpha] = new double[pkeys.length];
+          final int ps = dim * alpha;
+          for(int i = 0, j = 0; i < cells; i++) {
+            // Both levels are sorted, so the parent position is monotone.
+            while(pkeys[j] != (lkeys[i] >>> ps)) {
+              ++j;
+            }
+            final long cnt = lcounts[i];
+            psq[j] += cnt * cnt;
+            pcb[j] += (double) cnt * cnt * cnt;
+          }
+        }
+      }
+      this.levels = l;
+      this.keys = Arrays.copyOf(keys, l);
+      this.counts = Arrays.copyOf(counts, l);
+      this.sqsums = Arrays.copyOf(sqsums, Math.max(l - alpha, 0));
+      this.cbsums = Arrays.copyOf(cbsums, Math.max(l - alpha, 0));
+    }
+
+    /**
+     * Number of levels with sampling neighborhood statistics.
+     *
+     * @return Number of sampling levels
+     */
+    int samplingLevels() {
+      return sqsums.length;
+    }
+
+    /**
+     * Find a cell.
+     *
+     * @param level Level
+     * @param key Cell key
+     * @return Cell index, or a negative value
+     */
+    int find(int level, long key) {
+      return Arrays.binarySearch(keys[level], key);
+    }
+
+    /**
+     * Compute the key of the cell containing a position.
+     *
+     * @param pos Normalized position
+     * @param level Level
+     * @return Cell key
+     */
+    long cellKey(double[] pos, int level) {
+      final int dim = shift.length;
+      final long scale = 1L << level;
+      long key = 0;
+      for(int d = 0; d < dim; d++) {
+        final long c = (long) (shifted(pos, d) * scale);
+        // Bit b of dimension d goes to position b * dim + (dim - 1 - d).
+        for(int b = 0, o = dim - 1 - d; b < level; b++, o += dim) {
+          key |= ((c >>> b) & 1L) << o;
+        }
+      }
+      return key;
+    }
+
+    /**
+     * Squared distance of a position to the center of its cell.
+     *
+     * @param pos Normalized position
+     * @param level Level
+     * @return Squared distance
+     */
+    double distanceToCenter(double[] pos, int level) {
+      final long scale = 1L << level;
+      double sum = 0;
+      for(int d = 0; d < shift.length; d++) {
+        final double v = shifted(pos, d) * scale;
+        final double diff = (v - FastMath.floor(v) - .5) / scale;
+        sum += diff * diff;
+      }
+      return sum;
+    }
+
+    /**
+     * Compute the center of the cell containing a position.
+     *
+     * @param pos Normalized position
+     * @param level Level
+     * @param center Output array for the normalized, unshifted center
+     */
+    void cellCenter(double[] pos, int level, double[] center) {
+      final long scale = 1L << level;
+      for(int d = 0; d < shift.length; d++) {
+        final double c = (FastMath.floor(shifted(pos, d) * scale) + .5) / scale - shift[d];
+        center[d] = c - FastMath.floor(c);
+      }
+    }
+
+    /**
+     * Shift and wrap a single dimension.
+     *
+     * @param pos Normalized position
+     * @param d Dimension
+     * @return Shifted position in [0:1)
+     */
+    private double shifted(double[] pos, int d) {
+      final double v = pos[d] + shift[d];
+      return v - FastMath.floor(v);
+    }
+
+    /**
+     * Estimate the memory used by this grid.
+     *
+     * @return Memory usage in bytes
+     */
+    long memoryUsage() {
+      long bytes = 0;
+      for(long[] k : keys) {
+        bytes += k.length * 12L;
+      }
+      for(long[] s : sqsums) {
+        bytes += s.length * 16L;
+      }
+      return bytes;
+    }
+  }
+
+  /**
+   * Normalize a vector to the unit cube.
+   *
+   * @param vec Input vector
+   * @param min Minimum of the data extend
+   * @param extent Side length of the data extend
+   * @param pos Output array
+   */
+  static void normalize(NumberVector vec, double[] min, double extent, double[] pos) {
+    for(int d = 0; d < pos.length; d++) {
+      pos[d] = (vec.doubleValue(d) - min[d]) / extent;
+    }
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   *
+   * @hidden
+   *
+   * @param <O> Object type
+   */
+  public static class Parameterizer<O extends NumberVector> extends AbstractParameterizer {
+    /**
+     * Parameter to specify the memory budget of the grids, in megabytes.
+     */
+    public static final OptionID MEMORY_ID = new OptionID("aloci.memory", "Memory budget for building the grid counts, in megabytes.");
+
+    /**
+     * Neighborhood minimum size
+     */
+    protected int nmin = 0;
+
+    /**
+     * Alpha: number of levels difference to use in comparison
+     */
+    protected int alpha = 4;
+
+    /**
+     * G: number of shifted grids to create.
+     */
+    protected int g = 1;
+
+    /**
+     * Memory budget, in bytes.
+     */
+    protected long memory;
+
+    /**
+     * Random generator
+     */
+    protected RandomFactory rnd;
+
+    @Override
+    protected void makeOptions(Parameterization config) {
+      super.makeOptions(config);
+      final IntParameter nminP = new IntParameter(ALOCI.Parameterizer.NMIN_ID, 20);
+      if(config.grab(nminP)) {
+        nmin = nminP.getValue();
+      }
+
+      final IntParameter gP = new IntParameter(ALOCI.Parameterizer.GRIDS_ID, 1) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+      if(config.grab(gP)) {
+        g = gP.getValue();
+      }
+
+      final RandomParameter rndP = new RandomParameter(ALOCI.Parameterizer.SEED_ID);
+      if(config.grab(rndP)) {
+        rnd = rndP.getValue();
+      }
+
+      final IntParameter alphaP = new IntParameter(ALOCI.Parameterizer.ALPHA_ID, 4) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+      if(config.grab(alphaP)) {
+        alpha = alphaP.getValue();
+      }
+
+      final IntParameter memoryP = new IntParameter(MEMORY_ID, 1024) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+      if(config.grab(memoryP)) {
+        memory = memoryP.getValue() * (1L << 20);
+      }
+    }
+
+    @Override
+    protected ParallelALOCI<O> makeInstance() {
+      return new ParallelALOCI<>(nmin, alpha, g, memory, rnd);
+    }
+  }
+}
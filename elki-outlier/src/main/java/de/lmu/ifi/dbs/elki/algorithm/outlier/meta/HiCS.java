@@ -21,6 +21,7 @@
 package de.lmu.ifi.dbs.elki.algorithm.outlier.meta;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.Collections;
 import java.util.Comparator;
@@ -28,6 +29,7 @@ import java.util.List;
 import java.util.Random;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
 
 import de.lmu.ifi.dbs.elki.algorithm.AbstractAlgorithm;
 import de.lmu.ifi.dbs.elki.algorithm.outlier.OutlierAlgorithm;
@@ -42,6 +44,7 @@ import de.lmu.ifi.dbs.elki.database.ProxyDatabase;
 import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
 import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
 import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableIntegerDataStore;
 import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
 import de.lmu.ifi.dbs.elki.database.ids.ArrayModifiableDBIDs;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
@@ -54,11 +57,17 @@ import de.lmu.ifi.dbs.elki.database.relation.ProjectedView;
 import de.lmu.ifi.dbs.elki.database.relation.Relation;
 import de.lmu.ifi.dbs.elki.database.relation.RelationUtil;
 import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.logging.statistics.Counter;
+import de.lmu.ifi.dbs.elki.logging.statistics.LongAdderCounter;
+import de.lmu.ifi.dbs.elki.logging.statistics.MetricsRegistry;
+import de.lmu.ifi.dbs.elki.logging.progress.AbstractProgress;
 import de.lmu.ifi.dbs.elki.logging.progress.FiniteProgress;
 import de.lmu.ifi.dbs.elki.logging.progress.IndefiniteProgress;
 import de.lmu.ifi.dbs.elki.math.DoubleMinMax;
+import de.lmu.ifi.dbs.elki.math.MeanVariance;
 import de.lmu.ifi.dbs.elki.math.statistics.tests.GoodnessOfFitTest;
 import de.lmu.ifi.dbs.elki.math.statistics.tests.KolmogorovSmirnovTest;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
 import de.lmu.ifi.dbs.elki.result.outlier.BasicOutlierScoreMeta;
 import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
 import de.lmu.ifi.dbs.elki.result.outlier.OutlierScoreMeta;
@@ -75,6 +84,7 @@ import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.DoubleParameter;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.ObjectParameter;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.RandomParameter;
+import de.lmu.ifi.dbs.elki.utilities.random.FastNonThreadsafeRandom;
 import de.lmu.ifi.dbs.elki.utilities.random.RandomFactory;
 import net.jafama.FastMath;
 
@@ -87,6 +97,10 @@ import net.jafama.FastMath;
  * F. Keller, E. Müller, K. Böhm<br>
  * HiCS: High Contrast Subspaces for Density-Based Outlier Ranking<br>
  * Proc. IEEE 28th Int. Conf. on Data Engineering (ICDE 2012)
+ * <p>
+ * The contrast of the candidate subspaces is evaluated in parallel. Optionally,
+ * the Monte-Carlo iterations of a candidate can be stopped early, once its
+ * contrast is clearly below the current top candidates.
  *
  * @author Jan Brusis
  * @author Erich Schubert
@@ -116,6 +130,17 @@ public class HiCS<V extends NumberVector> extends AbstractAlgorithm<OutlierResul
    */
   private static final int MAX_RETRIES = 100;
 
+  /**
+   * Minimum number of Monte-Carlo iterations before early termination.
+   */
+  private static final int MIN_ITERATIONS = 10;
+
+  /**
+   * Maximum number of candidates evaluated in parallel before updating the
+   * cutoff, when using early termination.
+   */
+  private static final int BATCH_SIZE = 64;
+
   /**
    * Monte-Carlo iterations.
    */
@@ -146,6 +171,11 @@ public class HiCS<V extends NumberVector> extends AbstractAlgorithm<OutlierResul
    */
   private RandomFactory rnd;
 
+  /**
+   * Confidence factor for early termination, 0 to disable.
+   */
+  private double confidence;
+
   /**
    * Constructor.
    * 
@@ -157,6 +187,21 @@ public class HiCS<V extends NumberVector> extends AbstractAlgorithm<OutlierResul
    * @param rnd Random generator
    */
   public HiCS(int m, double alpha, OutlierAlgorithm outlierAlgorithm, GoodnessOfFitTest statTest, int cutoff, RandomFactory rnd) {
+    this(m, alpha, outlierAlgorithm, statTest, cutoff, rnd, 0.);
+  }
+
+  /**
+   * Constructor.
+   * 
+   * @param m value of m
+   * @param alpha value of alpha
+   * @param outlierAlgorithm Inner outlier detection algorithm
+   * @param statTest Test to use
+   * @param cutoff Candidate limit
+   * @param rnd Random generator
+   * @param confidence Confidence factor for early termination, 0 to disable
+   */
+  public HiCS(int m, double alpha, OutlierAlgorithm outlierAlgorithm, GoodnessOfFitTest statTest, int cutoff, RandomFactory rnd, double confidence) {
     super();
     this.m = m;
     this.alpha = alpha;
@@ -164,6 +209,7 @@ public class HiCS<V extends NumberVector> extends AbstractAlgorithm<OutlierResul
     this.statTest = statTest;
     this.cutoff = cutoff;
     this.rnd = rnd;
+    this.confidence = confidence;
   }
 
   /**
@@ -176,7 +222,7 @@ public class HiCS<V extends NumberVector> extends AbstractAlgorithm<OutlierResul
   public OutlierResult run(Relation<V> relation) {
     final DBIDs ids = relation.getDBIDs();
 
-    ArrayList<ArrayDBIDs> subspaceIndex = buildOneDimIndexes(relation);
+    OneDimIndex[] subspaceIndex = buildOneDimIndexes(relation);
     Set<HiCSSubspace> subspaces = calculateSubspaces(relation, subspaceIndex, rnd.getSingleThreadedRandom());
 
     if(LOG.isVerbose()) {
@@ -225,25 +271,20 @@ public class HiCS<V extends NumberVector> extends AbstractAlgorithm<OutlierResul
 
   /**
    * Calculates "index structures" for every attribute, i.e. sorts a
-   * ModifiableArray of every DBID in the database for every dimension and
-   * stores them in a list
+   * ModifiableArray of every DBID in the database for every dimension, and
+   * stores them along with the sorted values and ranks.
    * 
    * @param relation Relation to index
-   * @return List of sorted objects
+   * @return Sorted objects, for each dimension
    */
-  private ArrayList<ArrayDBIDs> buildOneDimIndexes(Relation<? extends NumberVector> relation) {
+  private OneDimIndex[] buildOneDimIndexes(Relation<? extends NumberVector> relation) {
     final int dim = RelationUtil.dimensionality(relation);
-    ArrayList<ArrayDBIDs> subspaceIndex = new ArrayList<>(dim + 1);
-
-    SortDBIDsBySingleDimension comp = new VectorUtil.SortDBIDsBySingleDimension(relation);
+    List<Callable<OneDimIndex>> tasks = new ArrayList<>(dim);
     for(int i = 0; i < dim; i++) {
-      ArrayModifiableDBIDs amDBIDs = DBIDUtil.newArray(relation.getDBIDs());
-      comp.setDimension(i);
-      amDBIDs.sort(comp);
-      subspaceIndex.add(amDBIDs);
+      final int d = i;
+      tasks.add(() -> new OneDimIndex(relation, d));
     }
-
-    return subspaceIndex;
+    return ParallelExecutor.runAll(tasks).toArray(new OneDimIndex[dim]);
   }
 
   /**
@@ -251,9 +292,10 @@ public class HiCS<V extends NumberVector> extends AbstractAlgorithm<OutlierResul
    * 
    * @param relation the relation the HiCS should be evaluated for
    * @param subspaceIndex Subspace indexes
+   * @param random Random generator
    * @return a set of high contrast subspaces
    */
-  private Set<HiCSSubspace> calculateSubspaces(Relation<? extends NumberVector> relation, ArrayList<ArrayDBIDs> subspaceIndex, Random random) {
+  private Set<HiCSSubspace> calculateSubspaces(Relation<? extends NumberVector> relation, OneDimIndex[] subspaceIndex, Random random) {
     final int dbdim = RelationUtil.dimensionality(relation);
 
     FiniteProgress dprog = LOG.isVerbose() ? new FiniteProgress("Subspace dimensionality", dbdim, LOG) : null;
@@ -265,16 +307,19 @@ public class HiCS<V extends NumberVector> extends AbstractAlgorithm<OutlierResul
     TopBoundedHeap<HiCSSubspace> dDimensionalList = new TopBoundedHeap<>(cutoff, HiCSSubspace.SORT_BY_CONTRAST_ASC);
     FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("Generating two-element subsets", (dbdim * (dbdim - 1)) >> 1, LOG) : null;
     // compute two-element sets of subspaces
+    ArrayList<HiCSSubspace> candidates = new ArrayList<>((dbdim * (dbdim - 1)) >> 1);
     for(int i = 0; i < dbdim; i++) {
       for(int j = i + 1; j < dbdim; j++) {
         HiCSSubspace ts = new HiCSSubspace();
         ts.set(i);
         ts.set(j);
-        calculateContrast(relation, ts, subspaceIndex, random);
-        dDimensionalList.add(ts);
-        LOG.incrementProcessed(prog);
+        candidates.add(ts);
       }
     }
+    final String key = this.getClass().getName() + ".skipped-iterations";
+    final Counter skipped = MetricsRegistry.isEnabled() ? MetricsRegistry.counter(key) : //
+        LOG.isStatistics() && confidence > 0 ? new LongAdderCounter(key) : null;
+    evaluateCandidates(candidates, dDimensionalList, relation.size(), subspaceIndex, random, prog, skipped);
     LOG.ensureCompleted(prog);
 
     IndefiniteProgress qprog = LOG.isVerbose() ? new IndefiniteProgress("Testing subspace candidates", LOG) : null;
@@ -294,6 +339,7 @@ public class HiCS<V extends NumberVector> extends AbstractAlgorithm<OutlierResul
       Collections.sort(candidateList, HiCSSubspace.SORT_BY_SUBSPACE);
 
       // TODO: optimize APRIORI style, by not even computing the bit set or?
+      candidates.clear();
       for(int i = 0; i < candidateList.size() - 1; i++) {
         for(int j = i + 1; j < candidateList.size(); j++) {
           HiCSSubspace set1 = candidateList.get(i), set2 = candidateList.get(j);
@@ -304,12 +350,10 @@ public class HiCS<V extends NumberVector> extends AbstractAlgorithm<OutlierResul
           if(joinedSet.cardinality() != d) {
             continue;
           }
-
-          calculateContrast(relation, joinedSet, subspaceIndex, random);
-          dDimensionalList.add(joinedSet);
-          LOG.incrementProcessed(qprog);
+          candidates.add(joinedSet);
         }
       }
+      evaluateCandidates(candidates, dDimensionalList, relation.size(), subspaceIndex, random, qprog, skipped);
       // Prune
       for(HiCSSubspace cand : candidateList) {
         for(Heap<HiCSSubspace>.UnorderedIter it = dDimensionalList.unorderedIter(); it.valid(); it.advance()) {
@@ -321,6 +365,9 @@ public class HiCS<V extends NumberVector> extends AbstractAlgorithm<OutlierResul
       }
     }
     LOG.setCompleted(qprog);
+    if(skipped != null && !MetricsRegistry.isEnabled()) {
+      LOG.statistics(skipped);
+    }
     if(dprog != null) {
       dprog.setProcessed(dbdim, LOG);
       dprog.ensureCompleted(LOG);
@@ -328,46 +375,103 @@ public class HiCS<V extends NumberVector> extends AbstractAlgorithm<OutlierResul
     return subspaceList;
   }
 
+  /**
+   * Evaluate the contrast of a list of candidate subspaces in parallel, and
+   * add them to the heap of the best candidates.
+   * <p>
+   * With early termination, candidates are processed in batches of fixed size,
+   * and the current cutoff of the top candidates is only updated in between
+   * batches. Together with the per-candidate random seeds, the result
+   * therefore does not depend on the number of threads used.
+   * 
+   * @param candidates Candidates to evaluate
+   * @param heap Heap of the best candidates
+   * @param size Data set size
+   * @param subspaceIndex Subspace indexes
+   * @param random Random generator
+   * @param prog Progress
+   * @param skipped Counter for skipped iterations, may be {@code null}
+   */
+  private void evaluateCandidates(List<HiCSSubspace> candidates, TopBoundedHeap<HiCSSubspace> heap, int size, OneDimIndex[] subspaceIndex, Random random, AbstractProgress prog, Counter skipped) {
+    final int batchsize = confidence > 0 ? Math.min(cutoff, BATCH_SIZE) : Math.max(candidates.size(), 1);
+    List<Callable<Void>> tasks = new ArrayList<>(Math.min(batchsize, candidates.size()));
+    for(int start = 0; start < candidates.size(); start += batchsize) {
+      final int end = Math.min(start + batchsize, candidates.size());
+      // Contrast needed to enter the current top candidates.
+      final double threshold = heap.size() < cutoff ? Double.NEGATIVE_INFINITY : heap.peek().contrast;
+      tasks.clear();
+      for(int i = start; i < end; i++) {
+        final HiCSSubspace cand = candidates.get(i);
+        final Random crandom = new FastNonThreadsafeRandom(random.nextLong());
+        tasks.add(() -> {
+          calculateContrast(cand, subspaceIndex, size, crandom, threshold, skipped);
+          LOG.incrementProcessed(prog);
+          return null;
+        });
+      }
+      ParallelExecutor.runAll(tasks);
+      for(int i = start; i < end; i++) {
+        heap.add(candidates.get(i));
+      }
+    }
+  }
+
   /**
    * Calculates the actual contrast of a given subspace.
+   * <p>
+   * If a confidence factor is set, the Monte-Carlo iterations stop as soon as
+   * the upper confidence bound of the contrast falls below the threshold.
    * 
-   * @param relation Relation to process
    * @param subspace Subspace
    * @param subspaceIndex Subspace indexes
+   * @param size Data set size
+   * @param random Random generator
+   * @param threshold Contrast threshold for early termination
+   * @param skipped Counter for skipped iterations, may be {@code null}
    */
-  private void calculateContrast(Relation<? extends NumberVector> relation, HiCSSubspace subspace, ArrayList<ArrayDBIDs> subspaceIndex, Random random) {
+  private void calculateContrast(HiCSSubspace subspace, OneDimIndex[] subspaceIndex, int size, Random random, double threshold, Counter skipped) {
     final int card = subspace.cardinality();
     final double alpha1 = FastMath.pow(alpha, (1.0 / card));
-    final int windowsize = (int) (relation.size() * alpha1);
-    final FiniteProgress prog = LOG.isDebugging() ? new FiniteProgress("Monte-Carlo iterations", m, LOG) : null;
+    final int windowsize = (int) (size * alpha1);
+    final boolean adaptive = confidence > 0 && threshold > Double.NEGATIVE_INFINITY;
 
+    final OneDimIndex[] dims = new OneDimIndex[card];
+    for(int j = subspace.nextSetBit(0), k = 0; j >= 0; j = subspace.nextSetBit(j + 1)) {
+      dims[k++] = subspaceIndex[j];
+    }
+    final int[] starts = new int[card];
+    final double[] sampleBuffer = new double[windowsize];
+    // The values are presorted, so the KS test can use them directly.
+    final boolean ks = statTest instanceof KolmogorovSmirnovTest;
+    final double[] fullBuffer = ks ? null : new double[size];
+    MeanVariance mv = new MeanVariance();
     int retries = 0;
     double deviationSum = 0.0;
     for(int i = 0; i < m; i++) {
-      // Choose a random set bit.
-      int chosen = -1;
-      for(int tmp = random.nextInt(card); tmp >= 0; tmp--) {
-        chosen = subspace.nextSetBit(chosen + 1);
+      // Choose a random dimension, and a random window for all others.
+      final int chosen = random.nextInt(card);
+      for(int j = 0; j < card; j++) {
+        starts[j] = j == chosen ? -1 : random.nextInt(size - windowsize);
       }
-      // initialize sample
-      DBIDs conditionalSample = relation.getDBIDs();
-
-      for(int j = subspace.nextSetBit(0); j >= 0; j = subspace.nextSetBit(j + 1)) {
-        if(j == chosen) {
-          continue;
-        }
-        ArrayDBIDs sortedIndices = subspaceIndex.get(j);
-        ArrayModifiableDBIDs indexBlock = DBIDUtil.newArray(windowsize);
-        // initialize index block
-        DBIDArrayIter iter = sortedIndices.iter();
-        iter.seek(random.nextInt(relation.size() - windowsize));
-        for(int k = 0; k < windowsize; k++, iter.advance()) {
-          indexBlock.add(iter); // select index block
+      // The conditional sample are the objects within all windows; we iterate
+      // over the first window, and check the ranks in the other dimensions.
+      final int first = chosen == 0 ? 1 : 0;
+      final int firstend = starts[first] + windowsize;
+      final OneDimIndex cidx = dims[chosen];
+      int l = 0;
+      candidates: for(DBIDArrayIter iter = dims[first].sorted.iter().seek(starts[first]); iter.getOffset() < firstend; iter.advance()) {
+        for(int j = first + 1; j < card; j++) {
+          if(j == chosen) {
+            continue;
+          }
+          final int r = dims[j].rank.intValue(iter) - starts[j];
+          if(r < 0 || r >= windowsize) {
+            continue candidates;
+          }
         }
-
-        conditionalSample = DBIDUtil.intersection(conditionalSample, indexBlock);
+        sampleBuffer[l++] = cidx.values[cidx.rank.intValue(iter)];
       }
-      if(conditionalSample.size() < 10) {
+      if(l < 10) {
         retries++;
         if(LOG.isDebugging()) {
           LOG.debug("Sample size very small. Retry no. " + retries);
@@ -380,33 +484,33 @@ public class HiCS<V extends NumberVector> extends AbstractAlgorithm<OutlierResul
           continue;
         }
       }
-      // Project conditional set
-      double[] sampleValues = new double[conditionalSample.size()];
-      {
-        int l = 0;
-        for(DBIDIter iter = conditionalSample.iter(); iter.valid(); iter.advance()) {
-          sampleValues[l++] = relation.get(iter).doubleValue(chosen);
-        }
+      final double contrast;
+      if(ks) {
+        Arrays.sort(sampleBuffer, 0, l);
+        contrast = KolmogorovSmirnovTest.calculateTestStatistic(cidx.values, cidx.values.length, sampleBuffer, l);
       }
-      // Project full set
-      double[] fullValues = new double[relation.size()];
-      {
-        int l = 0;
-        for(DBIDIter iter = subspaceIndex.get(chosen).iter(); iter.valid(); iter.advance()) {
-          fullValues[l++] = relation.get(iter).doubleValue(chosen);
-        }
+      else {
+        // Other tests may modify (sort) their inputs, so we pass copies.
+        System.arraycopy(cidx.values, 0, fullBuffer, 0, size);
+        contrast = statTest.deviation(fullBuffer, Arrays.copyOf(sampleBuffer, l));
       }
-      double contrast = statTest.deviation(fullValues, sampleValues);
       if(Double.isNaN(contrast)) {
         i--;
         LOG.warning("Contrast was NaN");
         continue;
       }
       deviationSum += contrast;
-      LOG.incrementProcessed(prog);
+      mv.put(contrast);
+      // Stop early if this subspace clearly will not be in the top candidates.
+      if(adaptive && i + 1 >= MIN_ITERATIONS && i + 1 < m //
+          && mv.getMean() + confidence * FastMath.sqrt(mv.getSampleVariance() / mv.getCount()) < threshold) {
+        if(skipped != null) {
+          skipped.increment(m - i - 1);
+        }
+        break;
+      }
     }
-    LOG.ensureCompleted(prog);
-    subspace.contrast = deviationSum / m;
+    subspace.contrast = deviationSum / mv.getCount();
   }
 
   @Override
@@ -419,6 +523,48 @@ public class HiCS<V extends NumberVector> extends AbstractAlgorithm<OutlierResul
     return LOG;
   }
 
+  /**
+   * Objects sorted by a single dimension, with their values and ranks.
+   * 
+   * @author Erich Schubert
+   */
+  private static class OneDimIndex {
+    /**
+     * Objects, sorted by the dimension.
+     */
+    final ArrayDBIDs sorted;
+
+    /**
+     * Values, in sorted order.
+     */
+    final double[] values;
+
+    /**
+     * Position of each object in the sorted order.
+     */
+    final WritableIntegerDataStore rank;
+
+    /**
+     * Constructor.
+     *
+     * @param relation Relation to index
+     * @param dim Dimension
+     */
+    OneDimIndex(Relation<? extends NumberVector> relation, int dim) {
+      ArrayModifiableDBIDs amDBIDs = DBIDUtil.newArray(relation.getDBIDs());
+      SortDBIDsBySingleDimension comp = new VectorUtil.SortDBIDsBySingleDimension(relation);
+      comp.setDimension(dim);
+      amDBIDs.sort(comp);
+      sorted = amDBIDs;
+      values = new double[amDBIDs.size()];
+      rank = DataStoreUtil.makeIntegerStorage(relation.getDBIDs(), DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_TEMP);
+      for(DBIDArrayIter iter = amDBIDs.iter(); iter.valid(); iter.advance()) {
+        values[iter.getOffset()] = relation.get(iter).doubleValue(dim);
+        rank.putInt(iter, iter.getOffset());
+      }
+    }
+  }
+
   /**
    * BitSet that holds a contrast value as field. Used for the representation of
    * a subspace in HiCS
@@ -540,6 +686,11 @@ public class HiCS<V extends NumberVector> extends AbstractAlgorithm<OutlierResul
      */
     public static final OptionID SEED_ID = new OptionID("hics.seed", "The random seed.");
 
+    /**
+     * Parameter for adaptive early termination of the Monte-Carlo iterations.
+     */
+    public static final OptionID CONFIDENCE_ID = new OptionID("hics.confidence", "Confidence factor (in standard errors) to stop the Monte-Carlo iterations early, once a candidate is clearly below the current top candidates. 0 disables early termination.");
+
     /**
      * Holds the value of {@link #M_ID}.
      */
@@ -570,6 +721,11 @@ public class HiCS<V extends NumberVector> extends AbstractAlgorithm<OutlierResul
      */
     private RandomFactory rnd;
 
+    /**
+     * Confidence factor for early termination.
+     */
+    private double confidence = 0.;
+
     @Override
     protected void makeOptions(Parameterization config) {
       super.makeOptions(config);
@@ -605,11 +761,17 @@ public class HiCS<V extends NumberVector> extends AbstractAlgorithm<OutlierResul
       if(config.grab(rndP)) {
         rnd = rndP.getValue();
       }
+
+      final DoubleParameter confidenceP = new DoubleParameter(CONFIDENCE_ID, 0.) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ZERO_DOUBLE);
+      if(config.grab(confidenceP)) {
+        confidence = confidenceP.doubleValue();
+      }
     }
 
     @Override
     protected HiCS<V> makeInstance() {
-      return new HiCS<>(m, alpha, outlierAlgorithm, statTest, cutoff, rnd);
+      return new HiCS<>(m, alpha, outlierAlgorithm, statTest, cutoff, rnd, confidence);
     }
   }
 }
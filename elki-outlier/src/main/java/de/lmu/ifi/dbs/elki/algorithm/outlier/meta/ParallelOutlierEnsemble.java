@@ -0,0 +1,448 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.outlier.meta;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import de.lmu.ifi.dbs.elki.algorithm.AbstractAlgorithm;
+import de.lmu.ifi.dbs.elki.algorithm.AbstractDistanceBasedAlgorithm;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.OutlierAlgorithm;
+import de.lmu.ifi.dbs.elki.data.type.CombinedTypeInformation;
+import de.lmu.ifi.dbs.elki.data.type.NoSupportedDataTypeException;
+import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.relation.DoubleRelation;
+import de.lmu.ifi.dbs.elki.database.relation.MaterializedDoubleRelation;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.DistanceFunction;
+import de.lmu.ifi.dbs.elki.index.preprocessed.knn.MaterializeKNNPreprocessor;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.logging.progress.FiniteProgress;
+import de.lmu.ifi.dbs.elki.math.DoubleMinMax;
+import de.lmu.ifi.dbs.elki.parallel.ParallelCore;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
+import de.lmu.ifi.dbs.elki.result.outlier.BasicOutlierScoreMeta;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierScoreMeta;
+import de.lmu.ifi.dbs.elki.utilities.ensemble.EnsembleVoting;
+import de.lmu.ifi.dbs.elki.utilities.ensemble.EnsembleVotingMax;
+import de.lmu.ifi.dbs.elki.utilities.ensemble.EnsembleVotingMean;
+import de.lmu.ifi.dbs.elki.utilities.ensemble.EnsembleVotingMin;
+import de.lmu.ifi.dbs.elki.utilities.ensemble.EnsembleVotingMultiplicative;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.AbstractParameterizer;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.ChainedParameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.ListParameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.ObjectListParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.ObjectParameter;
+import de.lmu.ifi.dbs.elki.utilities.pairs.Pair;
+
+/**
+ * Outlier ensemble that runs its members in parallel, and shares neighborhood
+ * computations between them.
+ * <p>
+ * Members are run in batches on the {@link ParallelCore}, so at most one batch
+ * of complete member results is in memory at any time. For the mean, minimum,
+ * maximum and multiplicative votings, the scores of each finished batch are
+ * folded into a running aggregate, using one array for all members. Other
+ * votings such as the median cannot be computed incrementally; for these, the
+ * scores of every member are retained (as one array per member) and combined
+ * at the end, which needs memory linear in the number of members.
+ * <p>
+ * Distance-based members that use the same relation and distance function can
+ * share their neighborhoods: if a maximum k is given, the k nearest neighbors
+ * are materialized once for each such group, and made available to the members
+ * as index. Members that need more neighbors fall back to their usual queries.
+ * <p>
+ * The results are the same as with {@link SimpleOutlierEnsemble}.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ *
+ * @composed - - - EnsembleVoting
+ * @navassoc - reads - OutlierResult
+ * @navassoc - create - OutlierResult
+ */
+public class ParallelOutlierEnsemble extends AbstractAlgorithm<OutlierResult> implements OutlierAlgorithm {
+  /**
+   * The logger for this class.
+   */
+  private static final Logging LOG = Logging.getLogger(ParallelOutlierEnsemble.class);
+
+  /**
+   * Votings that cannot be computed incrementally.
+   */
+  private static final int FOLD_NONE = 0;
+
+  /**
+   * Incremental sum, for the mean.
+   */
+  private static final int FOLD_SUM = 1;
+
+  /**
+   * Incremental maximum.
+   */
+  private static final int FOLD_MAX = 2;
+
+  /**
+   * Incremental minimum.
+   */
+  private static final int FOLD_MIN = 3;
+
+  /**
+   * Incremental product.
+   */
+  private static final int FOLD_PRODUCT = 4;
+
+  /**
+   * The algorithms to run.
+   */
+  private List<OutlierAlgorithm> algorithms;
+
+  /**
+   * The voting in use.
+   */
+  private EnsembleVoting voting;
+
+  /**
+   * Maximum k of shared neighborhoods, 0 to disable.
+   */
+  private int sharedk;
+
+  /**
+   * Number of members to run at the same time, 0 for automatic.
+   */
+  private int batchsize;
+
+  /**
+   * Constructor.
+   *
+   * @param algorithms Algorithms to run
+   * @param voting Voting method
+   * @param sharedk Maximum k of shared neighborhoods, 0 to disable
+   * @param batchsize Number of members to run at the same time, 0 for
+   *        automatic
+   */
+  public ParallelOutlierEnsemble(List<OutlierAlgorithm> algorithms, EnsembleVoting voting, int sharedk, int batchsize) {
+    this.algorithms = algorithms;
+    this.voting = voting;
+    this.sharedk = sharedk;
+    this.batchsize = batchsize;
+  }
+
+  @Override
+  public OutlierResult run(Database database) {
+    final ArrayDBIDs ids = DBIDUtil.ensureArray(database.getRelation(TypeUtil.DBID).getDBIDs());
+    final int num = algorithms.size();
+    final int bsize = batchsize > 0 ? batchsize : ParallelCore.getCore().getParallelism();
+    List<Pair<Relation<?>, MaterializeKNNPreprocessor<?>>> shared = sharedk > 0 ? shareNeighborhoods(database) : new ArrayList<>();
+    // Running aggregate and number of scores, in the order of ids:
+    final int fold = foldMode(voting);
+    final double[] acc = fold != FOLD_NONE ? new double[ids.size()] : null;
+    final int[] cnt = fold != FOLD_NONE ? new int[ids.size()] : null;
+    // Scores of the members, if they cannot be folded:
+    List<double[]> columns = fold == FOLD_NONE ? new ArrayList<>(num) : null;
+    try {
+      FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("Inner outlier algorithms", num, LOG) : null;
+      List<Callable<List<double[]>>> tasks = new ArrayList<>(bsize);
+      for(int start = 0; start < num; start += bsize) {
+        tasks.clear();
+        for(OutlierAlgorithm alg : algorithms.subList(start, Math.min(start + bsize, num))) {
+          tasks.add(() -> runMember(alg, database, ids));
+        }
+        for(List<double[]> cols : ParallelExecutor.runAll(tasks)) {
+          if(columns != null) {
+            columns.addAll(cols);
+          }
+          else {
+            for(double[] col : cols) {
+              fold(fold, col, acc, cnt);
+            }
+          }
+          LOG.incrementProcessed(prog);
+        }
+      }
+      LOG.ensureCompleted(prog);
+    }
+    finally {
+      for(Pair<Relation<?>, MaterializeKNNPreprocessor<?>> p : shared) {
+        database.getHierarchy().remove(p.first, p.second);
+      }
+    }
+    // Combine
+    WritableDoubleDataStore sumscore = DataStoreUtil.makeDoubleStorage(ids, DataStoreFactory.HINT_STATIC);
+    DoubleMinMax minmax = new DoubleMinMax();
+    FiniteProgress cprog = LOG.isVerbose() ? new FiniteProgress("Combining results", ids.size(), LOG) : null;
+    double[] buf = columns != null ? new double[columns.size()] : null;
+    for(DBIDArrayIter id = ids.iter(); id.valid(); id.advance()) {
+      final int off = id.getOffset();
+      int i = 0;
+      double combined = Double.NaN;
+      if(columns != null) {
+        for(double[] col : columns) {
+          final double score = col[off];
+          if(!Double.isNaN(score)) {
+            buf[i++] = score;
+          }
+        }
+        combined = i > 0 ? voting.combine(buf, i) : combined;
+      }
+      else {
+        i = cnt[off];
+        combined = fold == FOLD_SUM ? acc[off] / i : acc[off];
+      }
+      if(i > 0) {
+        sumscore.putDouble(id, combined);
+        minmax.put(combined);
+      }
+      else {
+        LOG.warning("DBID " + id + " was not given any score at all.");
+      }
+      LOG.incrementProcessed(cprog);
+    }
+    LOG.ensureCompleted(cprog);
+    OutlierScoreMeta meta = new BasicOutlierScoreMeta(minmax.getMin(), minmax.getMax());
+    DoubleRelation scores = new MaterializedDoubleRelation("Parallel Outlier Ensemble", "ensemble-outlier", sumscore, ids);
+    return new OutlierResult(meta, scores);
+  }
+
+  /**
+   * Choose how the votings can be computed incrementally.
+   *
+   * @param voting Voting
+   * @return Fold mode
+   */
+  private static int foldMode(EnsembleVoting voting) {
+    return voting instanceof EnsembleVotingMean ? FOLD_SUM : //
+        voting instanceof EnsembleVotingMax ? FOLD_MAX : //
+            voting instanceof EnsembleVotingMin ? FOLD_MIN : //
+                voting instanceof EnsembleVotingMultiplicative ? FOLD_PRODUCT : FOLD_NONE;
+  }
+
+  /**
+   * Fold the scores of one member into the running aggregate.
+   * <p>
+   * The scores are combined in the same order as by the voting, so the
+   * results are identical.
+   *
+   * @param fold Fold mode
+   * @param col Scores of the member
+   * @param acc Running aggregate
+   * @param cnt Number of scores aggregated
+   */
+  private static void fold(int fold, double[] col, double[] acc, int[] cnt) {
+    for(int off = 0; off < col.length; off++) {
+      final double score = col[off], prev = acc[off];
+      if(Double.isNaN(score)) {
+        continue;
+      }
+      if(cnt[off]++ == 0) {
+        acc[off] = score;
+        continue;
+      }
+      switch(fold){
+      case FOLD_SUM:
+        acc[off] = prev + score;
+        break;
+      case FOLD_MAX:
+        acc[off] = score > prev ? score : prev;
+        break;
+      case FOLD_MIN:
+        acc[off] = score < prev ? score : prev;
+        break;
+      case FOLD_PRODUCT:
+        acc[off] = prev * score;
+        break;
+      default:
+        throw new IllegalStateException("Unsupported fold mode.");
+      }
+    }
+  }
+
+  /**
+   * Run a single ensemble member, and keep only its scores.
+   *
+   * @param alg Algorithm to run
+   * @param database Database
+   * @param ids Object ids
+   * @return Score arrays, one for each outlier result
+   */
+  private static List<double[]> runMember(OutlierAlgorithm alg, Database database, ArrayDBIDs ids) {
+    List<OutlierResult> ors = OutlierResult.getOutlierResults(alg.run(database));
+    List<double[]> cols = new ArrayList<>(ors.size());
+    for(OutlierResult or : ors) {
+      DoubleRelation scores = or.getScores();
+      double[] col = new double[ids.size()];
+      for(DBIDArrayIter it = ids.iter(); it.valid(); it.advance()) {
+        col[it.getOffset()] = scores.doubleValue(it);
+      }
+      cols.add(col);
+    }
+    return cols;
+  }
+
+  /**
+   * Materialize the neighborhoods that are used by more than one member.
+   *
+   * @param database Database
+   * @return Added preprocessors, to be removed afterwards
+   */
+  private List<Pair<Relation<?>, MaterializeKNNPreprocessor<?>>> shareNeighborhoods(Database database) {
+    Map<Pair<Relation<?>, DistanceFunction<?>>, Integer> groups = new LinkedHashMap<>();
+    for(OutlierAlgorithm alg : algorithms) {
+      if(!(alg instanceof AbstractDistanceBasedAlgorithm)) {
+        continue;
+      }
+      DistanceFunction<?> df = ((AbstractDistanceBasedAlgorithm<?, ?>) alg).getDistanceFunction();
+      try {
+        Relation<?> relation = database.getRelation(df.getInputTypeRestriction());
+        groups.merge(new Pair<>(relation, df), 1, Integer::sum);
+      }
+      catch(NoSupportedDataTypeException e) {
+        continue; // The member will fail on its own.
+      }
+    }
+    List<Pair<Relation<?>, MaterializeKNNPreprocessor<?>>> shared = new ArrayList<>();
+    for(Map.Entry<Pair<Relation<?>, DistanceFunction<?>>, Integer> e : groups.entrySet()) {
+      if(e.getValue() > 1) {
+        Relation<?> relation = e.getKey().first;
+        MaterializeKNNPreprocessor<?> preproc = materialize(relation, e.getKey().second);
+        database.getHierarchy().add(relation, preproc);
+        shared.add(new Pair<>(relation, preproc));
+      }
+    }
+    return shared;
+  }
+
+  /**
+   * Materialize the nearest neighbors for a relation.
+   *
+   * @param relation Relation
+   * @param df Distance function
+   * @return Preprocessor
+   */
+  @SuppressWarnings("unchecked")
+  private <O> MaterializeKNNPreprocessor<O> materialize(Relation<O> relation, DistanceFunction<?> df) {
+    // One more, as the members usually include the query point.
+    MaterializeKNNPreprocessor<O> preproc = new MaterializeKNNPreprocessor<>(relation, (DistanceFunction<? super O>) df, sharedk + 1);
+    preproc.initialize();
+    return preproc;
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  @Override
+  public TypeInformation[] getInputTypeRestriction() {
+    TypeInformation[] trs = new TypeInformation[algorithms.size()];
+    for(int i = 0; i < trs.length; i++) {
+      trs[i] = algorithms.get(i).getInputTypeRestriction()[0];
+    }
+    return TypeUtil.array(new CombinedTypeInformation(trs));
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   *
+   * @hidden
+   */
+  public static class Parameterizer extends AbstractParameterizer {
+    /**
+     * Maximum k of the neighborhoods to share between members.
+     */
+    public static final OptionID SHAREDK_ID = new OptionID("ensemble.sharedk", "Materialize the k nearest neighbors (excluding the query point) once for all members using the same relation and distance; 0 disables sharing.");
+
+    /**
+     * Number of members to run at the same time.
+     */
+    public static final OptionID BATCHSIZE_ID = new OptionID("ensemble.batchsize", "Number of members to run at the same time, which bounds the memory use. 0 uses the number of processors.");
+
+    /**
+     * The algorithms to run.
+     */
+    private List<OutlierAlgorithm> algorithms;
+
+    /**
+     * The voting in use.
+     */
+    private EnsembleVoting voting;
+
+    /**
+     * Maximum k of shared neighborhoods.
+     */
+    private int sharedk;
+
+    /**
+     * Batch size.
+     */
+    private int batchsize;
+
+    @Override
+    protected void makeOptions(Parameterization config) {
+      super.makeOptions(config);
+      ObjectListParameter<OutlierAlgorithm> algP = new ObjectListParameter<>(AbstractAlgorithm.ALGORITHM_ID, OutlierAlgorithm.class);
+      if(config.grab(algP)) {
+        ListParameterization subconfig = new ListParameterization();
+        ChainedParameterization chain = new ChainedParameterization(subconfig, config);
+        chain.errorsTo(config);
+        algorithms = algP.instantiateClasses(chain);
+        subconfig.logAndClearReportedErrors();
+      }
+      ObjectParameter<EnsembleVoting> votingP = new ObjectParameter<>(SimpleOutlierEnsemble.Parameterizer.VOTING_ID, EnsembleVoting.class);
+      if(config.grab(votingP)) {
+        voting = votingP.instantiateClass(config);
+      }
+      IntParameter sharedkP = new IntParameter(SHAREDK_ID, 0) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ZERO_INT);
+      if(config.grab(sharedkP)) {
+        sharedk = sharedkP.intValue();
+      }
+      IntParameter batchsizeP = new IntParameter(BATCHSIZE_ID, 0) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ZERO_INT);
+      if(config.grab(batchsizeP)) {
+        batchsize = batchsizeP.intValue();
+      }
+    }
+
+    @Override
+    protected ParallelOutlierEnsemble makeInstance() {
+      return new ParallelOutlierEnsemble(algorithms, voting, sharedk, batchsize);
+    }
+  }
+}
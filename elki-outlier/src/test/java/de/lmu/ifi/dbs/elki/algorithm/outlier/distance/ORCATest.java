@@ -0,0 +1,79 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.outlier.distance;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.algorithm.outlier.AbstractOutlierAlgorithmTest;
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+import de.lmu.ifi.dbs.elki.utilities.ELKIBuilder;
+
+/**
+ * Tests the ORCA algorithm.
+ * <p>
+ * The scores of the top outliers must agree with {@link KNNOutlierTest} and
+ * {@link KNNWeightOutlierTest}.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ */
+public class ORCATest extends AbstractOutlierAlgorithmTest {
+  @Test
+  public void testORCA() {
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-3d-3clusters.ascii", 960);
+    OutlierResult result = new ELKIBuilder<ORCA<DoubleVector>>(ORCA.class) //
+        .with(ORCA.Parameterizer.K_ID, 1) //
+        .with(ORCA.Parameterizer.N_ID, 250) //
+        .with(ORCA.Parameterizer.BLOCKSIZE_ID, 100) //
+        .with(ORCA.Parameterizer.SEED_ID, 0L).build().run(db);
+    testSingleScore(result, 945, 0.4793554700168577);
+    testAUC(db, "Noise", result, 0.9914537037037037);
+  }
+
+  @Test
+  public void testORCAWeight() {
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-3d-3clusters.ascii", 960);
+    OutlierResult result = new ELKIBuilder<ORCA<DoubleVector>>(ORCA.class) //
+        .with(ORCA.Parameterizer.K_ID, 4) //
+        .with(ORCA.Parameterizer.N_ID, 250) //
+        .with(ORCA.Parameterizer.BLOCKSIZE_ID, 100) //
+        .with(ORCA.Parameterizer.WEIGHT_ID) //
+        .with(ORCA.Parameterizer.SEED_ID, 0L).build().run(db);
+    testSingleScore(result, 945, 2.384117261027324);
+    testAUC(db, "Noise", result, 0.9912777777777778);
+  }
+
+  @Test
+  public void testORCAParallel() {
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-3d-3clusters.ascii", 960);
+    OutlierResult result = new ELKIBuilder<ORCA<DoubleVector>>(ORCA.class) //
+        .with(ORCA.Parameterizer.K_ID, 1) //
+        .with(ORCA.Parameterizer.N_ID, 60) //
+        .with(ORCA.Parameterizer.BLOCKSIZE_ID, 100) //
+        .with(ORCA.Parameterizer.PARALLEL_ID) //
+        .with(ORCA.Parameterizer.SEED_ID, 0L).build().run(db);
+    // Not among the top 60, hence not scored:
+    testSingleScore(result, 945, 0.);
+    testAUC(db, "Noise", result, 0.9240277777777779);
+  }
+}
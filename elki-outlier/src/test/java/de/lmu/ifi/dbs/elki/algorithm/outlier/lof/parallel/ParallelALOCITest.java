@@ -0,0 +1,73 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.outlier.lof.parallel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.algorithm.outlier.AbstractOutlierAlgorithmTest;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.lof.ALOCI;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.lof.parallel.ParallelALOCI.ZOrderCountGrid;
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.database.relation.RelationUtil;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+import de.lmu.ifi.dbs.elki.utilities.ELKIBuilder;
+
+/**
+ * Regression tests the ParallelALOCI algorithm.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ */
+public class ParallelALOCITest extends AbstractOutlierAlgorithmTest {
+  @Test
+  public void testParallelALOCI() {
+    Database db = makeSimpleDatabase(UNITTEST + "3clusters-and-noise-2d.csv", 330);
+    OutlierResult result = new ELKIBuilder<ParallelALOCI<DoubleVector>>(ParallelALOCI.class) //
+        .with(ALOCI.Parameterizer.SEED_ID, 2) //
+        .with(ALOCI.Parameterizer.GRIDS_ID, 3) //
+        .build().run(db);
+    testAUC(db, "Noise", result, 0.92494444);
+    testSingleScore(result, 146, 1.71325718);
+  }
+
+  @Test
+  public void testMemoryBudget() {
+    Database db = makeSimpleDatabase(UNITTEST + "3clusters-and-noise-2d.csv", 330);
+    Relation<DoubleVector> relation = db.getRelation(TypeUtil.DOUBLE_VECTOR_FIELD);
+    double[][] mm = RelationUtil.computeMinMax(relation);
+    final double extent = Math.max(mm[1][0] - mm[0][0], mm[1][1] - mm[0][1]) * (1 + 1e-9);
+    final long keys = relation.size() * 8L;
+    ZOrderCountGrid full = new ZOrderCountGrid(relation, relation.getDBIDs(), mm[0], extent, new double[2], 30, 4, 20, Long.MAX_VALUE);
+    // The temporary keys count towards the budget.
+    final long budget = keys + full.memoryUsage() / 2;
+    ZOrderCountGrid bounded = new ZOrderCountGrid(relation, relation.getDBIDs(), mm[0], extent, new double[2], 30, 4, 20, budget);
+    assertTrue("Budget not enforced.", bounded.levels < full.levels);
+    assertTrue("Peak memory exceeds the budget.", keys + bounded.memoryUsage() <= budget);
+    ZOrderCountGrid none = new ZOrderCountGrid(relation, relation.getDBIDs(), mm[0], extent, new double[2], 30, 4, 20, keys - 1);
+    assertEquals("Budget does not cover the keys.", 0, none.levels);
+  }
+}
@@ -20,12 +20,15 @@
  */
 package de.lmu.ifi.dbs.elki.algorithm.outlier.meta;
 
+import static org.junit.Assert.assertTrue;
+
 import org.junit.Test;
 
 import de.lmu.ifi.dbs.elki.algorithm.outlier.AbstractOutlierAlgorithmTest;
 import de.lmu.ifi.dbs.elki.algorithm.outlier.lof.LOF;
 import de.lmu.ifi.dbs.elki.data.DoubleVector;
 import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.logging.statistics.MetricsRegistry;
 import de.lmu.ifi.dbs.elki.math.statistics.tests.KolmogorovSmirnovTest;
 import de.lmu.ifi.dbs.elki.math.statistics.tests.WelchTTest;
 import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
@@ -47,8 +50,8 @@ public class HiCSTest extends AbstractOutlierAlgorithmTest {
         .with(HiCS.Parameterizer.SEED_ID, 0) //
         .with(HiCS.Parameterizer.TEST_ID, KolmogorovSmirnovTest.STATIC) //
         .build().run(db);
-    testAUC(db, "Noise", result, 0.85340056);
-    testSingleScore(result, 1293, 4.935802);
+    testAUC(db, "Noise", result, 0.86715966);
+    testSingleScore(result, 1293, 4.7877822);
   }
 
   @Test
@@ -60,7 +63,30 @@ public class HiCSTest extends AbstractOutlierAlgorithmTest {
         .with(HiCS.Parameterizer.SEED_ID, 0) //
         .with(HiCS.Parameterizer.TEST_ID, WelchTTest.STATIC) //
         .build().run(db);
-    testAUC(db, "Noise", result, 0.867159);
-    testSingleScore(result, 1293, 4.7877822);
+    testAUC(db, "Noise", result, 0.85340056);
+    testSingleScore(result, 1293, 4.935802);
+  }
+
+  @Test
+  public void testHiCSEarlyTermination() {
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-axis-subspaces-6d.ascii", 1345);
+    MetricsRegistry.clear();
+    MetricsRegistry.setEnabled(true);
+    try {
+      OutlierResult result = new ELKIBuilder<HiCS<DoubleVector>>(HiCS.class) //
+          .with(LOF.Parameterizer.K_ID, 10) //
+          .with(HiCS.Parameterizer.LIMIT_ID, 10) //
+          .with(HiCS.Parameterizer.SEED_ID, 0) //
+          .with(HiCS.Parameterizer.CONFIDENCE_ID, 2) //
+          .with(HiCS.Parameterizer.TEST_ID, KolmogorovSmirnovTest.STATIC) //
+          .build().run(db);
+      testAUC(db, "Noise", result, 0.86715966);
+      testSingleScore(result, 1293, 4.7877822);
+      assertTrue("No iterations were skipped.", MetricsRegistry.counter(HiCS.class.getName() + ".skipped-iterations").getValue() > 0);
+    }
+    finally {
+      MetricsRegistry.setEnabled(false);
+      MetricsRegistry.clear();
+    }
   }
 }
@@ -0,0 +1,162 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.outlier.meta;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.algorithm.outlier.AbstractOutlierAlgorithmTest;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.distance.KNNOutlier;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.distance.parallel.ParallelKNNOutlier;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.lof.LOF;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.lof.parallel.ParallelLOF;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.query.knn.KNNQuery;
+import de.lmu.ifi.dbs.elki.database.query.knn.PreprocessorKNNQuery;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.DistanceFunction;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+import de.lmu.ifi.dbs.elki.utilities.ELKIBuilder;
+import de.lmu.ifi.dbs.elki.utilities.ensemble.*;
+
+/**
+ * Tests the parallel outlier ensemble, which must give the same results as
+ * {@link SimpleEnsembleTest}.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ */
+public class ParallelEnsembleTest extends AbstractOutlierAlgorithmTest {
+  @Test
+  public void testEnsembleMean() {
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-3d-3clusters.ascii", 960);
+    OutlierResult result = new ELKIBuilder<>(ParallelOutlierEnsemble.class) //
+        .with(ParallelOutlierEnsemble.ALGORITHM_ID, LOF.class.getName() + "," + KNNOutlier.class.getName()) //
+        .with(SimpleOutlierEnsemble.Parameterizer.VOTING_ID, EnsembleVotingMean.class) //
+        .with(KNNOutlier.Parameterizer.K_ID, 1).with(LOF.Parameterizer.K_ID, 10).build().run(db);
+    testAUC(db, "Noise", result, 0.98631);
+  }
+
+  @Test
+  public void testEnsembleSharedMedian() {
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-3d-3clusters.ascii", 960);
+    OutlierResult result = new ELKIBuilder<>(ParallelOutlierEnsemble.class) //
+        .with(ParallelOutlierEnsemble.ALGORITHM_ID, LOF.class.getName() + "," + SharedKNNOutlier.class.getName()) //
+        .with(SimpleOutlierEnsemble.Parameterizer.VOTING_ID, EnsembleVotingMedian.class) //
+        .with(ParallelOutlierEnsemble.Parameterizer.SHAREDK_ID, 10) //
+        .with(ParallelOutlierEnsemble.Parameterizer.BATCHSIZE_ID, 1) //
+        .with(KNNOutlier.Parameterizer.K_ID, 1).with(LOF.Parameterizer.K_ID, 10).build().run(db);
+    testAUC(db, "Noise", result, 0.98631);
+    assertTrue("Shared neighborhoods were not used.", SharedKNNOutlier.shared);
+    // Without sharing, the member must use a different query:
+    new ELKIBuilder<>(ParallelOutlierEnsemble.class) //
+        .with(ParallelOutlierEnsemble.ALGORITHM_ID, LOF.class.getName() + "," + SharedKNNOutlier.class.getName()) //
+        .with(SimpleOutlierEnsemble.Parameterizer.VOTING_ID, EnsembleVotingMedian.class) //
+        .with(KNNOutlier.Parameterizer.K_ID, 1).with(LOF.Parameterizer.K_ID, 10).build().run(db);
+    assertFalse("Neighborhoods were shared, but sharing was disabled.", SharedKNNOutlier.shared);
+  }
+
+  @Test
+  public void testEnsembleMax() {
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-3d-3clusters.ascii", 960);
+    OutlierResult parallel = new ELKIBuilder<>(ParallelOutlierEnsemble.class) //
+        .with(ParallelOutlierEnsemble.ALGORITHM_ID, LOF.class.getName() + "," + KNNOutlier.class.getName()) //
+        .with(SimpleOutlierEnsemble.Parameterizer.VOTING_ID, EnsembleVotingMax.class) //
+        .with(ParallelOutlierEnsemble.Parameterizer.BATCHSIZE_ID, 1) //
+        .with(KNNOutlier.Parameterizer.K_ID, 1).with(LOF.Parameterizer.K_ID, 10).build().run(db);
+    OutlierResult simple = new ELKIBuilder<>(SimpleOutlierEnsemble.class) //
+        .with(SimpleOutlierEnsemble.Parameterizer.VOTING_ID, EnsembleVotingMax.class) //
+        .with(SimpleOutlierEnsemble.ALGORITHM_ID, LOF.class.getName() + "," + KNNOutlier.class.getName()) //
+        .with(KNNOutlier.Parameterizer.K_ID, 1).with(LOF.Parameterizer.K_ID, 10).build().run(db);
+    for(DBIDIter it = parallel.getScores().iterDBIDs(); it.valid(); it.advance()) {
+      assertEquals("Folded scores differ.", simple.getScores().doubleValue(it), parallel.getScores().doubleValue(it), 0.);
+    }
+  }
+
+  /**
+   * kNN outlier detection that records whether it received the shared
+   * neighborhoods.
+   *
+   * @author Erich Schubert
+   *
+   * @param <O> Object type
+   */
+  public static class SharedKNNOutlier<O> extends KNNOutlier<O> {
+    /**
+     * Whether the last run used a preprocessor.
+     */
+    static volatile boolean shared;
+
+    /**
+     * k parameter
+     */
+    private int k;
+
+    /**
+     * Constructor.
+     *
+     * @param distanceFunction Distance function
+     * @param k k parameter
+     */
+    public SharedKNNOutlier(DistanceFunction<? super O> distanceFunction, int k) {
+      super(distanceFunction, k);
+      this.k = k;
+    }
+
+    @Override
+    public OutlierResult run(Relation<O> relation) {
+      KNNQuery<O> knnq = relation.getKNNQuery(relation.getDistanceQuery(getDistanceFunction()), k);
+      shared = knnq instanceof PreprocessorKNNQuery;
+      return super.run(relation);
+    }
+
+    /**
+     * Parameterization class.
+     *
+     * @author Erich Schubert
+     *
+     * @hidden
+     *
+     * @param <O> Object type
+     */
+    public static class Parameterizer<O> extends KNNOutlier.Parameterizer<O> {
+      @Override
+      protected SharedKNNOutlier<O> makeInstance() {
+        return new SharedKNNOutlier<>(distanceFunction, k);
+      }
+    }
+  }
+
+  @Test
+  public void testEnsembleNestedParallel() {
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-3d-3clusters.ascii", 960);
+    OutlierResult result = new ELKIBuilder<>(ParallelOutlierEnsemble.class) //
+        .with(ParallelOutlierEnsemble.ALGORITHM_ID, ParallelLOF.class.getName() + "," + ParallelKNNOutlier.class.getName()) //
+        .with(SimpleOutlierEnsemble.Parameterizer.VOTING_ID, EnsembleVotingMean.class) //
+        .with(ParallelOutlierEnsemble.Parameterizer.SHAREDK_ID, 10) //
+        .with(KNNOutlier.Parameterizer.K_ID, 1).with(LOF.Parameterizer.K_ID, 10).build().run(db);
+    testAUC(db, "Noise", result, 0.98631);
+  }
+}
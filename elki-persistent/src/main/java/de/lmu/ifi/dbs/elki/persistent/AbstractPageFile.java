@@ -22,6 +22,9 @@ package de.lmu.ifi.dbs.elki.persistent;
 
 import de.lmu.ifi.dbs.elki.logging.Logging;
 import de.lmu.ifi.dbs.elki.logging.statistics.Counter;
+import de.lmu.ifi.dbs.elki.logging.statistics.LongAdderCounter;
+import de.lmu.ifi.dbs.elki.logging.statistics.MetricsRegistry;
+
 /**
  * Abstract base class for the page file API for both caches and true page files
  * (in-memory and on-disk).
@@ -42,14 +45,32 @@ public abstract class AbstractPageFile<P extends Page> implements PageFile<P> {
    */
   private Counter writeAccess;
 
+  /**
+   * Read-only mode, in which concurrent reads are allowed.
+   */
+  protected volatile boolean readonly = false;
+
   /**
    * Constructor.
    */
   public AbstractPageFile() {
     super();
     Logging log = getLogger();
-    this.readAccess = log.isStatistics() ? log.newCounter(this.getClass().getName() + ".reads") : null;
-    this.writeAccess = log.isStatistics() ? log.newCounter(this.getClass().getName() + ".writes") : null;
+    // Thread-safe counters, as pages may be read concurrently.
+    this.readAccess = makeCounter(log, this.getClass().getName() + ".reads");
+    this.writeAccess = makeCounter(log, this.getClass().getName() + ".writes");
+  }
+
+  /**
+   * Make an access counter, shared in the {@link MetricsRegistry} when enabled.
+   *
+   * @param log Logger
+   * @param key Counter key
+   * @return Counter, or {@code null}
+   */
+  private static Counter makeCounter(Logging log, String key) {
+    return MetricsRegistry.isEnabled() ? MetricsRegistry.counter(key) : //
+        log.isStatistics() ? new LongAdderCounter(key) : null;
   }
 
   /**
@@ -68,6 +89,7 @@ public abstract class AbstractPageFile<P extends Page> implements PageFile<P> {
    */
   @Override
   public final synchronized int writePage(P page) {
+    checkWritable();
     int pageid = setPageID(page);
     writePage(pageid, page);
     return pageid;
@@ -81,6 +103,27 @@ public abstract class AbstractPageFile<P extends Page> implements PageFile<P> {
    */
   protected abstract void writePage(int pageid, P page);
 
+  @Override
+  public void setReadOnly(boolean readonly) {
+    this.readonly = readonly;
+  }
+
+  @Override
+  public boolean isReadOnly() {
+    return readonly;
+  }
+
+  /**
+   * Ensure that the page file may be modified.
+   *
+   * @throws IllegalStateException when in read-only mode
+   */
+  protected void checkWritable() {
+    if(readonly) {
+      throw new IllegalStateException("Page file is in read-only mode.");
+    }
+  }
+
   @Override
   public void close() {
     clear();
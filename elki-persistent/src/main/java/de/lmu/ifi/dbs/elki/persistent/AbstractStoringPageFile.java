@@ -83,6 +83,7 @@ public abstract class AbstractStoringPageFile<P extends Page> extends AbstractPa
    */
   @Override
   public void deletePage(int pageID) {
+    checkWritable();
     // put id to empty nodes
     emptyPages.push(pageID);
   }
@@ -55,9 +55,15 @@ public class MemoryPageFile<P extends Page> extends AbstractStoringPageFile<P> {
   }
 
   @Override
-  public synchronized P readPage(int pageID) {
+  public P readPage(int pageID) {
     countRead();
-    return file.get(pageID);
+    if(readonly) {
+      // No concurrent modifications, the map can be read without locking.
+      return file.get(pageID);
+    }
+    synchronized(this) {
+      return file.get(pageID);
+    }
   }
 
   @Override
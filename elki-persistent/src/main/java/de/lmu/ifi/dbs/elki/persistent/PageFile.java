@@ -103,6 +103,24 @@ public interface PageFile<P extends Page> {
    */
   boolean initialize(PageHeader header);
 
+  /**
+   * Switch the page file into (or out of) read-only mode.
+   * <p>
+   * In read-only mode, {@link #readPage} may be called concurrently from
+   * multiple threads, while all modifications are rejected. The mode must not
+   * be changed while other threads access the page file.
+   *
+   * @param readonly {@code true} to enable read-only mode
+   */
+  void setReadOnly(boolean readonly);
+
+  /**
+   * Test whether the page file is in read-only mode.
+   *
+   * @return {@code true} when the page file is read-only
+   */
+  boolean isReadOnly();
+
   /**
    * Log some statistics to the appropriate logger.
    */
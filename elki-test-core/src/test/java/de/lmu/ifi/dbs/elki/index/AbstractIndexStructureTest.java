@@ -22,8 +22,16 @@ package de.lmu.ifi.dbs.elki.index;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 
 import de.lmu.ifi.dbs.elki.algorithm.AbstractSimpleAlgorithmTest;
 import de.lmu.ifi.dbs.elki.data.DoubleVector;
@@ -33,7 +41,9 @@ import de.lmu.ifi.dbs.elki.database.StaticArrayDatabase;
 import de.lmu.ifi.dbs.elki.database.ids.*;
 import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
 import de.lmu.ifi.dbs.elki.database.query.knn.KNNQuery;
+import de.lmu.ifi.dbs.elki.database.query.knn.LinearScanDistanceKNNQuery;
 import de.lmu.ifi.dbs.elki.database.query.range.RangeQuery;
+import de.lmu.ifi.dbs.elki.database.query.rknn.RKNNQuery;
 import de.lmu.ifi.dbs.elki.database.relation.Relation;
 import de.lmu.ifi.dbs.elki.datasource.AbstractDatabaseConnection;
 import de.lmu.ifi.dbs.elki.datasource.ArrayAdapterDatabaseConnection;
@@ -251,4 +261,132 @@ public abstract class AbstractIndexStructureTest {
       assertTrue("Wrong range result", DBIDUtil.equal(range.iter(), first));
     }
   }
+
+  /**
+   * Test concurrent kNN queries from multiple threads, against a linear scan.
+   *
+   * @param factory Index factory
+   * @param expectKNNQuery Expected kNN query class
+   * @param prepare Preparation of the index for concurrent use, may be null
+   */
+  protected void testConcurrentKNN(IndexFactory<?> factory, Class<?> expectKNNQuery, Consumer<Index> prepare) {
+    ListParameterization inputparams = new ListParameterization() //
+        .addParameter(AbstractDatabaseConnection.Parameterizer.FILTERS_ID, new FixedDBIDsFilter(1)) //
+        .addParameter(StaticArrayDatabase.Parameterizer.INDEX_ID, factory);
+    Database db = AbstractSimpleAlgorithmTest.makeSimpleDatabase(dataset, shoulds, inputparams);
+    Relation<DoubleVector> rep = db.getRelation(TypeUtil.DOUBLE_VECTOR_FIELD);
+    DistanceQuery<DoubleVector> dist = db.getDistanceQuery(rep, EuclideanDistanceFunction.STATIC);
+    if(prepare != null) {
+      db.getHierarchy().iterDescendants(rep).<Index> filter(Index.class).forEach(prepare);
+    }
+    KNNQuery<DoubleVector> knnq = db.getKNNQuery(dist, k);
+    assertTrue("Returned knn query is not of expected class: expected " + expectKNNQuery + " got " + knnq.getClass(), expectKNNQuery.isAssignableFrom(knnq.getClass()));
+    LinearScanDistanceKNNQuery<DoubleVector> linq = new LinearScanDistanceKNNQuery<>(dist);
+    final ArrayDBIDs ids = DBIDUtil.ensureArray(rep.getDBIDs());
+    final double[] expect = new double[ids.size()];
+    for(DBIDArrayIter it = ids.iter(); it.valid(); it.advance()) {
+      expect[it.getOffset()] = linq.getKNNForDBID(it, k).getKNNDistance();
+    }
+    final int threads = 8;
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<?>> futures = new ArrayList<>(threads);
+      for(int t = 0; t < threads; t++) {
+        final int offset = t * ids.size() / threads;
+        futures.add(pool.submit(() -> {
+          // Every thread queries all objects, starting at a different offset.
+          DBIDArrayIter it = ids.iter();
+          for(int i = 0; i < ids.size(); i++) {
+            final int j = (i + offset) % ids.size();
+            KNNList knn = knnq.getKNNForDBID(it.seek(j), k);
+            assertEquals("Wrong number of knn results", k, knn.size());
+            assertEquals("kNN distance does not match linear scan", expect[j], knn.getKNNDistance(), 1e-15);
+          }
+        }));
+      }
+      for(Future<?> future : futures) {
+        future.get();
+      }
+    }
+    catch(ExecutionException e) {
+      if(e.getCause() instanceof AssertionError) {
+        throw (AssertionError) e.getCause();
+      }
+      throw new RuntimeException(e.getCause());
+    }
+    catch(InterruptedException e) {
+      throw new RuntimeException(e);
+    }
+    finally {
+      pool.shutdown();
+    }
+  }
+
+  /**
+   * Test kNN and RkNN queries for all objects against a linear scan.
+   * <p>
+   * Reverse neighbors are compared by the definition: p is a reverse k nearest
+   * neighbor of q if q is not farther from p than the k nearest neighbor
+   * distance of p, so that ties do not matter.
+   *
+   * @param factory Index factory
+   * @param expectKNNQuery Expected kNN query class
+   * @param expectRKNNQuery Expected RkNN query class
+   * @param kmax Maximum k to test
+   * @param minRecall Minimum fraction of reverse neighbors to find, and
+   *        minimum precision; 1 for exact indexes
+   */
+  protected void testKNNAndRKNN(IndexFactory<?> factory, Class<?> expectKNNQuery, Class<?> expectRKNNQuery, int kmax, double minRecall) {
+    ListParameterization inputparams = new ListParameterization() //
+        .addParameter(AbstractDatabaseConnection.Parameterizer.FILTERS_ID, new FixedDBIDsFilter(1)) //
+        .addParameter(StaticArrayDatabase.Parameterizer.INDEX_ID, factory);
+    Database db = AbstractSimpleAlgorithmTest.makeSimpleDatabase(dataset, shoulds, inputparams);
+    Relation<DoubleVector> rep = db.getRelation(TypeUtil.DOUBLE_VECTOR_FIELD);
+    DistanceQuery<DoubleVector> dist = db.getDistanceQuery(rep, EuclideanDistanceFunction.STATIC);
+    KNNQuery<DoubleVector> knnq = db.getKNNQuery(dist, kmax);
+    assertTrue("Returned knn query is not of expected class: expected " + expectKNNQuery + " got " + knnq.getClass(), expectKNNQuery.isAssignableFrom(knnq.getClass()));
+    RKNNQuery<DoubleVector> rknnq = db.getRKNNQuery(dist, kmax);
+    assertTrue("Returned rknn query is not of expected class: expected " + expectRKNNQuery + " got " + rknnq.getClass(), expectRKNNQuery.isAssignableFrom(rknnq.getClass()));
+    LinearScanDistanceKNNQuery<DoubleVector> linq = new LinearScanDistanceKNNQuery<>(dist);
+    final ArrayDBIDs ids = DBIDUtil.ensureArray(rep.getDBIDs());
+    final int size = ids.size();
+    // Linear scan kNN distances of all objects
+    double[][] kdist = new double[size][kmax];
+    DBIDArrayIter it = ids.iter(), it2 = ids.iter();
+    for(; it.valid(); it.advance()) {
+      DoubleDBIDListIter lin = linq.getKNNForDBID(it, kmax).iter();
+      for(int i = 0; i < kmax; i++, lin.advance()) {
+        kdist[it.getOffset()][i] = lin.doubleValue();
+      }
+    }
+    int found = 0, expected = 0, reported = 0;
+    for(int k : new int[] { 1, kmax >> 1, kmax }) {
+      for(it.seek(0); it.valid(); it.advance()) {
+        KNNList knn = knnq.getKNNForDBID(it, k);
+        assertEquals("Wrong number of knn results", k, knn.size());
+        assertEquals("kNN distance does not match linear scan", kdist[it.getOffset()][k - 1], knn.getKNNDistance(), 1e-15);
+
+        DoubleDBIDList rknn = rknnq.getRKNNForDBID(it, k);
+        HashSetModifiableDBIDs got = DBIDUtil.newHashSet(rknn);
+        assertEquals("Duplicate rknn results", rknn.size(), got.size());
+        for(it2.seek(0); it2.valid(); it2.advance()) {
+          if(dist.distance(it, it2) <= kdist[it2.getOffset()][k - 1]) {
+            ++expected;
+            if(got.contains(it2)) {
+              ++found;
+            }
+            else if(minRecall >= 1.) {
+              fail("Reverse neighbor missing for k=" + k);
+            }
+          }
+          else if(got.contains(it2) && minRecall >= 1.) {
+            fail("Not a reverse neighbor for k=" + k);
+          }
+        }
+        reported += got.size();
+      }
+    }
+    assertTrue("RkNN recall too low: " + found / (double) expected, found >= minRecall * expected);
+    assertTrue("RkNN precision too low: " + found / (double) reported, found >= minRecall * reported);
+  }
 }
@@ -20,16 +20,26 @@
  */
 package de.lmu.ifi.dbs.elki;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.Collection;
 
 import de.lmu.ifi.dbs.elki.application.KDDCLIApplication;
 import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.logging.statistics.MetricsRegistry;
 import de.lmu.ifi.dbs.elki.result.ResultHierarchy;
 import de.lmu.ifi.dbs.elki.result.SettingsResult;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.AbstractParameterizer;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.TrackParameters;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.TrackedParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.FileParameter;
 import de.lmu.ifi.dbs.elki.workflow.AlgorithmStep;
 import de.lmu.ifi.dbs.elki.workflow.EvaluationStep;
 import de.lmu.ifi.dbs.elki.workflow.InputStep;
@@ -48,6 +58,11 @@ import de.lmu.ifi.dbs.elki.workflow.OutputStep;
  * @composed - - - OutputStep
  */
 public class KDDTask {
+  /**
+   * Class logger.
+   */
+  private static final Logging LOG = Logging.getLogger(KDDTask.class);
+
   /**
    * The settings used, for settings reporting.
    */
@@ -78,6 +93,11 @@ public class KDDTask {
    */
   private ResultHierarchy hier;
 
+  /**
+   * File to write the query metrics to, may be {@code null}.
+   */
+  private File metricsFile;
+
   /**
    * Constructor.
    *
@@ -88,12 +108,27 @@ public class KDDTask {
    * @param settings
    */
   public KDDTask(InputStep inputStep, AlgorithmStep algorithmStep, EvaluationStep evaluationStep, OutputStep outputStep, Collection<TrackedParameter> settings) {
+    this(inputStep, algorithmStep, evaluationStep, outputStep, settings, null);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param inputStep
+   * @param algorithmStep
+   * @param evaluationStep
+   * @param outputStep
+   * @param settings
+   * @param metricsFile File to write query metrics to, may be {@code null}
+   */
+  public KDDTask(InputStep inputStep, AlgorithmStep algorithmStep, EvaluationStep evaluationStep, OutputStep outputStep, Collection<TrackedParameter> settings, File metricsFile) {
     super();
     this.inputStep = inputStep;
     this.algorithmStep = algorithmStep;
     this.evaluationStep = evaluationStep;
     this.outputStep = outputStep;
     this.settings = settings;
+    this.metricsFile = metricsFile;
   }
 
   /**
@@ -101,21 +136,46 @@ public class KDDTask {
    * connection.
    */
   public void run() {
-    // Input step
-    Database db = inputStep.getDatabase();
-    hier = db.getHierarchy();
+    if(metricsFile != null) {
+      MetricsRegistry.clear();
+      MetricsRegistry.setEnabled(true);
+    }
+    try {
+      // Input step
+      Database db = inputStep.getDatabase();
+      hier = db.getHierarchy();
+
+      // Algorithms - Data Mining Step
+      algorithmStep.runAlgorithms(db);
 
-    // Algorithms - Data Mining Step
-    algorithmStep.runAlgorithms(db);
+      // TODO: this could be nicer
+      hier.add(db, new SettingsResult(settings));
 
-    // TODO: this could be nicer
-    hier.add(db, new SettingsResult(settings));
+      // Evaluation
+      evaluationStep.runEvaluators(hier, db);
 
-    // Evaluation
-    evaluationStep.runEvaluators(hier, db);
+      // Output / Visualization
+      outputStep.runResultHandlers(hier, db);
+    }
+    finally {
+      // Also report the metrics of failed runs, and never leave them enabled.
+      if(metricsFile != null) {
+        MetricsRegistry.setEnabled(false);
+        writeMetrics();
+      }
+    }
+  }
 
-    // Output / Visualization
-    outputStep.runResultHandlers(hier, db);
+  /**
+   * Write the query metrics report.
+   */
+  private void writeMetrics() {
+    try (Writer out = new OutputStreamWriter(Files.newOutputStream(metricsFile.toPath()), StandardCharsets.UTF_8)) {
+      MetricsRegistry.writeJSON(out);
+    }
+    catch(IOException e) {
+      LOG.exception("Could not write metrics to " + metricsFile, e);
+    }
   }
 
   /**
@@ -143,6 +203,13 @@ public class KDDTask {
 
     OutputStep outputStep = null;
 
+    File metricsFile = null;
+
+    /**
+     * Write query and distance computation metrics to a JSON file.
+     */
+    public static final OptionID METRICS_ID = new OptionID("metrics", "Collect query and distance computation metrics, and write them as JSON to the given file.");
+
     @Override
     protected void makeOptions(Parameterization config) {
       super.makeOptions(config);
@@ -157,11 +224,16 @@ public class KDDTask {
       settings = track.getAllParameters();
       // configure output with the original parameterization
       outputStep = config.tryInstantiate(OutputStep.class);
+
+      FileParameter metricsP = new FileParameter(METRICS_ID, FileParameter.FileType.OUTPUT_FILE, true);
+      if(config.grab(metricsP)) {
+        metricsFile = metricsP.getValue();
+      }
     }
 
     @Override
     protected KDDTask makeInstance() {
-      return new KDDTask(inputStep, algorithmStep, evaluationStep, outputStep, settings);
+      return new KDDTask(inputStep, algorithmStep, evaluationStep, outputStep, settings, metricsFile);
     }
   }
 
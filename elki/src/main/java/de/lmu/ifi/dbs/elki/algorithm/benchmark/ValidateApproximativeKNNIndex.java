@@ -197,6 +197,7 @@ public class ValidateApproximativeKNNIndex<O> extends AbstractDistanceBasedAlgor
       if(LOG.isStatistics()) {
         LOG.statistics("Mean number of results: " + mv.getMean() + " +- " + mv.getNaiveStddev());
         LOG.statistics("Recall of true results: " + mvrec.getMean() + " +- " + mvrec.getNaiveStddev());
+        LOG.statistics("Heap memory in use: " + (usedMemory() >> 20) + " MB");
         if(mvdist.getCount() > 0) {
           LOG.statistics("Mean k-distance: " + mvdist.getMean() + " +- " + mvdist.getNaiveStddev());
           LOG.statistics("Mean absolute k-error: " + mvdaerr.getMean() + " +- " + mvdaerr.getNaiveStddev());
@@ -266,6 +267,7 @@ public class ValidateApproximativeKNNIndex<O> extends AbstractDistanceBasedAlgor
       if(LOG.isStatistics()) {
         LOG.statistics("Mean number of results: " + mv.getMean() + " +- " + mv.getNaiveStddev());
         LOG.statistics("Recall of true results: " + mvrec.getMean() + " +- " + mvrec.getNaiveStddev());
+        LOG.statistics("Heap memory in use: " + (usedMemory() >> 20) + " MB");
         if(mvdist.getCount() > 0) {
           LOG.statistics("Mean absolute k-error: " + mvdaerr.getMean() + " +- " + mvdaerr.getNaiveStddev());
           LOG.statistics("Mean relative k-error: " + mvdrerr.getMean() + " +- " + mvdrerr.getNaiveStddev());
@@ -278,6 +280,18 @@ public class ValidateApproximativeKNNIndex<O> extends AbstractDistanceBasedAlgor
     return null;
   }
 
+  /**
+   * Heap memory in use after garbage collection, to relate the recall to the
+   * memory used by the index.
+   *
+   * @return Used heap memory in bytes
+   */
+  private static long usedMemory() {
+    final Runtime rt = Runtime.getRuntime();
+    rt.gc();
+    return rt.totalMemory() - rt.freeMemory();
+  }
+
   @Override
   public TypeInformation[] getInputTypeRestriction() {
     return TypeUtil.array(getDistanceFunction().getInputTypeRestriction());
@@ -0,0 +1,813 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.join;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import de.lmu.ifi.dbs.elki.algorithm.join.JoinTree.Node;
+import de.lmu.ifi.dbs.elki.data.spatial.SpatialComparable;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDFactory;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDVar;
+import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDList;
+import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDListIter;
+import de.lmu.ifi.dbs.elki.database.ids.KNNHeap;
+import de.lmu.ifi.dbs.elki.database.ids.KNNList;
+import de.lmu.ifi.dbs.elki.database.ids.ModifiableDoubleDBIDList;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.SpatialPrimitiveDistanceFunction;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.EuclideanDistanceFunction;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.SquaredEuclideanDistanceFunction;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.logging.statistics.LongStatistic;
+import de.lmu.ifi.dbs.elki.parallel.ParallelCore;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.arrays.DoubleIntegerArrayQuickSort;
+import de.lmu.ifi.dbs.elki.utilities.exceptions.AbortException;
+
+/**
+ * Dual-tree joins of two spatial index trees: the k-nearest-neighbor join
+ * finds, for every object of the query tree, its k nearest neighbors in the
+ * reference tree, and the distance join finds all pairs within a distance
+ * threshold.
+ * <p>
+ * Both trees are traversed simultaneously, and pairs of nodes are pruned using
+ * the minimum distance of their bounding boxes. For the kNN join, each query
+ * node keeps an upper bound of the k-distances of all its objects, and
+ * reference nodes are visited best-first. Candidate neighbors are kept in flat
+ * primitive heaps rather than one heap object per query.
+ * <p>
+ * The indexes are traversed in place through {@link JoinTree} views, and are
+ * switched to read-only mode for the duration of the join; they must not be
+ * modified concurrently.
+ * <p>
+ * When parallel processing is enabled, the top-level subtrees of the query
+ * tree are processed independently on {@link ParallelCore}. Results are
+ * streamed to a consumer as soon as a query subtree has been finished; the
+ * consumer calls are serialized, but their order is not specified.
+ * <p>
+ * The kNN join returns exactly k neighbors (fewer if the reference tree is
+ * smaller), ties are broken arbitrarily. For self-joins, pass the same tree
+ * twice; each object is then its own nearest neighbor, and the distance join
+ * reports each pair twice.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ *
+ * @assoc - - - JoinTree
+ */
+public class DualTreeJoin {
+  /**
+   * Class logger.
+   */
+  private static final Logging LOG = Logging.getLogger(DualTreeJoin.class);
+
+  /**
+   * Distance function.
+   */
+  private SpatialPrimitiveDistanceFunction<?> distanceFunction;
+
+  /**
+   * Use the fast path for (squared) Euclidean distance.
+   */
+  private boolean euclidean, squared;
+
+  /**
+   * Process subtrees in parallel.
+   */
+  private boolean parallel;
+
+  /**
+   * Constructor.
+   *
+   * @param distanceFunction Distance function
+   * @param parallel Process subtrees in parallel
+   */
+  public DualTreeJoin(SpatialPrimitiveDistanceFunction<?> distanceFunction, boolean parallel) {
+    super();
+    this.distanceFunction = distanceFunction;
+    this.squared = distanceFunction instanceof SquaredEuclideanDistanceFunction;
+    this.euclidean = squared || distanceFunction instanceof EuclideanDistanceFunction;
+    this.parallel = parallel;
+  }
+
+  /**
+   * Consumer for k-nearest-neighbor join results.
+   *
+   * @author Erich Schubert
+   */
+  @FunctionalInterface
+  public interface KNNConsumer {
+    /**
+     * Process the neighbors of a query object.
+     *
+     * @param query Query object
+     * @param neighbors Neighbors, sorted by distance; only valid during the
+     *        call
+     */
+    void accept(DBIDRef query, DoubleDBIDList neighbors);
+  }
+
+  /**
+   * Consumer for distance join results.
+   *
+   * @author Erich Schubert
+   */
+  @FunctionalInterface
+  public interface PairConsumer {
+    /**
+     * Process a result pair.
+     *
+     * @param query Object of the query tree
+     * @param reference Object of the reference tree
+     * @param distance Distance
+     */
+    void accept(DBIDRef query, DBIDRef reference, double distance);
+  }
+
+  /**
+   * Compute the k nearest neighbors in the reference tree for all objects of
+   * the query tree.
+   *
+   * @param query Query tree
+   * @param reference Reference tree
+   * @param k Number of neighbors
+   * @return k nearest neighbors of each query object
+   */
+  public WritableDataStore<KNNList> knnJoin(JoinTree query, JoinTree reference, int k) {
+    WritableDataStore<KNNList> store = DataStoreUtil.makeStorage(query.getDBIDs(), DataStoreFactory.HINT_STATIC, KNNList.class);
+    knnJoin(query, reference, k, (id, neighbors) -> {
+      KNNHeap heap = DBIDUtil.newHeap(k);
+      for(DoubleDBIDListIter it = neighbors.iter(); it.valid(); it.advance()) {
+        heap.insert(it.doubleValue(), it);
+      }
+      store.put(id, heap.toKNNList());
+    });
+    return store;
+  }
+
+  /**
+   * Compute the k nearest neighbors in the reference tree for all objects of
+   * the query tree.
+   *
+   * @param query Query tree
+   * @param reference Reference tree
+   * @param k Number of neighbors
+   * @param out Output consumer
+   */
+  public void knnJoin(JoinTree query, JoinTree reference, int k, KNNConsumer out) {
+    checkDimensionality(query, reference);
+    if(query.size() == 0) {
+      return;
+    }
+    final int kk = Math.min(k, reference.size());
+    final double[] heapd = new double[query.size() * kk];
+    final int[] heapi = new int[query.size() * kk];
+    final int[] heaps = new int[query.size()];
+    final double[] bound = new double[query.numNodeIds()];
+    Arrays.fill(bound, Double.POSITIVE_INFINITY);
+    final boolean sprev = reference.enterReadOnly(), qprev = query.enterReadOnly();
+    try {
+      List<KNNWorker> tasks = new ArrayList<>();
+      for(Node node : topLevel(query)) {
+        tasks.add(new KNNWorker(query, reference, kk, node, heapd, heapi, heaps, bound, out));
+      }
+      long distcalc = 0;
+      for(KNNWorker w : run(tasks)) {
+        distcalc += w.distcalc;
+      }
+      logStatistics(distcalc);
+    }
+    finally {
+      query.exitReadOnly(qprev);
+      reference.exitReadOnly(sprev);
+    }
+  }
+
+  /**
+   * Find all pairs of objects within the given distance.
+   *
+   * @param query Query tree
+   * @param reference Reference tree
+   * @param eps Distance threshold
+   * @param out Output consumer
+   */
+  public void rangeJoin(JoinTree query, JoinTree reference, double eps, PairConsumer out) {
+    checkDimensionality(query, reference);
+    if(query.size() == 0 || reference.size() == 0) {
+      return;
+    }
+    final double threshold = euclidean && !squared ? eps * eps : eps;
+    final boolean sprev = reference.enterReadOnly(), qprev = query.enterReadOnly();
+    try {
+      List<RangeWorker> tasks = new ArrayList<>();
+      for(Node node : topLevel(query)) {
+        tasks.add(new RangeWorker(query, reference, threshold, node, out));
+      }
+      long distcalc = 0;
+      for(RangeWorker w : run(tasks)) {
+        distcalc += w.distcalc;
+      }
+      logStatistics(distcalc);
+    }
+    finally {
+      query.exitReadOnly(qprev);
+      reference.exitReadOnly(sprev);
+    }
+  }
+
+  /**
+   * Verify that the trees are compatible.
+   *
+   * @param query Query tree
+   * @param reference Reference tree
+   */
+  private static void checkDimensionality(JoinTree query, JoinTree reference) {
+    if(query.size() > 0 && reference.size() > 0 && query.getDimensionality() != reference.getDimensionality()) {
+      throw new AbortException("Joined trees must have the same dimensionality.");
+    }
+  }
+
+  /**
+   * Choose the query subtrees to process independently.
+   *
+   * @param query Query tree
+   * @return Query nodes
+   */
+  private List<Node> topLevel(JoinTree query) {
+    List<Node> nodes = Collections.singletonList(query.root());
+    if(!parallel) {
+      return nodes;
+    }
+    final int target = ParallelCore.getCore().getParallelism() << 2;
+    while(nodes.size() < target) {
+      List<Node> next = new ArrayList<>();
+      boolean split = false;
+      for(Node n : nodes) {
+        if(n.isLeaf()) {
+          next.add(n);
+          continue;
+        }
+        for(int c = 0, e = n.numChildren(); c < e; c++) {
+          next.add(n.child(c));
+        }
+        split = true;
+      }
+      if(!split) {
+        break; // All leaves.
+      }
+      nodes = next;
+    }
+    return nodes;
+  }
+
+  /**
+   * Run the workers.
+   *
+   * @param tasks Workers
+   * @param <W> Worker type
+   * @return Workers
+   */
+  private <W extends Callable<W>> List<W> run(List<W> tasks) {
+    if(tasks.size() == 1) {
+      try {
+        tasks.get(0).call();
+      }
+      catch(RuntimeException e) {
+        throw e;
+      }
+      catch(Exception e) {
+        throw new RuntimeException("Join failed.", e);
+      }
+      return tasks;
+    }
+    return ParallelExecutor.runAll(tasks);
+  }
+
+  /**
+   * Log the number of distance computations.
+   *
+   * @param distcalc Number of distance computations
+   */
+  private void logStatistics(long distcalc) {
+    if(LOG.isStatistics()) {
+      LOG.statistics(new LongStatistic(DualTreeJoin.class.getName() + ".distancecalcs", distcalc));
+    }
+  }
+
+  /**
+   * Base class for join workers, with the distance computations.
+   *
+   * @author Erich Schubert
+   */
+  private abstract class Worker {
+    /**
+     * Query and reference tree.
+     */
+    final JoinTree q, s;
+
+    /**
+     * Query subtree to process.
+     */
+    final Node root;
+
+    /**
+     * Points of the current reference leaf.
+     */
+    SpatialComparable[] spts = new SpatialComparable[16];
+
+    /**
+     * Number of distance computations.
+     */
+    long distcalc;
+
+    /**
+     * Constructor.
+     *
+     * @param q Query tree
+     * @param s Reference tree
+     * @param root Query subtree
+     */
+    Worker(JoinTree q, JoinTree s, Node root) {
+      this.q = q;
+      this.s = s;
+      this.root = root;
+    }
+
+    /**
+     * Minimum distance of two nodes (squared for Euclidean).
+     *
+     * @param qn Query node
+     * @param sn Reference node
+     * @return Minimum distance
+     */
+    double nodeDistance(Node qn, Node sn) {
+      if(!euclidean) {
+        return distanceFunction.minDist(qn, sn);
+      }
+      double agg = 0.;
+      for(int d = 0, dims = q.dims; d < dims; d++) {
+        final double d1 = sn.getMin(d) - qn.getMax(d), d2 = qn.getMin(d) - sn.getMax(d);
+        final double v = d1 > 0 ? d1 : d2 > 0 ? d2 : 0.;
+        agg += v * v;
+      }
+      return agg;
+    }
+
+    /**
+     * Distance of two points (squared for Euclidean).
+     *
+     * @param a Query point
+     * @param b Reference point
+     * @return Distance
+     */
+    double pointDistance(SpatialComparable a, SpatialComparable b) {
+      ++distcalc;
+      if(!euclidean) {
+        return distanceFunction.minDist(a, b);
+      }
+      double agg = 0.;
+      for(int d = 0, dims = q.dims; d < dims; d++) {
+        final double v = a.getMin(d) - b.getMin(d);
+        agg += v * v;
+      }
+      return agg;
+    }
+
+    /**
+     * Load the points of a reference leaf into {@link #spts}.
+     *
+     * @param sn Reference leaf
+     * @return Number of points
+     */
+    int loadLeaf(Node sn) {
+      final int size = sn.size();
+      if(spts.length < size) {
+        spts = new SpatialComparable[size];
+      }
+      for(int j = 0; j < size; j++) {
+        spts[j] = sn.point(j);
+      }
+      return size;
+    }
+
+    /**
+     * Split the query node rather than the reference node.
+     *
+     * @param qn Query node
+     * @param sn Reference node
+     * @return {@code true} to split the query node
+     */
+    boolean splitQuery(Node qn, Node sn) {
+      return !qn.isLeaf() && (sn.isLeaf() || qn.size() >= sn.size());
+    }
+
+    /**
+     * Convert an internal distance to the output distance.
+     *
+     * @param d Internal distance
+     * @return Output distance
+     */
+    double output(double d) {
+      return euclidean && !squared ? Math.sqrt(d) : d;
+    }
+  }
+
+  /**
+   * Worker for the kNN join of a query subtree.
+   *
+   * @author Erich Schubert
+   */
+  private class KNNWorker extends Worker implements Callable<KNNWorker> {
+    /**
+     * Number of neighbors.
+     */
+    final int k;
+
+    /**
+     * Shared heap storage: distances, reference object ids, and heap sizes,
+     * indexed by query point number. Each worker only modifies the entries of
+     * its own query points.
+     */
+    final double[] heapd;
+
+    /**
+     * Reference object ids of the heap entries.
+     */
+    final int[] heapi;
+
+    /**
+     * Heap sizes.
+     */
+    final int[] heaps;
+
+    /**
+     * Upper bound of the k-distances in each query node, by node id.
+     */
+    final double[] bound;
+
+    /**
+     * Output consumer.
+     */
+    final KNNConsumer out;
+
+    /**
+     * Buffers for best-first ordering, per recursion depth.
+     */
+    Node[][] nbuf = new Node[8][];
+
+    /**
+     * Buffers for best-first ordering, per recursion depth.
+     */
+    double[][] dbuf = new double[8][];
+
+    /**
+     * Buffers for best-first ordering, per recursion depth.
+     */
+    int[][] ibuf = new int[8][];
+
+    /**
+     * Constructor.
+     *
+     * @param q Query tree
+     * @param s Reference tree
+     * @param k Number of neighbors
+     * @param root Query subtree
+     * @param heapd Heap distances
+     * @param heapi Heap reference ids
+     * @param heaps Heap sizes
+     * @param bound Node bounds
+     * @param out Output consumer
+     */
+    KNNWorker(JoinTree q, JoinTree s, int k, Node root, double[] heapd, int[] heapi, int[] heaps, double[] bound, KNNConsumer out) {
+      super(q, s, root);
+      this.k = k;
+      this.heapd = heapd;
+      this.heapi = heapi;
+      this.heaps = heaps;
+      this.bound = bound;
+      this.out = out;
+    }
+
+    @Override
+    public KNNWorker call() {
+      if(k > 0) {
+        final Node sroot = s.root();
+        knn(root, sroot, nodeDistance(root, sroot), 0);
+      }
+      // Emit the results of this subtree.
+      ModifiableDoubleDBIDList list = DBIDUtil.newDistanceDBIDList(k);
+      DBIDVar var = DBIDUtil.newVar();
+      synchronized(out) {
+        emit(root, list, var);
+      }
+      return this;
+    }
+
+    /**
+     * Emit the results of a query subtree.
+     *
+     * @param qn Query node
+     * @param list Output buffer
+     * @param var Variable for reference ids
+     */
+    private void emit(Node qn, ModifiableDoubleDBIDList list, DBIDVar var) {
+      if(!qn.isLeaf()) {
+        for(int c = 0, e = qn.numChildren(); c < e; c++) {
+          emit(qn.child(c), list, var);
+        }
+        return;
+      }
+      for(int j = 0, e = qn.size(); j < e; j++) {
+        final int i = qn.offset(j), off = i * k;
+        list.clear();
+        for(int l = 0; l < heaps[i]; l++) {
+          list.add(output(heapd[off + l]), DBIDFactory.FACTORY.assignVar(var, heapi[off + l]));
+        }
+        list.sort();
+        out.accept(qn.dbid(j), list);
+      }
+    }
+
+    /**
+     * Process a pair of nodes.
+     *
+     * @param qn Query node
+     * @param sn Reference node
+     * @param dist Minimum distance of the nodes
+     * @param depth Recursion depth
+     */
+    private void knn(Node qn, Node sn, double dist, int depth) {
+      if(qn.isLeaf() && sn.isLeaf()) {
+        leafJoin(qn, sn);
+        return;
+      }
+      final int qid = qn.id();
+      if(splitQuery(qn, sn)) {
+        double b = 0.;
+        for(int c = 0, e = qn.numChildren(); c < e; c++) {
+          final Node child = qn.child(c);
+          final int cid = child.id();
+          final double d = nodeDistance(child, sn);
+          if(d <= bound[cid]) {
+            knn(child, sn, d, depth + 1);
+          }
+          b = bound[cid] > b ? bound[cid] : b;
+        }
+        bound[qid] = b < bound[qid] ? b : bound[qid];
+        return;
+      }
+      // Visit the reference children best-first.
+      final int cnt = sn.numChildren();
+      if(depth >= dbuf.length) {
+        nbuf = Arrays.copyOf(nbuf, depth << 1);
+        dbuf = Arrays.copyOf(dbuf, depth << 1);
+        ibuf = Arrays.copyOf(ibuf, depth << 1);
+      }
+      Node[] ns = nbuf[depth];
+      double[] ds = dbuf[depth];
+      int[] is = ibuf[depth];
+      if(ds == null || ds.length < cnt) {
+        ns = nbuf[depth] = new Node[cnt];
+        ds = dbuf[depth] = new double[cnt];
+        is = ibuf[depth] = new int[cnt];
+      }
+      for(int i = 0; i < cnt; i++) {
+        ns[i] = sn.child(i);
+        ds[i] = nodeDistance(qn, ns[i]);
+        is[i] = i;
+      }
+      DoubleIntegerArrayQuickSort.sort(ds, is, cnt);
+      for(int i = 0; i < cnt && ds[i] <= bound[qid]; i++) {
+        knn(qn, ns[is[i]], ds[i], depth + 1);
+      }
+      Arrays.fill(ns, 0, cnt, null);
+    }
+
+    /**
+     * Join two leaves.
+     *
+     * @param qn Query leaf
+     * @param sn Reference leaf
+     */
+    private void leafJoin(Node qn, Node sn) {
+      final int ssize = loadLeaf(sn);
+      double b = 0.;
+      for(int j = 0, e = qn.size(); j < e; j++) {
+        final int i = qn.offset(j);
+        final SpatialComparable p = qn.point(j);
+        double kdist = heaps[i] < k ? Double.POSITIVE_INFINITY : heapd[i * k];
+        for(int l = 0; l < ssize; l++) {
+          final double d = pointDistance(p, spts[l]);
+          if(d < kdist) {
+            kdist = insert(i, d, DBIDUtil.asInteger(sn.dbid(l)));
+          }
+        }
+        b = kdist > b ? kdist : b;
+      }
+      final int qid = qn.id();
+      bound[qid] = b < bound[qid] ? b : bound[qid];
+    }
+
+    /**
+     * Insert into the max-heap of a query point.
+     *
+     * @param i Query point
+     * @param d Distance
+     * @param id Reference object id
+     * @return New k-distance
+     */
+    private double insert(int i, double d, int id) {
+      final int off = i * k;
+      int n = heaps[i], pos;
+      if(n < k) {
+        // Sift up
+        pos = n;
+        while(pos > 0) {
+          final int parent = (pos - 1) >>> 1;
+          if(heapd[off + parent] >= d) {
+            break;
+          }
+          heapd[off + pos] = heapd[off + parent];
+          heapi[off + pos] = heapi[off + parent];
+          pos = parent;
+        }
+        heaps[i] = ++n;
+      }
+      else {
+        // Replace the top, sift down
+        pos = 0;
+        while(true) {
+          int c = (pos << 1) + 1;
+          if(c >= n) {
+            break;
+          }
+          if(c + 1 < n && heapd[off + c + 1] > heapd[off + c]) {
+            ++c;
+          }
+          if(heapd[off + c] <= d) {
+            break;
+          }
+          heapd[off + pos] = heapd[off + c];
+          heapi[off + pos] = heapi[off + c];
+          pos = c;
+        }
+      }
+      heapd[off + pos] = d;
+      heapi[off + pos] = id;
+      return n < k ? Double.POSITIVE_INFINITY : heapd[off];
+    }
+  }
+
+  /**
+   * Worker for the distance join of a query subtree.
+   *
+   * @author Erich Schubert
+   */
+  private class RangeWorker extends Worker implements Callable<RangeWorker> {
+    /**
+     * Distance threshold (squared for Euclidean).
+     */
+    final double threshold;
+
+    /**
+     * Output consumer.
+     */
+    final PairConsumer out;
+
+    /**
+     * Output buffer, object ids.
+     */
+    int[] bufq = new int[1024], bufs = new int[1024];
+
+    /**
+     * Output buffer distances.
+     */
+    double[] bufd = new double[1024];
+
+    /**
+     * Number of buffered pairs.
+     */
+    int buffered;
+
+    /**
+     * Constructor.
+     *
+     * @param q Query tree
+     * @param s Reference tree
+     * @param threshold Distance threshold
+     * @param root Query subtree
+     * @param out Output consumer
+     */
+    RangeWorker(JoinTree q, JoinTree s, double threshold, Node root, PairConsumer out) {
+      super(q, s, root);
+      this.threshold = threshold;
+      this.out = out;
+    }
+
+    @Override
+    public RangeWorker call() {
+      final Node sroot = s.root();
+      if(nodeDistance(root, sroot) <= threshold) {
+        range(root, sroot);
+      }
+      flush();
+      return this;
+    }
+
+    /**
+     * Process a pair of nodes.
+     *
+     * @param qn Query node
+     * @param sn Reference node
+     */
+    private void range(Node qn, Node sn) {
+      if(qn.isLeaf() && sn.isLeaf()) {
+        final int ssize = loadLeaf(sn);
+        for(int j = 0, e = qn.size(); j < e; j++) {
+          final SpatialComparable p = qn.point(j);
+          for(int l = 0; l < ssize; l++) {
+            final double d = pointDistance(p, spts[l]);
+            if(d <= threshold) {
+              emit(DBIDUtil.asInteger(qn.dbid(j)), DBIDUtil.asInteger(sn.dbid(l)), d);
+            }
+          }
+        }
+        return;
+      }
+      if(splitQuery(qn, sn)) {
+        for(int c = 0, e = qn.numChildren(); c < e; c++) {
+          final Node child = qn.child(c);
+          if(nodeDistance(child, sn) <= threshold) {
+            range(child, sn);
+          }
+        }
+        return;
+      }
+      for(int c = 0, e = sn.numChildren(); c < e; c++) {
+        final Node child = sn.child(c);
+        if(nodeDistance(qn, child) <= threshold) {
+          range(qn, child);
+        }
+      }
+    }
+
+    /**
+     * Buffer a result pair.
+     *
+     * @param i Query object id
+     * @param j Reference object id
+     * @param d Distance
+     */
+    private void emit(int i, int j, double d) {
+      if(buffered == bufq.length) {
+        flush();
+      }
+      bufq[buffered] = i;
+      bufs[buffered] = j;
+      bufd[buffered] = d;
+      ++buffered;
+    }
+
+    /**
+     * Send the buffered pairs to the consumer.
+     */
+    private void flush() {
+      if(buffered == 0) {
+        return;
+      }
+      DBIDVar qv = DBIDUtil.newVar(), sv = DBIDUtil.newVar();
+      synchronized(out) {
+        for(int i = 0; i < buffered; i++) {
+          out.accept(DBIDFactory.FACTORY.assignVar(qv, bufq[i]), DBIDFactory.FACTORY.assignVar(sv, bufs[i]), output(bufd[i]));
+        }
+      }
+      buffered = 0;
+    }
+  }
+}
@@ -0,0 +1,636 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.join;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.data.spatial.SpatialComparable;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDList;
+import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDListIter;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.database.relation.RelationUtil;
+import de.lmu.ifi.dbs.elki.index.tree.DirectoryEntry;
+import de.lmu.ifi.dbs.elki.index.tree.LeafEntry;
+import de.lmu.ifi.dbs.elki.index.tree.spatial.SpatialEntry;
+import de.lmu.ifi.dbs.elki.index.tree.spatial.kd.SmallMemoryKDTree;
+import de.lmu.ifi.dbs.elki.index.tree.spatial.rstarvariants.AbstractRStarTree;
+import de.lmu.ifi.dbs.elki.index.tree.spatial.rstarvariants.AbstractRStarTreeNode;
+import de.lmu.ifi.dbs.elki.result.ResultUtil;
+import de.lmu.ifi.dbs.elki.utilities.exceptions.MissingPrerequisitesException;
+
+/**
+ * Read-only view of a spatial index tree, as used by {@link DualTreeJoin}.
+ * <p>
+ * The view traverses the nodes of the existing index, and does not copy the
+ * data. R*-tree variants are read through their page file, using the bounding
+ * boxes of the directory entries; only the numbering of the points and the
+ * subtree sizes are kept, as two integers per page. The
+ * {@link SmallMemoryKDTree} does not store bounding boxes, so these are derived
+ * from the splitting objects during the traversal, starting with the bounding
+ * box of the data. The splitting object of each inner k-d-tree node is a leaf
+ * of its own, between the two subtrees.
+ * <p>
+ * The index must not be modified while the view is in use.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ */
+public abstract class JoinTree {
+  /**
+   * Indexed relation.
+   */
+  final Relation<? extends NumberVector> relation;
+
+  /**
+   * Dimensionality.
+   */
+  final int dims;
+
+  /**
+   * Constructor.
+   *
+   * @param relation Indexed relation
+   */
+  JoinTree(Relation<? extends NumberVector> relation) {
+    this.relation = relation;
+    this.dims = RelationUtil.dimensionality(relation);
+  }
+
+  /**
+   * Get a view of the spatial index of a relation.
+   *
+   * @param relation Relation, with an R*-tree or a k-d-tree index
+   * @return View
+   */
+  public static JoinTree build(Relation<? extends NumberVector> relation) {
+    Collection<AbstractRStarTree<?, ?, ?>> rtrees = ResultUtil.filterResults(relation.getHierarchy(), relation, AbstractRStarTree.class);
+    if(!rtrees.isEmpty()) {
+      return build(rtrees.iterator().next(), relation);
+    }
+    Collection<SmallMemoryKDTree<?>> kdtrees = ResultUtil.filterResults(relation.getHierarchy(), relation, SmallMemoryKDTree.class);
+    if(!kdtrees.isEmpty()) {
+      return build(kdtrees.iterator().next(), relation);
+    }
+    throw new MissingPrerequisitesException("Dual-tree joins need an R*-tree or a k-d-tree index.");
+  }
+
+  /**
+   * Get a view of an R*-tree.
+   *
+   * @param tree Tree
+   * @param relation Indexed relation
+   * @return View
+   */
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  public static JoinTree build(AbstractRStarTree<?, ?, ?> tree, Relation<? extends NumberVector> relation) {
+    return new RStarView((AbstractRStarTree) tree, relation);
+  }
+
+  /**
+   * Get a view of a k-d-tree.
+   *
+   * @param tree Tree
+   * @param relation Indexed relation
+   * @return View
+   */
+  public static JoinTree build(SmallMemoryKDTree<?> tree, Relation<? extends NumberVector> relation) {
+    return new KDView(tree, relation);
+  }
+
+  /**
+   * Get the root node.
+   *
+   * @return Root node
+   */
+  abstract Node root();
+
+  /**
+   * Get the number of node ids, for arrays of per-node values.
+   *
+   * @return Upper bound of the node ids
+   */
+  abstract int numNodeIds();
+
+  /**
+   * Switch the index to read-only mode for concurrent traversal.
+   *
+   * @return Previous mode, for {@link #exitReadOnly}
+   */
+  boolean enterReadOnly() {
+    return true;
+  }
+
+  /**
+   * Restore the previous mode of the index.
+   *
+   * @param previous Previous mode, as returned by {@link #enterReadOnly}
+   */
+  void exitReadOnly(boolean previous) {
+    // Nothing to do by default.
+  }
+
+  /**
+   * Get the number of points.
+   *
+   * @return Size
+   */
+  public abstract int size();
+
+  /**
+   * Get the dimensionality.
+   *
+   * @return Dimensionality
+   */
+  public int getDimensionality() {
+    return dims;
+  }
+
+  /**
+   * Get the object ids.
+   *
+   * @return Object ids
+   */
+  public DBIDs getDBIDs() {
+    return relation.getDBIDs();
+  }
+
+  /**
+   * Node of the tree, with its bounding box.
+   * <p>
+   * Node objects are created during the traversal, and must only be used by a
+   * single thread.
+   *
+   * @author Erich Schubert
+   */
+  abstract static class Node implements SpatialComparable {
+    /**
+     * Unique id of the node, less than {@link JoinTree#numNodeIds()}.
+     *
+     * @return Node id
+     */
+    abstract int id();
+
+    /**
+     * Number of points in the subtree.
+     *
+     * @return Size
+     */
+    abstract int size();
+
+    /**
+     * Test whether the node is a leaf.
+     *
+     * @return {@code true} for leaves
+     */
+    abstract boolean isLeaf();
+
+    /**
+     * Number of children of an inner node.
+     *
+     * @return Number of children
+     */
+    abstract int numChildren();
+
+    /**
+     * Get a child of an inner node.
+     *
+     * @param i Child number
+     * @return Child node
+     */
+    abstract Node child(int i);
+
+    /**
+     * Unique number of a point of a leaf, less than {@link JoinTree#size()}.
+     *
+     * @param j Point number within the leaf
+     * @return Point number within the tree
+     */
+    abstract int offset(int j);
+
+    /**
+     * Get the coordinates of a point of a leaf.
+     *
+     * @param j Point number within the leaf
+     * @return Point
+     */
+    abstract SpatialComparable point(int j);
+
+    /**
+     * Get the object id of a point of a leaf.
+     *
+     * @param j Point number within the leaf
+     * @return Object id, only valid until the next call
+     */
+    abstract DBIDRef dbid(int j);
+  }
+
+  /**
+   * View of an R*-tree variant, reading the nodes through the page file.
+   *
+   * @author Erich Schubert
+   *
+   * @param <N> Node type
+   * @param <E> Entry type
+   */
+  private static class RStarView<N extends AbstractRStarTreeNode<N, E>, E extends SpatialEntry> extends JoinTree {
+    /**
+     * Tree.
+     */
+    final AbstractRStarTree<N, E, ?> tree;
+
+    /**
+     * Bounding box of the root.
+     */
+    final SpatialComparable rootbox;
+
+    /**
+     * First point number and number of points of each page.
+     */
+    int[] pstart = new int[16], psize = new int[16];
+
+    /**
+     * Number of points.
+     */
+    final int size;
+
+    /**
+     * Constructor.
+     *
+     * @param tree Tree
+     * @param relation Indexed relation
+     */
+    RStarView(AbstractRStarTree<N, E, ?> tree, Relation<? extends NumberVector> relation) {
+      super(relation);
+      this.tree = tree;
+      N root = tree.getRoot();
+      this.rootbox = root.getNumEntries() > 0 ? root.computeMBR() : null;
+      this.size = number(root, 0);
+    }
+
+    /**
+     * Number the points of a subtree in traversal order.
+     *
+     * @param n Node
+     * @param start First point number
+     * @return End of the point numbers
+     */
+    private int number(N n, int start) {
+      int end = start;
+      if(n.isLeaf()) {
+        end += n.getNumEntries();
+      }
+      else {
+        for(int j = 0; j < n.getNumEntries(); j++) {
+          end = number(tree.getNode(n.getEntry(j)), end);
+        }
+      }
+      final int id = n.getPageID();
+      if(id >= pstart.length) {
+        final int cap = Math.max(id + 1, pstart.length + (pstart.length >>> 1));
+        pstart = Arrays.copyOf(pstart, cap);
+        psize = Arrays.copyOf(psize, cap);
+      }
+      pstart[id] = start;
+      psize[id] = end - start;
+      return end;
+    }
+
+    @Override
+    Node root() {
+      return new RNode(tree.getRootID(), rootbox);
+    }
+
+    @Override
+    int numNodeIds() {
+      return pstart.length;
+    }
+
+    @Override
+    boolean enterReadOnly() {
+      final boolean previous = tree.isReadOnly();
+      tree.setReadOnly(true);
+      return previous;
+    }
+
+    @Override
+    void exitReadOnly(boolean previous) {
+      tree.setReadOnly(previous);
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+
+    /**
+     * Node of an R*-tree.
+     *
+     * @author Erich Schubert
+     */
+    private class RNode extends Node {
+      /**
+       * Page id.
+       */
+      final int id;
+
+      /**
+       * Bounding box, from the directory entry.
+       */
+      final SpatialComparable box;
+
+      /**
+       * Tree node, loaded on demand.
+       */
+      N node;
+
+      /**
+       * Constructor.
+       *
+       * @param id Page id
+       * @param box Bounding box
+       */
+      RNode(int id, SpatialComparable box) {
+        this.id = id;
+        this.box = box;
+      }
+
+      /**
+       * Get the tree node.
+       *
+       * @return Tree node
+       */
+      N node() {
+        return node != null ? node : (node = tree.getNode(id));
+      }
+
+      @Override
+      int id() {
+        return id;
+      }
+
+      @Override
+      int size() {
+        return psize[id];
+      }
+
+      @Override
+      boolean isLeaf() {
+        return node().isLeaf();
+      }
+
+      @Override
+      int numChildren() {
+        return node().getNumEntries();
+      }
+
+      @Override
+      Node child(int i) {
+        E e = node().getEntry(i);
+        return new RNode(((DirectoryEntry) e).getPageID(), e);
+      }
+
+      @Override
+      int offset(int j) {
+        return pstart[id] + j;
+      }
+
+      @Override
+      SpatialComparable point(int j) {
+        return node().getEntry(j);
+      }
+
+      @Override
+      DBIDRef dbid(int j) {
+        return ((LeafEntry) node().getEntry(j)).getDBID();
+      }
+
+      @Override
+      public int getDimensionality() {
+        return dims;
+      }
+
+      @Override
+      public double getMin(int dimension) {
+        return box.getMin(dimension);
+      }
+
+      @Override
+      public double getMax(int dimension) {
+        return box.getMax(dimension);
+      }
+    }
+  }
+
+  /**
+   * View of a k-d-tree, deriving the bounding boxes from the splits.
+   *
+   * @author Erich Schubert
+   */
+  private static class KDView extends JoinTree {
+    /**
+     * Objects in tree order.
+     */
+    final DoubleDBIDList order;
+
+    /**
+     * Maximum leaf size.
+     */
+    final int leafsize;
+
+    /**
+     * Bounding box of the data.
+     */
+    final double[] rootmin, rootmax;
+
+    /**
+     * Constructor.
+     *
+     * @param tree Tree
+     * @param relation Indexed relation
+     */
+    KDView(SmallMemoryKDTree<?> tree, Relation<? extends NumberVector> relation) {
+      super(relation);
+      this.order = tree.getTreeOrder();
+      this.leafsize = tree.getLeafSize();
+      this.rootmin = new double[dims];
+      this.rootmax = new double[dims];
+      Arrays.fill(rootmin, Double.POSITIVE_INFINITY);
+      Arrays.fill(rootmax, Double.NEGATIVE_INFINITY);
+      for(DBIDIter it = order.iter(); it.valid(); it.advance()) {
+        final NumberVector v = relation.get(it);
+        for(int d = 0; d < dims; d++) {
+          final double x = v.doubleValue(d);
+          rootmin[d] = x < rootmin[d] ? x : rootmin[d];
+          rootmax[d] = x > rootmax[d] ? x : rootmax[d];
+        }
+      }
+    }
+
+    @Override
+    Node root() {
+      return new KDNode(0, order.size(), 0, rootmin, rootmax, false);
+    }
+
+    @Override
+    int numNodeIds() {
+      // Inner nodes use their splitting object, leaves their first object.
+      return order.size() << 1;
+    }
+
+    @Override
+    public int size() {
+      return order.size();
+    }
+
+    /**
+     * Node of a k-d-tree, an interval of the tree order.
+     *
+     * @author Erich Schubert
+     */
+    private class KDNode extends Node {
+      /**
+       * Interval of the tree order.
+       */
+      final int left, right;
+
+      /**
+       * Splitting axis.
+       */
+      final int axis;
+
+      /**
+       * Bounding box, shared with the parent where unchanged.
+       */
+      final double[] min, max;
+
+      /**
+       * Splitting object of the parent, as a leaf of its own.
+       */
+      final boolean single;
+
+      /**
+       * Iterator, allocated on demand.
+       */
+      DoubleDBIDListIter iter;
+
+      /**
+       * Constructor.
+       *
+       * @param left Interval start
+       * @param right Interval end
+       * @param axis Splitting axis
+       * @param min Bounding box minimum
+       * @param max Bounding box maximum
+       * @param single Splitting object of the parent
+       */
+      KDNode(int left, int right, int axis, double[] min, double[] max, boolean single) {
+        this.left = left;
+        this.right = right;
+        this.axis = axis;
+        this.min = min;
+        this.max = max;
+        this.single = single;
+      }
+
+      /**
+       * Get the iterator.
+       *
+       * @return Iterator
+       */
+      DoubleDBIDListIter iter() {
+        return iter != null ? iter : (iter = order.iter());
+      }
+
+      @Override
+      int id() {
+        return isLeaf() ? order.size() + left : (left + right) >>> 1;
+      }
+
+      @Override
+      int size() {
+        return right - left;
+      }
+
+      @Override
+      boolean isLeaf() {
+        return single || right - left <= leafsize;
+      }
+
+      @Override
+      int numChildren() {
+        return ((left + right) >>> 1) + 1 < right ? 3 : 2;
+      }
+
+      @Override
+      Node child(int i) {
+        final int middle = (left + right) >>> 1, next = axis + 1 < dims ? axis + 1 : 0;
+        final NumberVector split = relation.get(iter().seek(middle));
+        if(i == 1) {
+          final double[] p = split.toArray();
+          return new KDNode(middle, middle + 1, next, p, p, true);
+        }
+        if(i == 0) {
+          final double[] cmax = max.clone();
+          cmax[axis] = split.doubleValue(axis);
+          return new KDNode(left, middle, next, min, cmax, false);
+        }
+        final double[] cmin = min.clone();
+        cmin[axis] = split.doubleValue(axis);
+        return new KDNode(middle + 1, right, next, cmin, max, false);
+      }
+
+      @Override
+      int offset(int j) {
+        return left + j;
+      }
+
+      @Override
+      SpatialComparable point(int j) {
+        return relation.get(iter().seek(left + j));
+      }
+
+      @Override
+      DBIDRef dbid(int j) {
+        return iter().seek(left + j);
+      }
+
+      @Override
+      public int getDimensionality() {
+        return dims;
+      }
+
+      @Override
+      public double getMin(int dimension) {
+        return min[dimension];
+      }
+
+      @Override
+      public double getMax(int dimension) {
+        return max[dimension];
+      }
+    }
+  }
+}
@@ -0,0 +1,378 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.outlier.clustering;
+
+import java.util.Arrays;
+
+import de.lmu.ifi.dbs.elki.algorithm.AbstractAlgorithm;
+import de.lmu.ifi.dbs.elki.algorithm.clustering.hierarchical.AbstractHDBSCAN;
+import de.lmu.ifi.dbs.elki.algorithm.clustering.hierarchical.HDBSCANLinearMemory;
+import de.lmu.ifi.dbs.elki.algorithm.clustering.hierarchical.PointerDensityHierarchyRepresentationResult;
+import de.lmu.ifi.dbs.elki.algorithm.clustering.hierarchical.extraction.HDBSCANHierarchyExtraction;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.OutlierAlgorithm;
+import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.datastore.DBIDDataStore;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.DoubleDataStore;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableIntegerDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDVar;
+import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
+import de.lmu.ifi.dbs.elki.database.query.knn.KNNQuery;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Title;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.AbstractParameterizer;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.ObjectParameter;
+
+/**
+ * Global-Local Outlier Scores from Hierarchies (GLOSH).
+ * <p>
+ * The score of an object compares the density level at which it leaves its
+ * cluster in the condensed HDBSCAN hierarchy to the highest density level of
+ * that cluster (or any of its sub-clusters).
+ * <p>
+ * The condensed hierarchy is kept in a {@link GLOSHPredictor}, which is added
+ * to the result. It can score new objects against the fitted hierarchy by
+ * locating their attachment point in the minimum spanning tree, without
+ * rerunning the clustering.
+ * <p>
+ * Reference:
+ * <p>
+ * R. J. G. B. Campello, D. Moulavi, A. Zimek, J. Sander<br>
+ * Hierarchical Density Estimates for Data Clustering, Visualization, and
+ * Outlier Detection<br>
+ * ACM Transactions on Knowledge Discovery from Data (TKDD)
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ *
+ * @composed - - - AbstractHDBSCAN
+ * @navassoc - create - GLOSHPredictor
+ *
+ * @param <O> Object type
+ */
+@Title("GLOSH: Global-Local Outlier Scores from Hierarchies")
+@Reference(authors = "R. J. G. B. Campello, D. Moulavi, A. Zimek, J. Sander", //
+    title = "Hierarchical Density Estimates for Data Clustering, Visualization, and Outlier Detection", //
+    booktitle = "ACM Transactions on Knowledge Discovery from Data (TKDD)", //
+    url = "https://doi.org/10.1145/2733381", //
+    bibkey = "DBLP:journals/tkdd/CampelloMZS15")
+public class GLOSH<O> extends AbstractAlgorithm<OutlierResult> implements OutlierAlgorithm {
+  /**
+   * Class logger.
+   */
+  private static final Logging LOG = Logging.getLogger(GLOSH.class);
+
+  /**
+   * HDBSCAN algorithm to build the hierarchy.
+   */
+  protected AbstractHDBSCAN<O, PointerDensityHierarchyRepresentationResult> hdbscan;
+
+  /**
+   * Minimum cluster size.
+   */
+  protected int minClSize;
+
+  /**
+   * Constructor.
+   *
+   * @param hdbscan HDBSCAN algorithm to build the hierarchy
+   * @param minClSize Minimum cluster size
+   */
+  public GLOSH(AbstractHDBSCAN<O, PointerDensityHierarchyRepresentationResult> hdbscan, int minClSize) {
+    super();
+    this.hdbscan = hdbscan;
+    this.minClSize = minClSize;
+  }
+
+  @Override
+  public OutlierResult run(Database database) {
+    GLOSHPredictor<O> predictor = fit(database);
+    OutlierResult result = predictor.getTrainingScores();
+    result.addChildResult(predictor);
+    return result;
+  }
+
+  /**
+   * Fit the hierarchy, for scoring new objects.
+   *
+   * @param database Database
+   * @return Predictor
+   */
+  public GLOSHPredictor<O> fit(Database database) {
+    Relation<O> relation = database.getRelation(hdbscan.getDistanceFunction().getInputTypeRestriction());
+    PointerDensityHierarchyRepresentationResult hier = hdbscan.run(database);
+    DistanceQuery<O> dq = database.getDistanceQuery(relation, hdbscan.getDistanceFunction());
+    KNNQuery<O> knnq = database.getKNNQuery(dq, hdbscan.getMinPts());
+    return condense(hier, relation, knnq);
+  }
+
+  /**
+   * Build the condensed cluster tree, bottom-up.
+   * <p>
+   * Merges are processed in ascending order. A component is a cluster once it
+   * has at least minClSize objects. When a smaller component joins a cluster,
+   * its objects leave the cluster at this level (in the top-down view); when
+   * two clusters join, they become the children of a new cluster.
+   *
+   * @param hier Pointer hierarchy
+   * @param relation Data relation
+   * @param knnq kNN query on the training data
+   * @return Predictor
+   */
+  private GLOSHPredictor<O> condense(PointerDensityHierarchyRepresentationResult hier, Relation<O> relation, KNNQuery<O> knnq) {
+    final boolean squared = hier.isSquared();
+    final ArrayDBIDs order = hier.topologicalSort();
+    final DBIDDataStore pi = hier.getParentStore();
+    final DoubleDataStore lambda = hier.getParentDistanceStore();
+    final int size = order.size();
+    WritableIntegerDataStore pos = DataStoreUtil.makeIntegerStorage(order, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_TEMP, -1);
+    for(DBIDArrayIter it = order.iter(); it.valid(); it.advance()) {
+      pos.putInt(it, it.getOffset());
+    }
+    // Components: union-find with linked member lists
+    Components comp = new Components(size);
+    // Condensed clusters: at most one per merge
+    int[] cparent = new int[size];
+    double[] cbirth = new double[size], cepsmin = new double[size];
+    // Objects: exit level and cluster
+    double[] exit = new double[size];
+    int[] assign = new int[size];
+    Arrays.fill(exit, Double.POSITIVE_INFINITY);
+    Arrays.fill(assign, -1);
+    int nclus = 0;
+
+    DBIDVar p = DBIDUtil.newVar();
+    for(DBIDArrayIter it = order.iter(); it.valid(); it.advance()) {
+      if(DBIDUtil.equal(it, pi.assignVar(it, p))) {
+        continue; // Root
+      }
+      final double d = squared ? Math.sqrt(lambda.doubleValue(it)) : lambda.doubleValue(it);
+      final int a = comp.find(it.getOffset()), b = comp.find(pos.intValue(p));
+      if(a == b) {
+        continue;
+      }
+      final boolean biga = comp.size[a] >= minClSize, bigb = comp.size[b] >= minClSize;
+      int c = -1;
+      if(biga && bigb) {
+        nclus = ensureCluster(comp, a, d, nclus, cparent, cbirth, cepsmin, exit, assign);
+        nclus = ensureCluster(comp, b, d, nclus, cparent, cbirth, cepsmin, exit, assign);
+        final int ca = comp.cluster[a], cb = comp.cluster[b];
+        c = nclus++;
+        cparent[c] = -1;
+        cbirth[c] = Double.POSITIVE_INFINITY;
+        cepsmin[c] = Math.min(cepsmin[ca], cepsmin[cb]);
+        cparent[ca] = cparent[cb] = c;
+        cbirth[ca] = cbirth[cb] = d;
+      }
+      else if(biga || bigb) {
+        final int big = biga ? a : b, small = biga ? b : a;
+        nclus = ensureCluster(comp, big, d, nclus, cparent, cbirth, cepsmin, exit, assign);
+        c = comp.cluster[big];
+        for(int m = comp.head[small]; m >= 0; m = comp.next[m]) {
+          exit[m] = d;
+          assign[m] = c;
+        }
+      }
+      final int r = comp.union(a, b);
+      comp.cluster[r] = c;
+      if(c < 0 && comp.size[r] >= minClSize) {
+        nclus = ensureCluster(comp, r, d, nclus, cparent, cbirth, cepsmin, exit, assign);
+      }
+    }
+    pos.destroy();
+    WritableDoubleDataStore exitStore = DataStoreUtil.makeDoubleStorage(order, DataStoreFactory.HINT_DB, Double.POSITIVE_INFINITY);
+    WritableIntegerDataStore assignStore = DataStoreUtil.makeIntegerStorage(order, DataStoreFactory.HINT_DB, -1);
+    for(DBIDArrayIter it = order.iter(); it.valid(); it.advance()) {
+      exitStore.putDouble(it, exit[it.getOffset()]);
+      assignStore.putInt(it, assign[it.getOffset()]);
+    }
+    return new GLOSHPredictor<>(relation, knnq, hdbscan.getMinPts(), squared, hier.getCoreDistanceStore(), exitStore, assignStore, //
+        Arrays.copyOf(cparent, nclus), Arrays.copyOf(cbirth, nclus), Arrays.copyOf(cepsmin, nclus));
+  }
+
+  /**
+   * Ensure that a component has a condensed cluster; if not, create a new
+   * cluster containing all its members, which leave the cluster at this level.
+   *
+   * @param comp Components
+   * @param r Component root
+   * @param d Current level
+   * @param nclus Number of clusters
+   * @param cparent Cluster parents
+   * @param cbirth Cluster birth levels
+   * @param cepsmin Cluster minimum levels
+   * @param exit Object exit levels
+   * @param assign Object cluster assignment
+   * @return New number of clusters
+   */
+  private static int ensureCluster(Components comp, int r, double d, int nclus, int[] cparent, double[] cbirth, double[] cepsmin, double[] exit, int[] assign) {
+    if(comp.cluster[r] >= 0) {
+      return nclus;
+    }
+    final int c = nclus;
+    cparent[c] = -1;
+    cbirth[c] = Double.POSITIVE_INFINITY;
+    cepsmin[c] = d;
+    for(int m = comp.head[r]; m >= 0; m = comp.next[m]) {
+      exit[m] = d;
+      assign[m] = c;
+    }
+    comp.cluster[r] = c;
+    return nclus + 1;
+  }
+
+  @Override
+  public TypeInformation[] getInputTypeRestriction() {
+    return hdbscan.getInputTypeRestriction();
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Connected components, using union-find with linked member lists.
+   *
+   * @author Erich Schubert
+   */
+  private static class Components {
+    /**
+     * Union-find parent, component size, and condensed cluster.
+     */
+    int[] parent, size, cluster;
+
+    /**
+     * Member lists: first and last member of each component, next member.
+     */
+    int[] head, tail, next;
+
+    /**
+     * Constructor.
+     *
+     * @param n Number of objects
+     */
+    Components(int n) {
+      parent = new int[n];
+      size = new int[n];
+      cluster = new int[n];
+      head = new int[n];
+      tail = new int[n];
+      next = new int[n];
+      for(int i = 0; i < n; i++) {
+        parent[i] = head[i] = tail[i] = i;
+        size[i] = 1;
+        cluster[i] = next[i] = -1;
+      }
+    }
+
+    /**
+     * Find the component root, with path halving.
+     *
+     * @param i Object
+     * @return Root
+     */
+    int find(int i) {
+      while(parent[i] != i) {
+        i = parent[i] = parent[parent[i]];
+      }
+      return i;
+    }
+
+    /**
+     * Join two components (by size).
+     *
+     * @param a First root
+     * @param b Second root
+     * @return New root
+     */
+    int union(int a, int b) {
+      if(size[a] < size[b]) {
+        int t = a;
+        a = b;
+        b = t;
+      }
+      parent[b] = a;
+      size[a] += size[b];
+      next[tail[a]] = head[b];
+      tail[a] = tail[b];
+      return a;
+    }
+  }
+
+  /**
+   * Parameterization class
+   *
+   * @author Erich Schubert
+   *
+   * @hidden
+   *
+   * @param <O> Object type
+   */
+  public static class Parameterizer<O> extends AbstractParameterizer {
+    /**
+     * The HDBSCAN algorithm to use.
+     */
+    public static final OptionID HDBSCAN_ID = new OptionID("glosh.hdbscan", "The HDBSCAN algorithm to build the density hierarchy.");
+
+    /**
+     * HDBSCAN algorithm to build the hierarchy.
+     */
+    protected AbstractHDBSCAN<O, PointerDensityHierarchyRepresentationResult> hdbscan;
+
+    /**
+     * Minimum cluster size.
+     */
+    protected int minClSize;
+
+    @Override
+    protected void makeOptions(Parameterization config) {
+      super.makeOptions(config);
+      ObjectParameter<AbstractHDBSCAN<O, PointerDensityHierarchyRepresentationResult>> hdbscanP = new ObjectParameter<>(HDBSCAN_ID, AbstractHDBSCAN.class, HDBSCANLinearMemory.class);
+      if(config.grab(hdbscanP)) {
+        hdbscan = hdbscanP.instantiateClass(config);
+      }
+      IntParameter minclustersP = new IntParameter(HDBSCANHierarchyExtraction.Parameterizer.MINCLUSTERSIZE_ID, 1) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+      if(config.grab(minclustersP)) {
+        minClSize = minclustersP.intValue();
+      }
+    }
+
+    @Override
+    protected GLOSH<O> makeInstance() {
+      return new GLOSH<>(hdbscan, minClSize);
+    }
+  }
+}
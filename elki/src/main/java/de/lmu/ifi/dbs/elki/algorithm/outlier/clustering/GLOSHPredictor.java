@@ -0,0 +1,238 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.outlier.clustering;
+
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.DoubleDataStore;
+import de.lmu.ifi.dbs.elki.database.datastore.IntegerDataStore;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDListIter;
+import de.lmu.ifi.dbs.elki.database.ids.KNNList;
+import de.lmu.ifi.dbs.elki.database.query.knn.KNNQuery;
+import de.lmu.ifi.dbs.elki.database.relation.DoubleRelation;
+import de.lmu.ifi.dbs.elki.database.relation.MaterializedDoubleRelation;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.math.DoubleMinMax;
+import de.lmu.ifi.dbs.elki.result.BasicResult;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierScoreMeta;
+import de.lmu.ifi.dbs.elki.result.outlier.ProbabilisticOutlierScore;
+
+/**
+ * Fitted GLOSH model, to score new objects without refitting the hierarchy.
+ * <p>
+ * This stores the condensed cluster tree, the core distances, and a kNN query
+ * on the training data. A new object is attached to the training object with
+ * the smallest mutual reachability distance among its minPts nearest
+ * neighbors, which approximates its position in the minimum spanning tree.
+ * It is then scored relative to the cluster of this neighbor at the
+ * attachment level. This only needs a single kNN query per object.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ *
+ * @param <O> Object type
+ */
+public class GLOSHPredictor<O> extends BasicResult {
+  /**
+   * Training data.
+   */
+  private Relation<O> relation;
+
+  /**
+   * kNN query on the training data.
+   */
+  private KNNQuery<O> knnq;
+
+  /**
+   * Minimum number of points, for the core distance.
+   */
+  private int minPts;
+
+  /**
+   * Flag for squared distances.
+   */
+  private boolean squared;
+
+  /**
+   * Core distances of the training data.
+   */
+  private DoubleDataStore coredists;
+
+  /**
+   * Level at which training objects leave their cluster.
+   */
+  private DoubleDataStore exit;
+
+  /**
+   * Cluster assignment of the training objects, -1 for none.
+   */
+  private IntegerDataStore assign;
+
+  /**
+   * Parent of each condensed cluster, -1 for the root.
+   */
+  private int[] cparent;
+
+  /**
+   * Level at which a cluster joins its parent.
+   */
+  private double[] cbirth;
+
+  /**
+   * Minimum level of any object in the cluster or its children.
+   */
+  private double[] cepsmin;
+
+  /**
+   * Constructor.
+   *
+   * @param relation Training data
+   * @param knnq kNN query on the training data
+   * @param minPts Minimum number of points for the core distance
+   * @param squared Flag for squared distances
+   * @param coredists Core distances of the training data
+   * @param exit Level at which training objects leave their cluster
+   * @param assign Cluster assignment of the training objects
+   * @param cparent Parent of each condensed cluster
+   * @param cbirth Level at which a cluster joins its parent
+   * @param cepsmin Minimum level of each cluster
+   */
+  public GLOSHPredictor(Relation<O> relation, KNNQuery<O> knnq, int minPts, boolean squared, DoubleDataStore coredists, DoubleDataStore exit, IntegerDataStore assign, int[] cparent, double[] cbirth, double[] cepsmin) {
+    super("GLOSH model", "glosh-model");
+    this.relation = relation;
+    this.knnq = knnq;
+    this.minPts = minPts;
+    this.squared = squared;
+    this.coredists = coredists;
+    this.exit = exit;
+    this.assign = assign;
+    this.cparent = cparent;
+    this.cbirth = cbirth;
+    this.cepsmin = cepsmin;
+  }
+
+  /**
+   * Get the number of condensed clusters.
+   *
+   * @return Number of clusters
+   */
+  public int numberOfClusters() {
+    return cparent.length;
+  }
+
+  /**
+   * Get the GLOSH scores of the training data.
+   *
+   * @return Outlier result
+   */
+  public OutlierResult getTrainingScores() {
+    WritableDoubleDataStore scores = DataStoreUtil.makeDoubleStorage(relation.getDBIDs(), DataStoreFactory.HINT_DB);
+    DoubleMinMax minmax = new DoubleMinMax();
+    for(DBIDIter it = relation.iterDBIDs(); it.valid(); it.advance()) {
+      final int c = assign.intValue(it);
+      final double score = c < 0 ? 0. : score(cepsmin[c], exit.doubleValue(it));
+      scores.putDouble(it, score);
+      minmax.put(score);
+    }
+    return wrap(scores, relation, minmax);
+  }
+
+  /**
+   * Score new objects, without modifying the model.
+   *
+   * @param data New objects
+   * @return Outlier result
+   */
+  public OutlierResult predict(Relation<? extends O> data) {
+    WritableDoubleDataStore scores = DataStoreUtil.makeDoubleStorage(data.getDBIDs(), DataStoreFactory.HINT_DB);
+    DoubleMinMax minmax = new DoubleMinMax();
+    for(DBIDIter it = data.iterDBIDs(); it.valid(); it.advance()) {
+      final double score = predict(data.get(it));
+      scores.putDouble(it, score);
+      minmax.put(score);
+    }
+    return wrap(scores, data, minmax);
+  }
+
+  /**
+   * Score a single new object.
+   *
+   * @param obj Object
+   * @return GLOSH score
+   */
+  public double predict(O obj) {
+    KNNList knn = knnq.getKNNForObject(obj, minPts);
+    if(knn.size() == 0) {
+      return 0.;
+    }
+    // The object itself would be the first neighbor.
+    final double core = knn.size() >= minPts - 1 ? //
+        knn.iter().seek(Math.max(minPts - 2, 0)).doubleValue() : Double.POSITIVE_INFINITY;
+    // Attach to the neighbor with the smallest mutual reachability distance.
+    double best = Double.POSITIVE_INFINITY;
+    int nn = 0;
+    for(DoubleDBIDListIter it = knn.iter(); it.valid(); it.advance()) {
+      final double mrd = Math.max(Math.max(core, coredists.doubleValue(it)), it.doubleValue());
+      if(mrd < best) {
+        best = mrd;
+        nn = it.getOffset();
+      }
+    }
+    int c = assign.intValue(knn.iter().seek(nn));
+    if(c < 0) {
+      return 0.;
+    }
+    final double level = squared ? Math.sqrt(best) : best;
+    // Find the cluster of the neighbor that exists at this level.
+    while(cparent[c] >= 0 && cbirth[c] <= level) {
+      c = cparent[c];
+    }
+    return score(cepsmin[c], level);
+  }
+
+  /**
+   * Compute the GLOSH score.
+   *
+   * @param epsmin Minimum level of the cluster
+   * @param eps Level of the object
+   * @return Score
+   */
+  private static double score(double epsmin, double eps) {
+    return eps > 0 && eps < Double.POSITIVE_INFINITY ? Math.max(0., 1. - epsmin / eps) : 0.;
+  }
+
+  /**
+   * Wrap scores into an outlier result.
+   *
+   * @param scores Scores
+   * @param data Data relation
+   * @param minmax Score range
+   * @return Outlier result
+   */
+  private static OutlierResult wrap(WritableDoubleDataStore scores, Relation<?> data, DoubleMinMax minmax) {
+    DoubleRelation scoreres = new MaterializedDoubleRelation("GLOSH", "glosh-outlier", scores, data.getDBIDs());
+    OutlierScoreMeta meta = new ProbabilisticOutlierScore(minmax.getMin(), minmax.getMax());
+    return new OutlierResult(meta, scoreres);
+  }
+}
@@ -45,6 +45,7 @@ import de.lmu.ifi.dbs.elki.database.Database;
 import de.lmu.ifi.dbs.elki.database.QueryUtil;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
+import de.lmu.ifi.dbs.elki.database.query.knn.InstrumentedKNNQuery;
 import de.lmu.ifi.dbs.elki.database.query.knn.KNNQuery;
 import de.lmu.ifi.dbs.elki.database.query.knn.PreprocessorKNNQuery;
 import de.lmu.ifi.dbs.elki.database.relation.DoubleRelation;
@@ -187,7 +188,7 @@ public class ComputeKNNOutlierScores<O extends NumberVector> extends AbstractApp
     KNNQuery<O> knnq = QueryUtil.getKNNQuery(relation, distf, lim);
 
     // Precompute kNN:
-    if(!(knnq instanceof PreprocessorKNNQuery)) {
+    if(!(InstrumentedKNNQuery.unwrap(knnq) instanceof PreprocessorKNNQuery)) {
       MaterializeKNNPreprocessor<O> preproc = new MaterializeKNNPreprocessor<>(relation, distf, lim);
       preproc.initialize();
       relation.getHierarchy().add(relation, preproc);
@@ -195,7 +196,7 @@ public class ComputeKNNOutlierScores<O extends NumberVector> extends AbstractApp
 
     // Test that we now get a proper index query
     knnq = QueryUtil.getKNNQuery(relation, distf, lim);
-    if(!(knnq instanceof PreprocessorKNNQuery)) {
+    if(!(InstrumentedKNNQuery.unwrap(knnq) instanceof PreprocessorKNNQuery)) {
       throw new AbortException("Not using preprocessor knn query -- KNN queries using class: " + knnq.getClass());
     }
 
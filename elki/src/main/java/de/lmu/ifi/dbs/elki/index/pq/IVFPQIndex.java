@@ -0,0 +1,937 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.index.pq;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import de.lmu.ifi.dbs.elki.algorithm.clustering.kmeans.KMeansLloyd;
+import de.lmu.ifi.dbs.elki.algorithm.clustering.kmeans.initialization.KMeansPlusPlusInitialMeans;
+import de.lmu.ifi.dbs.elki.data.Cluster;
+import de.lmu.ifi.dbs.elki.data.Clustering;
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.data.model.KMeansModel;
+import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.data.type.VectorFieldTypeInformation;
+import de.lmu.ifi.dbs.elki.database.ProxyDatabase;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRange;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.KNNHeap;
+import de.lmu.ifi.dbs.elki.database.ids.KNNList;
+import de.lmu.ifi.dbs.elki.database.ids.ModifiableDoubleDBIDList;
+import de.lmu.ifi.dbs.elki.database.query.DatabaseQuery;
+import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
+import de.lmu.ifi.dbs.elki.database.query.knn.KNNQuery;
+import de.lmu.ifi.dbs.elki.database.query.range.RangeQuery;
+import de.lmu.ifi.dbs.elki.database.relation.MaterializedRelation;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.database.relation.RelationUtil;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.DistanceFunction;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.EuclideanDistanceFunction;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.SquaredEuclideanDistanceFunction;
+import de.lmu.ifi.dbs.elki.index.AbstractRefiningIndex;
+import de.lmu.ifi.dbs.elki.index.IndexFactory;
+import de.lmu.ifi.dbs.elki.index.KNNIndex;
+import de.lmu.ifi.dbs.elki.index.RangeIndex;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.logging.statistics.Duration;
+import de.lmu.ifi.dbs.elki.logging.statistics.LongStatistic;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.heap.DoubleIntegerMaxHeap;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+import de.lmu.ifi.dbs.elki.utilities.exceptions.AbortException;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.AbstractParameterizer;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.LessEqualConstraint;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.RandomParameter;
+import de.lmu.ifi.dbs.elki.utilities.random.RandomFactory;
+
+/**
+ * Inverted file index with product quantization (IVF-PQ), for approximate
+ * nearest neighbor search with Euclidean distance.
+ * <p>
+ * A coarse quantizer (k-means, trained with {@link KMeansLloyd} on a sample)
+ * partitions the data into inverted lists. The residual of each vector to its
+ * coarse centroid is split into subspaces, each quantized with its own
+ * k-means codebook of at most 256 entries, so every vector is stored as one
+ * byte per subspace plus its offset in the list.
+ * <p>
+ * Queries visit the lists of the nearest coarse centroids, and compute
+ * asymmetric distances (from the exact query residual to the quantized
+ * vectors) using one lookup table per list. Optionally, a multiple of k
+ * candidates is refined using exact distances.
+ * <p>
+ * Reference:
+ * <p>
+ * H. Jégou, M. Douze, C. Schmid<br>
+ * Product Quantization for Nearest Neighbor Search<br>
+ * IEEE Trans. Pattern Analysis and Machine Intelligence 33(1)
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ *
+ * @has - - - IVFPQKNNQuery
+ * @has - - - IVFPQRangeQuery
+ *
+ * @param <V> Vector type
+ */
+@Reference(authors = "H. Jégou, M. Douze, C. Schmid", //
+    title = "Product Quantization for Nearest Neighbor Search", //
+    booktitle = "IEEE Trans. Pattern Analysis and Machine Intelligence 33(1)", //
+    url = "https://doi.org/10.1109/TPAMI.2010.57", //
+    bibkey = "DBLP:journals/pami/JegouDS11")
+public class IVFPQIndex<V extends NumberVector> extends AbstractRefiningIndex<V> implements KNNIndex<V>, RangeIndex<V> {
+  /**
+   * Class logger.
+   */
+  private static final Logging LOG = Logging.getLogger(IVFPQIndex.class);
+
+  /**
+   * Number of vectors assigned by a single parallel task.
+   */
+  private static final int BLOCK = 1 << 12;
+
+  /**
+   * Number of inverted lists.
+   */
+  private final int nlist;
+
+  /**
+   * Number of subspaces.
+   */
+  private final int m;
+
+  /**
+   * Maximum codebook size per subspace.
+   */
+  private final int ksub;
+
+  /**
+   * Number of lists to visit per query.
+   */
+  private final int nprobe;
+
+  /**
+   * Refinement factor, 0 for no refinement.
+   */
+  private final int refine;
+
+  /**
+   * Training sample size.
+   */
+  private final int sampleSize;
+
+  /**
+   * Maximum number of k-means iterations.
+   */
+  private final int maxiter;
+
+  /**
+   * Random generator.
+   */
+  private final RandomFactory rnd;
+
+  /**
+   * Indexed objects.
+   */
+  private ArrayDBIDs ids;
+
+  /**
+   * Dimensionality.
+   */
+  private int dim;
+
+  /**
+   * Coarse centroids.
+   */
+  private double[][] centroids;
+
+  /**
+   * Subspace boundaries, m + 1 entries.
+   */
+  private int[] bounds;
+
+  /**
+   * Codebook of each subspace, entries of the subspace width concatenated.
+   */
+  private double[][] codebooks;
+
+  /**
+   * Offsets of the members of each list.
+   */
+  private int[][] members;
+
+  /**
+   * Codes of the members of each list, m bytes per member.
+   */
+  private byte[][] codes;
+
+  /**
+   * Constructor.
+   *
+   * @param relation Data relation
+   * @param nlist Number of inverted lists
+   * @param m Number of subspaces
+   * @param ksub Maximum codebook size per subspace
+   * @param nprobe Number of lists to visit per query
+   * @param refine Refinement factor, 0 for no refinement
+   * @param sampleSize Training sample size
+   * @param maxiter Maximum number of k-means iterations
+   * @param rnd Random generator
+   */
+  public IVFPQIndex(Relation<V> relation, int nlist, int m, int ksub, int nprobe, int refine, int sampleSize, int maxiter, RandomFactory rnd) {
+    super(relation);
+    this.nlist = nlist;
+    this.m = m;
+    this.ksub = ksub;
+    this.nprobe = nprobe;
+    this.refine = refine;
+    this.sampleSize = sampleSize;
+    this.maxiter = maxiter;
+    this.rnd = rnd;
+  }
+
+  @Override
+  public void initialize() {
+    ids = DBIDUtil.ensureArray(relation.getDBIDs());
+    final int size = ids.size();
+    if(size == 0) {
+      centroids = new double[0][];
+      members = new int[0][];
+      codes = new byte[0][];
+      return;
+    }
+    dim = RelationUtil.dimensionality(relation);
+    if(m > dim) {
+      throw new AbortException("Cannot split " + dim + " dimensions into " + m + " subspaces.");
+    }
+    bounds = new int[m + 1];
+    for(int j = 0; j <= m; j++) {
+      bounds[j] = j * dim / m;
+    }
+    Duration dur = LOG.isStatistics() ? LOG.newDuration(this.getClass().getName() + ".construction-time").begin() : null;
+    final Random random = rnd.getSingleThreadedRandom();
+    // Train the coarse quantizer on a sample:
+    DBIDs sample = DBIDUtil.randomSample(ids, Math.min(sampleSize, size), random);
+    double[][] train = new double[sample.size()][];
+    int i = 0;
+    for(DBIDIter it = sample.iter(); it.valid(); it.advance()) {
+      train[i++] = relation.get(it).toArray();
+    }
+    centroids = kmeans(train, Math.min(nlist, train.length), random);
+    // Train the product quantizer on the residuals:
+    for(double[] v : train) {
+      final double[] c = centroids[nearest(v, centroids)];
+      for(int d = 0; d < dim; d++) {
+        v[d] -= c[d];
+      }
+    }
+    codebooks = new double[m][];
+    for(int j = 0; j < m; j++) {
+      final int b = bounds[j], w = bounds[j + 1] - b;
+      double[][] sub = new double[train.length][w];
+      for(int k = 0; k < train.length; k++) {
+        System.arraycopy(train[k], b, sub[k], 0, w);
+      }
+      double[][] means = kmeans(sub, Math.min(ksub, train.length), random);
+      codebooks[j] = new double[means.length * w];
+      for(int k = 0; k < means.length; k++) {
+        System.arraycopy(means[k], 0, codebooks[j], k * w, w);
+      }
+    }
+    train = null;
+    // Assign all vectors to their lists:
+    final int[] assign = new int[size];
+    ForkJoinPool.commonPool().invoke(new BlockTask((begin, end) -> {
+      final double[] buf = new double[dim];
+      DBIDArrayIter it = ids.iter();
+      for(int j = begin; j < end; j++) {
+        assign[j] = nearest(toArray(relation.get(it.seek(j)), buf), centroids);
+      }
+    }, 0, size, BLOCK));
+    final int[] counts = new int[centroids.length];
+    for(int a : assign) {
+      counts[a]++;
+    }
+    members = new int[centroids.length][];
+    codes = new byte[centroids.length][];
+    for(int l = 0; l < centroids.length; l++) {
+      members[l] = new int[counts[l]];
+      counts[l] = 0;
+    }
+    for(int j = 0; j < size; j++) {
+      members[assign[j]][counts[assign[j]]++] = j;
+    }
+    // Encode the residuals of each list:
+    ForkJoinPool.commonPool().invoke(new BlockTask((begin, end) -> {
+      final double[] buf = new double[dim];
+      DBIDArrayIter it = ids.iter();
+      for(int l = begin; l < end; l++) {
+        final int[] mem = members[l];
+        final byte[] code = codes[l] = new byte[mem.length * m];
+        final double[] c = centroids[l];
+        for(int k = 0, p = 0; k < mem.length; k++) {
+          toArray(relation.get(it.seek(mem[k])), buf);
+          for(int d = 0; d < dim; d++) {
+            buf[d] -= c[d];
+          }
+          for(int j = 0; j < m; j++) {
+            code[p++] = (byte) nearestCode(buf, j);
+          }
+        }
+      }
+    }, 0, centroids.length, 1));
+    if(dur != null) {
+      LOG.statistics(dur.end());
+    }
+  }
+
+  /**
+   * Run k-means on the given data.
+   *
+   * @param data Data
+   * @param k Number of clusters
+   * @param random Random generator
+   * @return Cluster means
+   */
+  private double[][] kmeans(double[][] data, int k, Random random) {
+    final DBIDRange range = DBIDUtil.generateStaticDBIDRange(data.length);
+    try {
+      WritableDataStore<DoubleVector> store = DataStoreUtil.makeStorage(range, DataStoreFactory.HINT_DB, DoubleVector.class);
+      for(DBIDArrayIter it = range.iter(); it.valid(); it.advance()) {
+        store.put(it, DoubleVector.wrap(data[it.getOffset()]));
+      }
+      Relation<DoubleVector> rel = new MaterializedRelation<>("Training sample", "training-sample", //
+          new VectorFieldTypeInformation<>(DoubleVector.FACTORY, data[0].length), store, range);
+      KMeansLloyd<DoubleVector> km = new KMeansLloyd<>(SquaredEuclideanDistanceFunction.STATIC, k, maxiter, //
+          new KMeansPlusPlusInitialMeans<>(new RandomFactory(random.nextLong())));
+      Clustering<KMeansModel> clustering = km.run(new ProxyDatabase(range, rel), rel);
+      List<Cluster<KMeansModel>> clusters = clustering.getAllClusters();
+      double[][] means = new double[clusters.size()][];
+      for(int i = 0; i < means.length; i++) {
+        means[i] = clusters.get(i).getModel().getMean();
+      }
+      return means;
+    }
+    finally {
+      DBIDUtil.deallocateDBIDRange(range);
+    }
+  }
+
+  /**
+   * Copy a vector into a buffer.
+   *
+   * @param v Vector
+   * @param buf Buffer
+   * @return Buffer
+   */
+  private static double[] toArray(NumberVector v, double[] buf) {
+    for(int d = 0; d < buf.length; d++) {
+      buf[d] = v.doubleValue(d);
+    }
+    return buf;
+  }
+
+  /**
+   * Find the nearest centroid.
+   *
+   * @param v Vector
+   * @param cs Centroids
+   * @return Index of the nearest centroid
+   */
+  private static int nearest(double[] v, double[][] cs) {
+    double best = Double.POSITIVE_INFINITY;
+    int besti = 0;
+    for(int i = 0; i < cs.length; i++) {
+      final double[] c = cs[i];
+      double d = 0;
+      for(int j = 0; j < v.length && d < best; j++) {
+        final double diff = v[j] - c[j];
+        d += diff * diff;
+      }
+      if(d < best) {
+        best = d;
+        besti = i;
+      }
+    }
+    return besti;
+  }
+
+  /**
+   * Find the nearest codebook entry of one subspace.
+   *
+   * @param r Residual vector
+   * @param j Subspace
+   * @return Code
+   */
+  private int nearestCode(double[] r, int j) {
+    final int b = bounds[j], w = bounds[j + 1] - b;
+    final double[] cb = codebooks[j];
+    double best = Double.POSITIVE_INFINITY;
+    int besti = 0;
+    for(int k = 0, p = 0; p < cb.length; k++) {
+      double d = 0;
+      for(int x = 0; x < w; x++) {
+        final double diff = r[b + x] - cb[p++];
+        d += diff * diff;
+      }
+      if(d < best) {
+        best = d;
+        besti = k;
+      }
+    }
+    return besti;
+  }
+
+  /**
+   * Find the lists to visit for a query.
+   *
+   * @param q Query vector
+   * @return Lists to visit
+   */
+  private int[] probeLists(double[] q) {
+    final int n = Math.min(nprobe, centroids.length);
+    DoubleIntegerMaxHeap heap = new DoubleIntegerMaxHeap(n + 1);
+    for(int l = 0; l < centroids.length; l++) {
+      final double[] c = centroids[l];
+      double d = 0;
+      for(int j = 0; j < dim; j++) {
+        final double diff = q[j] - c[j];
+        d += diff * diff;
+      }
+      heap.add(d, l, n);
+    }
+    final int[] lists = new int[heap.size()];
+    for(int i = lists.length - 1; i >= 0; i--, heap.poll()) {
+      lists[i] = heap.peekValue();
+    }
+    return lists;
+  }
+
+  /**
+   * Compute the asymmetric distance table of a query for one list.
+   *
+   * @param q Query vector
+   * @param l List
+   * @param table Output table, ksub entries per subspace
+   */
+  private void distanceTable(double[] q, int l, double[] table) {
+    final double[] c = centroids[l];
+    for(int j = 0; j < m; j++) {
+      final int b = bounds[j], w = bounds[j + 1] - b;
+      final double[] cb = codebooks[j];
+      for(int k = 0, p = 0, t = j * ksub; p < cb.length; k++, t++) {
+        double d = 0;
+        for(int x = 0; x < w; x++) {
+          final double diff = q[b + x] - c[b + x] - cb[p++];
+          d += diff * diff;
+        }
+        table[t] = d;
+      }
+    }
+  }
+
+  /**
+   * Visit the probed lists, and call the consumer with the approximate
+   * squared distances.
+   *
+   * @param q Query vector
+   * @param consumer Consumer of (offset, distance) pairs
+   */
+  private void scan(double[] q, Candidates consumer) {
+    final double[] table = new double[m * ksub];
+    for(int l : probeLists(q)) {
+      distanceTable(q, l, table);
+      final int[] mem = members[l];
+      final byte[] code = codes[l];
+      for(int i = 0, p = 0; i < mem.length; i++) {
+        double d = 0;
+        for(int j = 0, t = 0; j < m; j++, t += ksub) {
+          d += table[t + (code[p++] & 0xFF)];
+        }
+        consumer.add(mem[i], d);
+      }
+    }
+  }
+
+  /**
+   * Consumer of candidates.
+   *
+   * @author Erich Schubert
+   */
+  @FunctionalInterface
+  private interface Candidates {
+    /**
+     * Add a candidate.
+     *
+     * @param offset Object offset
+     * @param sqdist Approximate squared Euclidean distance
+     */
+    void add(int offset, double sqdist);
+  }
+
+  @Override
+  public Logging getLogger() {
+    return LOG;
+  }
+
+  @Override
+  public void logStatistics() {
+    super.logStatistics();
+    if(codes != null) {
+      long bytes = 0;
+      for(int l = 0; l < codes.length; l++) {
+        bytes += codes[l].length + members[l].length * (long) Integer.BYTES;
+      }
+      LOG.statistics(new LongStatistic(this.getClass().getName() + ".lists", codes.length));
+      LOG.statistics(new LongStatistic(this.getClass().getName() + ".lists.bytes", bytes));
+    }
+  }
+
+  @Override
+  public String getLongName() {
+    return "IVF-PQ index";
+  }
+
+  @Override
+  public String getShortName() {
+    return "ivfpq";
+  }
+
+  /**
+   * Test whether the distance function is supported.
+   *
+   * @param distanceQuery Distance query
+   * @param hints Query hints
+   * @return {@code true} when supported
+   */
+  private boolean isSupported(DistanceQuery<V> distanceQuery, Object... hints) {
+    for(Object hint : hints) {
+      if(DatabaseQuery.HINT_EXACT.equals(hint)) {
+        return false;
+      }
+    }
+    if(distanceQuery.getRelation() != relation) {
+      return false;
+    }
+    DistanceFunction<? super V> df = distanceQuery.getDistanceFunction();
+    return df instanceof EuclideanDistanceFunction || df instanceof SquaredEuclideanDistanceFunction;
+  }
+
+  @Override
+  public KNNQuery<V> getKNNQuery(DistanceQuery<V> distanceQuery, Object... hints) {
+    return isSupported(distanceQuery, hints) ? new IVFPQKNNQuery(distanceQuery) : null;
+  }
+
+  @Override
+  public RangeQuery<V> getRangeQuery(DistanceQuery<V> distanceQuery, Object... hints) {
+    return isSupported(distanceQuery, hints) ? new IVFPQRangeQuery(distanceQuery) : null;
+  }
+
+  /**
+   * kNN query class.
+   *
+   * @author Erich Schubert
+   */
+  public class IVFPQKNNQuery extends AbstractKNNQuery {
+    /**
+     * Use squared distances.
+     */
+    private final boolean squared;
+
+    /**
+     * Constructor.
+     *
+     * @param distanceQuery Distance query
+     */
+    public IVFPQKNNQuery(DistanceQuery<V> distanceQuery) {
+      super(distanceQuery);
+      this.squared = distanceQuery.getDistanceFunction() instanceof SquaredEuclideanDistanceFunction;
+    }
+
+    @Override
+    public KNNList getKNNForObject(V obj, int k) {
+      final int cand = refine > 0 ? k * refine : k;
+      final DoubleIntegerMaxHeap heap = new DoubleIntegerMaxHeap(cand + 1);
+      scan(obj.toArray(), (o, d) -> heap.add(d, o, cand));
+      KNNHeap res = DBIDUtil.newHeap(k);
+      DBIDArrayIter it = ids.iter();
+      if(refine > 0) {
+        incRefinements(heap.size());
+      }
+      for(; !heap.isEmpty(); heap.poll()) {
+        it.seek(heap.peekValue());
+        final double d = heap.peekKey();
+        res.insert(refine > 0 ? refine(it, obj) : squared ? d : Math.sqrt(d), it);
+      }
+      return res.toKNNList();
+    }
+  }
+
+  /**
+   * Range query class.
+   * <p>
+   * Candidates are selected by their approximate distance; with refinement
+   * enabled, they are verified with the exact distance.
+   *
+   * @author Erich Schubert
+   */
+  public class IVFPQRangeQuery extends AbstractRangeQuery {
+    /**
+     * Use squared distances.
+     */
+    private final boolean squared;
+
+    /**
+     * Constructor.
+     *
+     * @param distanceQuery Distance query
+     */
+    public IVFPQRangeQuery(DistanceQuery<V> distanceQuery) {
+      super(distanceQuery);
+      this.squared = distanceQuery.getDistanceFunction() instanceof SquaredEuclideanDistanceFunction;
+    }
+
+    @Override
+    public void getRangeForObject(V obj, double range, ModifiableDoubleDBIDList result) {
+      final double sqrange = squared ? range : range * range;
+      final DBIDArrayIter it = ids.iter();
+      scan(obj.toArray(), (o, d) -> {
+        if(d > sqrange) {
+          return;
+        }
+        it.seek(o);
+        if(refine > 0) {
+          incRefinements(1);
+          final double exact = refine(it, obj);
+          if(exact <= range) {
+            result.add(exact, it);
+          }
+          return;
+        }
+        result.add(squared ? d : Math.sqrt(d), it);
+      });
+    }
+  }
+
+  /**
+   * Processor of a block of indexes.
+   *
+   * @author Erich Schubert
+   */
+  @FunctionalInterface
+  private interface BlockProcessor {
+    /**
+     * Process a block.
+     *
+     * @param begin First index
+     * @param end End (exclusive)
+     */
+    void process(int begin, int end);
+  }
+
+  /**
+   * Fork-join task splitting a range of indexes into blocks.
+   *
+   * @author Erich Schubert
+   */
+  private static class BlockTask extends RecursiveAction {
+    /**
+     * Serialization version.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Processor.
+     */
+    private final BlockProcessor proc;
+
+    /**
+     * Range to process.
+     */
+    private final int begin, end;
+
+    /**
+     * Block size.
+     */
+    private final int block;
+
+    /**
+     * Constructor.
+     *
+     * @param proc Processor
+     * @param begin First index
+     * @param end End (exclusive)
+     * @param block Block size
+     */
+    BlockTask(BlockProcessor proc, int begin, int end, int block) {
+      this.proc = proc;
+      this.begin = begin;
+      this.end = end;
+      this.block = block;
+    }
+
+    @Override
+    protected void compute() {
+      if(end - begin > block) {
+        final int mid = (begin + end) >>> 1;
+        invokeAll(new BlockTask(proc, begin, mid, block), new BlockTask(proc, mid, end, block));
+        return;
+      }
+      proc.process(begin, end);
+    }
+  }
+
+  /**
+   * Index factory.
+   *
+   * @author Erich Schubert
+   *
+   * @has - - - IVFPQIndex
+   *
+   * @param <V> Vector type
+   */
+  public static class Factory<V extends NumberVector> implements IndexFactory<V> {
+    /**
+     * Number of inverted lists.
+     */
+    protected int nlist;
+
+    /**
+     * Number of subspaces.
+     */
+    protected int m;
+
+    /**
+     * Maximum codebook size per subspace.
+     */
+    protected int ksub;
+
+    /**
+     * Number of lists to visit per query.
+     */
+    protected int nprobe;
+
+    /**
+     * Refinement factor, 0 for no refinement.
+     */
+    protected int refine;
+
+    /**
+     * Training sample size.
+     */
+    protected int sampleSize;
+
+    /**
+     * Maximum number of k-means iterations.
+     */
+    protected int maxiter;
+
+    /**
+     * Random generator.
+     */
+    protected RandomFactory rnd;
+
+    /**
+     * Constructor.
+     *
+     * @param nlist Number of inverted lists
+     * @param m Number of subspaces
+     * @param ksub Maximum codebook size per subspace
+     * @param nprobe Number of lists to visit per query
+     * @param refine Refinement factor, 0 for no refinement
+     * @param sampleSize Training sample size
+     * @param maxiter Maximum number of k-means iterations
+     * @param rnd Random generator
+     */
+    public Factory(int nlist, int m, int ksub, int nprobe, int refine, int sampleSize, int maxiter, RandomFactory rnd) {
+      super();
+      this.nlist = nlist;
+      this.m = m;
+      this.ksub = ksub;
+      this.nprobe = nprobe;
+      this.refine = refine;
+      this.sampleSize = sampleSize;
+      this.maxiter = maxiter;
+      this.rnd = rnd;
+    }
+
+    @Override
+    public IVFPQIndex<V> instantiate(Relation<V> relation) {
+      return new IVFPQIndex<>(relation, nlist, m, ksub, nprobe, refine, sampleSize, maxiter, rnd);
+    }
+
+    @Override
+    public TypeInformation getInputTypeRestriction() {
+      return TypeUtil.NUMBER_VECTOR_FIELD;
+    }
+
+    /**
+     * Parameterization class.
+     *
+     * @author Erich Schubert
+     */
+    public static class Parameterizer<V extends NumberVector> extends AbstractParameterizer {
+      /**
+       * Number of inverted lists.
+       */
+      public static final OptionID LISTS_ID = new OptionID("ivfpq.lists", "Number of inverted lists (coarse k-means clusters).");
+
+      /**
+       * Number of subspaces.
+       */
+      public static final OptionID SUBSPACES_ID = new OptionID("ivfpq.subspaces", "Number of subspaces for product quantization; each vector is encoded with one byte per subspace.");
+
+      /**
+       * Codebook size.
+       */
+      public static final OptionID CODEBOOK_ID = new OptionID("ivfpq.codebook", "Codebook size of each subspace, at most 256.");
+
+      /**
+       * Number of lists to visit.
+       */
+      public static final OptionID NPROBE_ID = new OptionID("ivfpq.nprobe", "Number of inverted lists to visit per query.");
+
+      /**
+       * Refinement factor.
+       */
+      public static final OptionID REFINE_ID = new OptionID("ivfpq.refine", "Refine this many times k candidates with exact distances; 0 disables refinement.");
+
+      /**
+       * Training sample size.
+       */
+      public static final OptionID SAMPLE_ID = new OptionID("ivfpq.sample", "Sample size for training the quantizers.");
+
+      /**
+       * Maximum number of k-means iterations.
+       */
+      public static final OptionID MAXITER_ID = new OptionID("ivfpq.maxiter", "Maximum number of k-means iterations for training.");
+
+      /**
+       * Random seed.
+       */
+      public static final OptionID SEED_ID = new OptionID("ivfpq.seed", "Random generator seed for sampling and k-means initialization.");
+
+      /**
+       * Number of inverted lists.
+       */
+      protected int nlist;
+
+      /**
+       * Number of subspaces.
+       */
+      protected int m;
+
+      /**
+       * Maximum codebook size per subspace.
+       */
+      protected int ksub;
+
+      /**
+       * Number of lists to visit per query.
+       */
+      protected int nprobe;
+
+      /**
+       * Refinement factor.
+       */
+      protected int refine;
+
+      /**
+       * Training sample size.
+       */
+      protected int sampleSize;
+
+      /**
+       * Maximum number of k-means iterations.
+       */
+      protected int maxiter;
+
+      /**
+       * Random generator.
+       */
+      protected RandomFactory rnd;
+
+      @Override
+      protected void makeOptions(Parameterization config) {
+        super.makeOptions(config);
+        IntParameter listsP = new IntParameter(LISTS_ID, 1024) //
+            .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+        if(config.grab(listsP)) {
+          nlist = listsP.intValue();
+        }
+        IntParameter subspacesP = new IntParameter(SUBSPACES_ID, 8) //
+            .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+        if(config.grab(subspacesP)) {
+          m = subspacesP.intValue();
+        }
+        IntParameter codebookP = new IntParameter(CODEBOOK_ID, 256) //
+            .addConstraint(CommonConstraints.GREATER_THAN_ONE_INT) //
+            .addConstraint(new LessEqualConstraint(256));
+        if(config.grab(codebookP)) {
+          ksub = codebookP.intValue();
+        }
+        IntParameter nprobeP = new IntParameter(NPROBE_ID, 8) //
+            .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+        if(config.grab(nprobeP)) {
+          nprobe = nprobeP.intValue();
+        }
+        IntParameter refineP = new IntParameter(REFINE_ID, 0) //
+            .addConstraint(CommonConstraints.GREATER_EQUAL_ZERO_INT);
+        if(config.grab(refineP)) {
+          refine = refineP.intValue();
+        }
+        IntParameter sampleP = new IntParameter(SAMPLE_ID, 100000) //
+            .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+        if(config.grab(sampleP)) {
+          sampleSize = sampleP.intValue();
+        }
+        IntParameter maxiterP = new IntParameter(MAXITER_ID, 25) //
+            .addConstraint(CommonConstraints.GREATER_EQUAL_ZERO_INT);
+        if(config.grab(maxiterP)) {
+          maxiter = maxiterP.intValue();
+        }
+        RandomParameter rndP = new RandomParameter(SEED_ID);
+        if(config.grab(rndP)) {
+          rnd = rndP.getValue();
+        }
+      }
+
+      @Override
+      protected IVFPQIndex.Factory<V> makeInstance() {
+        return new IVFPQIndex.Factory<>(nlist, m, ksub, nprobe, refine, sampleSize, maxiter, rnd);
+      }
+    }
+  }
+}
@@ -34,6 +34,10 @@ import de.lmu.ifi.dbs.elki.utilities.exceptions.AbortException;
  * This cache has a fixed maximum number of objects (<code>cacheSize</code>). If
  * the cache is full and another object is added, the LRU (least recently used)
  * object is dropped.
+ * <p>
+ * In read-only mode, the cache is split into independently locked segments,
+ * each with its own LRU order, such that multiple threads can read pages
+ * concurrently without contending for a single lock.
  * 
  * @author Elke Achtert
  * @since 0.1
@@ -63,6 +67,17 @@ public class LRUCache<P extends Page> extends AbstractPageFile<P> {
    */
   private LinkedHashMap<Integer, P> map;
 
+  /**
+   * Number of segments used in read-only mode (power of two).
+   */
+  private static final int SEGMENTS = 16;
+
+  /**
+   * Cache segments used in read-only mode, indexed by the low bits of the page
+   * id.
+   */
+  private LinkedHashMap<Integer, P>[] segments;
+
   /**
    * The underlying file of this cache. If an object is dropped it is written to
    * the file.
@@ -90,7 +105,22 @@ public class LRUCache<P extends Page> extends AbstractPageFile<P> {
    *         exists in the cache
    */
   @Override
-  public synchronized P readPage(int pageID) {
+  public P readPage(int pageID) {
+    if(readonly) {
+      return readPageConcurrent(pageID);
+    }
+    synchronized(this) {
+      return readPageLocked(pageID);
+    }
+  }
+
+  /**
+   * Read a page, while holding the lock on the cache.
+   *
+   * @param pageID Page id
+   * @return Page
+   */
+  private P readPageLocked(int pageID) {
     countRead();
     P page = map.get(pageID);
     if(page != null) {
@@ -108,6 +138,29 @@ public class LRUCache<P extends Page> extends AbstractPageFile<P> {
     return page;
   }
 
+  /**
+   * Read a page in read-only mode, only locking the cache segment.
+   *
+   * @param pageID Page id
+   * @return Page
+   */
+  private P readPageConcurrent(int pageID) {
+    countRead();
+    final LinkedHashMap<Integer, P> segment = segments[pageID & (segments.length - 1)];
+    P page;
+    synchronized(segment) {
+      page = segment.get(pageID);
+    }
+    if(page == null) {
+      // The backing file supports concurrent reads in read-only mode.
+      page = file.readPage(pageID);
+      synchronized(segment) {
+        segment.put(pageID, page);
+      }
+    }
+    return page;
+  }
+
   @Override
   public synchronized void writePage(int pageID, P page) {
     countWrite();
@@ -119,7 +172,8 @@ public class LRUCache<P extends Page> extends AbstractPageFile<P> {
   }
 
   @Override
-  public void deletePage(int pageID) {
+  public synchronized void deletePage(int pageID) {
+    checkWritable();
     countWrite();
     map.remove(pageID);
     file.deletePage(pageID);
@@ -192,6 +246,45 @@ public class LRUCache<P extends Page> extends AbstractPageFile<P> {
     return created;
   }
 
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  @Override
+  public synchronized void setReadOnly(boolean readonly) {
+    if(readonly == this.readonly) {
+      return;
+    }
+    if(readonly) {
+      // Write back dirty pages, then distribute the cache over the segments.
+      final int nseg = Math.max(1, Math.min(SEGMENTS, Integer.highestOneBit(cacheSize)));
+      final int segsize = Math.max(1, cacheSize / nseg);
+      segments = new LinkedHashMap[nseg];
+      for(int i = 0; i < nseg; i++) {
+        segments[i] = new LinkedHashMap<Integer, P>((int) Math.ceil(segsize / 0.75f) + 1, 0.75f, true) {
+          private static final long serialVersionUID = 1L;
+
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<Integer, P> eldest) {
+            // Pages are clean in read-only mode, and can simply be dropped.
+            return size() > segsize;
+          }
+        };
+      }
+      for(Map.Entry<Integer, P> ent : map.entrySet()) {
+        expirePage(ent.getValue());
+        segments[ent.getKey() & (nseg - 1)].put(ent.getKey(), ent.getValue());
+      }
+      map.clear();
+      file.setReadOnly(true);
+    }
+    else {
+      file.setReadOnly(false);
+      for(LinkedHashMap<Integer, P> segment : segments) {
+        map.putAll(segment);
+      }
+      segments = null;
+    }
+    super.setReadOnly(readonly);
+  }
+
   @Override
   public void close() {
     flush();
@@ -224,6 +317,11 @@ public class LRUCache<P extends Page> extends AbstractPageFile<P> {
   @Override
   public void clear() {
     map.clear();
+    if(segments != null) {
+      for(LinkedHashMap<Integer, P> segment : segments) {
+        segment.clear();
+      }
+    }
   }
 
   /**
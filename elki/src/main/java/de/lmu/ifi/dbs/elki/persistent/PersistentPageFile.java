@@ -27,6 +27,8 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 
 import de.lmu.ifi.dbs.elki.index.tree.TreeIndexHeader;
 import de.lmu.ifi.dbs.elki.logging.Logging;
@@ -115,8 +117,18 @@ public class PersistentPageFile<P extends ExternalizablePage> extends AbstractSt
       countRead();
       long offset = ((long) (header.getReservedPages() + pageID)) * (long) pageSize;
       byte[] buffer = new byte[pageSize];
-      file.seek(offset);
-      file.read(buffer);
+      if(readonly) {
+        // Positional reads do not modify the shared file pointer.
+        ByteBuffer buf = ByteBuffer.wrap(buffer);
+        FileChannel channel = file.getChannel();
+        while(buf.hasRemaining() && channel.read(buf, offset + buf.position()) >= 0) {
+          // Continue until the page is complete.
+        }
+      }
+      else {
+        file.seek(offset);
+        file.read(buffer);
+      }
       return byteArrayToPage(buffer);
     }
     catch(IOException e) {
@@ -29,6 +29,7 @@ import de.lmu.ifi.dbs.elki.index.Index;
 import de.lmu.ifi.dbs.elki.logging.Logging;
 import de.lmu.ifi.dbs.elki.logging.LoggingConfiguration;
 import de.lmu.ifi.dbs.elki.logging.statistics.Duration;
+import de.lmu.ifi.dbs.elki.logging.statistics.MetricsRegistry;
 import de.lmu.ifi.dbs.elki.result.BasicResult;
 import de.lmu.ifi.dbs.elki.result.Result;
 import de.lmu.ifi.dbs.elki.result.ResultHierarchy;
@@ -93,6 +94,10 @@ public class AlgorithmStep implements WorkflowStep {
         it.get().logStatistics();
       }
     }
+    if(MetricsRegistry.isEnabled()) {
+      // Metrics of loading the data and building the indexes.
+      MetricsRegistry.finishRun("database", LOG);
+    }
     stepresult = new BasicResult("Algorithm Step", "algorithm-step");
     for(Algorithm algorithm : algorithms) {
       Thread.currentThread().setName(algorithm.toString());
@@ -111,6 +116,9 @@ public class AlgorithmStep implements WorkflowStep {
           it.get().logStatistics();
         }
       }
+      if(MetricsRegistry.isEnabled()) {
+        MetricsRegistry.finishRun(algorithm.getClass().getName(), LOG);
+      }
       if(res != null) {
         // Make sure the result is attached, but usually this is a noop:
         hier.add(database, res);
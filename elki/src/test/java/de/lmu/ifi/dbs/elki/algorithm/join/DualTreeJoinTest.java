@@ -0,0 +1,155 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.join;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.algorithm.AbstractSimpleAlgorithmTest;
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.QueryUtil;
+import de.lmu.ifi.dbs.elki.database.StaticArrayDatabase;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDListIter;
+import de.lmu.ifi.dbs.elki.database.ids.KNNList;
+import de.lmu.ifi.dbs.elki.database.query.knn.KNNQuery;
+import de.lmu.ifi.dbs.elki.database.query.range.RangeQuery;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.SpatialPrimitiveDistanceFunction;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.EuclideanDistanceFunction;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.ManhattanDistanceFunction;
+import de.lmu.ifi.dbs.elki.index.tree.spatial.kd.MinimalisticMemoryKDTree;
+import de.lmu.ifi.dbs.elki.index.tree.spatial.kd.SmallMemoryKDTree;
+import de.lmu.ifi.dbs.elki.index.tree.spatial.rstarvariants.rstar.RStarTreeFactory;
+import de.lmu.ifi.dbs.elki.persistent.AbstractPageFileFactory;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.ListParameterization;
+
+/**
+ * Unit test for dual-tree joins, comparing to linear scans.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ */
+public class DualTreeJoinTest {
+  /**
+   * Load the query data set, indexed with an R*-tree.
+   *
+   * @return Relation
+   */
+  private static Relation<NumberVector> loadRTree() {
+    ListParameterization params = new ListParameterization();
+    params.addParameter(StaticArrayDatabase.Parameterizer.INDEX_ID, RStarTreeFactory.class);
+    params.addParameter(AbstractPageFileFactory.Parameterizer.PAGE_SIZE_ID, 300);
+    Database db = AbstractSimpleAlgorithmTest.makeSimpleDatabase("elki/testdata/unittests/hierarchical-3d2d1d.csv", 600, params);
+    return db.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+  }
+
+  /**
+   * Load the reference data set, indexed with a k-d-tree.
+   *
+   * @return Relation
+   */
+  private static Relation<NumberVector> loadKDTree() {
+    ListParameterization params = new ListParameterization();
+    params.addParameter(StaticArrayDatabase.Parameterizer.INDEX_ID, SmallMemoryKDTree.Factory.class);
+    params.addParameter(MinimalisticMemoryKDTree.Factory.Parameterizer.LEAFSIZE_P, 5);
+    Database db = AbstractSimpleAlgorithmTest.makeSimpleDatabase("elki/testdata/unittests/outlier-3d-3clusters.ascii", 960, params);
+    return db.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+  }
+
+  @Test
+  public void testKNNJoin() {
+    Relation<NumberVector> rel1 = loadRTree(), rel2 = loadKDTree();
+    JoinTree t1 = JoinTree.build(rel1), t2 = JoinTree.build(rel2);
+    checkKNN(rel1, rel2, t1, t2, EuclideanDistanceFunction.STATIC, false);
+    checkKNN(rel1, rel2, t1, t2, EuclideanDistanceFunction.STATIC, true);
+    checkKNN(rel2, rel1, t2, t1, EuclideanDistanceFunction.STATIC, true);
+    checkKNN(rel1, rel1, t1, t1, ManhattanDistanceFunction.STATIC, true);
+  }
+
+  @Test
+  public void testRangeJoin() {
+    Relation<NumberVector> rel1 = loadRTree(), rel2 = loadKDTree();
+    JoinTree t1 = JoinTree.build(rel1), t2 = JoinTree.build(rel2);
+    assertEquals("Range join size", 195, checkRange(rel1, rel2, t1, t2, EuclideanDistanceFunction.STATIC, 0.25, false));
+    assertEquals("Range join size", 195, checkRange(rel1, rel2, t1, t2, EuclideanDistanceFunction.STATIC, 0.25, true));
+    checkRange(rel2, rel2, t2, t2, ManhattanDistanceFunction.STATIC, 0.02, true);
+  }
+
+  /**
+   * Compare a kNN join to linear scan queries.
+   *
+   * @param rel1 Query relation
+   * @param rel2 Reference relation
+   * @param t1 Query tree
+   * @param t2 Reference tree
+   * @param df Distance function
+   * @param parallel Parallel flag
+   */
+  private static void checkKNN(Relation<NumberVector> rel1, Relation<NumberVector> rel2, JoinTree t1, JoinTree t2, SpatialPrimitiveDistanceFunction<? super NumberVector> df, boolean parallel) {
+    final int k = 7;
+    WritableDataStore<KNNList> res = new DualTreeJoin(df, parallel).knnJoin(t1, t2, k);
+    KNNQuery<NumberVector> knnq = QueryUtil.getLinearScanKNNQuery(df.instantiate(rel2));
+    for(DBIDIter it = rel1.iterDBIDs(); it.valid(); it.advance()) {
+      KNNList exp = knnq.getKNNForObject(rel1.get(it), k);
+      KNNList got = res.get(it);
+      assertEquals("Wrong number of neighbors", k, got.size());
+      DoubleDBIDListIter ei = exp.iter(), gi = got.iter();
+      for(; gi.valid(); ei.advance(), gi.advance()) {
+        assertEquals("Distance does not agree", ei.doubleValue(), gi.doubleValue(), 1e-15);
+      }
+    }
+  }
+
+  /**
+   * Compare a range join to linear scan queries.
+   *
+   * @param rel1 Query relation
+   * @param rel2 Reference relation
+   * @param t1 Query tree
+   * @param t2 Reference tree
+   * @param df Distance function
+   * @param eps Radius
+   * @param parallel Parallel flag
+   * @return Number of pairs
+   */
+  private static int checkRange(Relation<NumberVector> rel1, Relation<NumberVector> rel2, JoinTree t1, JoinTree t2, SpatialPrimitiveDistanceFunction<? super NumberVector> df, double eps, boolean parallel) {
+    WritableDataStore<Integer> counts = DataStoreUtil.makeStorage(rel1.getDBIDs(), 0, Integer.class);
+    int[] total = new int[1];
+    new DualTreeJoin(df, parallel).rangeJoin(t1, t2, eps, (q, r, d) -> {
+      assertEquals("Distance does not agree", df.distance(rel1.get(q), rel2.get(r)), d, 1e-15);
+      Integer c = counts.get(q);
+      counts.put(q, c == null ? 1 : c + 1);
+      total[0]++;
+    });
+    RangeQuery<NumberVector> rq = QueryUtil.getLinearScanRangeQuery(df.instantiate(rel2));
+    for(DBIDIter it = rel1.iterDBIDs(); it.valid(); it.advance()) {
+      Integer c = counts.get(it);
+      assertEquals("Number of pairs does not agree", rq.getRangeForObject(rel1.get(it), eps).size(), c == null ? 0 : c.intValue());
+    }
+    return total[0];
+  }
+}
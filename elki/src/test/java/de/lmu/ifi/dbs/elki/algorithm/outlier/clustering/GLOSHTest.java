@@ -0,0 +1,78 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.outlier.clustering;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.algorithm.clustering.hierarchical.HDBSCANLinearMemory;
+import de.lmu.ifi.dbs.elki.algorithm.clustering.hierarchical.extraction.HDBSCANHierarchyExtraction;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.AbstractOutlierAlgorithmTest;
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+import de.lmu.ifi.dbs.elki.utilities.ELKIBuilder;
+
+/**
+ * Tests the GLOSH algorithm, and scoring new objects.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ */
+public class GLOSHTest extends AbstractOutlierAlgorithmTest {
+  @Test
+  public void testGLOSH() {
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-3d-3clusters.ascii", 960);
+    OutlierResult result = new ELKIBuilder<GLOSH<DoubleVector>>(GLOSH.class) //
+        .with(HDBSCANLinearMemory.Parameterizer.MIN_PTS_ID, 10) //
+        .with(HDBSCANHierarchyExtraction.Parameterizer.MINCLUSTERSIZE_ID, 10) //
+        .build().run(db);
+    testAUC(db, "Noise", result, 0.9827222222222222);
+    testSingleScore(result, 945, 0.5789642580471239);
+  }
+
+  @Test
+  public void testGLOSHPredict() {
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-3d-3clusters.ascii", 960);
+    GLOSHPredictor<DoubleVector> predictor = new ELKIBuilder<GLOSH<DoubleVector>>(GLOSH.class) //
+        .with(HDBSCANLinearMemory.Parameterizer.MIN_PTS_ID, 10) //
+        .with(HDBSCANHierarchyExtraction.Parameterizer.MINCLUSTERSIZE_ID, 10) //
+        .build().fit(db);
+    // Score the training data again, as if it were new data.
+    Relation<DoubleVector> rel = db.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+    OutlierResult result = predictor.predict(rel);
+    testAUC(db, "Noise", result, 0.9825740740740742);
+    // Objects far away from all clusters
+    DBIDIter it = rel.iterDBIDs();
+    double[] far = rel.get(it).toArray();
+    for(int d = 0; d < far.length; d++) {
+      far[d] += 100.;
+    }
+    double farscore = predictor.predict(DoubleVector.wrap(far));
+    assertTrue("Far object not scored as outlier: " + farscore, farscore > 0.9);
+    assertEquals("Score of the training object", 0.3694260954954257, predictor.predict(rel.get(it)), 1e-15);
+  }
+}
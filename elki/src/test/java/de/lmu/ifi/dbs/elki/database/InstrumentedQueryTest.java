@@ -0,0 +1,105 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.database;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.algorithm.AbstractSimpleAlgorithmTest;
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDListIter;
+import de.lmu.ifi.dbs.elki.database.ids.KNNList;
+import de.lmu.ifi.dbs.elki.database.query.LinearScanQuery;
+import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
+import de.lmu.ifi.dbs.elki.database.query.distance.InstrumentedSpatialPrimitiveDistanceQuery;
+import de.lmu.ifi.dbs.elki.database.query.distance.SpatialPrimitiveDistanceQuery;
+import de.lmu.ifi.dbs.elki.database.query.knn.InstrumentedKNNQuery;
+import de.lmu.ifi.dbs.elki.database.query.knn.KNNQuery;
+import de.lmu.ifi.dbs.elki.database.query.range.InstrumentedRangeQuery;
+import de.lmu.ifi.dbs.elki.database.query.range.RangeQuery;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.ManhattanDistanceFunction;
+import de.lmu.ifi.dbs.elki.logging.statistics.MetricsRegistry;
+
+/**
+ * Test the instrumentation of database queries.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ */
+public class InstrumentedQueryTest {
+  /**
+   * Test data file.
+   */
+  public static final String filename = "elki/testdata/unittests/hierarchical-3d2d1d.csv";
+
+  @Test
+  public void testInstrumentation() {
+    Database db = AbstractSimpleAlgorithmTest.makeSimpleDatabase(filename, -1);
+    Relation<NumberVector> rel = db.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+    final String prefix = ManhattanDistanceFunction.class.getName();
+
+    // Disabled: no instrumentation.
+    DistanceQuery<NumberVector> plain = rel.getDistanceQuery(ManhattanDistanceFunction.STATIC);
+    assertSame(SpatialPrimitiveDistanceQuery.class, plain.getClass());
+    KNNQuery<NumberVector> plainknn = rel.getKNNQuery(plain);
+    RangeQuery<NumberVector> plainrange = rel.getRangeQuery(plain);
+
+    MetricsRegistry.clear();
+    MetricsRegistry.setEnabled(true);
+    try {
+      DistanceQuery<NumberVector> dq = rel.getDistanceQuery(ManhattanDistanceFunction.STATIC);
+      assertTrue(dq instanceof InstrumentedSpatialPrimitiveDistanceQuery);
+      KNNQuery<NumberVector> knnq = rel.getKNNQuery(dq);
+      assertTrue(knnq instanceof InstrumentedKNNQuery);
+      assertTrue("Linear scan marker lost.", knnq instanceof LinearScanQuery);
+      assertSame(plainknn.getClass(), InstrumentedKNNQuery.unwrap(knnq).getClass());
+      RangeQuery<NumberVector> rq = rel.getRangeQuery(dq);
+      assertTrue(rq instanceof InstrumentedRangeQuery);
+
+      DBIDIter a = rel.iterDBIDs(), b = rel.iterDBIDs();
+      b.advance();
+      assertEquals(plain.distance(a, b), dq.distance(a, b), 0.);
+      int n = 0;
+      for(DBIDIter it = rel.iterDBIDs(); it.valid() && n < 10; it.advance(), n++) {
+        KNNList expect = plainknn.getKNNForDBID(it, 5), got = knnq.getKNNForDBID(it, 5);
+        assertEquals(expect.size(), got.size());
+        for(DoubleDBIDListIter e = expect.iter(), g = got.iter(); e.valid(); e.advance(), g.advance()) {
+          assertEquals(e.doubleValue(), g.doubleValue(), 0.);
+        }
+        assertEquals(plainrange.getRangeForDBID(it, .1).size(), rq.getRangeForDBID(it, .1).size());
+      }
+      // Linear scans use the raw distance function, and are not counted.
+      assertEquals(1, MetricsRegistry.counter(prefix + ".distancecalcs").getValue());
+      assertEquals(10, MetricsRegistry.counter(InstrumentedKNNQuery.unwrap(knnq).getClass().getName() + ".knnqueries").getValue());
+      assertEquals(10, MetricsRegistry.histogram(InstrumentedKNNQuery.unwrap(knnq).getClass().getName() + ".knnlatency").getCount());
+    }
+    finally {
+      MetricsRegistry.setEnabled(false);
+      MetricsRegistry.clear();
+    }
+  }
+}
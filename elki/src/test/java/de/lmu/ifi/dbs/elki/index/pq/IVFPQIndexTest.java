@@ -0,0 +1,159 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.index.pq;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.StaticArrayDatabase;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDListIter;
+import de.lmu.ifi.dbs.elki.database.ids.KNNList;
+import de.lmu.ifi.dbs.elki.database.query.DatabaseQuery;
+import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
+import de.lmu.ifi.dbs.elki.database.query.knn.KNNQuery;
+import de.lmu.ifi.dbs.elki.database.query.knn.LinearScanDistanceKNNQuery;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.datasource.ArrayAdapterDatabaseConnection;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.EuclideanDistanceFunction;
+import de.lmu.ifi.dbs.elki.utilities.ELKIBuilder;
+
+/**
+ * Unit test for the IVF-PQ index.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ */
+public class IVFPQIndexTest {
+  /**
+   * Approximate and refined kNN queries.
+   */
+  @Test
+  public void testRecall() {
+    double[][] data = generate(5000, 16, 20);
+    double approx = recall(data, 0), refined = recall(data, 4);
+    assertTrue("Approximate recall too low: " + approx, approx > 0.5);
+    assertTrue("Refined recall too low: " + refined, refined > 0.9);
+    assertTrue("Refinement did not improve recall: " + approx + " " + refined, refined > approx);
+  }
+
+  /**
+   * Exact queries must not use the approximate index.
+   */
+  @Test
+  public void testExactHint() {
+    Database db = build(generate(500, 8, 5), 0);
+    Relation<DoubleVector> rel = db.getRelation(TypeUtil.DOUBLE_VECTOR_FIELD);
+    DistanceQuery<DoubleVector> dq = db.getDistanceQuery(rel, EuclideanDistanceFunction.STATIC);
+    KNNQuery<DoubleVector> knnq = db.getKNNQuery(dq, 10, DatabaseQuery.HINT_OPTIMIZED_ONLY);
+    assertTrue(knnq instanceof IVFPQIndex.IVFPQKNNQuery);
+    assertNull(db.getKNNQuery(dq, 10, DatabaseQuery.HINT_OPTIMIZED_ONLY, DatabaseQuery.HINT_EXACT));
+  }
+
+  /**
+   * Generate clustered data.
+   *
+   * @param size Data set size
+   * @param dim Dimensionality
+   * @param clusters Number of clusters
+   * @return Data
+   */
+  private static double[][] generate(int size, int dim, int clusters) {
+    Random rnd = new Random(0L);
+    double[][] centers = new double[clusters][dim];
+    for(double[] c : centers) {
+      for(int d = 0; d < dim; d++) {
+        c[d] = rnd.nextDouble() * 10;
+      }
+    }
+    double[][] data = new double[size][dim];
+    for(int i = 0; i < size; i++) {
+      double[] c = centers[rnd.nextInt(clusters)];
+      for(int d = 0; d < dim; d++) {
+        data[i][d] = c[d] + rnd.nextGaussian();
+      }
+    }
+    return data;
+  }
+
+  /**
+   * Build a database with the index.
+   *
+   * @param data Data set
+   * @param refine Refinement factor
+   * @return Database
+   */
+  private static Database build(double[][] data, int refine) {
+    IVFPQIndex.Factory<?> factory = new ELKIBuilder<>(IVFPQIndex.Factory.class) //
+        .with(IVFPQIndex.Factory.Parameterizer.LISTS_ID, 16) //
+        .with(IVFPQIndex.Factory.Parameterizer.SUBSPACES_ID, 8) //
+        .with(IVFPQIndex.Factory.Parameterizer.CODEBOOK_ID, 64) //
+        .with(IVFPQIndex.Factory.Parameterizer.NPROBE_ID, 4) //
+        .with(IVFPQIndex.Factory.Parameterizer.REFINE_ID, refine) //
+        .with(IVFPQIndex.Factory.Parameterizer.SEED_ID, 0L).build();
+    Database db = new StaticArrayDatabase(new ArrayAdapterDatabaseConnection(data), Arrays.asList(factory));
+    db.initialize();
+    return db;
+  }
+
+  /**
+   * Build the index, and compute the recall of 10NN queries.
+   *
+   * @param data Data set
+   * @param refine Refinement factor
+   * @return Recall
+   */
+  private static double recall(double[][] data, int refine) {
+    Database db = build(data, refine);
+    Relation<DoubleVector> rel = db.getRelation(TypeUtil.DOUBLE_VECTOR_FIELD);
+    DistanceQuery<DoubleVector> dq = db.getDistanceQuery(rel, EuclideanDistanceFunction.STATIC);
+    KNNQuery<DoubleVector> knnq = db.getKNNQuery(dq, 10, DatabaseQuery.HINT_OPTIMIZED_ONLY);
+    assertTrue(knnq instanceof IVFPQIndex.IVFPQKNNQuery);
+    LinearScanDistanceKNNQuery<DoubleVector> linknn = new LinearScanDistanceKNNQuery<>(dq);
+    int i = 0, found = 0, total = 0;
+    for(DBIDIter it = rel.iterDBIDs(); it.valid(); it.advance(), i++) {
+      if(i % 50 != 0) {
+        continue;
+      }
+      KNNList knn = knnq.getKNNForDBID(it, 10), exp = linknn.getKNNForDBID(it, 10);
+      assertEquals(10, knn.size());
+      if(refine > 0) {
+        // Refined distances must be exact.
+        for(DoubleDBIDListIter ki = knn.iter(); ki.valid(); ki.advance()) {
+          assertEquals(dq.distance(it, ki), ki.doubleValue(), 1e-10);
+        }
+      }
+      found += DBIDUtil.intersectionSize(DBIDUtil.newHashSet(knn), DBIDUtil.newHashSet(exp));
+      total += exp.size();
+    }
+    return found / (double) total;
+  }
+}